@@ -43,4 +43,8 @@ data class AverageInstance(
         } else Point(bucket.timestamp, bucket.value())
 
     }
+
+    override fun rollupCompatible(): Boolean {
+        return true
+    }
 }
@@ -23,10 +23,11 @@ package com.spotify.heroic.aggregation.simple
 
 import com.spotify.heroic.aggregation.AnyBucket
 import com.spotify.heroic.metric.Metric
+import com.spotify.heroic.metric.Spread
 import java.util.concurrent.atomic.AtomicLong
 
 /**
- * Bucket that counts the number of seen samples.
+ * Bucket that counts the number of seen samples, including the samples summarized by spreads.
  *
  * @author udoprog
  */
@@ -34,7 +35,11 @@ data class CountBucket(override val timestamp: Long) : AnyBucket {
     private val count = AtomicLong()
 
     override fun update(key: Map<String, String>, d: Metric) {
-        count.incrementAndGet()
+        if (d is Spread) {
+            count.addAndGet(d.count)
+        } else {
+            count.incrementAndGet()
+        }
     }
 
     fun count(): Long {
@@ -26,6 +26,13 @@ import com.spotify.heroic.aggregation.BucketAggregationInstance
 import com.spotify.heroic.metric.MetricType
 import com.spotify.heroic.metric.Point
 
+/**
+ * Counts the samples in each bucket.
+ *
+ * A spread counts as the number of samples it summarizes, not as a single sample, so that a count
+ * over rollups gives the same result as a count over the raw points they were computed from.
+ * Before rollups existed, a spread given to this aggregation was counted once.
+ */
 data class CountInstance(
     override val size: Long, override val extent: Long
 ) : DistributedBucketInstance<StripedCountBucket>(size, extent, BucketAggregationInstance.ALL_TYPES, MetricType.POINT) {
@@ -45,4 +52,8 @@ data class CountInstance(
     override fun reducer(): AggregationInstance {
         return SumInstance(size, extent)
     }
+
+    override fun rollupCompatible(): Boolean {
+        return true
+    }
 }
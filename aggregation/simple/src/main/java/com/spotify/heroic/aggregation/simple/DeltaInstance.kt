@@ -29,7 +29,7 @@ import com.spotify.heroic.metric.*
 import com.spotify.heroic.metric.Spread
 import java.util.*
 
-object DeltaInstance : AggregationInstance {
+object DeltaInstance : PointTransformInstance {
     private val INNER = EmptyInstance.INSTANCE
 
     override fun estimate(range: DateRange): Long {
@@ -41,17 +41,21 @@ object DeltaInstance : AggregationInstance {
     }
 
     override fun distributed(): AggregationInstance {
-        return this
+        return DeltaEdgesInstance
     }
 
     override fun reducer(): AggregationInstance {
-        return INNER
+        return DeltaStitchInstance(false)
     }
 
     override fun distributable(): Boolean {
         return false
     }
 
+    override fun splittable(): Boolean {
+        return true
+    }
+
     override fun hashTo(hasher: ObjectHasher) {
         hasher.putObject(javaClass)
     }
@@ -76,6 +80,23 @@ object DeltaInstance : AggregationInstance {
         return result
     }
 
+    override fun transform(timestamps: LongArray, values: DoubleArray, size: Int): Int {
+        if (size == 0) {
+            return 0
+        }
+
+        var previous = values[0]
+
+        for (i in 1 until size) {
+            val current = values[i]
+            timestamps[i - 1] = timestamps[i]
+            values[i - 1] = current - previous
+            previous = current
+        }
+
+        return size - 1
+    }
+
     override fun session(
         range: DateRange, quotaWatcher: RetainQuotaWatcher, bucketStrategy: BucketStrategy
     ): AggregationSession {
@@ -29,7 +29,7 @@ import com.spotify.heroic.metric.*
 import com.spotify.heroic.metric.Spread
 import java.util.*
 
-object DeltaPerSecondInstance : AggregationInstance {
+object DeltaPerSecondInstance : PointTransformInstance {
     private val INNER = EmptyInstance.INSTANCE
 
     override fun estimate(range: DateRange): Long {
@@ -41,17 +41,21 @@ object DeltaPerSecondInstance : AggregationInstance {
     }
 
     override fun distributed(): AggregationInstance {
-        return this
+        return DeltaEdgesInstance
     }
 
     override fun reducer(): AggregationInstance {
-        return INNER
+        return DeltaStitchInstance(true)
     }
 
     override fun distributable(): Boolean {
         return false
     }
 
+    override fun splittable(): Boolean {
+        return true
+    }
+
     override fun hashTo(hasher: ObjectHasher) {
         hasher.putObject(javaClass)
     }
@@ -78,6 +82,26 @@ object DeltaPerSecondInstance : AggregationInstance {
         return result
     }
 
+    override fun transform(timestamps: LongArray, values: DoubleArray, size: Int): Int {
+        if (size == 0) {
+            return 0
+        }
+
+        var previous = values[0]
+        var previousTimestamp = timestamps[0]
+
+        for (i in 1 until size) {
+            val current = values[i]
+            val timestamp = timestamps[i]
+            timestamps[i - 1] = timestamp
+            values[i - 1] = (current - previous) * 1000.0 / (timestamp - previousTimestamp)
+            previous = current
+            previousTimestamp = timestamp
+        }
+
+        return size - 1
+    }
+
     override fun session(
         range: DateRange, quotaWatcher: RetainQuotaWatcher, bucketStrategy: BucketStrategy
     ): AggregationSession {
@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.aggregation.simple
+
+import com.google.common.collect.ImmutableList
+import com.google.common.collect.ImmutableSet
+import com.google.common.collect.Iterables
+import com.google.common.collect.Iterators
+import com.spotify.heroic.ObjectHasher
+import com.spotify.heroic.aggregation.*
+import com.spotify.heroic.common.DateRange
+import com.spotify.heroic.common.Series
+import com.spotify.heroic.common.Statistics
+import com.spotify.heroic.metric.*
+import com.spotify.heroic.metric.Spread
+import java.util.*
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentLinkedQueue
+
+/**
+ * Reducer for [DeltaInstance] and [DeltaPerSecondInstance].
+ *
+ * Every update is one part of a group, encoded by [DeltaEdgesInstance]. When the parts of a group
+ * do not overlap in time, their deltas are used as-is and joined by the deltas between the last
+ * point of a part and the first point of the next one. Parts which overlap have their points
+ * restored from the first point and the deltas, and are merged before computing the deltas.
+ *
+ * In a chain which starts with a delta aggregation, this leads the reducer and the rest of the
+ * chain is applied to its output.
+ */
+data class DeltaStitchInstance(val perSecond: Boolean) : AggregationInstance {
+    companion object {
+        const val NAME = "delta-stitch"
+    }
+
+    override fun estimate(range: DateRange): Long {
+        return -1
+    }
+
+    override fun cadence(): Long {
+        return -1
+    }
+
+    override fun distributed(): AggregationInstance {
+        return this
+    }
+
+    override fun distributable(): Boolean {
+        return false
+    }
+
+    override fun hashTo(hasher: ObjectHasher) {
+        hasher.putObject(javaClass) {
+            hasher.putField("perSecond", perSecond, hasher.bool())
+        }
+    }
+
+    fun stitch(parts: Collection<List<Point>>): List<Point> {
+        val decoded = parts
+            .filter { it.isNotEmpty() }
+            .map { decode(it) }
+            .sortedBy { it.first.timestamp }
+
+        if (decoded.isEmpty()) {
+            return emptyList()
+        }
+
+        val disjoint = decoded.zipWithNext().all { (a, b) -> a.last.timestamp < b.first.timestamp }
+
+        val deltas = if (disjoint) {
+            join(decoded)
+        } else {
+            DeltaInstance.computeDiff(merge(decoded))
+        }
+
+        return if (perSecond) perSecond(decoded[0].first.timestamp, deltas) else deltas
+    }
+
+    private class Part(val first: Point, val last: Point, val deltas: List<Point>)
+
+    private fun decode(part: List<Point>): Part {
+        if (part.size == 1) {
+            return Part(part[0], part[0], emptyList())
+        }
+
+        return Part(part[0], part[1], part.subList(2, part.size))
+    }
+
+    private fun join(parts: List<Part>): List<Point> {
+        val result = ArrayList<Point>()
+        var previous: Point? = null
+
+        for (part in parts) {
+            if (previous != null) {
+                result.add(Point(part.first.timestamp, part.first.value - previous.value))
+            }
+
+            result.addAll(part.deltas)
+            previous = part.last
+        }
+
+        return result
+    }
+
+    private fun merge(parts: List<Part>): List<Point> {
+        return ImmutableList.copyOf(
+            Iterators.mergeSorted(parts.map { restore(it).iterator() }, Metric.comparator()))
+    }
+
+    /**
+     * Restore the points of a part using compensated summation, the last point is known exactly.
+     */
+    private fun restore(part: Part): List<Point> {
+        val result = ArrayList<Point>(part.deltas.size + 1)
+        result.add(part.first)
+
+        var value = part.first.value
+        var error = 0.0
+
+        for (delta in part.deltas) {
+            val y = delta.value - error
+            val t = value + y
+            error = (t - value) - y
+            value = t
+            result.add(Point(delta.timestamp, value))
+        }
+
+        if (result.size > 1) {
+            result[result.size - 1] = part.last
+        }
+
+        return result
+    }
+
+    private fun perSecond(start: Long, deltas: List<Point>): List<Point> {
+        val result = ArrayList<Point>(deltas.size)
+        var previous = start
+
+        for (delta in deltas) {
+            result.add(Point(delta.timestamp, delta.value * 1000.0 / (delta.timestamp - previous)))
+            previous = delta.timestamp
+        }
+
+        return result
+    }
+
+    override fun session(
+        range: DateRange, quotaWatcher: RetainQuotaWatcher, bucketStrategy: BucketStrategy
+    ): AggregationSession {
+        return Session(quotaWatcher)
+    }
+
+    private class Parts {
+        val series = ConcurrentLinkedQueue<Set<Series>>()
+        val points = ConcurrentLinkedQueue<List<Point>>()
+    }
+
+    private inner class Session(
+        private val quotaWatcher: RetainQuotaWatcher
+    ) : AggregationSession {
+        private val groups = ConcurrentHashMap<Map<String, String>, Parts>()
+
+        override fun updatePoints(
+            key: Map<String, String>, series: Set<Series>, values: List<Point>
+        ) {
+            quotaWatcher.retainData(values.size.toLong())
+
+            val parts = groups.computeIfAbsent(key) { Parts() }
+            parts.series.add(series)
+            parts.points.add(values)
+        }
+
+        override fun updateEvents(
+            key: Map<String, String>, series: Set<Series>, values: List<Event>
+        ) {
+        }
+
+        override fun updatePayload(
+            key: Map<String, String>, series: Set<Series>, values: List<Payload>
+        ) {
+        }
+
+        override fun updateGroup(
+            key: Map<String, String>, series: Set<Series>, values: List<MetricGroup>
+        ) {
+        }
+
+        override fun updateSpreads(
+            key: Map<String, String>, series: Set<Series>, values: List<Spread>
+        ) {
+        }
+
+        override fun result(): AggregationResult {
+            val outputs = groups.map { (key, parts) ->
+                AggregationOutput(
+                    key,
+                    ImmutableSet.copyOf(Iterables.concat(parts.series)),
+                    MetricCollection.build(MetricType.POINT, stitch(parts.points))
+                )
+            }
+
+            return AggregationResult(outputs, Statistics.empty())
+        }
+    }
+}
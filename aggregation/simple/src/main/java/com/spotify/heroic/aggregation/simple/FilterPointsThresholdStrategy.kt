@@ -47,6 +47,25 @@ data class FilterPointsThresholdStrategy(
         }
     }
 
+    /**
+     * Filter points stored in primitive arrays in place.
+     *
+     * @return the number of retained points
+     */
+    fun filter(timestamps: LongArray, values: DoubleArray, size: Int): Int {
+        var retained = 0
+
+        for (i in 0 until size) {
+            if (filterType.predicate(values[i], threshold)) {
+                timestamps[retained] = timestamps[i]
+                values[retained] = values[i]
+                retained++
+            }
+        }
+
+        return retained
+    }
+
     private fun filterWithThreshold(points: List<Point>): List<Point> {
         return points.filter { point -> filterType.predicate(point.value, threshold) }
     }
@@ -43,4 +43,8 @@ data class MaxInstance(
         } else Point(bucket.timestamp, value)
 
     }
+
+    override fun rollupCompatible(): Boolean {
+        return true
+    }
 }
@@ -43,4 +43,8 @@ data class MinInstance(
         } else Point(bucket.timestamp, value)
 
     }
+
+    override fun rollupCompatible(): Boolean {
+        return true
+    }
 }
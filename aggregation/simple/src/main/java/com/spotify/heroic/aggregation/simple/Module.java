@@ -120,6 +120,10 @@ public class Module implements HeroicModule {
             c.register(DeltaPerSecond.NAME, DeltaPerSecond.class,
                 DeltaPerSecondInstance.class, args -> DeltaPerSecond.INSTANCE);
 
+            c.registerInstance(DeltaEdgesInstance.NAME, DeltaEdgesInstance.class);
+
+            c.registerInstance(DeltaStitchInstance.NAME, DeltaStitchInstance.class);
+
             c.register(NotNegative.NAME, NotNegative.class,
                 NotNegativeInstance.class, args -> NotNegative.INSTANCE);
 
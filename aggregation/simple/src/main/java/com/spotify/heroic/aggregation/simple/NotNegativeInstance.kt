@@ -30,7 +30,7 @@ import com.spotify.heroic.metric.Spread
 import java.util.*
 import java.util.stream.Collectors
 
-object NotNegativeInstance : AggregationInstance {
+object NotNegativeInstance : PointTransformInstance {
     private val INNER = EmptyInstance.INSTANCE
 
     override fun estimate(range: DateRange): Long {
@@ -76,6 +76,24 @@ object NotNegativeInstance : AggregationInstance {
         return result
     }
 
+    override fun transform(timestamps: LongArray, values: DoubleArray, size: Int): Int {
+        var retained = 0
+
+        for (i in 0 until size) {
+            if (values[i] >= 0.0) {
+                timestamps[retained] = timestamps[i]
+                values[retained] = values[i]
+                retained++
+            }
+        }
+
+        return retained
+    }
+
+    override fun pointwise(): Boolean {
+        return true
+    }
+
     override fun session(
         range: DateRange, quotaWatcher: RetainQuotaWatcher, bucketStrategy: BucketStrategy
     ): AggregationSession {
@@ -21,5 +21,17 @@
 
 package com.spotify.heroic.aggregation.simple
 
+import com.spotify.heroic.aggregation.PointTransformInstance
+
 data class PointsAboveInstance(val threshold: Double)
-    : MetricMappingAggregation(FilterPointsThresholdStrategy(FilterKThresholdType.ABOVE, threshold))
+    : MetricMappingAggregation(FilterPointsThresholdStrategy(FilterKThresholdType.ABOVE, threshold)),
+    PointTransformInstance {
+    override fun transform(timestamps: LongArray, values: DoubleArray, size: Int): Int {
+        return (metricMappingStrategy as FilterPointsThresholdStrategy)
+            .filter(timestamps, values, size)
+    }
+
+    override fun pointwise(): Boolean {
+        return true
+    }
+}
@@ -42,4 +42,8 @@ data class SpreadInstance(
     override fun distributed(): AggregationInstance {
         return this
     }
+
+    override fun rollupCompatible(): Boolean {
+        return true
+    }
 }
@@ -23,10 +23,11 @@ package com.spotify.heroic.aggregation.simple
 
 import com.spotify.heroic.aggregation.AnyBucket
 import com.spotify.heroic.metric.Metric
+import com.spotify.heroic.metric.Spread
 import java.util.concurrent.atomic.LongAdder
 
 /**
- * Bucket that counts the number of seen samples.
+ * Bucket that counts the number of seen samples, including the samples summarized by spreads.
  *
  *
  * This bucket uses primitives based on striped atomic updates to reduce contention across CPUs.
@@ -37,7 +38,11 @@ data class StripedCountBucket(override val timestamp: Long) : AnyBucket {
     private val count = LongAdder()
 
     override fun update(key: Map<String, String>, d: Metric) {
-        count.increment()
+        if (d is Spread) {
+            count.add(d.count)
+        } else {
+            count.increment()
+        }
     }
 
     fun count(): Long {
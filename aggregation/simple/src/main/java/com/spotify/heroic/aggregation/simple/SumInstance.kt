@@ -42,4 +42,8 @@ data class SumInstance(
     override fun distributed(): AggregationInstance {
         return this
     }
+
+    override fun rollupCompatible(): Boolean {
+        return true
+    }
 }
@@ -0,0 +1,82 @@
+package com.spotify.heroic.aggregation.simple;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.spotify.heroic.aggregation.AggregationInstance;
+import com.spotify.heroic.aggregation.AggregationOutput;
+import com.spotify.heroic.aggregation.AggregationSession;
+import com.spotify.heroic.aggregation.ChainInstance;
+import com.spotify.heroic.aggregation.EmptyInstance;
+import com.spotify.heroic.aggregation.GroupInstance;
+import com.spotify.heroic.common.DateRange;
+import com.spotify.heroic.common.Series;
+import com.spotify.heroic.metric.Event;
+import com.spotify.heroic.metric.MetricCollection;
+import com.spotify.heroic.metric.Point;
+import java.util.List;
+import java.util.Optional;
+import org.junit.Test;
+
+public class ChainInstanceFusionTest {
+    private final Series s1 = Series.of("foo", ImmutableMap.of("site", "sto", "host", "a"));
+    private final Series s2 = Series.of("foo", ImmutableMap.of("site", "sto", "host", "b"));
+
+    private final AggregationInstance group =
+        new GroupInstance(Optional.of(ImmutableList.of("site")), EmptyInstance.INSTANCE);
+
+    @Test
+    public void testFusedTransforms() {
+        final AggregationInstance chain =
+            ChainInstance.of(group, DeltaInstance.INSTANCE, NotNegativeInstance.INSTANCE);
+
+        final AggregationSession session = chain.session(new DateRange(0, 10000));
+
+        session.updatePoints(s1.getTags(), ImmutableSet.of(s1),
+            ImmutableList.of(new Point(1, 5.0), new Point(3, 0.0)));
+        session.updatePoints(s2.getTags(), ImmutableSet.of(s2),
+            ImmutableList.of(new Point(2, 25.0), new Point(4, 10.0)));
+
+        final List<AggregationOutput> result = session.result().getResult();
+
+        assertEquals(ImmutableList.of(
+            new AggregationOutput(ImmutableMap.of("site", "sto"), ImmutableSet.of(s1, s2),
+                MetricCollection.points(
+                    ImmutableList.of(new Point(2, 20.0), new Point(4, 10.0))))), result);
+    }
+
+    @Test
+    public void testFusedTransformsIgnoreOtherTypes() {
+        final AggregationInstance chain = ChainInstance.of(group, DeltaInstance.INSTANCE);
+
+        final AggregationSession session = chain.session(new DateRange(0, 10000));
+
+        session.updatePoints(s1.getTags(), ImmutableSet.of(s1),
+            ImmutableList.of(new Point(1, 5.0), new Point(2, 7.0)));
+        session.updateEvents(s2.getTags(), ImmutableSet.of(s2),
+            ImmutableList.of(new Event(1)));
+
+        final List<AggregationOutput> result = session.result().getResult();
+
+        assertEquals(ImmutableList.of(
+            new AggregationOutput(ImmutableMap.of("site", "sto"), ImmutableSet.of(s1),
+                MetricCollection.points(ImmutableList.of(new Point(2, 2.0))))), result);
+    }
+
+    @Test
+    public void testPointwisePrefixIsDistributed() {
+        final SumInstance sum = new SumInstance(10, 10);
+        final AggregationInstance chain = ChainInstance.of(NotNegativeInstance.INSTANCE, sum);
+
+        assertEquals(chain, chain.distributed());
+        assertEquals(sum, chain.reducer());
+
+        final AggregationInstance filters =
+            ChainInstance.of(NotNegativeInstance.INSTANCE, new PointsAboveInstance(1));
+
+        assertEquals(filters, filters.distributed());
+        assertEquals(EmptyInstance.INSTANCE, filters.reducer());
+    }
+}
@@ -1,9 +1,18 @@
 package com.spotify.heroic.aggregation.simple;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.spotify.heroic.aggregation.AggregationOutput;
+import com.spotify.heroic.aggregation.AggregationSession;
+import com.spotify.heroic.common.DateRange;
+import com.spotify.heroic.common.Series;
 import com.spotify.heroic.metric.Metric;
+import com.spotify.heroic.metric.Point;
+import com.spotify.heroic.metric.Spread;
 import org.junit.Test;
 
+import java.util.List;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
@@ -19,4 +28,55 @@ public class CountBucketTest {
         b.update(tags, m);
         assertEquals(1L, b.count());
     }
+
+    @Test
+    public void testCountSpread() {
+        final Map<String, String> tags = ImmutableMap.of();
+        final CountBucket b = new CountBucket(0);
+        b.update(tags, new Spread(0, 3, 6.0, 14.0, 1.0, 3.0));
+        assertEquals(3L, b.count());
+    }
+
+    @Test
+    public void testCountMixed() {
+        final Map<String, String> tags = ImmutableMap.of();
+        final CountBucket b = new CountBucket(0);
+        final StripedCountBucket s = new StripedCountBucket(0);
+
+        for (final Metric m : ImmutableList.of(new Point(0, 1.0),
+            new Spread(0, 3, 6.0, 14.0, 1.0, 3.0), new Spread(0, 0, 0.0, 0.0, 0.0, 0.0),
+            new Point(0, 2.0))) {
+            b.update(tags, m);
+            s.update(tags, m);
+        }
+
+        assertEquals(5L, b.count());
+        assertEquals(5L, s.count());
+    }
+
+    @Test
+    public void testCountOfSpreadsMatchesPoints() {
+        final Series series = Series.of("a", ImmutableMap.of("host", "a"));
+        final Map<String, String> key = ImmutableMap.of();
+        final DateRange range = new DateRange(0, 20);
+        final CountInstance count = new CountInstance(10, 10);
+
+        final AggregationSession points = count.session(range);
+        points.updatePoints(key, ImmutableSet.of(series),
+            ImmutableList.of(new Point(1, 1.0), new Point(2, 2.0), new Point(3, 3.0),
+                new Point(11, 4.0)));
+
+        final AggregationSession spreads = count.session(range);
+        spreads.updateSpreads(key, ImmutableSet.of(series),
+            ImmutableList.of(new Spread(1, 3, 6.0, 14.0, 1.0, 3.0),
+                new Spread(11, 1, 4.0, 16.0, 4.0, 4.0)));
+
+        assertEquals(result(points), result(spreads));
+    }
+
+    private List<Point> result(final AggregationSession session) {
+        final List<AggregationOutput> result = session.result().getResult();
+        assertEquals(1, result.size());
+        return result.get(0).getMetrics().getDataAs(Point.class);
+    }
 }
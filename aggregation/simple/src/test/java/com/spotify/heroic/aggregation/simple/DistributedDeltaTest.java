@@ -0,0 +1,181 @@
+package com.spotify.heroic.aggregation.simple;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.spotify.heroic.aggregation.AggregationInstance;
+import com.spotify.heroic.aggregation.AggregationOutput;
+import com.spotify.heroic.aggregation.AggregationSession;
+import com.spotify.heroic.aggregation.ChainInstance;
+import com.spotify.heroic.common.DateRange;
+import com.spotify.heroic.common.Series;
+import com.spotify.heroic.metric.Point;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+/**
+ * Verifies that the distributed path of the delta aggregations gives the same result as running
+ * them over all data in one place.
+ */
+public class DistributedDeltaTest {
+    private final DateRange range = new DateRange(0, 100);
+
+    private final Map<String, String> tags = ImmutableMap.of("host", "a");
+    private final Series a = Series.of("a", tags);
+    private final Series b = Series.of("b", tags);
+    private final Series c = Series.of("c", ImmutableMap.of("host", "c"));
+
+    private final List<Shard> split = ImmutableList.of(
+        new Shard(a, points(10, 1.0, 20, 4.0, 30, 2.0)),
+        new Shard(b, points(40, 8.0, 50, 16.0)));
+
+    private final List<Shard> overlapping = ImmutableList.of(
+        new Shard(a, points(10, 1.0, 30, 4.0, 50, 2.0)),
+        new Shard(b, points(20, 8.0, 40, 16.0, 60, 3.0)));
+
+    private final List<Shard> partitioned = ImmutableList.of(
+        new Shard(a, points(10, 1.0, 20, 4.0, 30, 2.0)),
+        new Shard(c, points(10, 8.0, 20, 16.0, 30, 64.0)));
+
+    @Test
+    public void testDelta() {
+        assertDistributed(DeltaInstance.INSTANCE, split);
+        assertDistributed(DeltaInstance.INSTANCE, overlapping);
+    }
+
+    @Test
+    public void testDeltaPerSecond() {
+        assertDistributed(DeltaPerSecondInstance.INSTANCE, split);
+        assertDistributed(DeltaPerSecondInstance.INSTANCE, overlapping);
+    }
+
+    @Test
+    public void testNotNegative() {
+        assertDistributed(NotNegativeInstance.INSTANCE, overlapping);
+    }
+
+    @Test
+    public void testDeltaInChain() {
+        for (final List<Shard> shards : ImmutableList.of(split, overlapping, partitioned)) {
+            assertDistributed(ChainInstance.of(new SumInstance(10, 10), DeltaInstance.INSTANCE),
+                shards);
+            assertDistributed(
+                ChainInstance.of(new SumInstance(10, 10), DeltaPerSecondInstance.INSTANCE),
+                shards);
+            assertDistributed(
+                ChainInstance.of(new SumInstance(10, 10), NotNegativeInstance.INSTANCE), shards);
+        }
+    }
+
+    @Test
+    public void testDeltaLedChain() {
+        final AggregationInstance delta =
+            ChainInstance.of(DeltaInstance.INSTANCE, new SumInstance(10, 10));
+        final AggregationInstance rate = ChainInstance.of(DeltaPerSecondInstance.INSTANCE,
+            NotNegativeInstance.INSTANCE, new SumInstance(10, 10));
+
+        /* the shards only compute the edges, the rest of the chain is applied by the reducer */
+        assertEquals(DeltaEdgesInstance.INSTANCE, delta.distributed());
+        assertEquals(ChainInstance.of(new DeltaStitchInstance(false), new SumInstance(10, 10)),
+            delta.reducer());
+        assertEquals(DeltaEdgesInstance.INSTANCE, rate.distributed());
+        assertEquals(ChainInstance.of(new DeltaStitchInstance(true), NotNegativeInstance.INSTANCE,
+            new SumInstance(10, 10)), rate.reducer());
+
+        for (final List<Shard> shards : ImmutableList.of(split, overlapping, partitioned)) {
+            assertDistributed(delta, shards);
+            assertDistributed(rate, shards);
+            assertDistributed(
+                ChainInstance.of(NotNegativeInstance.INSTANCE, DeltaInstance.INSTANCE,
+                    new SumInstance(10, 10)), shards);
+        }
+    }
+
+    @Test
+    public void testEdgesAreEncoded() {
+        final List<Point> part = points(10, 1.0, 20, 4.0, 30, 2.0);
+
+        assertEquals(points(10, 1.0, 30, 2.0, 20, 3.0, 30, -2.0),
+            DeltaEdgesInstance.INSTANCE.encode(part));
+        assertEquals(points(10, 1.0), DeltaEdgesInstance.INSTANCE.encode(points(10, 1.0)));
+        assertEquals(points(20, 3.0, 30, -2.0),
+            new DeltaStitchInstance(false).stitch(
+                ImmutableList.of(DeltaEdgesInstance.INSTANCE.encode(part))));
+    }
+
+    @Test
+    public void testDisjointPartsAreExact() {
+        final List<Point> first = points(10, 0.1, 20, 0.7, 30, 0.3);
+        final List<Point> second = points(40, 1e16, 50, 0.2, 60, 1.1);
+
+        final List<Point> all = ImmutableList.<Point>builder()
+            .addAll(first)
+            .addAll(second)
+            .build();
+
+        final List<List<Point>> parts = ImmutableList.of(
+            DeltaEdgesInstance.INSTANCE.encode(second), DeltaEdgesInstance.INSTANCE.encode(first));
+
+        assertEquals(DeltaInstance.INSTANCE.computeDiff(all),
+            new DeltaStitchInstance(false).stitch(parts));
+        assertEquals(DeltaPerSecondInstance.INSTANCE.computeDiff(all),
+            new DeltaStitchInstance(true).stitch(parts));
+    }
+
+    private void assertDistributed(final AggregationInstance root, final List<Shard> shards) {
+        final AggregationSession local = root.session(range);
+
+        for (final Shard shard : shards) {
+            local.updatePoints(shard.series.getTags(), ImmutableSet.of(shard.series),
+                shard.points);
+        }
+
+        final AggregationSession reducer = root.reducer().session(range);
+
+        for (final Shard shard : shards) {
+            final AggregationSession distributed = root.distributed().session(range);
+            distributed.updatePoints(shard.series.getTags(), ImmutableSet.of(shard.series),
+                shard.points);
+
+            for (final AggregationOutput out : distributed.result().getResult()) {
+                out.getMetrics().updateAggregation(reducer, out.getKey(), out.getSeries());
+            }
+        }
+
+        assertEquals(collect(local.result().getResult()), collect(reducer.result().getResult()));
+    }
+
+    private Map<Map<String, String>, List<Point>> collect(final List<AggregationOutput> result) {
+        final Map<Map<String, String>, List<Point>> points = new HashMap<>();
+
+        for (final AggregationOutput out : result) {
+            points.put(out.getKey(), out.getMetrics().getDataAs(Point.class));
+        }
+
+        return points;
+    }
+
+    private static List<Point> points(final Object... pairs) {
+        final ImmutableList.Builder<Point> points = ImmutableList.builder();
+
+        for (int i = 0; i < pairs.length; i += 2) {
+            points.add(new Point(((Number) pairs[i]).longValue(), (Double) pairs[i + 1]));
+        }
+
+        return points.build();
+    }
+
+    private static class Shard {
+        private final Series series;
+        private final List<Point> points;
+
+        private Shard(final Series series, final List<Point> points) {
+            this.series = series;
+            this.points = points;
+        }
+    }
+}
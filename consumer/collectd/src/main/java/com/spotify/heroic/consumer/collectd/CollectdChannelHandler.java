@@ -25,8 +25,12 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.spotify.heroic.common.GrokProcessor;
+import com.spotify.heroic.common.Series;
 import com.spotify.heroic.ingestion.Ingestion;
 import com.spotify.heroic.ingestion.IngestionGroup;
+import com.spotify.heroic.metric.Metric;
+import com.spotify.heroic.metric.MetricCollection;
+import com.spotify.heroic.metric.Point;
 import eu.toolchain.async.AsyncFramework;
 import eu.toolchain.async.AsyncFuture;
 import io.netty.channel.ChannelHandlerContext;
@@ -34,60 +38,132 @@ import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.channel.socket.DatagramPacket;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import lombok.Data;
 import org.apache.commons.lang3.tuple.Pair;
 
+/**
+ * Handles the datagrams received on a single channel.
+ * <p>
+ * Instances are not shareable, each receiving channel gets its own handler so that the parser and
+ * the series cache can be used without synchronization. All samples in a packet are grouped by
+ * series and written as a single batch of ingestions.
+ */
 public class CollectdChannelHandler extends SimpleChannelInboundHandler<DatagramPacket> {
+    public static final int DEFAULT_INTERNER_SIZE = 1024;
+
     private final AsyncFramework async;
     private final IngestionGroup ingestion;
     private final Optional<GrokProcessor> hostProcessor;
     private final CollectdTypes types;
+    private final CollectdParser parser;
+    private final Map<SampleKey, List<CollectdTypes.Target>> targets;
 
-    @java.beans.ConstructorProperties({ "async", "ingestion", "hostProcessor", "types" })
-    public CollectdChannelHandler(final AsyncFramework async, final IngestionGroup ingestion,
-                                  final Optional<GrokProcessor> hostProcessor,
-                                  final CollectdTypes types) {
+    @java.beans.ConstructorProperties({
+        "async", "ingestion", "hostProcessor", "types", "seriesCacheSize"
+    })
+    public CollectdChannelHandler(
+        final AsyncFramework async, final IngestionGroup ingestion,
+        final Optional<GrokProcessor> hostProcessor, final CollectdTypes types,
+        final int seriesCacheSize
+    ) {
         this.async = async;
         this.ingestion = ingestion;
         this.hostProcessor = hostProcessor;
         this.types = types;
+        this.parser = new CollectdParser(new StringInterner(DEFAULT_INTERNER_SIZE));
+        this.targets = new LinkedHashMap<SampleKey, List<CollectdTypes.Target>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                final Map.Entry<SampleKey, List<CollectdTypes.Target>> eldest
+            ) {
+                return size() > seriesCacheSize;
+            }
+        };
     }
 
     @Override
     protected void channelRead0(final ChannelHandlerContext ctx, final DatagramPacket msg)
         throws Exception {
-        final Iterator<CollectdSample> samples = CollectdParser.parse(msg.content());
+        final Iterator<CollectdSample> samples = parser.parse(msg.content());
+
+        final Map<Series, List<Point>> batch = new LinkedHashMap<>();
 
         while (samples.hasNext()) {
             final CollectdSample s = samples.next();
 
-            final Set<Map.Entry<String, String>> base =
-                ImmutableMap.of("host", s.getHost(), "plugin", s.getPlugin()).entrySet();
+            final long time = s.getTime() * 1000;
+            final Iterator<CollectdTypes.Target> sampleTargets = targets(s).iterator();
+            final Iterator<CollectdValue> values = s.getValues().iterator();
 
-            final List<Ingestion.Request> ingestions;
+            while (sampleTargets.hasNext()) {
+                final CollectdTypes.Target target = sampleTargets.next();
 
-            if (hostProcessor.isPresent()) {
-                final Map<String, Object> parts = hostProcessor.get().parse(s.getHost());
+                batch
+                    .computeIfAbsent(target.getSeries(), series -> new ArrayList<>())
+                    .add(new Point(time, target.convert(values.next())));
+            }
+        }
 
-                final Set<Map.Entry<String, String>> tags = ImmutableSet.copyOf(
-                    Iterables.transform(parts.entrySet(),
-                        e -> Pair.of(e.getKey(), e.getValue().toString())));
+        final List<AsyncFuture<Ingestion>> futures = new ArrayList<>(batch.size());
 
-                ingestions = types.convert(s, Iterables.concat(base, tags));
-            } else {
-                ingestions = types.convert(s, base);
-            }
+        for (final Map.Entry<Series, List<Point>> e : batch.entrySet()) {
+            final List<Point> points = e.getValue();
+            points.sort(Metric.comparator());
 
-            final List<AsyncFuture<Ingestion>> futures = new ArrayList<>();
+            futures.add(ingestion.write(
+                new Ingestion.Request(e.getKey(), MetricCollection.points(points))));
+        }
 
-            for (final Ingestion.Request w : ingestions) {
-                futures.add(ingestion.write(w));
-            }
+        async.collectAndDiscard(futures);
+    }
+
+    /**
+     * Lookup, or build and cache, the targets for the given sample.
+     */
+    private List<CollectdTypes.Target> targets(final CollectdSample s) {
+        final SampleKey key =
+            new SampleKey(s.getHost(), s.getPlugin(), s.getPluginInstance(), s.getType(),
+                s.getTypeInstance(), s.getValues().size());
 
-            async.collectAndDiscard(futures);
+        final List<CollectdTypes.Target> cached = targets.get(key);
+
+        if (cached != null) {
+            return cached;
+        }
+
+        final Set<Map.Entry<String, String>> base =
+            ImmutableMap.of("host", s.getHost(), "plugin", s.getPlugin()).entrySet();
+
+        final List<CollectdTypes.Target> result;
+
+        if (hostProcessor.isPresent()) {
+            final Map<String, Object> parts = hostProcessor.get().parse(s.getHost());
+
+            final Set<Map.Entry<String, String>> tags = ImmutableSet.copyOf(
+                Iterables.transform(parts.entrySet(),
+                    e -> Pair.of(e.getKey(), e.getValue().toString())));
+
+            result = types.targets(s, Iterables.concat(base, tags));
+        } else {
+            result = types.targets(s, base);
         }
+
+        targets.put(key, result);
+        return result;
+    }
+
+    @Data
+    private static class SampleKey {
+        private final String host;
+        private final String plugin;
+        private final String pluginInstance;
+        private final String type;
+        private final String typeInstance;
+        private final int values;
     }
 }
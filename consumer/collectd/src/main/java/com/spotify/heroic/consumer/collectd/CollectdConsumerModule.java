@@ -43,6 +43,7 @@ import java.util.Optional;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 import javax.inject.Named;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
@@ -51,12 +52,16 @@ import lombok.extern.slf4j.Slf4j;
 @Data
 public class CollectdConsumerModule implements ConsumerModule {
     public static final int DEFAULT_PORT = 25826;
+    public static final int DEFAULT_RECEIVERS = 1;
+    public static final int DEFAULT_SERIES_CACHE_SIZE = 65536;
 
     private final Optional<String> id;
     private final Optional<String> host;
     private final Optional<Integer> port;
     private final Optional<GrokProcessor> hostProcessor;
     private final CollectdTypes types;
+    private final int receivers;
+    private final int seriesCacheSize;
 
     @Override
     public Exposed module(
@@ -147,8 +152,9 @@ public class CollectdConsumerModule implements ConsumerModule {
                         log.warn("No backends are part of the selected ingestion group");
                     }
 
-                    final CollectdChannelHandler handler =
-                        new CollectdChannelHandler(async, ingestion, hostProcessor, types);
+                    final Supplier<CollectdChannelHandler> handler =
+                        () -> new CollectdChannelHandler(async, ingestion, hostProcessor, types,
+                            seriesCacheSize);
 
                     final InetAddress h = host.map(host -> {
                         try {
@@ -160,8 +166,8 @@ public class CollectdConsumerModule implements ConsumerModule {
 
                     final int p = port.orElse(DEFAULT_PORT);
 
-                    log.info("Setting up on {}:{}", h, p);
-                    return Server.setup(async, handler, h, p);
+                    log.info("Setting up on {}:{} ({} receiver(s))", h, p, receivers);
+                    return Server.setup(async, handler, h, p, receivers);
                 }
 
                 @Override
@@ -179,19 +185,25 @@ public class CollectdConsumerModule implements ConsumerModule {
         private Optional<Integer> port = Optional.empty();
         private Optional<GrokProcessor> hostProcessor = Optional.empty();
         private Optional<CollectdTypes> types = Optional.empty();
+        private Optional<Integer> receivers = Optional.empty();
+        private Optional<Integer> seriesCacheSize = Optional.empty();
 
         @JsonCreator
         public Builder(
             @JsonProperty("id") Optional<String> id, @JsonProperty("host") Optional<String> host,
             @JsonProperty("port") Optional<Integer> port,
             @JsonProperty("hostPattern") Optional<GrokProcessor> hostPattern,
-            @JsonProperty("types") Optional<CollectdTypes> types
+            @JsonProperty("types") Optional<CollectdTypes> types,
+            @JsonProperty("receivers") Optional<Integer> receivers,
+            @JsonProperty("seriesCacheSize") Optional<Integer> seriesCacheSize
         ) {
             this.id = id;
             this.host = host;
             this.port = port;
             this.hostProcessor = hostPattern;
             this.types = types;
+            this.receivers = receivers;
+            this.seriesCacheSize = seriesCacheSize;
         }
 
         private Builder() {
@@ -222,6 +234,16 @@ public class CollectdConsumerModule implements ConsumerModule {
             return this;
         }
 
+        public Builder receivers(int receivers) {
+            this.receivers = Optional.of(receivers);
+            return this;
+        }
+
+        public Builder seriesCacheSize(int seriesCacheSize) {
+            this.seriesCacheSize = Optional.of(seriesCacheSize);
+            return this;
+        }
+
         @Override
         public ConsumerModule build() {
             // @formatter:off
@@ -230,7 +252,9 @@ public class CollectdConsumerModule implements ConsumerModule {
                 host,
                 port,
                 hostProcessor,
-                types.orElseGet(CollectdTypes::supplyDefault)
+                types.orElseGet(CollectdTypes::supplyDefault),
+                receivers.orElse(DEFAULT_RECEIVERS),
+                seriesCacheSize.orElse(DEFAULT_SERIES_CACHE_SIZE)
             );
             // @formatter:on
         }
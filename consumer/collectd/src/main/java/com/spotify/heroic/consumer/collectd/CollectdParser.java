@@ -22,17 +22,21 @@
 package com.spotify.heroic.consumer.collectd;
 
 import com.google.common.base.Charsets;
-import com.google.common.collect.ImmutableList;
 import com.spotify.heroic.consumer.collectd.CollectdValue.Counter;
 import io.netty.buffer.ByteBuf;
 import lombok.extern.slf4j.Slf4j;
 
-import java.nio.ByteOrder;
 import java.nio.charset.Charset;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
-import java.util.stream.IntStream;
 
+/**
+ * Parser for the collectd binary protocol.
+ * <p>
+ * Strings are decoded in place through a {@link StringInterner}, so that the host, plugin and type
+ * strings which are repeated in every packet are not copied out of the buffer again.
+ */
 @Slf4j
 public class CollectdParser {
     public static final int HOST = 0x0000;
@@ -52,13 +56,17 @@ public class CollectdParser {
 
     public static final Charset UTF8 = Charsets.UTF_8;
 
-    public static Iterator<CollectdSample> parse(final ByteBuf frame) {
+    private final StringInterner strings;
+
+    public CollectdParser(final StringInterner strings) {
+        this.strings = strings;
+    }
+
+    public Iterator<CollectdSample> parse(final ByteBuf frame) {
         if (frame.readableBytes() < 4) {
             throw new RuntimeException("frame to short");
         }
 
-        frame.order(ByteOrder.BIG_ENDIAN);
-
         return new Iterator<CollectdSample>() {
             private Decoded decoded = new Decoded();
 
@@ -118,27 +126,30 @@ public class CollectdParser {
         };
     }
 
-    public static String parseString(final ByteBuf frame, final int size) {
-        final byte[] buffer = new byte[size - 5];
-        frame.readBytes(buffer);
+    public String parseString(final ByteBuf frame, final int size) {
+        final int index = frame.readerIndex();
+        final int length = size - 5;
 
-        if (frame.readByte() != '\0') {
+        if (frame.getByte(index + length) != '\0') {
             throw new RuntimeException("expected null byte");
         }
 
-        return new String(buffer, UTF8);
+        final String value = strings.intern(frame, index, length);
+        frame.skipBytes(length + 1);
+        return value;
     }
 
     public static List<CollectdValue> parseValues(final ByteBuf frame, final int size) {
         final int n = frame.readUnsignedShort();
+        final int typesIndex = frame.readerIndex();
+
+        frame.skipBytes(n);
 
-        final List<Integer> types = ImmutableList.copyOf(IntStream.range(0, n).map(i -> {
-            return frame.readByte();
-        }).iterator());
+        final CollectdValue[] values = new CollectdValue[n];
 
-        final ImmutableList.Builder<CollectdValue> values = ImmutableList.builder();
+        for (int i = 0; i < n; i++) {
+            final int type = frame.getByte(typesIndex + i);
 
-        for (final int type : types) {
             switch (type) {
                 case CollectdSample.COUNTER:
                     final long c = frame.readLong();
@@ -147,15 +158,15 @@ public class CollectdParser {
                         throw new IllegalArgumentException("value too large for signed type");
                     }
 
-                    values.add(new Counter(c));
+                    values[i] = new Counter(c);
                     break;
                 case CollectdSample.GAUGE:
-                    frame.order(ByteOrder.LITTLE_ENDIAN);
-                    values.add(new CollectdValue.Gauge(frame.readDouble()));
-                    frame.order(ByteOrder.BIG_ENDIAN);
+                    // gauges are the only values encoded in little endian
+                    final double g = Double.longBitsToDouble(frame.readLongLE());
+                    values[i] = new CollectdValue.Gauge(g);
                     break;
                 case CollectdSample.DERIVE:
-                    values.add(new CollectdValue.Derive(frame.readLong()));
+                    values[i] = new CollectdValue.Derive(frame.readLong());
                     break;
                 case CollectdSample.ABSOLUTE:
                     final long a = frame.readLong();
@@ -164,14 +175,14 @@ public class CollectdParser {
                         throw new IllegalArgumentException("value too large for signed type");
                     }
 
-                    values.add(new CollectdValue.Absolute(a));
+                    values[i] = new CollectdValue.Absolute(a);
                     break;
                 default:
                     throw new IllegalArgumentException("invalid sample type: " + type);
             }
         }
 
-        return values.build();
+        return Arrays.asList(values);
     }
 
     public static class Decoded {
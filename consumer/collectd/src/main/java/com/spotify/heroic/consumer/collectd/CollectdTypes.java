@@ -27,14 +27,11 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.spotify.heroic.common.Series;
-import com.spotify.heroic.ingestion.Ingestion;
-import com.spotify.heroic.metric.MetricCollection;
-import com.spotify.heroic.metric.Point;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
@@ -118,43 +115,42 @@ public class CollectdTypes {
             Optional.empty(), Optional.empty());
     }
 
-    public List<Ingestion.Request> convert(
+    /**
+     * Build the targets that the values of the given sample are written to, in order.
+     * <p>
+     * Targets only depend on the identifying fields of a sample (host, plugin, type and their
+     * instances) and on its number of values, so they can be cached by callers for samples sharing
+     * those.
+     */
+    List<Target> targets(
         final CollectdSample sample, final Iterable<Map.Entry<String, String>> tags
     ) {
         final Mapper mapping = mappings.get(sample.getType());
 
         if (mapping == null) {
             log.info("No mapping found for sample {} {}", sample, tags);
-            return convertDefault(sample, tags);
+            return targetsDefault(sample, tags);
         }
 
-        return mapping.convert(sample, tags);
+        return mapping.targets(sample, tags);
     }
 
     /**
      * Default conversion of collectd samples.
      */
-    private List<Ingestion.Request> convertDefault(
+    private List<Target> targetsDefault(
         final CollectdSample sample, final Iterable<Map.Entry<String, String>> tags
     ) {
-        final long time = sample.getTime() * 1000;
-
-        final Iterator<CollectdValue> values = sample.getValues().iterator();
-        final ImmutableList.Builder<Ingestion.Request> ingestions = ImmutableList.builder();
         final Iterable<Map.Entry<String, String>> sampleTags = defaultTags(sample);
+        final Series series = Series.of(key, Iterables.concat(tags, sampleTags).iterator());
 
-        while (values.hasNext()) {
-            final CollectdValue value = values.next();
-
-            final Series series = Series.of(key, Iterables.concat(tags, sampleTags).iterator());
-            final Point point = new Point(time, value.toDouble());
-
-            final MetricCollection data = MetricCollection.points(ImmutableList.of(point));
+        final ImmutableList.Builder<Target> targets = ImmutableList.builder();
 
-            ingestions.add(new Ingestion.Request(series, data));
+        for (int i = 0; i < sample.getValues().size(); i++) {
+            targets.add(new Target(series, Optional.empty()));
         }
 
-        return ingestions.build();
+        return targets.build();
     }
 
     private Iterable<Map.Entry<String, String>> defaultTags(final CollectdSample sample) {
@@ -200,11 +196,28 @@ public class CollectdTypes {
     }
 
     interface Mapper {
-        List<Ingestion.Request> convert(
+        List<Target> targets(
             final CollectdSample sample, final Iterable<Map.Entry<String, String>> tags
         );
     }
 
+    /**
+     * The series that a single value of a sample is written to, and how the value is converted.
+     */
+    @Data
+    static class Target {
+        private final Series series;
+        private final Optional<Field> field;
+
+        public double convert(final CollectdValue value) {
+            if (field.isPresent()) {
+                return value.convert(field.get());
+            }
+
+            return value.toDouble();
+        }
+    }
+
     static class Mapping {
         private final Plugin plugin;
         private final List<Field> fields;
@@ -216,34 +229,23 @@ public class CollectdTypes {
 
         public Mapper setup(CollectdTypes types) {
             return (sample, tags) -> {
-                final long time = sample.getTime() * 1000;
-
-                final Iterator<Field> fields = this.fields.iterator();
-                final Iterator<CollectdValue> values = sample.getValues().iterator();
+                if (sample.getValues().size() < fields.size()) {
+                    throw new IllegalArgumentException("too few values for mapping");
+                }
 
-                final ImmutableList.Builder<Ingestion.Request> ingestions = ImmutableList.builder();
+                final ImmutableList.Builder<Target> targets = ImmutableList.builder();
 
                 final Map<String, String> base = plugin.tags(sample);
 
-                while (fields.hasNext()) {
-                    if (!values.hasNext()) {
-                        throw new IllegalArgumentException("too few values for mapping");
-                    }
-
-                    final Field field = fields.next();
-                    final CollectdValue value = values.next();
-
+                for (final Field field : fields) {
                     final Series series = Series.of(types.key, Iterables
-                        .concat(tags, base.entrySet(), field.tags(sample, value).entrySet())
+                        .concat(tags, base.entrySet(), field.tags(sample).entrySet())
                         .iterator());
-                    final Point point = new Point(time, value.convert(field));
-
-                    final MetricCollection data = MetricCollection.points(ImmutableList.of(point));
 
-                    ingestions.add(new Ingestion.Request(series, data));
+                    targets.add(new Target(series, Optional.of(field)));
                 }
 
-                return ingestions.build();
+                return targets.build();
             };
         }
     }
@@ -274,7 +276,7 @@ public class CollectdTypes {
             return Long.valueOf(absolute).doubleValue();
         }
 
-        public Map<String, String> tags(final CollectdSample s, final CollectdValue v) {
+        public Map<String, String> tags(final CollectdSample s) {
             return ImmutableMap.of();
         }
     }
@@ -288,7 +290,7 @@ public class CollectdTypes {
         }
 
         @Override
-        public Map<String, String> tags(final CollectdSample s, final CollectdValue v) {
+        public Map<String, String> tags(final CollectdSample s) {
             final ImmutableMap.Builder<String, String> tags = ImmutableMap.builder();
             tags.put("what", what);
             return tags.build();
@@ -28,47 +28,116 @@ import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollDatagramChannel;
+import io.netty.channel.epoll.EpollEventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.nio.NioDatagramChannel;
-import lombok.Data;
-
 import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
 
+@Slf4j
 @Data
 public class Server {
     private final AsyncFramework async;
-    private final Channel channel;
+    private final EventLoopGroup group;
+    private final List<Channel> channels;
 
     public AsyncFuture<Void> start() {
         return async.resolved();
     }
 
     public AsyncFuture<Void> shutdown() {
-        return async.resolved();
+        final ResolvableFuture<Void> future = async.future();
+
+        for (final Channel channel : channels) {
+            channel.close();
+        }
+
+        group.shutdownGracefully().addListener(f -> {
+            if (f.isSuccess()) {
+                future.resolve(null);
+            } else {
+                future.fail(f.cause());
+            }
+        });
+
+        return future;
     }
 
+    /**
+     * Setup a server receiving on the given host and port.
+     * <p>
+     * If more than one receiver is requested, and native epoll is available, the given number of
+     * channels are bound to the same address with SO_REUSEPORT, letting the kernel spread incoming
+     * datagrams over them. Each channel gets its own handler from the given supplier.
+     */
     public static AsyncFuture<Server> setup(
-        final AsyncFramework async, final CollectdChannelHandler handler, final InetAddress host,
-        final int port
+        final AsyncFramework async, final Supplier<CollectdChannelHandler> handler,
+        final InetAddress host, final int port, final int receivers
     ) {
-        final EventLoopGroup group = new NioEventLoopGroup();
+        final boolean reusePort = receivers > 1 && Epoll.isAvailable();
+
+        if (receivers > 1 && !reusePort) {
+            log.warn("Native epoll is not available ({}), using a single receiver",
+                Epoll.unavailabilityCause().getMessage());
+        }
+
+        final int channels = reusePort ? receivers : 1;
+
+        final EventLoopGroup group;
         final Bootstrap b = new Bootstrap();
 
-        b
-            .group(group)
-            .channel(NioDatagramChannel.class)
-            .option(ChannelOption.SO_BROADCAST, true)
-            .handler(handler);
+        if (reusePort) {
+            group = new EpollEventLoopGroup(channels);
+
+            b
+                .group(group)
+                .channel(EpollDatagramChannel.class)
+                .option(EpollChannelOption.SO_REUSEPORT, true);
+        } else {
+            group = new NioEventLoopGroup();
+            b.group(group).channel(NioDatagramChannel.class);
+        }
+
+        b.option(ChannelOption.SO_BROADCAST, true).handler(new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(final Channel ch) throws Exception {
+                ch.pipeline().addLast(handler.get());
+            }
+        });
+
+        final List<AsyncFuture<Channel>> binds = new ArrayList<>(channels);
+
+        for (int i = 0; i < channels; i++) {
+            binds.add(bind(async, b, host, port));
+        }
+
+        return async.collect(binds).<Server>directTransform(
+            bound -> new Server(async, group, new ArrayList<>(bound))).catchFailed(e -> {
+            group.shutdownGracefully();
+            throw new RuntimeException("Failed to bind", e);
+        });
+    }
 
-        final ResolvableFuture<Server> future = async.future();
+    private static AsyncFuture<Channel> bind(
+        final AsyncFramework async, final Bootstrap b, final InetAddress host, final int port
+    ) {
+        final ResolvableFuture<Channel> future = async.future();
 
         b.bind(host, port).addListener(new ChannelFutureListener() {
             @Override
             public void operationComplete(final ChannelFuture f) throws Exception {
                 if (f.isSuccess()) {
-                    future.resolve(new Server(async, f.channel()));
+                    future.resolve(f.channel());
                 } else {
                     future.fail(
                         f.cause() != null ? f.cause() : new RuntimeException("Failed to bind"));
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.consumer.collectd;
+
+import io.netty.buffer.ByteBuf;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Decodes strings from a buffer through a small, direct-mapped cache.
+ * <p>
+ * Collectd sends the same host, plugin and type strings in every packet. A cache hit compares the
+ * bytes in place and returns the previously decoded string, without copying anything out of the
+ * buffer. A miss replaces the slot.
+ * <p>
+ * Instances are not thread-safe, and are intended to be owned by a single channel handler.
+ */
+public class StringInterner {
+    private final byte[][] keys;
+    private final String[] values;
+    private final int mask;
+
+    /**
+     * @param size Number of slots in the cache, rounded up to the nearest power of two.
+     */
+    public StringInterner(final int size) {
+        final int slots = size <= 1 ? 1 : Integer.highestOneBit(size - 1) << 1;
+        this.keys = new byte[slots][];
+        this.values = new String[slots];
+        this.mask = slots - 1;
+    }
+
+    /**
+     * Decode the UTF-8 string at the given position.
+     *
+     * @param buffer Buffer to decode from.
+     * @param index Absolute index of the first byte of the string.
+     * @param length Length of the string in bytes.
+     * @return The decoded string.
+     */
+    public String intern(final ByteBuf buffer, final int index, final int length) {
+        int hash = length;
+
+        for (int i = index; i < index + length; i++) {
+            hash = 31 * hash + buffer.getByte(i);
+        }
+
+        final int slot = (hash ^ (hash >>> 16)) & mask;
+        final byte[] key = keys[slot];
+
+        if (key != null && matches(key, buffer, index, length)) {
+            return values[slot];
+        }
+
+        final byte[] bytes = new byte[length];
+        buffer.getBytes(index, bytes);
+
+        final String value = new String(bytes, StandardCharsets.UTF_8);
+        keys[slot] = bytes;
+        values[slot] = value;
+        return value;
+    }
+
+    private static boolean matches(
+        final byte[] key, final ByteBuf buffer, final int index, final int length
+    ) {
+        if (key.length != length) {
+            return false;
+        }
+
+        for (int i = 0; i < length; i++) {
+            if (key[i] != buffer.getByte(index + i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
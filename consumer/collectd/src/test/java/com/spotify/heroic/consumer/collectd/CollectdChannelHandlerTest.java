@@ -0,0 +1,95 @@
+package com.spotify.heroic.consumer.collectd;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.spotify.heroic.common.GrokProcessor;
+import com.spotify.heroic.common.Series;
+import com.spotify.heroic.ingestion.Ingestion;
+import com.spotify.heroic.ingestion.IngestionGroup;
+import com.spotify.heroic.metric.MetricCollection;
+import com.spotify.heroic.metric.Point;
+import eu.toolchain.async.AsyncFramework;
+import io.netty.channel.socket.DatagramPacket;
+import java.net.InetSocketAddress;
+import java.util.Optional;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CollectdChannelHandlerTest {
+    @Mock
+    private AsyncFramework async;
+
+    @Mock
+    private IngestionGroup ingestion;
+
+    @Mock
+    private GrokProcessor hostProcessor;
+
+    private CollectdChannelHandler handler;
+
+    @Before
+    public void setup() {
+        when(hostProcessor.parse(anyString())).thenReturn(ImmutableMap.of("role", "web"));
+
+        handler = new CollectdChannelHandler(async, ingestion, Optional.of(hostProcessor),
+            CollectdTypes.supplyDefault(), 2);
+    }
+
+    @Test
+    public void testSeriesCacheEviction() throws Exception {
+        receive("a");
+        receive("b");
+        receive("a");
+        // evicts b, which is the least recently used
+        receive("c");
+        receive("a");
+        receive("b");
+
+        verify(hostProcessor, times(1)).parse("a");
+        verify(hostProcessor, times(2)).parse("b");
+        verify(hostProcessor, times(1)).parse("c");
+        verify(ingestion, times(6)).write(any(Ingestion.Request.class));
+    }
+
+    @Test
+    public void testGroupsPointsBySeries() throws Exception {
+        handler.channelRead0(null, packet(new CollectdPackets()
+            .string(CollectdParser.HOST, "a")
+            .string(CollectdParser.PLUGIN, "cpu")
+            .string(CollectdParser.TYPE, "cpu")
+            .number(CollectdParser.TIME, 2L)
+            .gauges(2.0d)
+            .number(CollectdParser.TIME, 1L)
+            .gauges(1.0d)));
+
+        final Series series = Series.of(CollectdTypes.DEFAULT_KEY,
+            ImmutableMap.of("host", "a", "plugin", "cpu", "role", "web", "type", "cpu"));
+
+        verify(hostProcessor, times(1)).parse("a");
+        verify(ingestion).write(new Ingestion.Request(series, MetricCollection.points(
+            ImmutableList.of(new Point(1000L, 1.0d), new Point(2000L, 2.0d)))));
+    }
+
+    private void receive(final String host) throws Exception {
+        handler.channelRead0(null, packet(new CollectdPackets()
+            .string(CollectdParser.HOST, host)
+            .string(CollectdParser.PLUGIN, "cpu")
+            .string(CollectdParser.TYPE, "cpu")
+            .number(CollectdParser.TIME, 1L)
+            .gauges(1.0d)));
+    }
+
+    private DatagramPacket packet(final CollectdPackets packets) {
+        return new DatagramPacket(packets.build(), new InetSocketAddress(25826));
+    }
+}
@@ -0,0 +1,83 @@
+package com.spotify.heroic.consumer.collectd;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes packets using the collectd binary protocol.
+ */
+class CollectdPackets {
+    private final ByteBuf buffer = Unpooled.buffer();
+
+    CollectdPackets string(final int type, final String value) {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.writeShort(type);
+        buffer.writeShort(4 + bytes.length + 1);
+        buffer.writeBytes(bytes);
+        buffer.writeByte(0);
+        return this;
+    }
+
+    CollectdPackets number(final int type, final long value) {
+        buffer.writeShort(type);
+        buffer.writeShort(12);
+        buffer.writeLong(value);
+        return this;
+    }
+
+    /**
+     * Write a values part where every value is already encoded as 8 bytes.
+     */
+    CollectdPackets values(final int[] types, final byte[][] values) {
+        buffer.writeShort(CollectdParser.VALUES);
+        buffer.writeShort(4 + 2 + types.length * 9);
+        buffer.writeShort(types.length);
+
+        for (final int type : types) {
+            buffer.writeByte(type);
+        }
+
+        for (final byte[] value : values) {
+            buffer.writeBytes(value);
+        }
+
+        return this;
+    }
+
+    CollectdPackets gauges(final double... gauges) {
+        final int[] types = new int[gauges.length];
+        final byte[][] values = new byte[gauges.length][];
+
+        for (int i = 0; i < gauges.length; i++) {
+            types[i] = CollectdSample.GAUGE;
+            values[i] = littleEndian(Double.doubleToLongBits(gauges[i]));
+        }
+
+        return values(types, values);
+    }
+
+    ByteBuf build() {
+        return buffer;
+    }
+
+    static byte[] bigEndian(final long value) {
+        final byte[] bytes = new byte[8];
+
+        for (int i = 0; i < 8; i++) {
+            bytes[i] = (byte) (value >>> (56 - i * 8));
+        }
+
+        return bytes;
+    }
+
+    static byte[] littleEndian(final long value) {
+        final byte[] bytes = new byte[8];
+
+        for (int i = 0; i < 8; i++) {
+            bytes[i] = (byte) (value >>> (i * 8));
+        }
+
+        return bytes;
+    }
+}
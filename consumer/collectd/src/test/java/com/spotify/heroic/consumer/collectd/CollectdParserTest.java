@@ -0,0 +1,98 @@
+package com.spotify.heroic.consumer.collectd;
+
+import static com.spotify.heroic.consumer.collectd.CollectdPackets.bigEndian;
+import static com.spotify.heroic.consumer.collectd.CollectdPackets.littleEndian;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import com.google.common.collect.ImmutableList;
+import io.netty.buffer.ByteBuf;
+import java.util.Iterator;
+import java.util.List;
+import org.junit.Test;
+
+public class CollectdParserTest {
+    private final CollectdParser parser = new CollectdParser(new StringInterner(16));
+
+    @Test
+    public void testRoundTrip() {
+        final ByteBuf packet = new CollectdPackets()
+            .string(CollectdParser.HOST, "host-a")
+            .number(CollectdParser.TIME, 1000L)
+            .number(CollectdParser.INTERVAL, 10L)
+            .string(CollectdParser.PLUGIN, "cpu")
+            .string(CollectdParser.PLUGIN_INSTANCE, "0")
+            .string(CollectdParser.TYPE, "cpu")
+            .string(CollectdParser.TYPE_INSTANCE, "idle")
+            .gauges(1.5d)
+            .string(CollectdParser.PLUGIN, "load")
+            .string(CollectdParser.PLUGIN_INSTANCE, "")
+            .string(CollectdParser.TYPE, "load")
+            .string(CollectdParser.TYPE_INSTANCE, "")
+            .gauges(0.5d, 0.25d, 0.125d)
+            .build();
+
+        final Iterator<CollectdSample> samples = parser.parse(packet);
+
+        assertEquals(
+            new CollectdSample("host-a", 1000L, "cpu", "0", "cpu", "idle",
+                ImmutableList.of(new CollectdValue.Gauge(1.5d)), 10L, "", 0L), samples.next());
+
+        // parts which are not repeated are inherited from the previous sample
+        assertEquals(new CollectdSample("host-a", 1000L, "load", "", "load", "",
+            ImmutableList.of(new CollectdValue.Gauge(0.5d), new CollectdValue.Gauge(0.25d),
+                new CollectdValue.Gauge(0.125d)), 10L, "", 0L), samples.next());
+
+        assertFalse(samples.hasNext());
+    }
+
+    @Test
+    public void testHighResolutionTime() {
+        final ByteBuf packet = new CollectdPackets()
+            .number(CollectdParser.TIME_HR, 1000L << 30)
+            .number(CollectdParser.INTERVAL_HR, 10L << 30)
+            .gauges(1.0d)
+            .build();
+
+        final CollectdSample sample = parser.parse(packet).next();
+
+        assertEquals(1000L, sample.getTime());
+        assertEquals(10L, sample.getInterval());
+    }
+
+    @Test
+    public void testGaugeIsLittleEndian() {
+        final byte[] one = {0, 0, 0, 0, 0, 0, (byte) 0xf0, 0x3f};
+
+        assertEquals(ImmutableList.of(new CollectdValue.Gauge(1.0d)),
+            values(new int[]{CollectdSample.GAUGE}, one));
+        assertEquals(ImmutableList.of(new CollectdValue.Gauge(-2.5d)),
+            values(new int[]{CollectdSample.GAUGE}, littleEndian(Double.doubleToLongBits(-2.5d))));
+    }
+
+    @Test
+    public void testCountersAreBigEndian() {
+        final int[] types =
+            {CollectdSample.COUNTER, CollectdSample.DERIVE, CollectdSample.ABSOLUTE};
+        final List<CollectdValue> values =
+            values(types, bigEndian(0x0102L), bigEndian(-2L), bigEndian(42L));
+
+        assertEquals(ImmutableList.of(new CollectdValue.Counter(0x0102L),
+            new CollectdValue.Derive(-2L), new CollectdValue.Absolute(42L)), values);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCounterTooLarge() {
+        values(new int[]{CollectdSample.COUNTER}, bigEndian(-1L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidType() {
+        values(new int[]{4}, bigEndian(1L));
+    }
+
+    private List<CollectdValue> values(final int[] types, final byte[]... values) {
+        final ByteBuf packet = new CollectdPackets().values(types, values).build();
+        return parser.parse(packet).next().getValues();
+    }
+}
@@ -0,0 +1,59 @@
+package com.spotify.heroic.consumer.collectd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+public class StringInternerTest {
+    @Test
+    public void testDecodesUtf8() {
+        final StringInterner strings = new StringInterner(16);
+        final ByteBuf buffer = buffer("xxhéllo");
+
+        assertEquals("héllo", strings.intern(buffer, 2, buffer.readableBytes() - 2));
+    }
+
+    @Test
+    public void testHitReturnsSameInstance() {
+        final StringInterner strings = new StringInterner(16);
+        final ByteBuf a = buffer("host-a");
+        final ByteBuf b = buffer("..host-a..");
+
+        final String first = strings.intern(a, 0, 6);
+
+        assertSame(first, strings.intern(a, 0, 6));
+        assertSame(first, strings.intern(b, 2, 6));
+    }
+
+    @Test
+    public void testDistinguishesPrefixes() {
+        final StringInterner strings = new StringInterner(16);
+        final ByteBuf buffer = buffer("host-a");
+
+        assertEquals("host-a", strings.intern(buffer, 0, 6));
+        assertEquals("host", strings.intern(buffer, 0, 4));
+        assertEquals("", strings.intern(buffer, 0, 0));
+    }
+
+    @Test
+    public void testMissReplacesSlot() {
+        final StringInterner strings = new StringInterner(1);
+        final ByteBuf buffer = buffer("ab");
+
+        final String a = strings.intern(buffer, 0, 1);
+        assertEquals("b", strings.intern(buffer, 1, 1));
+
+        final String again = strings.intern(buffer, 0, 1);
+        assertEquals(a, again);
+        assertNotSame(a, again);
+    }
+
+    private ByteBuf buffer(final String value) {
+        return Unpooled.wrappedBuffer(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -27,6 +27,7 @@ import eu.toolchain.async.AsyncFramework;
 import eu.toolchain.async.AsyncFuture;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 
@@ -38,6 +39,7 @@ public class Connection implements ConsumerThreadCoordinator {
 
     private final KafkaConnection connection;
     private final List<ConsumerThread> threads;
+    private final Optional<ConsumerPipeline> pipeline;
 
     private volatile boolean pleaseCommit = false;
     private final Object lock = new Object();
@@ -50,6 +52,7 @@ public class Connection implements ConsumerThreadCoordinator {
         for (final ConsumerThread t : threads) {
             perThread.add(t.pauseConsumption());
         }
+        pipeline.ifPresent(p -> perThread.add(p.pause()));
         return async.collectAndDiscard(perThread);
     }
 
@@ -58,9 +61,46 @@ public class Connection implements ConsumerThreadCoordinator {
         for (final ConsumerThread t : threads) {
             perThread.add(t.resumeConsumption());
         }
+        pipeline.ifPresent(p -> perThread.add(p.resume()));
         return async.collectAndDiscard(perThread);
     }
 
+    /**
+     * Number of threads consuming from streams.
+     */
+    public int size() {
+        return threads.size() + pipeline.map(ConsumerPipeline::size).orElse(0);
+    }
+
+    /**
+     * Number of threads consuming from streams which are paused.
+     */
+    public int paused() {
+        final int pausedThreads = threads.stream().mapToInt(t -> t.isPausing() ? 1 : 0).sum();
+        return pausedThreads + pipeline.map(p -> p.isPausing() ? p.size() : 0).orElse(0);
+    }
+
+    public AsyncFuture<Void> shutdown() {
+        final List<AsyncFuture<Void>> shutdown = new ArrayList<>();
+
+        for (final ConsumerThread t : threads) {
+            shutdown.add(t.shutdown());
+        }
+
+        if (!pipeline.isPresent()) {
+            connection.shutdown();
+            return async.collectAndDiscard(shutdown);
+        }
+
+        final ConsumerPipeline p = pipeline.get();
+
+        /* the pipeline commits offsets as it drains, which requires an open connection */
+        return p.drain().onFinished(connection::shutdown).lazyTransform(v -> {
+            shutdown.add(p.shutdown());
+            return async.collectAndDiscard(shutdown);
+        });
+    }
+
     public void prepareToCommitConsumerOffsets() {
         synchronized (lock) {
             log.info("Consumer offsets commit: Preparing");
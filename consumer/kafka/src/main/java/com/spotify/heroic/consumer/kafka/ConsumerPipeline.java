@@ -0,0 +1,428 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.consumer.kafka;
+
+import com.spotify.heroic.consumer.ConsumerSchema;
+import com.spotify.heroic.consumer.ConsumerSchemaValidationException;
+import com.spotify.heroic.statistics.ConsumerReporter;
+import com.spotify.heroic.statistics.FutureReporter;
+import com.spotify.heroic.statistics.HeroicTimer;
+import com.spotify.heroic.time.Clock;
+import eu.toolchain.async.AsyncFramework;
+import eu.toolchain.async.AsyncFuture;
+import eu.toolchain.async.ResolvableFuture;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Consumes a set of streams in stages, as an alternative to one {@link ConsumerThread} per stream.
+ * <ol>
+ * <li>One fetch thread per stream reads messages and registers their offsets.</li>
+ * <li>A pool of decode workers takes batches of messages from a shared bounded queue, and decodes
+ * and writes them through the consumer schema.</li>
+ * <li>Completed writes acknowledge their offset in an {@link OffsetTracker}, and offsets up to the
+ * highest contiguously acknowledged message of each partition are periodically committed.</li>
+ * </ol>
+ * <p>
+ * Backpressure is applied by the bounded queue, which blocks fetching, and a limit on the number of
+ * writes in flight, which blocks decoding. Committing does not require consumption to be paused.
+ */
+@Slf4j
+public class ConsumerPipeline {
+    private static final long RETRY_INITIAL_SLEEP = 5;
+    private static final long RETRY_MAX_SLEEP = 40;
+    private static final long POLL_TIMEOUT = 100;
+
+    private final AsyncFramework async;
+    private final Clock clock;
+    private final ConsumerReporter reporter;
+    private final KafkaConnection connection;
+    private final ConsumerSchema.Consumer schema;
+    private final AtomicInteger active;
+    private final AtomicLong errors;
+    private final LongAdder consumed;
+    private final Settings settings;
+
+    private final BlockingQueue<KafkaMessage<byte[]>> queue;
+    private final Semaphore inFlight;
+    private final OffsetTracker offsets = new OffsetTracker();
+    private final AtomicLong nextCommit;
+    private final Object commitLock = new Object();
+
+    private final List<Fetcher> fetchers = new ArrayList<>();
+    private final List<Worker> workers = new ArrayList<>();
+
+    private final CountDownLatch shouldStop = new CountDownLatch(1);
+    private final AtomicReference<CountDownLatch> shouldPause = new AtomicReference<>();
+
+    public ConsumerPipeline(
+        final AsyncFramework async, final Clock clock, final ConsumerReporter reporter,
+        final KafkaConnection connection, final Map<String, KafkaStream<byte[]>> streams,
+        final ConsumerSchema.Consumer schema, final AtomicInteger active, final AtomicLong errors,
+        final LongAdder consumed, final Settings settings
+    ) {
+        this.async = async;
+        this.clock = clock;
+        this.reporter = reporter;
+        this.connection = connection;
+        this.schema = schema;
+        this.active = active;
+        this.errors = errors;
+        this.consumed = consumed;
+        this.settings = settings;
+
+        this.queue = new ArrayBlockingQueue<>(settings.getBatchSize() * settings.getWorkers());
+        this.inFlight = new Semaphore(settings.getMaxInFlight());
+        this.nextCommit = new AtomicLong(clock.currentTimeMillis() + settings.getCommitInterval());
+
+        for (final Map.Entry<String, KafkaStream<byte[]>> e : streams.entrySet()) {
+            fetchers.add(new Fetcher(e.getKey(), e.getValue()));
+        }
+
+        for (int i = 0; i < settings.getWorkers(); i++) {
+            workers.add(new Worker(i));
+        }
+    }
+
+    /**
+     * Number of threads fetching from streams, which is what is reported as consumer threads.
+     */
+    public int size() {
+        return fetchers.size();
+    }
+
+    public void start() {
+        workers.forEach(Thread::start);
+        fetchers.forEach(Thread::start);
+    }
+
+    public AsyncFuture<Void> pause() {
+        final CountDownLatch old = shouldPause.getAndSet(new CountDownLatch(1));
+
+        if (old != null) {
+            old.countDown();
+        }
+
+        return async.resolved();
+    }
+
+    public AsyncFuture<Void> resume() {
+        final CountDownLatch old = shouldPause.getAndSet(null);
+
+        if (old != null) {
+            old.countDown();
+        }
+
+        return async.resolved();
+    }
+
+    public boolean isPausing() {
+        return shouldPause.get() != null;
+    }
+
+    /**
+     * Stop consuming, and commit the offsets of the writes which complete in the meantime.
+     * <p>
+     * Requires the connection to still be open, after which it should be shut down to release
+     * fetchers blocked on reading from their stream, see {@link #shutdown()}.
+     */
+    public AsyncFuture<Void> drain() {
+        shouldStop.countDown();
+        resume();
+
+        final List<AsyncFuture<Void>> stopped = new ArrayList<>();
+
+        for (final Worker w : workers) {
+            stopped.add(w.hasStopped);
+        }
+
+        return async.collectAndDiscard(stopped).lazyTransform(v -> async.call(() -> {
+            /* give writes in flight a chance to complete, so that their offsets are committed */
+            inFlight.tryAcquire(settings.getMaxInFlight(), settings.getCommitInterval(),
+                TimeUnit.MILLISECONDS);
+
+            if (settings.isCommit()) {
+                commit();
+            }
+
+            return null;
+        }));
+    }
+
+    /**
+     * Wait for all fetchers to stop.
+     */
+    public AsyncFuture<Void> shutdown() {
+        shouldStop.countDown();
+        resume();
+
+        final List<AsyncFuture<Void>> stopped = new ArrayList<>();
+
+        for (final Fetcher f : fetchers) {
+            stopped.add(f.hasStopped);
+        }
+
+        return async.collectAndDiscard(stopped);
+    }
+
+    private boolean isStopping() {
+        return shouldStop.getCount() == 0;
+    }
+
+    private void maybePause() throws InterruptedException {
+        CountDownLatch p = shouldPause.get();
+
+        /* block while shouldPause, re-check since multiple calls to pause might swap it */
+        while (p != null && !isStopping()) {
+            p.await();
+            p = shouldPause.get();
+        }
+    }
+
+    private void maybeCommit() {
+        if (!settings.isCommit()) {
+            return;
+        }
+
+        final long now = clock.currentTimeMillis();
+        final long next = nextCommit.get();
+
+        if (next > now || !nextCommit.compareAndSet(next, now + settings.getCommitInterval())) {
+            return;
+        }
+
+        commit();
+    }
+
+    private void commit() {
+        synchronized (commitLock) {
+            final Map<KafkaPartition, Long> committable = offsets.committable();
+
+            if (committable.isEmpty()) {
+                return;
+            }
+
+            final HeroicTimer.Context timer = reporter.reportConsumerCommitOperation();
+
+            try {
+                connection.commitOffsets(committable);
+            } catch (final Exception e) {
+                log.error("Failed to commit offsets", e);
+                return;
+            } finally {
+                timer.stop();
+            }
+
+            offsets.committed(committable);
+            log.debug("Committed offsets: {}", committable);
+        }
+    }
+
+    /**
+     * Consume a single message, retrying until it has been handed off or the pipeline is stopping.
+     */
+    private void consumeWithRetry(final KafkaMessage<byte[]> message)
+        throws InterruptedException {
+        long sleep = RETRY_INITIAL_SLEEP;
+
+        while (!isStopping()) {
+            if (!inFlight.tryAcquire(POLL_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                continue;
+            }
+
+            final byte[] body = message.getMessage();
+            final FutureReporter.Context consumptionContext = reporter.reportConsumption();
+            final AsyncFuture<Void> future;
+
+            try {
+                future = schema.consume(body);
+            } catch (final ConsumerSchemaValidationException e) {
+                /* these messages should be ignored */
+                inFlight.release();
+                reporter.reportConsumerSchemaError();
+                acknowledge(message);
+                return;
+            } catch (final Exception e) {
+                inFlight.release();
+                errors.incrementAndGet();
+                log.error("Failed to consume", e);
+                reporter.reportMessageError();
+
+                handleRetry(sleep);
+                sleep = Math.min(sleep * 2, RETRY_MAX_SLEEP);
+                reporter.reportMessageRetry();
+                continue;
+            }
+
+            future.onDone(consumptionContext);
+            future.onFinished(() -> {
+                inFlight.release();
+                acknowledge(message);
+            });
+
+            reporter.reportMessageSize(body.length);
+            consumed.increment();
+            return;
+        }
+    }
+
+    private void acknowledge(final KafkaMessage<byte[]> message) {
+        offsets.acknowledged(message.getPartition(), message.getOffset());
+    }
+
+    private void handleRetry(final long sleep) throws InterruptedException {
+        log.info("Retrying in {} second(s)", sleep);
+
+        /* decrementing the number of active active consumers indicates an error to the consumer
+         * module. This makes sure that the status of the service is set to as 'failing'. */
+        active.decrementAndGet();
+        shouldStop.await(sleep, TimeUnit.SECONDS);
+        active.incrementAndGet();
+    }
+
+    /**
+     * Reads messages from a single stream into the shared queue.
+     */
+    class Fetcher extends Thread {
+        private final String name;
+        private final KafkaStream<byte[]> stream;
+        private final ResolvableFuture<Void> hasStopped = async.future();
+
+        Fetcher(final String name, final KafkaStream<byte[]> stream) {
+            super(String.format("%s: fetch %s", ConsumerPipeline.class.getCanonicalName(), name));
+            this.name = name;
+            this.stream = stream;
+        }
+
+        @Override
+        public void run() {
+            log.info("{}: Starting fetcher", name);
+            active.incrementAndGet();
+            reporter.reportConsumerThreadsIncrement();
+
+            try {
+                guardedRun();
+            } catch (final Throwable e) {
+                log.error("{}: Error in fetcher", name, e);
+                hasStopped.fail(e);
+                return;
+            } finally {
+                active.decrementAndGet();
+                reporter.reportConsumerThreadsDecrement();
+            }
+
+            log.info("{}: Stopping fetcher", name);
+            hasStopped.resolve(null);
+        }
+
+        private void guardedRun() throws InterruptedException {
+            for (final KafkaMessage<byte[]> message : stream.messageAndOffsetIterable()) {
+                if (isStopping() || message == null) {
+                    // Kafka will send a null message when connection is closing
+                    break;
+                }
+
+                offsets.dispatched(message.getPartition(), message.getOffset());
+
+                while (!queue.offer(message, POLL_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                    if (isStopping()) {
+                        return;
+                    }
+                }
+
+                maybePause();
+            }
+        }
+    }
+
+    /**
+     * Decodes and writes batches of messages taken from the shared queue.
+     */
+    class Worker extends Thread {
+        private final ResolvableFuture<Void> hasStopped = async.future();
+
+        Worker(final int index) {
+            super(String.format("%s: worker %d", ConsumerPipeline.class.getCanonicalName(), index));
+        }
+
+        @Override
+        public void run() {
+            try {
+                guardedRun();
+            } catch (final Throwable e) {
+                log.error("{}: Error in worker", getName(), e);
+                hasStopped.fail(e);
+                return;
+            }
+
+            hasStopped.resolve(null);
+        }
+
+        private void guardedRun() throws InterruptedException {
+            final List<KafkaMessage<byte[]>> batch = new ArrayList<>(settings.getBatchSize());
+
+            while (!isStopping()) {
+                maybePause();
+
+                final KafkaMessage<byte[]> first = queue.poll(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, settings.getBatchSize() - 1);
+
+                    for (final KafkaMessage<byte[]> message : batch) {
+                        consumeWithRetry(message);
+                    }
+
+                    batch.clear();
+                }
+
+                maybeCommit();
+            }
+        }
+    }
+
+    @Data
+    public static class Settings {
+        /* maximum number of messages decoded by a worker at a time */
+        private final int batchSize;
+        /* number of decode workers */
+        private final int workers;
+        /* maximum number of writes in flight */
+        private final int maxInFlight;
+        /* commit offsets of completed messages */
+        private final boolean commit;
+        private final long commitInterval;
+    }
+}
@@ -29,5 +29,12 @@ public interface KafkaConnection {
 
     void commitOffsets();
 
+    /**
+     * Commit the given offsets, without affecting other partitions.
+     *
+     * @param offsets offset of the next message to consume, for each partition
+     */
+    void commitOffsets(Map<KafkaPartition, Long> offsets);
+
     void shutdown();
 }
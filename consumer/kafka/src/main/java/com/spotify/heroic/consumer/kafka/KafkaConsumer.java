@@ -21,7 +21,6 @@
 
 package com.spotify.heroic.consumer.kafka;
 
-import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.spotify.heroic.common.Statistics;
 import com.spotify.heroic.consumer.Consumer;
@@ -94,15 +93,13 @@ public class KafkaConsumer implements Consumer, LifeCycles {
     @Override
     public AsyncFuture<Void> pause() {
         // pause all threads
-        return connection.doto(c -> async.collectAndDiscard(ImmutableList.copyOf(
-            c.getThreads().stream().map(ConsumerThread::pauseConsumption).iterator())));
+        return connection.doto(Connection::pause);
     }
 
     @Override
     public AsyncFuture<Void> resume() {
         // resume all threads
-        return connection.doto(c -> async.collectAndDiscard(ImmutableList.copyOf(
-            c.getThreads().stream().map(ConsumerThread::resumeConsumption).iterator())));
+        return connection.doto(Connection::resume);
     }
 
     @Override
@@ -116,8 +113,8 @@ public class KafkaConsumer implements Consumer, LifeCycles {
 
         try {
             final Connection c = b.get();
-            final int threads = c.getThreads().size();
-            final int paused = c.getThreads().stream().mapToInt(t -> t.isPausing() ? 1 : 0).sum();
+            final int threads = c.size();
+            final int paused = c.paused();
             return String.format(
                 "KafkaConsumer(configured, topics=%s, config=%s, threads=%d, " + "paused=%d)",
                 topics, config, threads, paused);
@@ -47,6 +47,7 @@ import eu.toolchain.async.ManagedSetup;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -71,6 +72,9 @@ public class KafkaConsumerModule implements ConsumerModule {
     public static final long DEFAULT_COMMIT_INTERVAL = TimeUnit.SECONDS.toMillis(30);
     private static final long COMMIT_INITIAL_DELAY = TimeUnit.SECONDS.toMillis(2);
     private static final String AUTO_COMMIT_ENABLE = "auto.commit.enable";
+    private static final boolean DEFAULT_PIPELINED = false;
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    public static final int DEFAULT_MAX_IN_FLIGHT = 10000;
 
     private final Optional<String> id;
     private final List<String> topics;
@@ -80,6 +84,8 @@ public class KafkaConsumerModule implements ConsumerModule {
     private final Boolean transactional;
     private final long transactionCommitInterval;
     private final Optional<KafkaConnection> fakeKafkaConnection;
+    private final boolean pipelined;
+    private final ConsumerPipeline.Settings pipeline;
 
     @Override
     public Exposed module(
@@ -225,6 +231,10 @@ public class KafkaConsumerModule implements ConsumerModule {
                         final Map<String, List<KafkaStream<byte[]>>> streams =
                             kafkaConnection.createMessageStreams(streamsMap);
 
+                        if (pipelined) {
+                            return setupPipeline(kafkaConnection, streams);
+                        }
+
                         final AtomicLong nextOffsetsCommitTS = new AtomicLong(
                             clock.currentTimeMillis() +
                                 Math.min(COMMIT_INITIAL_DELAY, transactionCommitInterval));
@@ -240,7 +250,8 @@ public class KafkaConsumerModule implements ConsumerModule {
                         total.set(threads.size());
 
                         final Connection connection =
-                            new Connection(async, reporter, kafkaConnection, threads);
+                            new Connection(async, reporter, kafkaConnection, threads,
+                                Optional.empty());
                         ConsumerThreadCoordinator coordinator = connection;
 
                         for (final ConsumerThread thread : threads) {
@@ -254,18 +265,30 @@ public class KafkaConsumerModule implements ConsumerModule {
 
                 @Override
                 public AsyncFuture<Void> destruct(final Connection value) {
-                    final List<AsyncFuture<Void>> shutdown = ImmutableList.copyOf(
-                        value.getThreads().stream().map(ConsumerThread::shutdown).iterator());
-
-                    value.getConnection().shutdown();
-
                     total.set(0);
-
-                    return async.collectAndDiscard(shutdown);
+                    return value.shutdown();
                 }
 
                 /* private */
 
+                private Connection setupPipeline(
+                    final KafkaConnection kafkaConnection,
+                    final Map<String, List<KafkaStream<byte[]>>> streams
+                ) {
+                    final ConsumerPipeline p =
+                        new ConsumerPipeline(async, clock, reporter, kafkaConnection,
+                            nameStreams(streams), consumer, consuming, errors, consumed, pipeline);
+
+                    reporter.reportConsumerThreadsWanted(p.size());
+                    total.set(p.size());
+
+                    final Connection connection = new Connection(async, reporter, kafkaConnection,
+                        ImmutableList.of(), Optional.of(p));
+
+                    p.start();
+                    return connection;
+                }
+
                 private KafkaConnection createKafkaConnection() {
                     final Properties properties = new Properties();
                     properties.putAll(config);
@@ -283,7 +306,8 @@ public class KafkaConsumerModule implements ConsumerModule {
                     final ConsumerConnector connector =
                         Consumer.createJavaConsumerConnector(config);
 
-                    final RealKafkaConnection kafkaConnection = new RealKafkaConnection(connector);
+                    final RealKafkaConnection kafkaConnection =
+                        new RealKafkaConnection(connector, config);
 
                     return kafkaConnection;
                 }
@@ -316,6 +340,21 @@ public class KafkaConsumerModule implements ConsumerModule {
     ) {
         final List<ConsumerThread> threads = new ArrayList<>();
 
+        for (final Map.Entry<String, KafkaStream<byte[]>> entry : nameStreams(streams).entrySet()) {
+            threads.add(
+                new ConsumerThread(async, clock, entry.getKey(), reporter, entry.getValue(),
+                    consumer, consuming, errors, consumed, enablePeriodicCommit,
+                    periodicCommitInterval, nextOffsetsCommitTS));
+        }
+
+        return threads;
+    }
+
+    private Map<String, KafkaStream<byte[]>> nameStreams(
+        final Map<String, List<KafkaStream<byte[]>>> streams
+    ) {
+        final Map<String, KafkaStream<byte[]>> named = new LinkedHashMap<>();
+
         final Set<Map.Entry<String, List<KafkaStream<byte[]>>>> entries = streams.entrySet();
 
         for (final Map.Entry<String, List<KafkaStream<byte[]>>> entry : entries) {
@@ -325,16 +364,11 @@ public class KafkaConsumerModule implements ConsumerModule {
             int count = 0;
 
             for (final KafkaStream<byte[]> stream : list) {
-                final String name = String.format("%s:%d", topic, count++);
-
-                threads.add(
-                    new ConsumerThread(async, clock, name, reporter, stream, consumer, consuming,
-                        errors, consumed, enablePeriodicCommit, periodicCommitInterval,
-                        nextOffsetsCommitTS));
+                named.put(String.format("%s:%d", topic, count++), stream);
             }
         }
 
-        return threads;
+        return named;
     }
 
     @Override
@@ -360,6 +394,10 @@ public class KafkaConsumerModule implements ConsumerModule {
         private Optional<Boolean> transactional = Optional.empty();
         private Optional<Long> transactionCommitInterval = Optional.empty();
         private Optional<KafkaConnection> fakeKafkaConnection = Optional.empty();
+        private Optional<Boolean> pipelined = Optional.empty();
+        private Optional<Integer> batchSize = Optional.empty();
+        private Optional<Integer> decodeThreads = Optional.empty();
+        private Optional<Integer> maxInFlight = Optional.empty();
 
         @JsonCreator
         public Builder(
@@ -369,7 +407,11 @@ public class KafkaConsumerModule implements ConsumerModule {
             @JsonProperty("threadsPerTopic") Optional<Integer> threads,
             @JsonProperty("config") Optional<Map<String, String>> config,
             @JsonProperty("transactional") Optional<Boolean> transactional,
-            @JsonProperty("transactionCommitInterval") Optional<Long> transactionCommitInterval
+            @JsonProperty("transactionCommitInterval") Optional<Long> transactionCommitInterval,
+            @JsonProperty("pipelined") Optional<Boolean> pipelined,
+            @JsonProperty("batchSize") Optional<Integer> batchSize,
+            @JsonProperty("decodeThreads") Optional<Integer> decodeThreads,
+            @JsonProperty("maxInFlight") Optional<Integer> maxInFlight
         ) {
             this.id = id;
             this.threads = threads;
@@ -378,6 +420,10 @@ public class KafkaConsumerModule implements ConsumerModule {
             this.schema = schema.map(s -> ReflectionUtils.buildInstance(s, ConsumerSchema.class));
             this.transactional = transactional;
             this.transactionCommitInterval = transactionCommitInterval;
+            this.pipelined = pipelined;
+            this.batchSize = batchSize;
+            this.decodeThreads = decodeThreads;
+            this.maxInFlight = maxInFlight;
         }
 
         private Builder() {
@@ -429,6 +475,26 @@ public class KafkaConsumerModule implements ConsumerModule {
             return this;
         }
 
+        public Builder pipelined(boolean pipelined) {
+            this.pipelined = Optional.of(pipelined);
+            return this;
+        }
+
+        public Builder batchSize(int batchSize) {
+            this.batchSize = Optional.of(batchSize);
+            return this;
+        }
+
+        public Builder decodeThreads(int decodeThreads) {
+            this.decodeThreads = Optional.of(decodeThreads);
+            return this;
+        }
+
+        public Builder maxInFlight(int maxInFlight) {
+            this.maxInFlight = Optional.of(maxInFlight);
+            return this;
+        }
+
         @Override
         public ConsumerModule build() {
             if (topics.map(Collection::isEmpty).orElse(true)) {
@@ -439,16 +505,30 @@ public class KafkaConsumerModule implements ConsumerModule {
                 throw new RuntimeException("Schema is not defined");
             }
 
+            final boolean transactional = this.transactional.orElse(DEFAULT_TRANSACTIONAL);
+            final long transactionCommitInterval =
+                this.transactionCommitInterval.orElse(DEFAULT_COMMIT_INTERVAL);
+
             // @formatter:off
+            final ConsumerPipeline.Settings pipeline = new ConsumerPipeline.Settings(
+                batchSize.orElse(DEFAULT_BATCH_SIZE),
+                decodeThreads.orElseGet(() -> Runtime.getRuntime().availableProcessors()),
+                maxInFlight.orElse(DEFAULT_MAX_IN_FLIGHT),
+                transactional,
+                transactionCommitInterval
+            );
+
             return new KafkaConsumerModule(
                 id,
                 topics.get(),
                 threads.orElse(DEFAULT_THREADS_PER_TOPIC),
                 config.orElseGet(ImmutableMap::of),
                 schema.get(),
-                transactional.orElse(DEFAULT_TRANSACTIONAL),
-                transactionCommitInterval.orElse(DEFAULT_COMMIT_INTERVAL),
-                fakeKafkaConnection
+                transactional,
+                transactionCommitInterval,
+                fakeKafkaConnection,
+                pipelined.orElse(DEFAULT_PIPELINED),
+                pipeline
             );
             // @formatter:on
         }
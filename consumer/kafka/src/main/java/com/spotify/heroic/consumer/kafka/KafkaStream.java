@@ -23,4 +23,12 @@ package com.spotify.heroic.consumer.kafka;
 
 public interface KafkaStream<V> {
     Iterable<V> messageIterable();
+
+    /**
+     * Iterate over messages together with the partition and offset they were read from.
+     * <p>
+     * Shares position with {@link #messageIterable()}. A {@code null} element signals that the
+     * stream is closing.
+     */
+    Iterable<KafkaMessage<V>> messageAndOffsetIterable();
 }
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.consumer.kafka;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Tracks which messages have been completely processed, per partition.
+ * <p>
+ * Messages are acknowledged in any order, but an offset is only committable once every message
+ * before it in the same partition has been acknowledged. This makes it safe to commit while other
+ * messages are still in flight.
+ */
+public class OffsetTracker {
+    private final ConcurrentMap<KafkaPartition, Partition> partitions = new ConcurrentHashMap<>();
+
+    /**
+     * Register that a message has been read. Must be called in the order messages are read from
+     * their partition, and before the message is acknowledged.
+     */
+    public void dispatched(final KafkaPartition partition, final long offset) {
+        partitions.computeIfAbsent(partition, p -> new Partition()).dispatched(offset);
+    }
+
+    /**
+     * Register that a message has been completely processed.
+     */
+    public void acknowledged(final KafkaPartition partition, final long offset) {
+        final Partition p = partitions.get(partition);
+
+        if (p != null) {
+            p.acknowledged(offset);
+        }
+    }
+
+    /**
+     * Get the offsets which can be committed and have changed since the last commit.
+     *
+     * @return offset of the next message to consume, for each partition
+     */
+    public Map<KafkaPartition, Long> committable() {
+        final Map<KafkaPartition, Long> offsets = new HashMap<>();
+
+        for (final Map.Entry<KafkaPartition, Partition> e : partitions.entrySet()) {
+            final long next = e.getValue().committable();
+
+            if (next >= 0) {
+                offsets.put(e.getKey(), next);
+            }
+        }
+
+        return offsets;
+    }
+
+    /**
+     * Register that the given offsets have been committed.
+     */
+    public void committed(final Map<KafkaPartition, Long> offsets) {
+        for (final Map.Entry<KafkaPartition, Long> e : offsets.entrySet()) {
+            final Partition p = partitions.get(e.getKey());
+
+            if (p != null) {
+                p.committed(e.getValue());
+            }
+        }
+    }
+
+    static class Partition {
+        /* offsets which have been read, but not yet contiguously acknowledged, in read order */
+        private final ArrayDeque<Long> pending = new ArrayDeque<>();
+        /* offsets which have been acknowledged out of order */
+        private final Set<Long> acknowledged = new HashSet<>();
+
+        /* the offset of the next message to consume, or -1 if nothing has been acknowledged */
+        private long next = -1;
+        private long committed = -1;
+
+        synchronized void dispatched(final long offset) {
+            final Long last = pending.peekLast();
+
+            /* the partition has been rewound, most likely due to a rebalance, messages after this
+             * point will be read again */
+            if ((last != null && offset <= last) || (last == null && offset < next)) {
+                pending.clear();
+                acknowledged.clear();
+                next = -1;
+            }
+
+            pending.addLast(offset);
+        }
+
+        synchronized void acknowledged(final long offset) {
+            acknowledged.add(offset);
+
+            while (!pending.isEmpty() && acknowledged.remove(pending.peekFirst())) {
+                next = pending.pollFirst() + 1;
+            }
+        }
+
+        synchronized long committable() {
+            if (next < 0 || next == committed) {
+                return -1;
+            }
+
+            return next;
+        }
+
+        synchronized void committed(final long offset) {
+            committed = offset;
+        }
+    }
+}
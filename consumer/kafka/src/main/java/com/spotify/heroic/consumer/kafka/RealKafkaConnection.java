@@ -26,12 +26,25 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import kafka.consumer.ConsumerConfig;
 import kafka.javaapi.consumer.ConsumerConnector;
-import lombok.Data;
+import kafka.utils.ZKGroupTopicDirs;
+import kafka.utils.ZKStringSerializer$;
+import kafka.utils.ZkUtils;
+import lombok.RequiredArgsConstructor;
+import org.I0Itec.zkclient.ZkClient;
 
-@Data
+@RequiredArgsConstructor
 public class RealKafkaConnection implements KafkaConnection {
     private final ConsumerConnector connector;
+    private final ConsumerConfig config;
+
+    /**
+     * Client used to commit offsets for individual partitions, the high-level consumer only
+     * supports committing the position of all its streams at once. Lazily created since it is only
+     * needed by the pipelined consumer.
+     */
+    private ZkClient zkClient;
 
     @Override
     public Map<String, List<KafkaStream<byte[]>>> createMessageStreams(
@@ -59,8 +72,34 @@ public class RealKafkaConnection implements KafkaConnection {
         connector.commitOffsets();
     }
 
+    /**
+     * Write offsets to the same location in ZooKeeper as the high-level consumer does.
+     */
+    @Override
+    public synchronized void commitOffsets(final Map<KafkaPartition, Long> offsets) {
+        if (zkClient == null) {
+            zkClient = new ZkClient(config.zkConnect(), config.zkSessionTimeoutMs(),
+                config.zkConnectionTimeoutMs(), ZKStringSerializer$.MODULE$);
+        }
+
+        for (final Map.Entry<KafkaPartition, Long> e : offsets.entrySet()) {
+            final KafkaPartition p = e.getKey();
+            final ZKGroupTopicDirs dirs = new ZKGroupTopicDirs(config.groupId(), p.getTopic());
+
+            ZkUtils.updatePersistentPath(zkClient,
+                dirs.consumerOffsetDir() + "/" + p.getPartition(), Long.toString(e.getValue()));
+        }
+    }
+
     @Override
     public void shutdown() {
         connector.shutdown();
+
+        synchronized (this) {
+            if (zkClient != null) {
+                zkClient.close();
+                zkClient = null;
+            }
+        }
     }
 }
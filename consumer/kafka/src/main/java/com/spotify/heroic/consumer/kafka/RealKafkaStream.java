@@ -22,16 +22,19 @@
 package com.spotify.heroic.consumer.kafka;
 
 import java.util.Iterator;
+import kafka.message.MessageAndMetadata;
 
 public class RealKafkaStream<V> implements KafkaStream<V> {
     private final kafka.consumer.KafkaStream<byte[], V> stream;
     private final KafkaIterable kafkaIterable;
     private final KafkaIterator kafkaIterator;
+    private final Iterable<KafkaMessage<V>> kafkaMessageIterable;
 
     public RealKafkaStream(final kafka.consumer.KafkaStream<byte[], V> stream) {
         this.stream = stream;
         this.kafkaIterator = new KafkaIterator();
         this.kafkaIterable = new KafkaIterable();
+        this.kafkaMessageIterable = KafkaMessageIterator::new;
     }
 
     @Override
@@ -39,6 +42,11 @@ public class RealKafkaStream<V> implements KafkaStream<V> {
         return kafkaIterable;
     }
 
+    @Override
+    public Iterable<KafkaMessage<V>> messageAndOffsetIterable() {
+        return kafkaMessageIterable;
+    }
+
     class KafkaIterable implements Iterable<V> {
         @Override
         public Iterator<V> iterator() {
@@ -58,4 +66,18 @@ public class RealKafkaStream<V> implements KafkaStream<V> {
             return stream.iterator().next().message();
         }
     }
+
+    class KafkaMessageIterator implements Iterator<KafkaMessage<V>> {
+        @Override
+        public boolean hasNext() {
+            return stream.iterator().hasNext();
+        }
+
+        @Override
+        public KafkaMessage<V> next() {
+            final MessageAndMetadata<byte[], V> m = stream.iterator().next();
+            final KafkaPartition partition = new KafkaPartition(m.topic(), m.partition());
+            return new KafkaMessage<>(partition, m.offset(), m.message());
+        }
+    }
 }
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.consumer.kafka;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.collect.ImmutableMap;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+
+public class OffsetTrackerTest {
+    private final KafkaPartition a = new KafkaPartition("topic", 0);
+    private final KafkaPartition b = new KafkaPartition("topic", 1);
+
+    private OffsetTracker tracker;
+
+    @Before
+    public void setup() {
+        tracker = new OffsetTracker();
+    }
+
+    @Test
+    public void testNothingAcknowledged() {
+        tracker.dispatched(a, 10);
+        tracker.dispatched(a, 11);
+
+        assertEquals(ImmutableMap.of(), tracker.committable());
+    }
+
+    @Test
+    public void testContiguous() {
+        tracker.dispatched(a, 10);
+        tracker.dispatched(a, 11);
+        tracker.dispatched(a, 12);
+
+        tracker.acknowledged(a, 12);
+        tracker.acknowledged(a, 10);
+
+        assertEquals(ImmutableMap.of(a, 11L), tracker.committable());
+
+        tracker.acknowledged(a, 11);
+
+        assertEquals(ImmutableMap.of(a, 13L), tracker.committable());
+    }
+
+    @Test
+    public void testPartitionsAreIndependent() {
+        tracker.dispatched(a, 10);
+        tracker.dispatched(b, 20);
+        tracker.dispatched(a, 11);
+
+        tracker.acknowledged(a, 11);
+        tracker.acknowledged(b, 20);
+
+        assertEquals(ImmutableMap.of(b, 21L), tracker.committable());
+    }
+
+    @Test
+    public void testCommitted() {
+        tracker.dispatched(a, 10);
+        tracker.acknowledged(a, 10);
+
+        final Map<KafkaPartition, Long> committable = tracker.committable();
+        tracker.committed(committable);
+
+        assertEquals(ImmutableMap.of(), tracker.committable());
+
+        tracker.dispatched(a, 11);
+        tracker.acknowledged(a, 11);
+
+        assertEquals(ImmutableMap.of(a, 12L), tracker.committable());
+    }
+
+    @Test
+    public void testRewind() {
+        tracker.dispatched(a, 10);
+        tracker.dispatched(a, 11);
+        tracker.acknowledged(a, 10);
+
+        /* partition is read again from an earlier offset */
+        tracker.dispatched(a, 5);
+
+        assertEquals(ImmutableMap.of(), tracker.committable());
+
+        tracker.acknowledged(a, 5);
+
+        assertEquals(ImmutableMap.of(a, 6L), tracker.committable());
+    }
+}
@@ -0,0 +1,419 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.consumer.pubsub;
+
+import static io.opencensus.trace.AttributeValue.longAttributeValue;
+
+import com.google.api.gax.batching.FlowController;
+import com.google.common.collect.ImmutableList;
+import com.google.pubsub.v1.ReceivedMessage;
+import com.spotify.heroic.consumer.ConsumerSchema;
+import com.spotify.heroic.consumer.ConsumerSchemaValidationException;
+import com.spotify.heroic.statistics.ConsumerReporter;
+import com.spotify.heroic.statistics.FutureReporter;
+import com.spotify.heroic.time.Clock;
+import eu.toolchain.async.AsyncFramework;
+import eu.toolchain.async.AsyncFuture;
+import eu.toolchain.async.FutureDone;
+import eu.toolchain.async.ResolvableFuture;
+import io.opencensus.common.Scope;
+import io.opencensus.trace.Span;
+import io.opencensus.trace.Tracer;
+import io.opencensus.trace.Tracing;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Consumes a whole pull batch at a time.
+ * <p>
+ * Messages are decoded straight from their read-only data buffers. Consumers which support it
+ * ingest the batch as a group, others consume one message at a time. Acknowledgements are sent
+ * once every ingestion in the batch has completed, and the batch is accounted against the flow
+ * controller until then.
+ * <p>
+ * The ack deadlines of batches are extended from the moment they are received, including while
+ * they wait for flow control, until they have been acked or nacked.
+ */
+@Slf4j
+class BatchReceiver {
+    /* how often ack deadlines are checked for extension */
+    static final long EXTENSION_INTERVAL_MS = TimeUnit.SECONDS.toMillis(1);
+    /* how much the ack deadline of a batch is extended by each time */
+    static final int EXTENSION_SECONDS = 60;
+    /* ack deadlines are extended when they are closer than this */
+    private static final long EXTENSION_MARGIN_MS = TimeUnit.SECONDS.toMillis(5);
+    /* the shortest ack deadline of a subscription, which received messages have at least */
+    private static final long MIN_ACK_DEADLINE_MS = TimeUnit.SECONDS.toMillis(10);
+
+    private final AsyncFramework async;
+    private final ConsumerSchema.Consumer consumer;
+    private final ConsumerReporter reporter;
+    private final AtomicLong errors;
+    private final LongAdder consumed;
+    private final DeliveryAttempts attempts;
+    private final FlowController flowController;
+    private final Acknowledger acknowledger;
+    private final Clock clock;
+    private final Tracer tracer = Tracing.getTracer();
+
+    /* batches which have been received, but not yet acked or nacked */
+    private final Set<Lease> leases = ConcurrentHashMap.newKeySet();
+
+    BatchReceiver(
+        final AsyncFramework async,
+        final ConsumerSchema.Consumer consumer,
+        final ConsumerReporter reporter,
+        final AtomicLong errors,
+        final LongAdder consumed,
+        final DeliveryAttempts attempts,
+        final FlowController flowController,
+        final Acknowledger acknowledger,
+        final Clock clock
+    ) {
+        this.async = async;
+        this.consumer = consumer;
+        this.reporter = reporter;
+        this.errors = errors;
+        this.consumed = consumed;
+        this.attempts = attempts;
+        this.flowController = flowController;
+        this.acknowledger = acknowledger;
+        this.clock = clock;
+    }
+
+    /**
+     * Consume a batch of pulled messages.
+     * <p>
+     * Blocks while the batch does not fit within the outstanding limits of the flow controller.
+     *
+     * @return a future which is resolved when the batch has been acked or nacked, never failed
+     */
+    AsyncFuture<Void> receive(final List<ReceivedMessage> messages) {
+        final Lease lease =
+            new Lease(ackIds(messages), clock.currentTimeMillis() + MIN_ACK_DEADLINE_MS);
+        leases.add(lease);
+
+        final long bytes =
+            messages.stream().mapToLong(m -> m.getMessage().getSerializedSize()).sum();
+
+        try {
+            flowController.reserve(messages.size(), bytes);
+        } catch (final FlowController.FlowControlException e) {
+            log.error("Failed to reserve {} message(s) from flow control", messages.size(), e);
+            return release(lease, acknowledger.nack(lease.ackIds));
+        }
+
+        final Span span = tracer.spanBuilder("PubSub.receiveBatch").startSpan();
+        span.putAttribute("size", longAttributeValue(messages.size()));
+
+        final Queue<String> acks = new ConcurrentLinkedQueue<>();
+        final Queue<String> nacks = new ConcurrentLinkedQueue<>();
+        final List<AsyncFuture<Void>> pending;
+
+        try (Scope ws = tracer.withSpan(span)) {
+            if (consumer instanceof ConsumerSchema.BatchConsumer) {
+                pending = receiveBatch((ConsumerSchema.BatchConsumer) consumer, messages, acks,
+                    nacks);
+            } else {
+                pending = new ArrayList<>(messages.size());
+
+                for (final ReceivedMessage message : messages) {
+                    pending.add(receive(message, acks, nacks));
+                }
+            }
+        }
+
+        return async.collectAndDiscard(pending).lazyTransform(v -> {
+            try {
+                return release(lease, async.collectAndDiscard(ImmutableList.of(
+                    acknowledger.ack(ImmutableList.copyOf(acks)),
+                    acknowledger.nack(ImmutableList.copyOf(nacks)))));
+            } finally {
+                flowController.release(messages.size(), bytes);
+                span.end();
+            }
+        });
+    }
+
+    /**
+     * Extend the ack deadlines of all batches which are about to expire.
+     */
+    void extendDeadlines() {
+        final long now = clock.currentTimeMillis();
+
+        for (final Lease lease : leases) {
+            if (lease.deadline - now > EXTENSION_MARGIN_MS) {
+                continue;
+            }
+
+            lease.deadline = now + TimeUnit.SECONDS.toMillis(EXTENSION_SECONDS);
+            acknowledger.extend(lease.ackIds, EXTENSION_SECONDS);
+        }
+    }
+
+    /**
+     * Number of batches which have been received, but not yet acked or nacked.
+     */
+    int outstanding() {
+        return leases.size();
+    }
+
+    /**
+     * Wait for all batches which have been received to be acked or nacked.
+     *
+     * @return {@code true} if all batches were done before the timeout
+     */
+    boolean drain(final long timeout, final TimeUnit unit) throws InterruptedException {
+        final List<AsyncFuture<Void>> done =
+            leases.stream().map(lease -> lease.done).collect(Collectors.toList());
+
+        try {
+            async.collectAndDiscard(done).get(timeout, unit);
+        } catch (final ExecutionException e) {
+            // leases are never failed
+        } catch (final TimeoutException e) {
+            return false;
+        }
+
+        return true;
+    }
+
+    private AsyncFuture<Void> release(final Lease lease, final AsyncFuture<Void> acked) {
+        acked.onFinished(() -> {
+            leases.remove(lease);
+            lease.done.resolve(null);
+        });
+
+        return lease.done;
+    }
+
+    /**
+     * Consume all messages as a single batch, recording the ack id of each message in either the
+     * acks or the nacks.
+     *
+     * @return futures which are resolved once each message has been handled, never failed
+     */
+    private List<AsyncFuture<Void>> receiveBatch(
+        final ConsumerSchema.BatchConsumer batchConsumer, final List<ReceivedMessage> messages,
+        final Queue<String> acks, final Queue<String> nacks
+    ) {
+        final List<ByteBuffer> data = new ArrayList<>(messages.size());
+        final List<FutureReporter.Context> contexts = new ArrayList<>(messages.size());
+
+        for (final ReceivedMessage message : messages) {
+            data.add(message.getMessage().getData().asReadOnlyByteBuffer());
+            contexts.add(reporter.reportConsumption());
+        }
+
+        final List<AsyncFuture<Void>> results;
+
+        try {
+            results = batchConsumer.consumeBatch(data);
+        } catch (final Exception e) {
+            errors.addAndGet(messages.size());
+            log.error("Failed to consume batch of {} message(s)", messages.size(), e);
+
+            for (final ReceivedMessage message : messages) {
+                reporter.reportMessageError();
+                retryOrAck(message, acks, nacks);
+            }
+
+            return ImmutableList.of();
+        } finally {
+            consumed.add(messages.size());
+        }
+
+        final List<AsyncFuture<Void>> pending = new ArrayList<>(messages.size());
+
+        for (int i = 0; i < messages.size(); i++) {
+            pending.add(handle(messages.get(i), data.get(i).remaining(),
+                results.get(i).onDone(contexts.get(i)), acks, nacks));
+        }
+
+        return pending;
+    }
+
+    /**
+     * Consume a single message, recording its ack id in either the acks or the nacks.
+     *
+     * @return a future which is resolved once the message has been handled, never failed
+     */
+    private AsyncFuture<Void> receive(
+        final ReceivedMessage received, final Queue<String> acks, final Queue<String> nacks
+    ) {
+        final String messageId = received.getMessage().getMessageId();
+        final String ackId = received.getAckId();
+        final ByteBuffer data = received.getMessage().getData().asReadOnlyByteBuffer();
+        final int size = data.remaining();
+
+        final FutureReporter.Context consumptionContext = reporter.reportConsumption();
+
+        try {
+            return handle(received, size, consumer.consume(data).onDone(consumptionContext),
+                acks, nacks);
+        } catch (final ConsumerSchemaValidationException e) {
+            reporter.reportConsumerSchemaError();
+            log.error("ID:{} - {}", messageId, e.getMessage(), e);
+
+            // The message will never be processable, ack it to make it go away
+            acks.add(ackId);
+            return async.resolved();
+        } catch (final Exception e) {
+            errors.incrementAndGet();
+            log.error("ID:{} - Failed to consume", messageId, e);
+            reporter.reportMessageError();
+            retryOrAck(received, acks, nacks);
+            return async.resolved();
+        } finally {
+            consumed.increment();
+        }
+    }
+
+    /**
+     * Record the ack id of a message in either the acks or the nacks, once it has been ingested.
+     *
+     * @return a future which is resolved once the message has been handled, never failed
+     */
+    private AsyncFuture<Void> handle(
+        final ReceivedMessage received, final int size, final AsyncFuture<Void> ingested,
+        final Queue<String> acks, final Queue<String> nacks
+    ) {
+        final String messageId = received.getMessage().getMessageId();
+        final String ackId = received.getAckId();
+        final ResolvableFuture<Void> done = async.future();
+
+        ingested.onDone(new FutureDone<Void>() {
+            @Override
+            public void failed(final Throwable cause) {
+                if (cause instanceof ConsumerSchemaValidationException) {
+                    reporter.reportConsumerSchemaError();
+                    log.error("ID:{} - {}", messageId, cause.getMessage(), cause);
+
+                    // The message will never be processable, ack it to make it go away
+                    acks.add(ackId);
+                    done.resolve(null);
+                    return;
+                }
+
+                // reported through the consumption context
+                errors.incrementAndGet();
+                log.error("ID:{} - Failed to ingest", messageId, cause);
+                retryOrAck(received, acks, nacks);
+                done.resolve(null);
+            }
+
+            @Override
+            public void resolved(final Void result) {
+                reporter.reportMessageSize(size);
+                attempts.succeeded(messageId);
+                acks.add(ackId);
+                done.resolve(null);
+            }
+
+            @Override
+            public void cancelled() {
+                nacks.add(ackId);
+                done.resolve(null);
+            }
+        });
+
+        return done;
+    }
+
+    /**
+     * Record the ack id of a message which failed in the nacks, or in the acks if it has failed
+     * too many times to be redelivered again.
+     */
+    private void retryOrAck(
+        final ReceivedMessage received, final Queue<String> acks, final Queue<String> nacks
+    ) {
+        final String messageId = received.getMessage().getMessageId();
+
+        if (attempts.failed(messageId)) {
+            nacks.add(received.getAckId());
+            return;
+        }
+
+        log.error("ID:{} - Giving up after repeated failures, dropping message", messageId);
+        acks.add(received.getAckId());
+    }
+
+    private static List<String> ackIds(final List<ReceivedMessage> messages) {
+        final List<String> ackIds = new ArrayList<>(messages.size());
+
+        for (final ReceivedMessage message : messages) {
+            ackIds.add(message.getAckId());
+        }
+
+        return ackIds;
+    }
+
+    /**
+     * A batch which has been received, and the time its ack deadline expires.
+     */
+    private class Lease {
+        private final List<String> ackIds;
+        private final ResolvableFuture<Void> done = async.future();
+        private volatile long deadline;
+
+        Lease(final List<String> ackIds, final long deadline) {
+            this.ackIds = ackIds;
+            this.deadline = deadline;
+        }
+    }
+
+    /**
+     * Sends acknowledgements for received messages back to the subscription.
+     * <p>
+     * Implementations log failed requests, the returned futures are resolved once a request has
+     * completed and are never failed.
+     */
+    interface Acknowledger {
+        /**
+         * Acknowledge the given messages, implementations must accept an empty list.
+         */
+        AsyncFuture<Void> ack(List<String> ackIds);
+
+        /**
+         * Negatively acknowledge the given messages so that they are redelivered, implementations
+         * must accept an empty list.
+         */
+        AsyncFuture<Void> nack(List<String> ackIds);
+
+        /**
+         * Extend the ack deadline of the given messages to the given number of seconds from now.
+         */
+        AsyncFuture<Void> extend(List<String> ackIds, int seconds);
+    }
+}
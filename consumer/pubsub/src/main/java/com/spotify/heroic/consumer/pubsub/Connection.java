@@ -21,7 +21,11 @@
 
 package com.spotify.heroic.consumer.pubsub;
 
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
 import com.google.api.gax.batching.FlowControlSettings;
+import com.google.api.gax.batching.FlowController;
 import com.google.api.gax.core.CredentialsProvider;
 import com.google.api.gax.core.ExecutorProvider;
 import com.google.api.gax.core.InstantiatingExecutorProvider;
@@ -35,24 +39,48 @@ import com.google.cloud.pubsub.v1.SubscriptionAdminClient;
 import com.google.cloud.pubsub.v1.SubscriptionAdminSettings;
 import com.google.cloud.pubsub.v1.TopicAdminClient;
 import com.google.cloud.pubsub.v1.TopicAdminSettings;
+import com.google.cloud.pubsub.v1.stub.GrpcSubscriberStub;
+import com.google.cloud.pubsub.v1.stub.SubscriberStub;
+import com.google.cloud.pubsub.v1.stub.SubscriberStubSettings;
 import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.protobuf.Empty;
+import com.google.pubsub.v1.AcknowledgeRequest;
+import com.google.pubsub.v1.ModifyAckDeadlineRequest;
 import com.google.pubsub.v1.ProjectSubscriptionName;
 import com.google.pubsub.v1.ProjectTopicName;
+import com.google.pubsub.v1.PullRequest;
+import com.google.pubsub.v1.PullResponse;
 import com.google.pubsub.v1.PushConfig;
 import com.spotify.heroic.consumer.ConsumerSchema;
 import com.spotify.heroic.statistics.ConsumerReporter;
+import com.spotify.heroic.time.Clock;
+import eu.toolchain.async.AsyncFramework;
+import eu.toolchain.async.AsyncFuture;
+import eu.toolchain.async.ResolvableFuture;
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
 import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.LongAdder;
 import lombok.Data;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.threeten.bp.Duration;
 
 @Slf4j
 @Data
 public class Connection {
+    private static final long PULL_RETRY_DELAY_MS = 1000L;
+    private static final long DRAIN_TIMEOUT_SECONDS = 30L;
+
+    private final AsyncFramework async;
     private final int threads;
     private final ConsumerSchema.Consumer consumer;
     private final ConsumerReporter reporter;
@@ -60,6 +88,8 @@ public class Connection {
     private final LongAdder consumed;
     private final long maxOutstandingElementCount;
     private final long maxOutstandingRequestBytes;
+    private final Optional<Integer> batchSize;
+    private final DeliveryAttempts attempts;
 
     private final String projectId;
     private final String subscriptionId;
@@ -67,10 +97,15 @@ public class Connection {
     private final ProjectSubscriptionName subscriptionName;
 
     private Subscriber subscriber;
+    private SubscriberStub subscriberStub;
+    private ExecutorService pullers;
+    private ScheduledExecutorService extender;
+    private BatchReceiver batchReceiver;
     private CredentialsProvider credentialsProvider;
     private TransportChannelProvider channelProvider;
 
     Connection(
+        AsyncFramework async,
         ConsumerSchema.Consumer consumer,
         ConsumerReporter reporter,
         AtomicLong errors,
@@ -82,8 +117,11 @@ public class Connection {
         long maxOutstandingElementCount,
         long maxOutstandingRequestBytes,
         int maxInboundMessageSize,
-        long keepAlive
+        long keepAlive,
+        Optional<Integer> batchSize,
+        int maxDeliveryAttempts
     ) {
+        this.async = async;
         this.consumer = consumer;
         this.reporter = reporter;
         this.errors = errors;
@@ -103,9 +141,11 @@ public class Connection {
             .build();
         this.maxOutstandingElementCount = maxOutstandingElementCount;
         this.maxOutstandingRequestBytes = maxOutstandingRequestBytes;
+        this.batchSize = batchSize;
+        this.attempts = new DeliveryAttempts(maxDeliveryAttempts);
     }
 
-    Connection start() {
+    Connection start() throws IOException {
         log.info("Starting PubSub connection");
 
         ProjectSubscriptionName subscriptionName = ProjectSubscriptionName
@@ -117,12 +157,18 @@ public class Connection {
                 .setMaxOutstandingRequestBytes(maxOutstandingRequestBytes)
                 .build();
 
+        if (batchSize.isPresent()) {
+            startBatched(flowControlSettings, batchSize.get());
+            log.info("PubSub connection started, pulling batches of {}", batchSize.get());
+            return this;
+        }
+
         ExecutorProvider executorProvider =
             InstantiatingExecutorProvider.newBuilder().setExecutorThreadCount(threads).build();
 
 
         log.info("Subscribing to {}", subscriptionName);
-        final Receiver receiver = new Receiver(consumer, reporter, errors, consumed);
+        final Receiver receiver = new Receiver(consumer, reporter, errors, consumed, attempts);
         subscriber = Subscriber
             .newBuilder(subscriptionName, receiver)
             .setFlowControlSettings(flowControlSettings)
@@ -149,6 +195,80 @@ public class Connection {
         return this;
     }
 
+    /*
+    Pull batches synchronously on one thread per pull, and hand every batch to a BatchReceiver
+    which ingests it as a group. Pulling blocks while flow control is exhausted, the ack deadlines
+    of pulled batches are extended in the background until they have been acked or nacked.
+     */
+    private void startBatched(final FlowControlSettings flowControlSettings, final int maxMessages)
+        throws IOException {
+        subscriberStub = GrpcSubscriberStub.create(SubscriberStubSettings
+            .newBuilder()
+            .setTransportChannelProvider(channelProvider)
+            .setCredentialsProvider(credentialsProvider)
+            .build());
+
+        final BatchReceiver receiver = new BatchReceiver(async, consumer, reporter, errors,
+            consumed, attempts, new FlowController(flowControlSettings),
+            new StubAcknowledger(async, subscriberStub, subscriptionName.toString()),
+            Clock.system());
+        batchReceiver = receiver;
+
+        extender = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("heroic-pubsub-lease-%d").build());
+        extender.scheduleAtFixedRate(receiver::extendDeadlines,
+            BatchReceiver.EXTENSION_INTERVAL_MS, BatchReceiver.EXTENSION_INTERVAL_MS,
+            TimeUnit.MILLISECONDS);
+
+        final PullRequest request = PullRequest
+            .newBuilder()
+            .setSubscription(subscriptionName.toString())
+            .setMaxMessages(maxMessages)
+            .build();
+
+        log.info("Pulling from {}", subscriptionName);
+        pullers = Executors.newFixedThreadPool(threads,
+            new ThreadFactoryBuilder().setNameFormat("heroic-pubsub-pull-%d").build());
+
+        final SubscriberStub stub = subscriberStub;
+        final ExecutorService executor = pullers;
+
+        for (int i = 0; i < threads; i++) {
+            executor.execute(() -> pull(stub, executor, request, receiver));
+        }
+    }
+
+    private void pull(
+        final SubscriberStub stub, final ExecutorService executor, final PullRequest request,
+        final BatchReceiver receiver
+    ) {
+        while (!executor.isShutdown()) {
+            final PullResponse response;
+
+            try {
+                response = stub.pullCallable().call(request);
+            } catch (final Exception e) {
+                if (executor.isShutdown()) {
+                    return;
+                }
+
+                log.error("Failed to pull from {}", subscriptionName, e);
+
+                try {
+                    Thread.sleep(PULL_RETRY_DELAY_MS);
+                } catch (final InterruptedException ie) {
+                    return;
+                }
+
+                continue;
+            }
+
+            if (response.getReceivedMessagesCount() > 0) {
+                receiver.receive(response.getReceivedMessagesList());
+            }
+        }
+    }
+
     public Connection shutdown() {
         log.info("Stopping PubSub connection");
         if (subscriber != null) {
@@ -156,6 +276,42 @@ public class Connection {
             subscriber.stopAsync().awaitTerminated();
         }
         subscriber = null;
+
+        if (pullers != null) {
+            log.debug("Waiting for pullers to terminate");
+            pullers.shutdownNow();
+
+            try {
+                pullers.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        pullers = null;
+
+        if (batchReceiver != null) {
+            log.debug("Waiting for received batches to be acked");
+
+            try {
+                if (!batchReceiver.drain(DRAIN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    log.warn("{} received batch(es) were not acked within {}s, they will be "
+                        + "redelivered", batchReceiver.outstanding(), DRAIN_TIMEOUT_SECONDS);
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        batchReceiver = null;
+
+        if (extender != null) {
+            extender.shutdownNow();
+        }
+        extender = null;
+
+        if (subscriberStub != null) {
+            subscriberStub.close();
+        }
+        subscriberStub = null;
         return this;
     }
 
@@ -212,5 +368,77 @@ public class Connection {
             log.info("Subscription already exists");
         }
     }
-}
 
+    @RequiredArgsConstructor
+    static class StubAcknowledger implements BatchReceiver.Acknowledger {
+        private final AsyncFramework async;
+        private final SubscriberStub stub;
+        private final String subscription;
+
+        @Override
+        public AsyncFuture<Void> ack(final List<String> ackIds) {
+            if (ackIds.isEmpty()) {
+                return async.resolved();
+            }
+
+            return logFailure("ack", ackIds, stub.acknowledgeCallable().futureCall(
+                AcknowledgeRequest
+                    .newBuilder()
+                    .setSubscription(subscription)
+                    .addAllAckIds(ackIds)
+                    .build()));
+        }
+
+        @Override
+        public AsyncFuture<Void> nack(final List<String> ackIds) {
+            // an ack deadline of zero makes the messages available for redelivery immediately
+            return modifyAckDeadline("nack", ackIds, 0);
+        }
+
+        @Override
+        public AsyncFuture<Void> extend(final List<String> ackIds, final int seconds) {
+            return modifyAckDeadline("extend", ackIds, seconds);
+        }
+
+        private AsyncFuture<Void> modifyAckDeadline(
+            final String action, final List<String> ackIds, final int seconds
+        ) {
+            if (ackIds.isEmpty()) {
+                return async.resolved();
+            }
+
+            return logFailure(action, ackIds, stub.modifyAckDeadlineCallable().futureCall(
+                ModifyAckDeadlineRequest
+                    .newBuilder()
+                    .setSubscription(subscription)
+                    .addAllAckIds(ackIds)
+                    .setAckDeadlineSeconds(seconds)
+                    .build()));
+        }
+
+        /*
+        Failed requests are logged rather than failing the returned future, pubsub redelivers any
+        message which has not been acked once its deadline expires.
+         */
+        private AsyncFuture<Void> logFailure(
+            final String action, final List<String> ackIds, final ApiFuture<Empty> request
+        ) {
+            final ResolvableFuture<Void> done = async.future();
+
+            ApiFutures.addCallback(request, new ApiFutureCallback<Empty>() {
+                @Override
+                public void onFailure(final Throwable t) {
+                    log.error("Failed to {} {} message(s)", action, ackIds.size(), t);
+                    done.resolve(null);
+                }
+
+                @Override
+                public void onSuccess(final Empty result) {
+                    done.resolve(null);
+                }
+            }, MoreExecutors.directExecutor());
+
+            return done;
+        }
+    }
+}
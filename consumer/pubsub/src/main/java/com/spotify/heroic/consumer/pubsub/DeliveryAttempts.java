@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.consumer.pubsub;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts how many times ingesting a message has failed, so that a message which always fails is
+ * given up on instead of being redelivered forever.
+ * <p>
+ * Attempts are counted per node by message id. A redelivery which lands on another node starts
+ * over from zero, and ids which have not failed for a while are forgotten.
+ */
+class DeliveryAttempts {
+    /* how many failing message ids are tracked at most */
+    private static final long MAX_TRACKED = 100_000L;
+    /* how long a failing message id is tracked since it first failed */
+    private static final long EXPIRE_MINUTES = 60L;
+
+    private final int maxAttempts;
+    private final Cache<String, AtomicInteger> failures =
+        CacheBuilder.newBuilder()
+            .maximumSize(MAX_TRACKED)
+            .expireAfterWrite(EXPIRE_MINUTES, TimeUnit.MINUTES)
+            .build();
+
+    /**
+     * @param maxAttempts how many times a message is attempted before it is given up on, zero or
+     * less to redeliver failing messages forever
+     */
+    DeliveryAttempts(final int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * Record a failed attempt to ingest the given message.
+     *
+     * @return {@code true} if the message should be redelivered, {@code false} if it has failed
+     * too many times and should be acked to make it go away
+     */
+    boolean failed(final String messageId) {
+        if (maxAttempts <= 0) {
+            return true;
+        }
+
+        final AtomicInteger attempts = failures.asMap().computeIfAbsent(messageId,
+            id -> new AtomicInteger());
+
+        if (attempts.incrementAndGet() < maxAttempts) {
+            return true;
+        }
+
+        failures.invalidate(messageId);
+        return false;
+    }
+
+    /**
+     * Forget the failed attempts of a message which has been ingested.
+     */
+    void succeeded(final String messageId) {
+        if (maxAttempts > 0) {
+            failures.invalidate(messageId);
+        }
+    }
+}
@@ -58,6 +58,7 @@ public class PubSubConsumerModule implements ConsumerModule {
     // 20MB API maximum message size.
     private static final int DEFAULT_MAX_INBOUND_MESSAGE_SIZE = 20 * 1024 * 1024;
     private static final Long DEFAULT_KEEP_ALIVE = 300L;
+    private static final int DEFAULT_MAX_DELIVERY_ATTEMPTS = 5;
 
     private final Optional<String> id;
     private final int threads;
@@ -69,6 +70,8 @@ public class PubSubConsumerModule implements ConsumerModule {
     private final Long maxOutstandingRequestBytes;
     private final int maxInboundMessageSize;
     private final Long keepAlive;
+    private final Optional<Integer> batchSize;
+    private final int maxDeliveryAttempts;
 
     @Override
     public Exposed module(
@@ -183,6 +186,20 @@ public class PubSubConsumerModule implements ConsumerModule {
             return keepAlive;
         }
 
+        @Provides
+        @Named("batchSize")
+        @PubSubScope
+        Optional<Integer> batchSize() {
+            return batchSize;
+        }
+
+        @Provides
+        @Named("maxDeliveryAttempts")
+        @PubSubScope
+        int maxDeliveryAttempts() {
+            return maxDeliveryAttempts;
+        }
+
         @Provides
         @PubSubScope
         ConsumerSchema.Consumer consumer(final IngestionManager ingestionManager) {
@@ -212,6 +229,8 @@ public class PubSubConsumerModule implements ConsumerModule {
             @Named("maxOutstandingRequestBytes") Long maxOutstandingRequestBytes,
             @Named("maxInboundMessageSize") int maxInboundMessageSize,
             @Named("keepAlive") Long keepAlive,
+            @Named("batchSize") Optional<Integer> batchSize,
+            @Named("maxDeliveryAttempts") int maxDeliveryAttempts,
             @Named("consuming") AtomicInteger consuming,
             @Named("total") AtomicInteger total,
             @Named("errors") AtomicLong errors,
@@ -224,10 +243,10 @@ public class PubSubConsumerModule implements ConsumerModule {
                         log.info("project:{}, topic:{}, subscription:{}",
                                  projectId, topicId, subscriptionId);
                         final Connection connection = new Connection(
-                            consumer, reporter, errors, consumed,
+                            async, consumer, reporter, errors, consumed,
                             projectId, topicId, subscriptionId, threads,
                             maxOutstandingElementCount, maxOutstandingRequestBytes,
-                            maxInboundMessageSize, keepAlive);
+                            maxInboundMessageSize, keepAlive, batchSize, maxDeliveryAttempts);
                         connection.setEmulatorOptions();
 
                         // Create topics/subscriptions if they don't exist
@@ -280,6 +299,8 @@ public class PubSubConsumerModule implements ConsumerModule {
         private Optional<Long> maxOutstandingRequestBytes = Optional.empty();
         private Optional<Integer> maxInboundMessageSize = Optional.empty();
         private Optional<Long> keepAlive = Optional.empty();
+        private Optional<Integer> batchSize = Optional.empty();
+        private Optional<Integer> maxDeliveryAttempts = Optional.empty();
 
         @JsonCreator
         public Builder(
@@ -292,7 +313,9 @@ public class PubSubConsumerModule implements ConsumerModule {
             @JsonProperty("maxOutstandingElementCount") Optional<Long> maxOutstandingElementCount,
             @JsonProperty("maxOutstandingRequestBytes") Optional<Long> maxOutstandingRequestBytes,
             @JsonProperty("maxInboundMessageSize") Optional<Integer> maxInboundMessageSize,
-            @JsonProperty("keepAlive") Optional<Long> keepAlive
+            @JsonProperty("keepAlive") Optional<Long> keepAlive,
+            @JsonProperty("batchSize") Optional<Integer> batchSize,
+            @JsonProperty("maxDeliveryAttempts") Optional<Integer> maxDeliveryAttempts
         ) {
             this.id = id;
             this.threads = threads;
@@ -304,6 +327,8 @@ public class PubSubConsumerModule implements ConsumerModule {
             this.maxOutstandingRequestBytes = maxOutstandingRequestBytes;
             this.maxInboundMessageSize = maxInboundMessageSize;
             this.keepAlive = keepAlive;
+            this.batchSize = batchSize;
+            this.maxDeliveryAttempts = maxDeliveryAttempts;
         }
 
         private Builder() {
@@ -365,6 +390,24 @@ public class PubSubConsumerModule implements ConsumerModule {
             return this;
         }
 
+        /**
+         * Pull messages in batches of up to the given size, and ingest every batch as a group,
+         * instead of receiving them one by one from a streaming subscriber.
+         */
+        public Builder batchSize(Integer batchSize) {
+            this.batchSize = Optional.of(batchSize);
+            return this;
+        }
+
+        /**
+         * Give up on a message and ack it once ingesting it has failed the given number of times
+         * on this node, zero or less to redeliver failing messages forever.
+         */
+        public Builder maxDeliveryAttempts(Integer maxDeliveryAttempts) {
+            this.maxDeliveryAttempts = Optional.of(maxDeliveryAttempts);
+            return this;
+        }
+
         @Override
         public ConsumerModule build() {
             if (!schema.isPresent()) {
@@ -381,7 +424,9 @@ public class PubSubConsumerModule implements ConsumerModule {
                 maxOutstandingElementCount.orElse(DEFAULT_MAX_OUTSTANDING_ELEMENT_COUNT),
                 maxOutstandingRequestBytes.orElse(DEFAULT_MAX_OUTSTANDING_REQUEST_BYTES),
                 maxInboundMessageSize.orElse(DEFAULT_MAX_INBOUND_MESSAGE_SIZE),
-                keepAlive.orElse(DEFAULT_KEEP_ALIVE)
+                keepAlive.orElse(DEFAULT_KEEP_ALIVE),
+                batchSize,
+                maxDeliveryAttempts.orElse(DEFAULT_MAX_DELIVERY_ATTEMPTS)
             );
         }
     }
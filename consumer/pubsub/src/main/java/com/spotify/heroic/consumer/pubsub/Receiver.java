@@ -31,6 +31,7 @@ import com.spotify.heroic.consumer.ConsumerSchema;
 import com.spotify.heroic.consumer.ConsumerSchemaValidationException;
 import com.spotify.heroic.statistics.ConsumerReporter;
 import com.spotify.heroic.statistics.FutureReporter;
+import eu.toolchain.async.FutureDone;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.LongAdder;
 import io.opencensus.common.Scope;
@@ -46,18 +47,21 @@ class Receiver implements MessageReceiver {
     private final ConsumerReporter reporter;
     private final AtomicLong errors;
     private final LongAdder consumed;
+    private final DeliveryAttempts attempts;
     private final Tracer tracer = Tracing.getTracer();
 
     Receiver(
         final ConsumerSchema.Consumer consumer,
         final ConsumerReporter reporter,
         final AtomicLong errors,
-        final LongAdder consumed
+        final LongAdder consumed,
+        final DeliveryAttempts attempts
     ) {
         this.consumer = consumer;
         this.reporter = reporter;
         this.errors = errors;
         this.consumed = consumed;
+        this.attempts = attempts;
     }
 
     @Override
@@ -65,8 +69,12 @@ class Receiver implements MessageReceiver {
         // handle incoming message, then ack/nack the received message
         final ByteString data = message.getData();
         final String messageId = message.getMessageId();
-        log.debug("Received ID:{} with content: {}", messageId, data.toStringUtf8());
-        final byte[] bytes = data.toByteArray();
+
+        if (log.isDebugEnabled()) {
+            log.debug("Received ID:{} with content: {}", messageId, data.toStringUtf8());
+        }
+
+        final int size = data.size();
 
         Span span = tracer.spanBuilder("PubSub.receiveMessage").startSpan();
         span.putAttribute("id", stringAttributeValue(messageId));
@@ -75,11 +83,34 @@ class Receiver implements MessageReceiver {
 
         // process the data
         try (Scope ws = tracer.withSpan(span)) {
-            consumer.consume(bytes).onDone(consumptionContext).onFinished(() -> {
-                reporter.reportMessageSize(bytes.length);
-                replyConsumer.ack();
-                span.end();
-            });
+            consumer
+                .consume(data.asReadOnlyByteBuffer())
+                .onDone(consumptionContext)
+                .onDone(new FutureDone<Void>() {
+                    @Override
+                    public void failed(final Throwable cause) {
+                        // reported through the consumption context
+                        errors.incrementAndGet();
+                        log.error("ID:{} - Failed to ingest", messageId, cause);
+                        span.setStatus(Status.INTERNAL.withDescription(cause.toString()));
+                        retryOrAck(messageId, replyConsumer);
+                        span.end();
+                    }
+
+                    @Override
+                    public void resolved(final Void result) {
+                        reporter.reportMessageSize(size);
+                        attempts.succeeded(messageId);
+                        replyConsumer.ack();
+                        span.end();
+                    }
+
+                    @Override
+                    public void cancelled() {
+                        replyConsumer.nack();
+                        span.end();
+                    }
+                });
         } catch (ConsumerSchemaValidationException e) {
             reporter.reportConsumerSchemaError();
             log.error("ID:{} - {}", messageId, e.getMessage(), e);
@@ -92,11 +123,20 @@ class Receiver implements MessageReceiver {
             log.error("ID:{} - Failed to consume", messageId, e);
             span.setStatus(Status.INTERNAL.withDescription(e.toString()));
             reporter.reportMessageError();
-            replyConsumer.nack();
+            retryOrAck(messageId, replyConsumer);
             span.end();
         } finally {
             consumed.increment();
         }
-  }
+    }
 
+    private void retryOrAck(final String messageId, final AckReplyConsumer replyConsumer) {
+        if (attempts.failed(messageId)) {
+            replyConsumer.nack();
+            return;
+        }
+
+        log.error("ID:{} - Giving up after repeated failures, dropping message", messageId);
+        replyConsumer.ack();
+    }
 }
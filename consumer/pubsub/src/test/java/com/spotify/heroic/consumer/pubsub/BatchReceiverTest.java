@@ -0,0 +1,304 @@
+package com.spotify.heroic.consumer.pubsub;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyList;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.api.gax.batching.FlowControlSettings;
+import com.google.api.gax.batching.FlowController;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.protobuf.ByteString;
+import com.google.pubsub.v1.PubsubMessage;
+import com.google.pubsub.v1.ReceivedMessage;
+import com.spotify.heroic.consumer.ConsumerSchema;
+import com.spotify.heroic.consumer.ConsumerSchemaValidationException;
+import com.spotify.heroic.statistics.ConsumerReporter;
+import com.spotify.heroic.statistics.FutureReporter;
+import eu.toolchain.async.AsyncFramework;
+import eu.toolchain.async.AsyncFuture;
+import eu.toolchain.async.ResolvableFuture;
+import eu.toolchain.async.TinyAsync;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class BatchReceiverTest {
+    private static final int MAX_DELIVERY_ATTEMPTS = 3;
+
+    @Mock
+    private ConsumerSchema.Consumer consumer;
+
+    @Mock
+    private ConsumerReporter reporter;
+
+    @Mock
+    private FutureReporter.Context context;
+
+    @Mock
+    private ConsumerSchema.BatchConsumer batchConsumer;
+
+    @Mock
+    private BatchReceiver.Acknowledger acknowledger;
+
+    private AsyncFramework async;
+    private BatchReceiver receiver;
+    private volatile long now = 0L;
+
+    @Before
+    public void setup() {
+        async = TinyAsync.builder().executor(MoreExecutors.newDirectExecutorService()).build();
+
+        when(reporter.reportConsumption()).thenReturn(context);
+        when(acknowledger.ack(anyList())).thenReturn(async.resolved());
+        when(acknowledger.nack(anyList())).thenReturn(async.resolved());
+        when(acknowledger.extend(anyList(), anyInt())).thenReturn(async.resolved());
+
+        receiver = newReceiver(consumer, FlowController.LimitExceededBehavior.ThrowException);
+    }
+
+    @Test
+    public void testAcksAfterIngestion() throws Exception {
+        final ResolvableFuture<Void> first = async.future();
+        final ResolvableFuture<Void> second = async.future();
+        when(consumer.consume(any(ByteBuffer.class))).thenReturn(first, second);
+
+        final AsyncFuture<Void> done =
+            receiver.receive(ImmutableList.of(message("a"), message("b")));
+
+        first.resolve(null);
+        verify(acknowledger, never()).ack(anyList());
+
+        second.resolve(null);
+        assertTrue(done.isDone());
+        verify(acknowledger).ack(ImmutableList.of("a", "b"));
+        verify(acknowledger).nack(ImmutableList.of());
+    }
+
+    @Test
+    public void testNacksFailedIngestion() throws Exception {
+        when(consumer.consume(any(ByteBuffer.class))).thenReturn(async.resolved(),
+            async.failed(new RuntimeException("write failed")));
+
+        receiver.receive(ImmutableList.of(message("a"), message("b")));
+
+        verify(acknowledger).ack(ImmutableList.of("a"));
+        verify(acknowledger).nack(ImmutableList.of("b"));
+        // reported once, through the consumption context
+        verify(context).failed(any(RuntimeException.class));
+        verify(reporter, never()).reportMessageError();
+    }
+
+    @Test
+    public void testAcksAfterMaxDeliveryAttempts() throws Exception {
+        when(consumer.consume(any(ByteBuffer.class))).thenReturn(
+            async.failed(new RuntimeException("write failed")));
+
+        for (int i = 0; i < MAX_DELIVERY_ATTEMPTS; i++) {
+            receiver.receive(ImmutableList.of(message("a")));
+        }
+
+        verify(acknowledger, times(MAX_DELIVERY_ATTEMPTS - 1)).nack(ImmutableList.of("a"));
+        verify(acknowledger).ack(ImmutableList.of("a"));
+    }
+
+    @Test
+    public void testSuccessResetsDeliveryAttempts() throws Exception {
+        final RuntimeException error = new RuntimeException("write failed");
+        when(consumer.consume(any(ByteBuffer.class))).thenReturn(async.failed(error),
+            async.failed(error), async.resolved(), async.failed(error));
+
+        for (int i = 0; i < 4; i++) {
+            receiver.receive(ImmutableList.of(message("a")));
+        }
+
+        verify(acknowledger, times(3)).nack(ImmutableList.of("a"));
+        verify(acknowledger).ack(ImmutableList.of("a"));
+    }
+
+    @Test
+    public void testAcksInvalidMessages() throws Exception {
+        when(consumer.consume(any(ByteBuffer.class))).thenThrow(
+            new ConsumerSchemaValidationException("invalid"));
+
+        receiver.receive(ImmutableList.of(message("a")));
+
+        verify(acknowledger).ack(ImmutableList.of("a"));
+        verify(reporter).reportConsumerSchemaError();
+    }
+
+    @Test
+    public void testDecodesFromBuffer() throws Exception {
+        when(consumer.consume(any(ByteBuffer.class))).thenReturn(async.resolved());
+
+        receiver.receive(ImmutableList.of(message("a")));
+
+        final ArgumentCaptor<ByteBuffer> buffer = ArgumentCaptor.forClass(ByteBuffer.class);
+        verify(consumer).consume(buffer.capture());
+
+        final byte[] bytes = new byte[buffer.getValue().remaining()];
+        buffer.getValue().get(bytes);
+
+        assertTrue(buffer.getValue().isReadOnly());
+        assertArrayEquals("data-a".getBytes("UTF-8"), bytes);
+    }
+
+    @Test
+    public void testHoldsFlowControlUntilAcked() throws Exception {
+        final ResolvableFuture<Void> pending = async.future();
+        when(consumer.consume(any(ByteBuffer.class))).thenReturn(pending, pending,
+            async.resolved());
+
+        receiver.receive(ImmutableList.of(message("a"), message("b")));
+
+        /* outstanding limit is exhausted until the first batch is acked */
+        receiver.receive(ImmutableList.of(message("c")));
+        verify(acknowledger).nack(ImmutableList.of("c"));
+
+        pending.resolve(null);
+        verify(acknowledger).ack(ImmutableList.of("a", "b"));
+
+        receiver.receive(ImmutableList.of(message("d")));
+        verify(acknowledger).ack(ImmutableList.of("d"));
+    }
+
+    @Test
+    public void testConsumesBatchTogether() throws Exception {
+        when(batchConsumer.consumeBatch(anyList())).thenReturn(ImmutableList.of(
+            async.resolved(), async.failed(new ConsumerSchemaValidationException("invalid"))));
+
+        final BatchReceiver batchReceiver =
+            newReceiver(batchConsumer, FlowController.LimitExceededBehavior.ThrowException);
+
+        batchReceiver.receive(ImmutableList.of(message("a"), message("b")));
+
+        verify(batchConsumer, times(1)).consumeBatch(anyList());
+        verify(batchConsumer, never()).consume(any(ByteBuffer.class));
+        verify(acknowledger).ack(ImmutableList.of("a", "b"));
+        verify(acknowledger).nack(ImmutableList.of());
+        verify(reporter).reportConsumerSchemaError();
+    }
+
+    @Test
+    public void testNacksFailedBatch() throws Exception {
+        when(batchConsumer.consumeBatch(anyList())).thenThrow(new RuntimeException("failed"));
+
+        final BatchReceiver batchReceiver =
+            newReceiver(batchConsumer, FlowController.LimitExceededBehavior.ThrowException);
+
+        batchReceiver.receive(ImmutableList.of(message("a"), message("b")));
+
+        verify(acknowledger).ack(ImmutableList.of());
+        verify(acknowledger).nack(ImmutableList.of("a", "b"));
+    }
+
+    @Test
+    public void testExtendsDeadlinesUntilAcked() throws Exception {
+        final ResolvableFuture<Void> pending = async.future();
+        when(consumer.consume(any(ByteBuffer.class))).thenReturn(pending);
+
+        receiver.receive(ImmutableList.of(message("a")));
+
+        receiver.extendDeadlines();
+        verify(acknowledger, never()).extend(anyList(), anyInt());
+
+        now += TimeUnit.SECONDS.toMillis(6);
+        receiver.extendDeadlines();
+        receiver.extendDeadlines();
+        verify(acknowledger, times(1)).extend(ImmutableList.of("a"),
+            BatchReceiver.EXTENSION_SECONDS);
+
+        pending.resolve(null);
+        assertEquals(0, receiver.outstanding());
+
+        now += TimeUnit.SECONDS.toMillis(BatchReceiver.EXTENSION_SECONDS);
+        receiver.extendDeadlines();
+        verify(acknowledger, times(1)).extend(anyList(), anyInt());
+    }
+
+    @Test
+    public void testExtendsDeadlinesWhileBlockedOnFlowControl() throws Exception {
+        final ResolvableFuture<Void> pending = async.future();
+        when(consumer.consume(any(ByteBuffer.class))).thenReturn(pending, pending,
+            async.resolved());
+
+        final BatchReceiver blocking =
+            newReceiver(consumer, FlowController.LimitExceededBehavior.Block);
+
+        blocking.receive(ImmutableList.of(message("a"), message("b")));
+
+        /* blocks on the outstanding limit until the first batch is acked */
+        final Thread blocked = new Thread(() -> blocking.receive(ImmutableList.of(message("c"))));
+        blocked.start();
+
+        while (blocking.outstanding() < 2) {
+            Thread.sleep(10L);
+        }
+
+        now += TimeUnit.SECONDS.toMillis(6);
+        blocking.extendDeadlines();
+        verify(acknowledger).extend(ImmutableList.of("c"), BatchReceiver.EXTENSION_SECONDS);
+
+        pending.resolve(null);
+        blocked.join(TimeUnit.SECONDS.toMillis(10));
+
+        assertFalse(blocked.isAlive());
+        verify(acknowledger).ack(ImmutableList.of("c"));
+    }
+
+    @Test
+    public void testDrainWaitsForOutstandingBatches() throws Exception {
+        final ResolvableFuture<Void> pending = async.future();
+        when(consumer.consume(any(ByteBuffer.class))).thenReturn(pending);
+
+        receiver.receive(ImmutableList.of(message("a")));
+
+        assertFalse(receiver.drain(10L, TimeUnit.MILLISECONDS));
+        assertEquals(1, receiver.outstanding());
+
+        pending.resolve(null);
+
+        assertTrue(receiver.drain(10L, TimeUnit.MILLISECONDS));
+        assertEquals(0, receiver.outstanding());
+    }
+
+    private BatchReceiver newReceiver(
+        final ConsumerSchema.Consumer target, final FlowController.LimitExceededBehavior behavior
+    ) {
+        final FlowController flowController = new FlowController(FlowControlSettings
+            .newBuilder()
+            .setMaxOutstandingElementCount(2L)
+            .setLimitExceededBehavior(behavior)
+            .build());
+
+        return new BatchReceiver(async, target, reporter, new AtomicLong(), new LongAdder(),
+            new DeliveryAttempts(MAX_DELIVERY_ATTEMPTS), flowController, acknowledger, () -> now);
+    }
+
+    private static ReceivedMessage message(final String id) {
+        return ReceivedMessage
+            .newBuilder()
+            .setAckId(id)
+            .setMessage(PubsubMessage
+                .newBuilder()
+                .setMessageId(id)
+                .setData(ByteString.copyFromUtf8("data-" + id)))
+            .build();
+    }
+}
@@ -30,6 +30,7 @@ import com.spotify.heroic.metadata.FindSeries;
 import com.spotify.heroic.metadata.FindTags;
 import com.spotify.heroic.metadata.WriteMetadata;
 import com.spotify.heroic.metric.QueryResult;
+import com.spotify.heroic.metric.ShardedResultGroup;
 import com.spotify.heroic.metric.WriteMetric;
 import com.spotify.heroic.querylogging.QueryContext;
 import com.spotify.heroic.suggest.KeySuggest;
@@ -40,6 +41,7 @@ import com.spotify.heroic.suggest.TagValuesSuggest;
 import eu.toolchain.async.AsyncFuture;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface QueryManager extends UsableGroupManager<QueryManager.Group> {
     QueryBuilder newQueryFromString(String query);
@@ -47,6 +49,21 @@ public interface QueryManager extends UsableGroupManager<QueryManager.Group> {
     interface Group {
         AsyncFuture<QueryResult> query(Query query, QueryContext queryContext);
 
+        /**
+         * Run a query, handing every result group to the given consumer as soon as it is known
+         * instead of collecting them in the result.
+         * <p>
+         * The consumer may be called concurrently. The returned result never contains any groups.
+         */
+        default AsyncFuture<QueryResult> query(
+            Query query, QueryContext queryContext, Consumer<ShardedResultGroup> groups
+        ) {
+            return query(query, queryContext).directTransform(result -> {
+                result.getGroups().forEach(groups);
+                return result.withoutGroups();
+            });
+        }
+
         AsyncFuture<FindTags> findTags(final FindTags.Request request);
 
         AsyncFuture<FindKeys> findKeys(final FindKeys.Request request);
@@ -25,6 +25,7 @@ import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.auto.value.AutoValue;
 import com.spotify.heroic.aggregation.BucketStrategy;
+import com.spotify.heroic.common.Duration;
 import com.spotify.heroic.common.OptionalLimit;
 import com.spotify.heroic.metric.QueryTrace;
 import com.spotify.heroic.metric.Tracing;
@@ -41,10 +42,12 @@ public abstract class QueryOptions {
         @JsonProperty("aggregationLimit") OptionalLimit aggregationLimit,
         @JsonProperty("groupLimit") OptionalLimit groupLimit,
         @JsonProperty("seriesLimit") OptionalLimit seriesLimit,
-        @JsonProperty("failOnLimits") Optional<Boolean> failOnLimits
+        @JsonProperty("failOnLimits") Optional<Boolean> failOnLimits,
+        @JsonProperty("timeout") Optional<Duration> timeout
     ) {
         return new AutoValue_QueryOptions(bucketStrategy, tracing.orElse(Tracing.DEFAULT),
-            fetchSize, dataLimit, aggregationLimit, groupLimit, seriesLimit, failOnLimits);
+            fetchSize, dataLimit, aggregationLimit, groupLimit, seriesLimit, failOnLimits,
+            timeout);
     }
 
     /**
@@ -100,10 +103,18 @@ public abstract class QueryOptions {
     @JsonProperty
     public abstract Optional<Boolean> failOnLimits();
 
+    /**
+     * How long the client is prepared to wait for the query.
+     * <p>
+     * Nodes may refuse to start work which can not be completed within this time.
+     */
+    @JsonProperty
+    public abstract Optional<Duration> timeout();
+
     public static QueryOptions defaults() {
         return QueryOptions.create(Optional.empty(), Optional.empty(), Optional.empty(),
             OptionalLimit.empty(), OptionalLimit.empty(), OptionalLimit.empty(),
-            OptionalLimit.empty(), Optional.empty());
+            OptionalLimit.empty(), Optional.empty(), Optional.empty());
     }
 
     public static Builder builder() {
@@ -132,6 +143,7 @@ public abstract class QueryOptions {
         private OptionalLimit groupLimit = OptionalLimit.empty();
         private OptionalLimit seriesLimit = OptionalLimit.empty();
         private Optional<Boolean> failOnLimits = Optional.empty();
+        private Optional<Duration> timeout = Optional.empty();
 
         public Builder bucketStrategy(BucketStrategy bucketStrategy) {
             this.bucketStrategy = Optional.of(bucketStrategy);
@@ -173,9 +185,14 @@ public abstract class QueryOptions {
             return this;
         }
 
+        public Builder timeout(Duration timeout) {
+            this.timeout = Optional.of(timeout);
+            return this;
+        }
+
         public QueryOptions build() {
             return QueryOptions.create(bucketStrategy, tracing, fetchSize, dataLimit,
-                aggregationLimit, groupLimit, seriesLimit, failOnLimits);
+                aggregationLimit, groupLimit, seriesLimit, failOnLimits, timeout);
         }
     }
 }
@@ -120,6 +120,33 @@ public interface AggregationInstance {
         return true;
     }
 
+    /**
+     * Indicates if a chain which starts with this aggregation can be split after it, even though
+     * it is not distributable.
+     * <p>
+     * The shards then only run the distributed aggregation of this aggregation, and the reducer
+     * applies the rest of the chain to the output of its reducer. This requires the reducer to give
+     * exactly the same result as running this aggregation over all data in one place.
+     */
+    default boolean splittable() {
+        return false;
+    }
+
+    /**
+     * Indicates if this aggregation can be fed with rollups of the given resolution instead of raw
+     * points.
+     * <p>
+     * A rollup is a {@link com.spotify.heroic.metric.Spread} that summarizes all points in the
+     * interval {@code [t, t + resolution)}, where {@code t} is a multiple of the resolution. The
+     * aggregation must produce the same result from the rollups as it would from the points.
+     *
+     * @param resolution Resolution of the rollups in milliseconds.
+     * @return {@code true} if rollups of the given resolution can be used.
+     */
+    default boolean acceptsRollup(long resolution) {
+        return false;
+    }
+
     /**
      * Hash the aggregation to generate a key suitable for caching.
      */
@@ -174,6 +174,23 @@ abstract class BucketAggregationInstance<B : Bucket>(
         return size
     }
 
+    /**
+     * Rollups are accepted if buckets don't overlap and are made up of whole rollup intervals.
+     * The caller is responsible for aligning the range with the rollup intervals.
+     */
+    override fun acceptsRollup(resolution: Long): Boolean {
+        return rollupCompatible() && input.contains(MetricType.SPREAD) && resolution > 0 &&
+            extent == size && size % resolution == 0L
+    }
+
+    /**
+     * If feeding buckets with spreads gives the same result as feeding them with the points that
+     * the spreads summarize.
+     */
+    protected open fun rollupCompatible(): Boolean {
+        return false
+    }
+
     protected open fun bucketHashTo(hasher: ObjectHasher) {}
 
     override fun hashTo(hasher: ObjectHasher) {
@@ -23,17 +23,23 @@ package com.spotify.heroic.aggregation;
 
 import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Iterators;
 import com.spotify.heroic.ObjectHasher;
 import com.spotify.heroic.common.DateRange;
 import com.spotify.heroic.common.Series;
-import com.spotify.heroic.common.Statistics;
 import com.spotify.heroic.metric.Event;
+import com.spotify.heroic.metric.Metric;
+import com.spotify.heroic.metric.MetricCollection;
 import com.spotify.heroic.metric.MetricGroup;
+import com.spotify.heroic.metric.MetricType;
 import com.spotify.heroic.metric.Payload;
 import com.spotify.heroic.metric.Point;
 import com.spotify.heroic.metric.Spread;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -71,13 +77,33 @@ public class ChainInstance implements AggregationInstance {
 
     @Override
     public AggregationInstance distributed() {
+        final int pointwise = pointwisePrefix();
+
+        if (pointwise > 0) {
+            if (pointwise == chain.size()) {
+                return this;
+            }
+
+            final AggregationInstance rest =
+                fromList(chain.subList(pointwise, chain.size())).distributed();
+
+            final ImmutableList.Builder<AggregationInstance> distributed = ImmutableList.builder();
+            distributed.addAll(chain.subList(0, pointwise));
+
+            if (!(rest instanceof EmptyInstance)) {
+                distributed.add(rest);
+            }
+
+            return fromList(distributed.build());
+        }
+
         final Iterator<AggregationInstance> it = chain.iterator();
 
         final ImmutableList.Builder<AggregationInstance> chain = ImmutableList.builder();
         AggregationInstance last = it.next();
 
         if (!last.distributable()) {
-            return EmptyInstance.INSTANCE;
+            return last.splittable() ? last.distributed() : EmptyInstance.INSTANCE;
         }
 
         while (it.hasNext()) {
@@ -98,14 +124,28 @@ public class ChainInstance implements AggregationInstance {
 
     @Override
     public AggregationInstance reducer() {
+        final int pointwise = pointwisePrefix();
+
+        if (pointwise > 0) {
+            if (pointwise == chain.size()) {
+                return EmptyInstance.INSTANCE;
+            }
+
+            return fromList(chain.subList(pointwise, chain.size())).reducer();
+        }
+
         final Iterator<AggregationInstance> it = chain.iterator();
         AggregationInstance last = it.next();
 
         final ImmutableList.Builder<AggregationInstance> chain = ImmutableList.builder();
 
         if (!last.distributable()) {
-            chain.add(EmptyInstance.INSTANCE);
-            chain.add(last);
+            if (last.splittable()) {
+                chain.add(last.reducer());
+            } else {
+                chain.add(EmptyInstance.INSTANCE);
+                chain.add(last);
+            }
 
             while (it.hasNext()) {
                 chain.add(it.next());
@@ -143,11 +183,27 @@ public class ChainInstance implements AggregationInstance {
         final AggregationInstance first = it.next();
         final AggregationSession head = first.session(range, watcher, bucketStrategy);
 
-        final List<AggregationSession> tail = new ArrayList<>();
+        final List<Stage> tail = new ArrayList<>();
+        List<PointTransformInstance> transforms = new ArrayList<>();
 
         while (it.hasNext()) {
-            final AggregationSession s = it.next().session(range, watcher, bucketStrategy);
-            tail.add(s);
+            final AggregationInstance next = it.next();
+
+            if (next instanceof PointTransformInstance) {
+                transforms.add((PointTransformInstance) next);
+                continue;
+            }
+
+            if (!transforms.isEmpty()) {
+                tail.add(new FusedStage(transforms, range, watcher, bucketStrategy));
+                transforms = new ArrayList<>();
+            }
+
+            tail.add(new SessionStage(next.session(range, watcher, bucketStrategy)));
+        }
+
+        if (!transforms.isEmpty()) {
+            tail.add(new FusedStage(transforms, range, watcher, bucketStrategy));
         }
 
         return new Session(head, tail);
@@ -158,6 +214,14 @@ public class ChainInstance implements AggregationInstance {
         return chain.iterator().next().requiredTags();
     }
 
+    /**
+     * Only the first aggregation in the chain is fed with fetched data.
+     */
+    @Override
+    public boolean acceptsRollup(final long resolution) {
+        return chain.iterator().next().acceptsRollup(resolution);
+    }
+
     @Override
     public void hashTo(final ObjectHasher hasher) {
         hasher.putObject(getClass(), () -> {
@@ -186,6 +250,24 @@ public class ChainInstance implements AggregationInstance {
         return new ChainInstance(c);
     }
 
+    /**
+     * Number of point-wise transforms leading the chain.
+     */
+    private int pointwisePrefix() {
+        int count = 0;
+
+        for (final AggregationInstance instance : chain) {
+            if (!(instance instanceof PointTransformInstance) ||
+                !((PointTransformInstance) instance).pointwise()) {
+                break;
+            }
+
+            count++;
+        }
+
+        return count;
+    }
+
     private static List<AggregationInstance> flattenChain(
         final List<AggregationInstance> chain
     ) {
@@ -204,10 +286,10 @@ public class ChainInstance implements AggregationInstance {
 
     private static final class Session implements AggregationSession {
         private final AggregationSession first;
-        private final Iterable<AggregationSession> rest;
+        private final Iterable<Stage> rest;
 
         @java.beans.ConstructorProperties({ "first", "rest" })
-        public Session(final AggregationSession first, final Iterable<AggregationSession> rest) {
+        public Session(final AggregationSession first, final Iterable<Stage> rest) {
             this.first = first;
             this.rest = rest;
         }
@@ -249,21 +331,13 @@ public class ChainInstance implements AggregationInstance {
 
         @Override
         public AggregationResult result() {
-            final AggregationResult firstResult = first.result();
-            List<AggregationOutput> current = firstResult.getResult();
-            Statistics statistics = firstResult.getStatistics();
+            AggregationResult current = first.result();
 
-            for (final AggregationSession session : rest) {
-                for (final AggregationOutput u : current) {
-                    u.getMetrics().updateAggregation(session, u.getKey(), u.getSeries());
-                }
-
-                final AggregationResult next = session.result();
-                current = next.getResult();
-                statistics = statistics.merge(next.getStatistics());
+            for (final Stage stage : rest) {
+                current = stage.apply(current);
             }
 
-            return new AggregationResult(current, statistics);
+            return current;
         }
 
         @Override
@@ -275,4 +349,149 @@ public class ChainInstance implements AggregationInstance {
             return "[" + first + "]";
         }
     }
+
+    /**
+     * A stage in the chain which is applied to the result of the previous stage.
+     */
+    private interface Stage {
+        AggregationResult apply(AggregationResult input);
+    }
+
+    private static final class SessionStage implements Stage {
+        private final AggregationSession session;
+
+        SessionStage(final AggregationSession session) {
+            this.session = session;
+        }
+
+        @Override
+        public AggregationResult apply(final AggregationResult input) {
+            return feed(session, input);
+        }
+
+        @Override
+        public String toString() {
+            return session.toString();
+        }
+    }
+
+    /**
+     * Consecutive point transforms, applied to each group without intermediate sessions.
+     * <p>
+     * Points with the same key are merged and copied into primitive arrays once, which all
+     * transforms are then applied to in place. If the input contains anything but points, each
+     * transform falls back to its own session.
+     */
+    private static final class FusedStage implements Stage {
+        private final List<PointTransformInstance> transforms;
+        private final DateRange range;
+        private final RetainQuotaWatcher watcher;
+        private final BucketStrategy bucketStrategy;
+
+        FusedStage(
+            final List<PointTransformInstance> transforms, final DateRange range,
+            final RetainQuotaWatcher watcher, final BucketStrategy bucketStrategy
+        ) {
+            this.transforms = transforms;
+            this.range = range;
+            this.watcher = watcher;
+            this.bucketStrategy = bucketStrategy;
+        }
+
+        @Override
+        public AggregationResult apply(final AggregationResult input) {
+            final Map<Map<String, String>, List<AggregationOutput>> groups = new LinkedHashMap<>();
+
+            for (final AggregationOutput output : input.getResult()) {
+                if (output.getMetrics().getType() != MetricType.POINT) {
+                    return applySessions(input);
+                }
+
+                groups.computeIfAbsent(output.getKey(), k -> new ArrayList<>()).add(output);
+            }
+
+            final ImmutableList.Builder<AggregationOutput> result = ImmutableList.builder();
+
+            for (final Map.Entry<Map<String, String>, List<AggregationOutput>> e :
+                groups.entrySet()) {
+                result.add(transform(e.getKey(), e.getValue()));
+            }
+
+            return new AggregationResult(result.build(), input.getStatistics());
+        }
+
+        private AggregationOutput transform(
+            final Map<String, String> key, final List<AggregationOutput> outputs
+        ) {
+            int size = 0;
+
+            for (final AggregationOutput output : outputs) {
+                size += output.getMetrics().size();
+            }
+
+            watcher.retainData(size);
+
+            final long[] timestamps = new long[size];
+            final double[] values = new double[size];
+
+            final Iterator<Point> points;
+
+            if (outputs.size() == 1) {
+                points = outputs.get(0).getMetrics().getDataAs(Point.class).iterator();
+            } else {
+                points = Iterators.mergeSorted(ImmutableList.copyOf(outputs
+                    .stream()
+                    .map(o -> o.getMetrics().getDataAs(Point.class).iterator())
+                    .iterator()), Metric.comparator());
+            }
+
+            for (int i = 0; points.hasNext(); i++) {
+                final Point p = points.next();
+                timestamps[i] = p.getTimestamp();
+                values[i] = p.getValue();
+            }
+
+            for (final PointTransformInstance transform : transforms) {
+                size = transform.transform(timestamps, values, size);
+            }
+
+            final List<Point> result = new ArrayList<>(size);
+
+            for (int i = 0; i < size; i++) {
+                result.add(new Point(timestamps[i], values[i]));
+            }
+
+            final Set<Series> series = ImmutableSet.copyOf(
+                Iterables.concat(Iterables.transform(outputs, AggregationOutput::getSeries)));
+
+            return new AggregationOutput(key, series, MetricCollection.points(result));
+        }
+
+        private AggregationResult applySessions(final AggregationResult input) {
+            AggregationResult current = input;
+
+            for (final PointTransformInstance transform : transforms) {
+                current = feed(transform.session(range, watcher, bucketStrategy), current);
+            }
+
+            return current;
+        }
+
+        @Override
+        public String toString() {
+            return "fused" + transforms;
+        }
+    }
+
+    private static AggregationResult feed(
+        final AggregationSession session, final AggregationResult input
+    ) {
+        for (final AggregationOutput u : input.getResult()) {
+            u.getMetrics().updateAggregation(session, u.getKey(), u.getSeries());
+        }
+
+        final AggregationResult next = session.result();
+        return new AggregationResult(next.getResult(),
+            input.getStatistics().merge(next.getStatistics()));
+    }
 }
@@ -101,6 +101,21 @@ public abstract class GroupingAggregation implements AggregationInstance {
         return newInstance(of, each.reducer());
     }
 
+    @Override
+    public boolean distributable() {
+        return each.distributable();
+    }
+
+    @Override
+    public boolean splittable() {
+        return each.splittable();
+    }
+
+    @Override
+    public boolean acceptsRollup(final long resolution) {
+        return each.acceptsRollup(resolution);
+    }
+
     @Override
     public void hashTo(final ObjectHasher hasher) {
         hasher.putObject(getClass(), () -> {
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.aggregation;
+
+/**
+ * An aggregation which transforms the points of each group, without bucketing them.
+ * <p>
+ * Consecutive point transforms in a {@link ChainInstance} are fused, and applied directly to
+ * primitive arrays instead of collecting the output of each transform in a separate session.
+ */
+public interface PointTransformInstance extends AggregationInstance {
+    /**
+     * Transform the given points in place.
+     *
+     * @param timestamps timestamps of the points, in ascending order
+     * @param values values of the points
+     * @param size number of points in the arrays
+     * @return number of points after the transform, which are stored first in the arrays
+     */
+    int transform(long[] timestamps, double[] values, int size);
+
+    /**
+     * Indicates if each point is transformed independently of all other points.
+     * <p>
+     * Point-wise transforms give the same result when applied to parts of a group, and can
+     * therefore be performed in the distributed part of a chain when they lead it.
+     */
+    default boolean pointwise() {
+        return false;
+    }
+}
@@ -131,6 +131,55 @@ public interface AsyncObservable<T> {
         };
     }
 
+    /**
+     * Observe all values of the given iterable, one at a time.
+     * <p>
+     * The next value is only passed to the observer once the future returned for the previous
+     * value has been resolved.
+     */
+    static <T> AsyncObservable<T> fromIterable(final Iterable<T> values) {
+        return new AsyncObservable<T>() {
+            @Override
+            public void observe(final AsyncObserver<T> observer) {
+                observeAll(values.iterator(), observer);
+            }
+
+            private void observeAll(final Iterator<T> it, final AsyncObserver<T> observer) {
+                while (it.hasNext()) {
+                    final AsyncFuture<Void> f;
+
+                    try {
+                        f = observer.observe(it.next());
+                    } catch (final Exception e) {
+                        observer.fail(e);
+                        return;
+                    }
+
+                    // continue in a loop if already resolved, to avoid adding more stack frames.
+                    if (!f.isDone()) {
+                        f
+                            .onResolved(ignore -> observeAll(it, observer))
+                            .onFailed(observer::fail)
+                            .onCancelled(observer::cancel);
+                        return;
+                    }
+
+                    if (f.isFailed()) {
+                        observer.fail(f.cause());
+                        return;
+                    }
+
+                    if (f.isCancelled()) {
+                        observer.cancel();
+                        return;
+                    }
+                }
+
+                observer.end();
+            }
+        };
+    }
+
     static <T> AsyncObservable<T> empty() {
         return AsyncObserver::end;
     }
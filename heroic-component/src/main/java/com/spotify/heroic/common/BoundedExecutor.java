@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.common;
+
+import com.spotify.heroic.statistics.ExecutorReporter;
+import com.spotify.heroic.statistics.noop.NoopExecutorReporter;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * A fixed size thread pool with a bounded queue.
+ * <p>
+ * Tasks submitted while all threads are busy and the queue is full are rejected with a {@link
+ * GoAwayException}, which signals the caller to back off instead of letting the queue grow without
+ * limit.
+ */
+public class BoundedExecutor extends ThreadPoolExecutor {
+    private final String name;
+    private final Consumer<Throwable> unhandled;
+
+    private volatile ExecutorReporter reporter = NoopExecutorReporter.get();
+
+    /**
+     * Create a new bounded executor.
+     *
+     * @param name Name of the pool, used when reporting and rejecting tasks.
+     * @param threads Number of threads in the pool.
+     * @param queueSize Maximum number of tasks waiting for a thread.
+     * @param threadFactory Factory for the threads of the pool.
+     * @param unhandled Called with any exception thrown by, or failing, an executed task.
+     */
+    public BoundedExecutor(
+        final String name, final int threads, final int queueSize,
+        final ThreadFactory threadFactory, final Consumer<Throwable> unhandled
+    ) {
+        super(threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueSize),
+            threadFactory, (r, executor) -> ((BoundedExecutor) executor).reject());
+        this.name = name;
+        this.unhandled = unhandled;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Current number of tasks waiting for a thread.
+     */
+    public long queueDepth() {
+        return getQueue().size();
+    }
+
+    public void setReporter(final ExecutorReporter reporter) {
+        this.reporter = reporter;
+    }
+
+    @Override
+    public void execute(final Runnable command) {
+        super.execute(new Queued(command, System.nanoTime()));
+    }
+
+    @Override
+    protected void beforeExecute(final Thread t, final Runnable r) {
+        super.beforeExecute(t, r);
+
+        if (r instanceof Queued) {
+            reporter.reportQueueWait(System.nanoTime() - ((Queued) r).queued);
+        }
+    }
+
+    @Override
+    protected void afterExecute(final Runnable r, Throwable t) {
+        super.afterExecute(r, t);
+
+        final Runnable task = r instanceof Queued ? ((Queued) r).delegate : r;
+
+        if (t == null && (task instanceof Future<?>)) {
+            try {
+                ((Future<?>) task).get();
+            } catch (CancellationException e) {
+                t = e;
+            } catch (ExecutionException e) {
+                t = e.getCause();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (t != null) {
+            unhandled.accept(t);
+        }
+    }
+
+    private void reject() {
+        if (isShutdown()) {
+            throw new RejectedExecutionException("executor pool '" + name + "' is shut down");
+        }
+
+        reporter.reportRejected();
+        throw new GoAwayException("executor pool '" + name + "' is saturated");
+    }
+
+    private static class Queued implements Runnable {
+        private final Runnable delegate;
+        private final long queued;
+
+        Queued(final Runnable delegate, final long queued) {
+            this.delegate = delegate;
+            this.queued = queued;
+        }
+
+        @Override
+        public void run() {
+            delegate.run();
+        }
+    }
+}
@@ -0,0 +1,413 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.common;
+
+import java.math.BigInteger;
+
+/**
+ * Formats doubles as the shortest decimal representation which parses back to the same value,
+ * without allocating.
+ * <p>
+ * This is an implementation of the Ryu algorithm by Ulf Adams. Output follows the layout of
+ * {@link Double#toString(double)}, plain notation for magnitudes in [1e-3, 1e7) and scientific
+ * notation otherwise, but always with the shortest digits.
+ */
+public final class DoubleFormat {
+    /**
+     * Maximum number of characters written by {@link #format(double, char[], int)}.
+     */
+    public static final int MAX_LENGTH = 25;
+
+    private static final int MANTISSA_BITS = 52;
+    private static final int EXPONENT_BITS = 11;
+    private static final int BIAS = 1023;
+
+    private static final int POW5_BITCOUNT = 125;
+    private static final int POW5_INV_BITCOUNT = 125;
+    private static final int POW5_TABLE_SIZE = 326;
+    private static final int POW5_INV_TABLE_SIZE = 342;
+
+    private static final long MASK_32 = 0xffffffffL;
+
+    /* 5^i, normalized to POW5_BITCOUNT bits, as {low, high} 64-bit words */
+    private static final long[][] POW5_SPLIT = new long[POW5_TABLE_SIZE][];
+    /* 2^k / 5^i + 1, normalized to POW5_INV_BITCOUNT bits, as {low, high} 64-bit words */
+    private static final long[][] POW5_INV_SPLIT = new long[POW5_INV_TABLE_SIZE][];
+
+    static {
+        final BigInteger mask = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+
+        for (int i = 0; i < POW5_INV_TABLE_SIZE; i++) {
+            final BigInteger pow = BigInteger.valueOf(5).pow(i);
+            final int pow5len = pow.bitLength();
+
+            if (i < POW5_TABLE_SIZE) {
+                POW5_SPLIT[i] = split(pow.shiftRight(pow5len - POW5_BITCOUNT), mask);
+            }
+
+            final int j = pow5len - 1 + POW5_INV_BITCOUNT;
+            final BigInteger inv = BigInteger.ONE.shiftLeft(j).divide(pow).add(BigInteger.ONE);
+            POW5_INV_SPLIT[i] = split(inv, mask);
+        }
+    }
+
+    private DoubleFormat() {
+    }
+
+    /**
+     * Format the given finite value into the buffer.
+     *
+     * @param value value to format, must be finite
+     * @param buffer buffer to write to, must have room for {@link #MAX_LENGTH} characters
+     * @param offset offset in the buffer to start writing at
+     * @return the offset after the last written character
+     */
+    public static int format(final double value, final char[] buffer, final int offset) {
+        final long bits = Double.doubleToRawLongBits(value);
+        final long ieeeMantissa = bits & ((1L << MANTISSA_BITS) - 1);
+        final int ieeeExponent = (int) ((bits >>> MANTISSA_BITS) & ((1 << EXPONENT_BITS) - 1));
+        final boolean sign = bits < 0;
+
+        if (ieeeExponent == (1 << EXPONENT_BITS) - 1) {
+            throw new IllegalArgumentException("value is not finite: " + value);
+        }
+
+        int index = offset;
+
+        if (sign) {
+            buffer[index++] = '-';
+        }
+
+        if (ieeeExponent == 0 && ieeeMantissa == 0) {
+            buffer[index++] = '0';
+            buffer[index++] = '.';
+            buffer[index++] = '0';
+            return index;
+        }
+
+        final int e2;
+        final long m2;
+
+        if (ieeeExponent == 0) {
+            e2 = 1 - BIAS - MANTISSA_BITS - 2;
+            m2 = ieeeMantissa;
+        } else {
+            e2 = ieeeExponent - BIAS - MANTISSA_BITS - 2;
+            m2 = ieeeMantissa | (1L << MANTISSA_BITS);
+        }
+
+        final boolean even = (m2 & 1) == 0;
+        final boolean acceptBounds = even;
+
+        /* step 2: determine the interval of valid decimal representations */
+        final long mv = 4 * m2;
+        final int mmShift = (ieeeMantissa != 0 || ieeeExponent <= 1) ? 1 : 0;
+
+        /* step 3: convert to a decimal power base */
+        long vr;
+        long vp;
+        long vm;
+        final int e10;
+        boolean vmIsTrailingZeros = false;
+        boolean vrIsTrailingZeros = false;
+
+        if (e2 >= 0) {
+            final int q = log10Pow2(e2) - (e2 > 3 ? 1 : 0);
+            e10 = q;
+            final int k = POW5_INV_BITCOUNT + pow5bits(q) - 1;
+            final int i = -e2 + q + k;
+            final long[] mul = POW5_INV_SPLIT[q];
+
+            vr = mulShift(4 * m2, mul, i);
+            vp = mulShift(4 * m2 + 2, mul, i);
+            vm = mulShift(4 * m2 - 1 - mmShift, mul, i);
+
+            if (q <= 21) {
+                /* only one of mp, mv, and mm can be a multiple of 5, if any */
+                if (mv % 5 == 0) {
+                    vrIsTrailingZeros = multipleOfPowerOf5(mv, q);
+                } else if (acceptBounds) {
+                    vmIsTrailingZeros = multipleOfPowerOf5(mv - 1 - mmShift, q);
+                } else {
+                    vp -= multipleOfPowerOf5(mv + 2, q) ? 1 : 0;
+                }
+            }
+        } else {
+            final int q = log10Pow5(-e2) - (-e2 > 1 ? 1 : 0);
+            e10 = q + e2;
+            final int i = -e2 - q;
+            final int k = pow5bits(i) - POW5_BITCOUNT;
+            final int j = q - k;
+            final long[] mul = POW5_SPLIT[i];
+
+            vr = mulShift(4 * m2, mul, j);
+            vp = mulShift(4 * m2 + 2, mul, j);
+            vm = mulShift(4 * m2 - 1 - mmShift, mul, j);
+
+            if (q <= 1) {
+                /* {vr,vp,vm} is trailing zeros if {mv,mp,mm} has at least q trailing 0 bits */
+                vrIsTrailingZeros = true;
+
+                if (acceptBounds) {
+                    vmIsTrailingZeros = mmShift == 1;
+                } else {
+                    --vp;
+                }
+            } else if (q < 63) {
+                vrIsTrailingZeros = multipleOfPowerOf2(mv, q);
+            }
+        }
+
+        /* step 4: find the shortest decimal representation in the interval */
+        int removed = 0;
+        int lastRemovedDigit = 0;
+        final long output;
+
+        if (vmIsTrailingZeros || vrIsTrailingZeros) {
+            while (vp / 10 > vm / 10) {
+                vmIsTrailingZeros &= vm % 10 == 0;
+                vrIsTrailingZeros &= lastRemovedDigit == 0;
+                lastRemovedDigit = (int) (vr % 10);
+                vr /= 10;
+                vp /= 10;
+                vm /= 10;
+                removed++;
+            }
+
+            if (vmIsTrailingZeros) {
+                while (vm % 10 == 0) {
+                    vrIsTrailingZeros &= lastRemovedDigit == 0;
+                    lastRemovedDigit = (int) (vr % 10);
+                    vr /= 10;
+                    vp /= 10;
+                    vm /= 10;
+                    removed++;
+                }
+            }
+
+            if (vrIsTrailingZeros && lastRemovedDigit == 5 && vr % 2 == 0) {
+                /* round even if the exact number is .....50..0 */
+                lastRemovedDigit = 4;
+            }
+
+            final boolean roundUp =
+                (vr == vm && (!acceptBounds || !vmIsTrailingZeros)) || lastRemovedDigit >= 5;
+            output = vr + (roundUp ? 1 : 0);
+        } else {
+            /* common case, no trailing zeros to account for */
+            boolean roundUp = false;
+
+            if (vp / 100 > vm / 100) {
+                roundUp = vr % 100 >= 50;
+                vr /= 100;
+                vp /= 100;
+                vm /= 100;
+                removed += 2;
+            }
+
+            while (vp / 10 > vm / 10) {
+                roundUp = vr % 10 >= 5;
+                vr /= 10;
+                vp /= 10;
+                vm /= 10;
+                removed++;
+            }
+
+            output = vr + ((vr == vm || roundUp) ? 1 : 0);
+        }
+
+        final int exponent = e10 + removed;
+
+        /* step 5: print the decimal representation */
+        return print(output, exponent, buffer, index);
+    }
+
+    /**
+     * Print the given decimal significand and exponent, value = output * 10^exponent.
+     */
+    private static int print(
+        final long output, final int exponent, final char[] buffer, final int offset
+    ) {
+        final int olength = decimalLength(output);
+        /* exponent of the value in scientific notation, d.ddd * 10^scientific */
+        final int scientific = exponent + olength - 1;
+
+        int index = offset;
+
+        if (scientific >= -3 && scientific < 7) {
+            if (scientific < 0) {
+                /* 0.00ddd */
+                buffer[index++] = '0';
+                buffer[index++] = '.';
+
+                for (int i = -1; i > scientific; i--) {
+                    buffer[index++] = '0';
+                }
+
+                writeDigits(output, olength, buffer, index);
+                return index + olength;
+            }
+
+            if (exponent >= 0) {
+                /* ddd00.0 */
+                writeDigits(output, olength, buffer, index);
+                index += olength;
+
+                for (int i = 0; i < exponent; i++) {
+                    buffer[index++] = '0';
+                }
+
+                buffer[index++] = '.';
+                buffer[index++] = '0';
+                return index;
+            }
+
+            /* dd.ddd, print all digits and move the integer part one step to the left */
+            final int integer = scientific + 1;
+            writeDigits(output, olength, buffer, index + 1);
+            System.arraycopy(buffer, index + 1, buffer, index, integer);
+            buffer[index + integer] = '.';
+            return index + olength + 1;
+        }
+
+        /* d.dddE-x */
+        writeDigits(output, olength, buffer, index + 1);
+        buffer[index] = buffer[index + 1];
+        buffer[index + 1] = '.';
+        index += olength + 1;
+
+        if (olength == 1) {
+            buffer[index++] = '0';
+        }
+
+        buffer[index++] = 'E';
+
+        int e = scientific;
+
+        if (e < 0) {
+            buffer[index++] = '-';
+            e = -e;
+        }
+
+        if (e >= 100) {
+            buffer[index++] = (char) ('0' + e / 100);
+            e %= 100;
+            buffer[index++] = (char) ('0' + e / 10);
+        } else if (e >= 10) {
+            buffer[index++] = (char) ('0' + e / 10);
+        }
+
+        buffer[index++] = (char) ('0' + e % 10);
+        return index;
+    }
+
+    private static void writeDigits(
+        long output, final int olength, final char[] buffer, final int offset
+    ) {
+        for (int i = olength - 1; i >= 0; i--) {
+            buffer[offset + i] = (char) ('0' + output % 10);
+            output /= 10;
+        }
+    }
+
+    private static int decimalLength(final long v) {
+        long p = 10;
+
+        for (int i = 1; i < 19; i++) {
+            if (v < p) {
+                return i;
+            }
+
+            p *= 10;
+        }
+
+        return 19;
+    }
+
+    /**
+     * Compute (m * mul) >> j, where mul is a 128-bit value and j >= 64.
+     */
+    private static long mulShift(final long m, final long[] mul, final int j) {
+        final long b0Hi = multiplyHigh(m, mul[0]);
+        final long b2Lo = m * mul[1];
+        final long b2Hi = multiplyHigh(m, mul[1]);
+
+        final long lo = b2Lo + b0Hi;
+        final long hi = b2Hi + (Long.compareUnsigned(lo, b2Lo) < 0 ? 1 : 0);
+        final int shift = j - 64;
+
+        if (shift == 0) {
+            return lo;
+        }
+
+        return (hi << (64 - shift)) | (lo >>> shift);
+    }
+
+    /**
+     * High 64 bits of the unsigned 128-bit product of x and y.
+     */
+    private static long multiplyHigh(final long x, final long y) {
+        final long x1 = x >>> 32;
+        final long x0 = x & MASK_32;
+        final long y1 = y >>> 32;
+        final long y0 = y & MASK_32;
+
+        final long p11 = x1 * y1;
+        final long p01 = x0 * y1;
+        final long p10 = x1 * y0;
+        final long p00 = x0 * y0;
+
+        final long middle = p10 + (p00 >>> 32) + (p01 & MASK_32);
+        return p11 + (middle >>> 32) + (p01 >>> 32);
+    }
+
+    private static int pow5bits(final int e) {
+        return ((e * 1217359) >>> 19) + 1;
+    }
+
+    private static int log10Pow2(final int e) {
+        return (e * 78913) >>> 18;
+    }
+
+    private static int log10Pow5(final int e) {
+        return (e * 732923) >>> 20;
+    }
+
+    private static boolean multipleOfPowerOf5(long value, final int p) {
+        int count = 0;
+
+        while (value > 0 && value % 5 == 0) {
+            value /= 5;
+            count++;
+        }
+
+        return count >= p;
+    }
+
+    private static boolean multipleOfPowerOf2(final long value, final int p) {
+        return (value & ((1L << p) - 1)) == 0;
+    }
+
+    private static long[] split(final BigInteger value, final BigInteger mask) {
+        return new long[]{value.and(mask).longValue(), value.shiftRight(64).longValue()};
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.common;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.spotify.heroic.ExtraParameters;
+import com.spotify.heroic.statistics.HeroicReporter;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+
+/**
+ * Separately sized executor pools, isolating the different kinds of work that Heroic performs
+ * from each other.
+ * <p>
+ * Each pool is bounded, so that a burst of one kind of work (e.g. heavy queries) can neither
+ * delay nor starve the others (e.g. ingestion).
+ * <p>
+ * Pools are sized through extra parameters, {@code executor.<pool>.threads} and {@code
+ * executor.<pool>.queue-size}.
+ */
+public class ExecutorPools {
+    /**
+     * Query fan-out and aggregation.
+     */
+    public static final String QUERY = "query";
+
+    /**
+     * Ingestion and write callbacks.
+     */
+    public static final String INGESTION = "ingestion";
+
+    /**
+     * Metadata and suggest requests.
+     */
+    public static final String METADATA = "metadata";
+
+    /**
+     * Everything that hasn't been given a pool of its own, like backends, consumers, cluster
+     * requests and HTTP. Sized like the single executor that used to be shared by everything.
+     */
+    public static final String CORE = "core";
+
+    public static final List<String> POOLS = ImmutableList.of(QUERY, INGESTION, METADATA, CORE);
+
+    /* qualifiers for the async frameworks that are backed by a specific pool */
+    public static final String QUERY_ASYNC = "query-async";
+    public static final String INGESTION_ASYNC = "ingestion-async";
+    public static final String METADATA_ASYNC = "metadata-async";
+
+    public static final int DEFAULT_QUEUE_SIZE = 10000;
+
+    private final Map<String, ExecutorService> pools;
+    /* {@code true} if the pools are owned by this instance and should be shut down with it */
+    private final boolean managed;
+
+    ExecutorPools(final Map<String, ExecutorService> pools, final boolean managed) {
+        this.pools = pools;
+        this.managed = managed;
+    }
+
+    /**
+     * Use a single executor for all pools.
+     */
+    public static ExecutorPools shared(final ExecutorService executor, final boolean managed) {
+        final ImmutableMap.Builder<String, ExecutorService> pools = ImmutableMap.builder();
+
+        for (final String pool : POOLS) {
+            pools.put(pool, executor);
+        }
+
+        return new ExecutorPools(pools.build(), managed);
+    }
+
+    /**
+     * Setup one bounded executor for every pool.
+     *
+     * @param params Parameters to read the size of the pools from.
+     * @param uncaught Handler for exceptions that escape the threads of the pools.
+     * @param unhandled Called with any exception thrown by, or failing, an executed task.
+     */
+    public static ExecutorPools bounded(
+        final ExtraParameters params, final Thread.UncaughtExceptionHandler uncaught,
+        final Consumer<Throwable> unhandled
+    ) {
+        final int processors = Runtime.getRuntime().availableProcessors();
+
+        final Map<String, Integer> defaultThreads = ImmutableMap.of(QUERY, processors * 2,
+            INGESTION, processors, METADATA, processors, CORE, processors * 2);
+
+        final ImmutableMap.Builder<String, ExecutorService> pools = ImmutableMap.builder();
+
+        for (final String pool : POOLS) {
+            final ExtraParameters scoped = params.scope("executor").scope(pool);
+            final int threads = scoped.getInteger("threads").orElse(defaultThreads.get(pool));
+            final int queueSize = scoped.getInteger("queue-size").orElse(DEFAULT_QUEUE_SIZE);
+
+            pools.put(pool, new BoundedExecutor(pool, threads, queueSize, new ThreadFactoryBuilder()
+                .setNameFormat("heroic-" + pool + "-%d")
+                .setUncaughtExceptionHandler(uncaught)
+                .build(), unhandled));
+        }
+
+        return new ExecutorPools(pools.build(), true);
+    }
+
+    public ExecutorService get(final String pool) {
+        final ExecutorService executor = pools.get(pool);
+
+        if (executor == null) {
+            throw new IllegalArgumentException("No such executor pool: " + pool);
+        }
+
+        return executor;
+    }
+
+    public boolean isManaged() {
+        return managed;
+    }
+
+    /**
+     * All distinct executors backing the pools.
+     */
+    public Collection<ExecutorService> executors() {
+        return new LinkedHashSet<>(pools.values());
+    }
+
+    /**
+     * Start reporting queue depth, queue wait time and rejections for all bounded pools.
+     */
+    public void registerReporter(final HeroicReporter reporter) {
+        for (final ExecutorService executor : executors()) {
+            if (!(executor instanceof BoundedExecutor)) {
+                continue;
+            }
+
+            final BoundedExecutor bounded = (BoundedExecutor) executor;
+            bounded.setReporter(reporter.newExecutor(bounded.getName(), bounded::queueDepth));
+        }
+    }
+}
@@ -72,7 +72,15 @@ public enum Feature {
     /**
      * Permit caching of the query results.
      */
-    CACHE_QUERY("com.spotify.heroic.cache_query");
+    CACHE_QUERY("com.spotify.heroic.cache_query"),
+
+    /**
+     * Permit identical queries which are in flight at the same time to share a single result.
+     * <p>
+     * Only the first query is sent to the shards, any identical query arriving before it has
+     * completed waits for the same result.
+     */
+    COALESCE_QUERIES("com.spotify.heroic.coalesce_queries");
 
     private final String id;
 
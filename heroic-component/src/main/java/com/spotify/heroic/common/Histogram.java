@@ -21,12 +21,9 @@
 
 package com.spotify.heroic.common;
 
-import com.google.common.collect.TreeMultiset;
-import java.util.List;
+import java.util.Arrays;
 import java.util.Optional;
-import java.util.stream.Collectors;
 import lombok.Data;
-import org.apache.commons.lang3.tuple.Pair;
 
 /**
  * Utility class to build basic statistics about quantities.
@@ -49,55 +46,164 @@ public class Histogram {
         return builder().build();
     }
 
+    /**
+     * Builds a histogram in bounded memory.
+     * <p>
+     * Samples are kept exactly until {@link #EXACT_SAMPLES} samples have been added, after which
+     * they are counted in log-linear buckets with a relative error of at most
+     * {@code 1 / SUB_BUCKETS}. Min, max, mean and sum are always exact. Builders can be merged,
+     * which allows summaries to be combined without access to the original samples.
+     */
     public static class Builder {
-        private final TreeMultiset<Long> samples = TreeMultiset.create(Long::compareTo);
+        static final int EXACT_SAMPLES = 1024;
+        static final int SUB_BUCKET_BITS = 5;
+        static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+        private long[] samples = new long[16];
+        /* null until the builder has switched to counting buckets */
+        private long[] buckets = null;
+
+        private long count = 0L;
+        private long sum = 0L;
+        private long min = Long.MAX_VALUE;
+        private long max = Long.MIN_VALUE;
 
         public void add(final long sample) {
-            samples.add(sample);
+            record(sample);
+            count += 1;
+            sum += sample;
+            min = Math.min(min, sample);
+            max = Math.max(max, sample);
+        }
+
+        /**
+         * Merge the samples of another builder into this one.
+         */
+        public Builder merge(final Builder other) {
+            if (other.buckets == null) {
+                for (int i = 0; i < other.count; i++) {
+                    record(other.samples[i]);
+                    count += 1;
+                }
+            } else {
+                toBuckets();
+
+                for (int i = 0; i < BUCKETS; i++) {
+                    buckets[i] += other.buckets[i];
+                }
+
+                count += other.count;
+            }
+
+            sum += other.sum;
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+            return this;
         }
 
         public Histogram build() {
-            final List<Long> entries = samples.stream().collect(Collectors.toList());
+            if (count <= 0L) {
+                return new Histogram(Optional.empty(), Optional.empty(), Optional.empty(),
+                    Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty());
+            }
 
-            final Optional<Long> median = nth(entries, 0.50);
-            final Optional<Long> p75 = nth(entries, 0.75);
-            final Optional<Long> p99 = nth(entries, 0.99);
-            final Optional<Long> min = nth(entries, 0.00);
-            final Optional<Long> max = nth(entries, 1.00);
-            final Pair<Optional<Double>, Optional<Long>> mean = meanAndSum(entries);
+            final long[] sorted;
 
-            return new Histogram(median, p75, p99, min, max, mean.getLeft(), mean.getRight());
+            if (buckets == null) {
+                sorted = Arrays.copyOf(samples, (int) count);
+                Arrays.sort(sorted);
+            } else {
+                sorted = null;
+            }
+
+            final Optional<Long> median = Optional.of(nth(sorted, 0.50));
+            final Optional<Long> p75 = Optional.of(nth(sorted, 0.75));
+            final Optional<Long> p99 = Optional.of(nth(sorted, 0.99));
+            final Optional<Double> mean = Optional.of((double) sum / (double) count);
+
+            return new Histogram(median, p75, p99, Optional.of(min), Optional.of(max), mean,
+                Optional.of(sum));
         }
 
-        private Pair<Optional<Double>, Optional<Long>> meanAndSum(final List<Long> entries) {
-            long sum = 0L;
-            long count = 0L;
+        private void record(final long sample) {
+            if (buckets == null && count >= samples.length) {
+                if (samples.length >= EXACT_SAMPLES) {
+                    toBuckets();
+                } else {
+                    samples = Arrays.copyOf(samples, samples.length * 2);
+                }
+            }
 
-            for (final long value : entries) {
-                sum += value;
-                count += 1;
+            if (buckets != null) {
+                buckets[index(sample)] += 1;
+                return;
             }
 
-            if (count <= 0L) {
-                return Pair.of(Optional.empty(), Optional.empty());
+            samples[(int) count] = sample;
+        }
+
+        private void toBuckets() {
+            if (buckets != null) {
+                return;
             }
 
-            final Optional<Double> mean = Optional.of((double) sum / (double) count);
-            return Pair.of(mean, Optional.of(sum));
+            buckets = new long[BUCKETS];
+
+            for (int i = 0; i < count; i++) {
+                buckets[index(samples[i])] += 1;
+            }
+
+            samples = null;
         }
 
         /**
          * Simplified accessor for n.
          */
-        private Optional<Long> nth(final List<Long> samples, final double n) {
-            if (samples.isEmpty()) {
-                return Optional.empty();
+        private long nth(final long[] sorted, final double n) {
+            final long rank = Math.min(count, Math.max(1L, Math.round(((double) count) * n)));
+
+            if (sorted != null) {
+                return sorted[(int) rank - 1];
+            }
+
+            long seen = 0L;
+
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets[i];
+
+                if (seen >= rank) {
+                    return Math.max(min, Math.min(max, representative(i)));
+                }
             }
 
-            final int index = Math.min(samples.size() - 1,
-                Math.max(0, (int) Math.round(((double) samples.size()) * n) - 1));
+            return max;
+        }
+
+        /**
+         * Index of the bucket that the given sample is counted in.
+         */
+        static int index(final long sample) {
+            if (sample < SUB_BUCKETS) {
+                return (int) Math.max(0, sample);
+            }
+
+            final int shift =
+                (Long.SIZE - 1 - Long.numberOfLeadingZeros(sample)) - SUB_BUCKET_BITS;
+            return (shift + 1) * SUB_BUCKETS + (int) (sample >>> shift) - SUB_BUCKETS;
+        }
+
+        /**
+         * Value used to represent all samples counted in the given bucket.
+         */
+        static long representative(final int index) {
+            if (index < SUB_BUCKETS) {
+                return index;
+            }
 
-            return Optional.of(samples.get(index));
+            final int shift = index / SUB_BUCKETS - 1;
+            final long lower = (long) (index % SUB_BUCKETS + SUB_BUCKETS) << shift;
+            return lower + ((1L << shift) >>> 1);
         }
     }
 }
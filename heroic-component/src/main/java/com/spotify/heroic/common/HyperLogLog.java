@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.common;
+
+import com.google.common.base.Preconditions;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Estimates the number of distinct values in a fixed amount of memory.
+ * <p>
+ * Uses {@code 2^precision} one-byte registers, with a standard error of about
+ * {@code 1.04 / sqrt(2^precision)}. Small cardinalities are estimated with linear counting, which
+ * is close to exact. Estimators with the same precision can be merged.
+ */
+public class HyperLogLog {
+    private static final HashFunction HASH = Hashing.murmur3_128();
+
+    private final int precision;
+    private final byte[] registers;
+
+    public HyperLogLog(final int precision) {
+        Preconditions.checkArgument(precision >= 4 && precision <= 18,
+            "precision must be in [4, 18]");
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    public void offer(final String value) {
+        offerHash(HASH.hashString(value, StandardCharsets.UTF_8).asLong());
+    }
+
+    void offerHash(final long hash) {
+        final int index = (int) (hash >>> (Long.SIZE - precision));
+        // guard bit makes sure that the rank fits in the remaining bits
+        final long rest = (hash << precision) | (1L << (precision - 1));
+        final byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+
+        if (rank > registers[index]) {
+            registers[index] = rank;
+        }
+    }
+
+    public long cardinality() {
+        final int m = registers.length;
+
+        double sum = 0.0;
+        int zeros = 0;
+
+        for (final byte register : registers) {
+            sum += 1.0 / (1L << register);
+
+            if (register == 0) {
+                zeros += 1;
+            }
+        }
+
+        final double estimate = alpha(m) * m * m / sum;
+
+        if (estimate <= 2.5 * m && zeros > 0) {
+            return Math.round(m * Math.log((double) m / zeros));
+        }
+
+        return Math.round(estimate);
+    }
+
+    public HyperLogLog merge(final HyperLogLog other) {
+        Preconditions.checkArgument(precision == other.precision,
+            "cannot merge estimators with different precision");
+
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+
+        return this;
+    }
+
+    private static double alpha(final int m) {
+        switch (m) {
+            case 16:
+                return 0.673;
+            case 32:
+                return 0.697;
+            case 64:
+                return 0.709;
+            default:
+                return 0.7213 / (1.0 + 1.079 / m);
+        }
+    }
+}
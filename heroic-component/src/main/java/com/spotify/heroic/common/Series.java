@@ -28,7 +28,6 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.base.Charsets;
 import com.google.common.base.Joiner;
-import com.google.common.collect.ImmutableSortedMap;
 import com.google.common.hash.HashCode;
 import com.google.common.hash.HashFunction;
 import com.google.common.hash.Hasher;
@@ -48,9 +47,9 @@ import lombok.ToString;
 public class Series implements Comparable<Series> {
     static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
 
-    static final SortedMap<String, String> EMPTY_TAGS = ImmutableSortedMap.<String, String>of();
+    static final SortedMap<String, String> EMPTY_TAGS = SortedArrayMap.empty();
     static final String EMPTY_STRING = "";
-    static final SortedMap<String, String> EMPTY_RESOURCE = ImmutableSortedMap.of();
+    static final SortedMap<String, String> EMPTY_RESOURCE = SortedArrayMap.empty();
 
     final String key;
     final SortedMap<String, String> tags;
@@ -70,7 +69,7 @@ public class Series implements Comparable<Series> {
         @JsonProperty("key") String key, @JsonProperty("tags") SortedMap<String, String> tags,
         @JsonProperty("resource") Optional<SortedMap<String, String>> resource
     ) {
-        this(key, tags, resource.orElseGet(ImmutableSortedMap::of));
+        this(key, tags, resource.orElse(EMPTY_RESOURCE));
     }
 
     public Series(final String key, final SortedMap<String, String> tags) {
@@ -82,11 +81,24 @@ public class Series implements Comparable<Series> {
         final SortedMap<String, String> resource
     ) {
         this.key = key;
-        this.tags = checkNotNull(tags, "tags");
-        this.resource = checkNotNull(resource, "resource");
+        this.tags = SortedArrayMap.copyOf(checkNotNull(tags, "tags"));
+        this.resource = SortedArrayMap.copyOf(checkNotNull(resource, "resource"));
         this.hashCode = generateHash();
     }
 
+    /**
+     * Constructor used by {@link SeriesInterner}, which already knows the hash.
+     */
+    Series(
+        final String key, final SortedArrayMap tags, final SortedArrayMap resource,
+        final HashCode hashCode
+    ) {
+        this.key = key;
+        this.tags = tags;
+        this.resource = resource;
+        this.hashCode = hashCode;
+    }
+
     public String getKey() {
         return key;
     }
@@ -211,24 +223,8 @@ public class Series implements Comparable<Series> {
         String key, Iterator<Map.Entry<String, String>> tagPairs,
         Iterator<Map.Entry<String, String>> resourcePairs
     ) {
-        final TreeMap<String, String> tags = new TreeMap<>();
-        final TreeMap<String, String> resource = new TreeMap<>();
-
-        while (tagPairs.hasNext()) {
-            final Map.Entry<String, String> pair = tagPairs.next();
-            final String tk = checkNotNull(pair.getKey());
-            final String tv = pair.getValue();
-            tags.put(tk, tv);
-        }
-
-        while (resourcePairs.hasNext()) {
-            final Map.Entry<String, String> pair = resourcePairs.next();
-            final String tk = checkNotNull(pair.getKey());
-            final String tv = pair.getValue();
-            resource.put(tk, tv);
-        }
-
-        return new Series(key, tags, resource);
+        return new Series(key, SortedArrayMap.copyOf(tagPairs),
+            SortedArrayMap.copyOf(resourcePairs));
     }
 
     public static Series of(
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.common;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.google.common.hash.HashCode;
+import java.util.Objects;
+import java.util.SortedMap;
+
+/**
+ * Interns series, and the tag and resource strings they are built from.
+ * <p>
+ * The same series are built over and over again by consumers and by backends reading them back.
+ * Passing them through here on the hot paths means that only one copy of each series and string
+ * is retained. Series are keyed by their 128-bit hash, only held weakly, and the number of
+ * interned series is bounded. Strings are interned weakly as well, which bounds them by the
+ * series and other objects which still refer to them.
+ */
+public final class SeriesInterner {
+    public static final long DEFAULT_MAXIMUM_SIZE = 1_000_000L;
+
+    private static final SeriesInterner GLOBAL = new SeriesInterner(DEFAULT_MAXIMUM_SIZE);
+
+    private final Interner<String> strings = Interners.newWeakInterner();
+    private final Cache<HashCode, Series> series;
+
+    public SeriesInterner(final long maximumSize) {
+        this.series = CacheBuilder
+            .newBuilder()
+            .maximumSize(maximumSize)
+            .weakValues()
+            .concurrencyLevel(Runtime.getRuntime().availableProcessors())
+            .build();
+    }
+
+    /**
+     * The interner shared by the whole process.
+     */
+    public static SeriesInterner global() {
+        return GLOBAL;
+    }
+
+    public String intern(final String value) {
+        if (value == null) {
+            return null;
+        }
+
+        return strings.intern(value);
+    }
+
+    /**
+     * Intern the keys and values of the given map, returning a compact copy.
+     */
+    public SortedArrayMap intern(final SortedMap<String, String> map) {
+        return SortedArrayMap.copyOf(map).mapStrings(this::intern);
+    }
+
+    /**
+     * Get the interned copy of the given series.
+     * <p>
+     * If no equal series is interned, a copy with interned strings is built and interned.
+     */
+    public Series intern(final Series s) {
+        final HashCode hash = s.getHashCode();
+        final Series existing = series.getIfPresent(hash);
+
+        if (existing != null && (existing == s || sameSeries(existing, s))) {
+            return existing;
+        }
+
+        final Series interned =
+            new Series(intern(s.getKey()), intern(s.getTags()), intern(s.getResource()), hash);
+        series.put(hash, interned);
+        return interned;
+    }
+
+    public long size() {
+        return series.size();
+    }
+
+    /**
+     * Series equality does not cover resources, but an interned series must match exactly.
+     */
+    private static boolean sameSeries(final Series a, final Series b) {
+        return Objects.equals(a.getKey(), b.getKey()) && a.getTags().equals(b.getTags()) &&
+            a.getResource().equals(b.getResource());
+    }
+}
@@ -0,0 +1,289 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.common;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.UnaryOperator;
+
+/**
+ * An immutable sorted map of strings, backed by a pair of sorted arrays.
+ * <p>
+ * Used for series tags and resources in place of {@link java.util.TreeMap}, which costs an entry
+ * object per mapping. Lookups are binary searches, and sub map views share the backing arrays.
+ * Keys are in natural order and can not be null, values can.
+ */
+public final class SortedArrayMap extends AbstractMap<String, String>
+    implements SortedMap<String, String> {
+    private static final String[] EMPTY_ARRAY = new String[0];
+    private static final SortedArrayMap EMPTY = new SortedArrayMap(EMPTY_ARRAY, EMPTY_ARRAY);
+
+    private final String[] keys;
+    private final String[] values;
+    private final int from;
+    private final int to;
+
+    private SortedArrayMap(final String[] keys, final String[] values) {
+        this(keys, values, 0, keys.length);
+    }
+
+    private SortedArrayMap(
+        final String[] keys, final String[] values, final int from, final int to
+    ) {
+        this.keys = keys;
+        this.values = values;
+        this.from = from;
+        this.to = to;
+    }
+
+    public static SortedArrayMap empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Build a sorted array map with the same mappings as the given map.
+     * <p>
+     * Instances of this class are returned as-is, since they are immutable.
+     */
+    public static SortedArrayMap copyOf(final Map<String, String> map) {
+        if (map instanceof SortedArrayMap) {
+            return (SortedArrayMap) map;
+        }
+
+        if (map.isEmpty()) {
+            return EMPTY;
+        }
+
+        return copyOf(map.entrySet().iterator(), map.size());
+    }
+
+    /**
+     * Build a sorted array map from the given entries. If a key is repeated, the last value wins.
+     */
+    public static SortedArrayMap copyOf(final Iterator<Map.Entry<String, String>> entries) {
+        return copyOf(entries, 8);
+    }
+
+    private static SortedArrayMap copyOf(
+        final Iterator<Map.Entry<String, String>> entries, final int expectedSize
+    ) {
+        if (!entries.hasNext()) {
+            return EMPTY;
+        }
+
+        String[] keys = new String[expectedSize];
+        String[] values = new String[expectedSize];
+        int size = 0;
+        boolean sorted = true;
+
+        while (entries.hasNext()) {
+            final Map.Entry<String, String> e = entries.next();
+            final String key = checkNotNull(e.getKey(), "key");
+
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+
+            /* strictly increasing keys can be used as-is, everything else is sorted below */
+            if (size > 0 && keys[size - 1].compareTo(key) >= 0) {
+                sorted = false;
+            }
+
+            keys[size] = key;
+            values[size] = e.getValue();
+            size++;
+        }
+
+        if (!sorted) {
+            final TreeMap<String, String> map = new TreeMap<>();
+
+            for (int i = 0; i < size; i++) {
+                map.put(keys[i], values[i]);
+            }
+
+            return copyOf(map.entrySet().iterator(), map.size());
+        }
+
+        if (size != keys.length) {
+            keys = Arrays.copyOf(keys, size);
+            values = Arrays.copyOf(values, size);
+        }
+
+        return new SortedArrayMap(keys, values);
+    }
+
+    /**
+     * Build a copy of this map, with every key and value passed through the given operator. The
+     * operator must return a string equal to its argument, this is intended for interning.
+     */
+    SortedArrayMap mapStrings(final UnaryOperator<String> operator) {
+        final int size = to - from;
+
+        if (size == 0) {
+            return EMPTY;
+        }
+
+        final String[] k = new String[size];
+        final String[] v = new String[size];
+
+        for (int i = 0; i < size; i++) {
+            k[i] = operator.apply(keys[from + i]);
+            v[i] = values[from + i] == null ? null : operator.apply(values[from + i]);
+        }
+
+        return new SortedArrayMap(k, v);
+    }
+
+    @Override
+    public int size() {
+        return to - from;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return from == to;
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        return key instanceof String && indexOf((String) key) >= 0;
+    }
+
+    @Override
+    public String get(final Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+
+        final int index = indexOf((String) key);
+        return index >= 0 ? values[index] : null;
+    }
+
+    @Override
+    public Comparator<? super String> comparator() {
+        return null;
+    }
+
+    @Override
+    public SortedMap<String, String> subMap(final String fromKey, final String toKey) {
+        if (fromKey.compareTo(toKey) > 0) {
+            throw new IllegalArgumentException("fromKey > toKey");
+        }
+
+        return slice(lowerBound(fromKey), lowerBound(toKey));
+    }
+
+    @Override
+    public SortedMap<String, String> headMap(final String toKey) {
+        return slice(from, lowerBound(toKey));
+    }
+
+    @Override
+    public SortedMap<String, String> tailMap(final String fromKey) {
+        return slice(lowerBound(fromKey), to);
+    }
+
+    @Override
+    public String firstKey() {
+        if (from == to) {
+            throw new NoSuchElementException();
+        }
+
+        return keys[from];
+    }
+
+    @Override
+    public String lastKey() {
+        if (from == to) {
+            throw new NoSuchElementException();
+        }
+
+        return keys[to - 1];
+    }
+
+    @Override
+    public Set<Map.Entry<String, String>> entrySet() {
+        return new AbstractSet<Map.Entry<String, String>>() {
+            @Override
+            public Iterator<Map.Entry<String, String>> iterator() {
+                return new Iterator<Map.Entry<String, String>>() {
+                    private int index = from;
+
+                    @Override
+                    public boolean hasNext() {
+                        return index < to;
+                    }
+
+                    @Override
+                    public Map.Entry<String, String> next() {
+                        if (index >= to) {
+                            throw new NoSuchElementException();
+                        }
+
+                        final int i = index++;
+                        return new SimpleImmutableEntry<>(keys[i], values[i]);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return to - from;
+            }
+        };
+    }
+
+    private SortedArrayMap slice(final int start, final int end) {
+        if (start >= end) {
+            return EMPTY;
+        }
+
+        if (start == from && end == to) {
+            return this;
+        }
+
+        return new SortedArrayMap(keys, values, start, end);
+    }
+
+    private int indexOf(final String key) {
+        return Arrays.binarySearch(keys, from, to, key);
+    }
+
+    /**
+     * Index of the first key which is greater than or equal to the given key.
+     */
+    private int lowerBound(final String key) {
+        final int index = indexOf(key);
+        return index >= 0 ? index : -(index + 1);
+    }
+}
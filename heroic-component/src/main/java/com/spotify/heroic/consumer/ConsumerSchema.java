@@ -28,12 +28,41 @@ import dagger.Component;
 import dagger.Module;
 import dagger.Provides;
 import eu.toolchain.async.AsyncFuture;
+import java.nio.ByteBuffer;
+import java.util.List;
 
 public interface ConsumerSchema {
     Exposed setup(Depends depends);
 
     interface Consumer {
         AsyncFuture<Void> consume(byte[] message) throws ConsumerSchemaException;
+
+        /**
+         * Consume a message from the remaining bytes of the given buffer.
+         * <p>
+         * Schemas able to decode directly from a buffer should override this to avoid copying the
+         * message. The default implementation copies the remaining bytes into an array.
+         */
+        default AsyncFuture<Void> consume(ByteBuffer message) throws ConsumerSchemaException {
+            final byte[] bytes = new byte[message.remaining()];
+            message.duplicate().get(bytes);
+            return consume(bytes);
+        }
+    }
+
+    /**
+     * A consumer which can ingest a whole batch of messages together.
+     */
+    interface BatchConsumer extends Consumer {
+        /**
+         * Consume a batch of messages from the remaining bytes of the given buffers.
+         * <p>
+         * Invalid messages do not affect the rest of the batch, their futures are failed with a
+         * {@link ConsumerSchemaValidationException}.
+         *
+         * @return one future for each message, in the same order as the messages
+         */
+        List<AsyncFuture<Void>> consumeBatch(List<ByteBuffer> messages);
     }
 
     @ConsumerSchemaScope
@@ -27,6 +27,7 @@ import com.spotify.heroic.HeroicConfiguration;
 import com.spotify.heroic.HeroicConfigurationContext;
 import com.spotify.heroic.aggregation.AggregationFactory;
 import com.spotify.heroic.aggregation.AggregationRegistry;
+import com.spotify.heroic.common.ExecutorPools;
 import com.spotify.heroic.common.Series;
 import com.spotify.heroic.filter.FilterModifier;
 import com.spotify.heroic.lifecycle.LifeCycle;
@@ -61,6 +62,15 @@ public interface LoadingComponent {
 
     AsyncFramework async();
 
+    @Named(ExecutorPools.QUERY_ASYNC)
+    AsyncFramework queryAsync();
+
+    @Named(ExecutorPools.INGESTION_ASYNC)
+    AsyncFramework ingestionAsync();
+
+    @Named(ExecutorPools.METADATA_ASYNC)
+    AsyncFramework metadataAsync();
+
     @Named("application/heroic-config")
     ObjectMapper configMapper();
 
@@ -70,6 +80,8 @@ public interface LoadingComponent {
 
     ExecutorService executorService();
 
+    ExecutorPools executorPools();
+
     HeroicConfigurationContext heroicConfigurationContext();
 
     @Named("internal")
@@ -48,6 +48,12 @@ public interface PrimaryComponent extends EarlyComponent {
     @Named("application/json")
     ObjectMapper jsonMapper();
 
+    @Named("application/cbor")
+    ObjectMapper cborMapper();
+
+    @Named("application/x-jackson-smile")
+    ObjectMapper smileMapper();
+
     QueryParser queryParser();
 
     ShellTasks tasks();
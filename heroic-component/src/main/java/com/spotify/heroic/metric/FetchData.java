@@ -30,6 +30,7 @@ import eu.toolchain.async.Collector;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Collectors;
 import lombok.Data;
 
@@ -120,6 +121,28 @@ public class FetchData {
         private final Series series;
         private final DateRange range;
         private final QueryOptions options;
+        /**
+         * Resolution of rollups to fetch instead of raw data, see {@link MetricBackend#rollups()}.
+         */
+        private final Optional<Long> rollup;
+
+        public Request(
+            final MetricType type, final Series series, final DateRange range,
+            final QueryOptions options
+        ) {
+            this(type, series, range, options, Optional.empty());
+        }
+
+        public Request(
+            final MetricType type, final Series series, final DateRange range,
+            final QueryOptions options, final Optional<Long> rollup
+        ) {
+            this.type = type;
+            this.series = series;
+            this.range = range;
+            this.options = options;
+            this.rollup = rollup;
+        }
     }
 
     @Data
@@ -21,9 +21,11 @@
 
 package com.spotify.heroic.metric;
 
+import com.google.common.collect.ImmutableMap;
 import com.spotify.heroic.QueryOptions;
 import com.spotify.heroic.async.AsyncObservable;
 import com.spotify.heroic.common.Collected;
+import com.spotify.heroic.common.DateRange;
 import com.spotify.heroic.common.Grouped;
 import com.spotify.heroic.common.Initializing;
 import com.spotify.heroic.common.Statistics;
@@ -32,6 +34,7 @@ import eu.toolchain.async.AsyncFuture;
 
 import io.opencensus.trace.Span;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Consumer;
 
 public interface MetricBackend extends Initializing, Grouped, Collected {
@@ -72,6 +75,21 @@ public interface MetricBackend extends Initializing, Grouped, Collected {
         Consumer<MetricReadResult> metricsConsumer
     );
 
+    /**
+     * Rollups that this backend maintains, by resolution in milliseconds.
+     * <p>
+     * If the resolution of a fetch request is set to one of these, the backend returns
+     * {@link Spread}s summarizing the points in each rollup interval instead of the points. Each
+     * rollup is mapped to the range of time that it is complete for, it must only be used for
+     * fetches within that range.
+     *
+     * @return The available rollups, and the range of time each is complete for.
+     * @see com.spotify.heroic.aggregation.AggregationInstance#acceptsRollup(long)
+     */
+    default Map<Long, DateRange> rollups() {
+        return ImmutableMap.of();
+    }
+
     /**
      * List all series directly from the database.
      * <p>
@@ -31,7 +31,6 @@ import com.spotify.heroic.common.Series;
 import com.spotify.heroic.common.Statistics;
 import java.io.IOException;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -79,10 +78,13 @@ public class QueryMetricsResponse {
             QueryMetricsResponse response, JsonGenerator g, SerializerProvider provider
         ) throws IOException {
             final List<ShardedResultGroup> result = response.getResult();
-            final Map<String, SortedSet<String>> commonTags =
-                calculateCommon(result, Series::getTags);
-            final Map<String, SortedSet<String>> commonResource =
-                calculateCommon(result, Series::getResource);
+            final CommonAccumulator commonTags = CommonAccumulator.tags();
+            final CommonAccumulator commonResource = CommonAccumulator.resource();
+
+            for (final ShardedResultGroup group : result) {
+                commonTags.add(group);
+                commonResource.add(group);
+            }
 
             g.writeStartObject();
 
@@ -95,10 +97,10 @@ public class QueryMetricsResponse {
             g.writeObjectField("cache", response.getCache());
 
             g.writeFieldName("commonTags");
-            serializeCommonTags(g, commonTags);
+            serializeCommonTags(g, commonTags.get());
 
             g.writeFieldName("commonResource");
-            serializeCommonTags(g, commonResource);
+            serializeCommonTags(g, commonResource.get());
 
             g.writeFieldName("result");
             serializeResult(g, result);
@@ -111,7 +113,7 @@ public class QueryMetricsResponse {
             g.writeEndObject();
         }
 
-        private void serializeCommonTags(
+        public static void serializeCommonTags(
             final JsonGenerator g, final Map<String, SortedSet<String>> common
         ) throws IOException {
             g.writeStartObject();
@@ -131,7 +133,7 @@ public class QueryMetricsResponse {
             g.writeEndObject();
         }
 
-        private void serializeErrors(final JsonGenerator g, final List<RequestError> errors)
+        public static void serializeErrors(final JsonGenerator g, final List<RequestError> errors)
             throws IOException {
             g.writeStartArray();
 
@@ -142,51 +144,6 @@ public class QueryMetricsResponse {
             g.writeEndArray();
         }
 
-        private Map<String, SortedSet<String>> calculateCommon(
-            final List<ShardedResultGroup> result,
-            final Function<Series, Map<String, String>> accessor
-        ) {
-            final Iterator<Map<String, SortedSet<String>>> resourcePartitions = result
-                .stream()
-                .map(r -> partitionMaps(r.getSeries().stream().map(accessor)))
-                .iterator();
-
-            if (!resourcePartitions.hasNext()) {
-                return ImmutableMap.of();
-            }
-
-            final Map<String, SortedSet<String>> common = resourcePartitions.next();
-
-            while (resourcePartitions.hasNext()) {
-                final Map<String, SortedSet<String>> next = resourcePartitions.next();
-                common.keySet().removeIf(k -> !next.containsKey(k));
-
-                if (common.isEmpty()) {
-                    return common;
-                }
-
-                for (final Map.Entry<String, SortedSet<String>> e : common.entrySet()) {
-                    e.getValue().addAll(next.get(e.getKey()));
-                }
-            }
-
-            return common;
-        }
-
-        private Map<String, SortedSet<String>> partitionMaps(
-            final Stream<Map<String, String>> stream
-        ) {
-            final Map<String, SortedSet<String>> partitioned = new HashMap<>();
-
-            stream.forEach(m -> {
-                for (final Map.Entry<String, String> e : m.entrySet()) {
-                    partitioned.computeIfAbsent(e.getKey(), k -> new TreeSet<>()).add(e.getValue());
-                }
-            });
-
-            return partitioned;
-        }
-
         private void serializeResult(
             final JsonGenerator g, final List<ShardedResultGroup> result
         ) throws IOException {
@@ -195,31 +152,39 @@ public class QueryMetricsResponse {
 
             for (final ShardedResultGroup group : result) {
                 g.writeStartObject();
+                serializeGroupFields(g, group);
+                g.writeEndObject();
+            }
 
-                final MetricCollection collection = group.getMetrics();
-                final SeriesValues series = SeriesValues.fromSeries(group.getSeries().iterator());
-
-                g.writeStringField("type", collection.getType().identifier());
-                g.writeStringField("hash", Integer.toHexString(group.hashGroup()));
-                g.writeObjectField("shard", group.getShard());
-                g.writeNumberField("cadence", group.getCadence());
-                g.writeObjectField("values", collection.data());
+            g.writeEndArray();
+        }
 
-                writeKey(g, series.getKeys());
+        /**
+         * Write the fields of a single result group to the current object of the given generator.
+         */
+        public static void serializeGroupFields(
+            final JsonGenerator g, final ShardedResultGroup group
+        ) throws IOException {
+            final MetricCollection collection = group.getMetrics();
+            final SeriesValues series = SeriesValues.fromSeries(group.getSeries().iterator());
 
-                writeTags(g, series.getTags());
-                writeTagCounts(g, series.getTags());
+            g.writeStringField("type", collection.getType().identifier());
+            g.writeStringField("hash", Integer.toHexString(group.hashGroup()));
+            g.writeObjectField("shard", group.getShard());
+            g.writeNumberField("cadence", group.getCadence());
+            g.writeFieldName("values");
+            MetricCollectionWriter.writeValues(g, collection);
 
-                writeResource(g, series.getResource());
-                writeResourceCounts(g, series.getResource());
+            writeKey(g, series.getKeys());
 
-                g.writeEndObject();
-            }
+            writeTags(g, series.getTags());
+            writeTagCounts(g, series.getTags());
 
-            g.writeEndArray();
+            writeResource(g, series.getResource());
+            writeResourceCounts(g, series.getResource());
         }
 
-        void writeKey(JsonGenerator g, final SortedSet<String> keys) throws IOException {
+        static void writeKey(JsonGenerator g, final SortedSet<String> keys) throws IOException {
             g.writeFieldName("key");
 
             if (keys.size() == 1) {
@@ -229,7 +194,7 @@ public class QueryMetricsResponse {
             }
         }
 
-        void writeTags(
+        static void writeTags(
             JsonGenerator g, final Map<String, SortedSet<String>> tags
         ) throws IOException {
             g.writeFieldName("tags");
@@ -249,7 +214,7 @@ public class QueryMetricsResponse {
             g.writeEndObject();
         }
 
-        void writeTagCounts(JsonGenerator g, final Map<String, SortedSet<String>> tags)
+        static void writeTagCounts(JsonGenerator g, final Map<String, SortedSet<String>> tags)
             throws IOException {
             g.writeFieldName("tagCounts");
 
@@ -268,7 +233,7 @@ public class QueryMetricsResponse {
             g.writeEndObject();
         }
 
-        void writeResourceCounts(JsonGenerator g, final Map<String, SortedSet<String>> tags)
+        static void writeResourceCounts(JsonGenerator g, final Map<String, SortedSet<String>> tags)
             throws IOException {
             g.writeFieldName("resourceCounts");
 
@@ -287,7 +252,7 @@ public class QueryMetricsResponse {
             g.writeEndObject();
         }
 
-        void writeResource(
+        static void writeResource(
             JsonGenerator g, final Map<String, SortedSet<String>> resource
         ) throws IOException {
             g.writeFieldName("resource");
@@ -308,6 +273,72 @@ public class QueryMetricsResponse {
         }
     }
 
+    /**
+     * Incrementally calculates the tags (or resource) which are common to all groups seen so far.
+     * <p>
+     * A key is common if it is present in every group, in which case all of its values are
+     * retained.
+     */
+    public static class CommonAccumulator {
+        private final Function<Series, Map<String, String>> accessor;
+
+        private Map<String, SortedSet<String>> common = null;
+
+        CommonAccumulator(final Function<Series, Map<String, String>> accessor) {
+            this.accessor = accessor;
+        }
+
+        public static CommonAccumulator tags() {
+            return new CommonAccumulator(Series::getTags);
+        }
+
+        public static CommonAccumulator resource() {
+            return new CommonAccumulator(Series::getResource);
+        }
+
+        public void add(final ShardedResultGroup group) {
+            if (common != null && common.isEmpty()) {
+                return;
+            }
+
+            final Map<String, SortedSet<String>> next =
+                partitionMaps(group.getSeries().stream().map(accessor));
+
+            if (common == null) {
+                common = next;
+                return;
+            }
+
+            common.keySet().removeIf(k -> !next.containsKey(k));
+
+            for (final Map.Entry<String, SortedSet<String>> e : common.entrySet()) {
+                e.getValue().addAll(next.get(e.getKey()));
+            }
+        }
+
+        public Map<String, SortedSet<String>> get() {
+            if (common == null) {
+                return ImmutableMap.of();
+            }
+
+            return common;
+        }
+
+        private static Map<String, SortedSet<String>> partitionMaps(
+            final Stream<Map<String, String>> stream
+        ) {
+            final Map<String, SortedSet<String>> partitioned = new HashMap<>();
+
+            stream.forEach(m -> {
+                for (final Map.Entry<String, String> e : m.entrySet()) {
+                    partitioned.computeIfAbsent(e.getKey(), k -> new TreeSet<>()).add(e.getValue());
+                }
+            });
+
+            return partitioned;
+        }
+    }
+
     public Summary summarize() {
         return new Summary(range, ShardedResultGroup.summarize(result), statistics, errors, trace,
             limits, preAggregationSampleSize, cache);
@@ -76,6 +76,15 @@ public class QueryResult {
             Optional.of(cache));
     }
 
+    /**
+     * Drop the groups from the result, once they have been handed off separately.
+     * @return a copied instance of query result without any groups
+     */
+    public QueryResult withoutGroups() {
+        return new QueryResult(range, ImmutableList.of(), errors, trace, limits,
+            preAggregationSampleSize, cache);
+    }
+
     /**
      * Collect result parts into a complete result.
      *
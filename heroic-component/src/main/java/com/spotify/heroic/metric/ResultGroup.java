@@ -67,19 +67,55 @@ public class ResultGroup {
     }
 
     public static MultiSummary summarize(List<ResultGroup> resultGroups) {
-        final Histogram.Builder keySize = Histogram.builder();
-        final SeriesSetsSummarizer seriesSummarizer = new SeriesSetsSummarizer();
-        final Histogram.Builder dataSize = Histogram.builder();
-        Optional<Long> cadence = Optional.empty();
+        final Summarizer summarizer = new Summarizer();
 
         for (final ResultGroup rg : resultGroups) {
-            keySize.add(rg.getKey().size());
-            seriesSummarizer.add(rg.getSeries());
-            dataSize.add(rg.getGroup().size());
-            cadence = Optional.of(rg.getCadence());
+            summarizer.add(rg.getKey(), rg.getSeries(), rg.getGroup(), rg.getCadence());
         }
 
-        return new MultiSummary(keySize.build(), seriesSummarizer.end(), dataSize.build(), cadence);
+        return summarizer.end();
+    }
+
+    /**
+     * Accumulates the summary of result groups.
+     * <p>
+     * Summarizers can be merged, which gives the same summary as adding all of their groups to a
+     * single summarizer.
+     */
+    public static class Summarizer {
+        private final Histogram.Builder keySize = Histogram.builder();
+        private final SeriesSetsSummarizer series = new SeriesSetsSummarizer();
+        private final Histogram.Builder dataSize = Histogram.builder();
+        private Optional<Long> cadence = Optional.empty();
+
+        public void add(
+            final Map<String, String> key, final Set<Series> series,
+            final MetricCollection metrics, final long cadence
+        ) {
+            this.keySize.add(key.size());
+            this.series.add(series);
+            this.dataSize.add(metrics.size());
+            this.cadence = Optional.of(cadence);
+        }
+
+        /**
+         * Merge everything summarized by another summarizer into this one.
+         */
+        public Summarizer merge(final Summarizer other) {
+            keySize.merge(other.keySize);
+            series.merge(other.series);
+            dataSize.merge(other.dataSize);
+
+            if (other.cadence.isPresent()) {
+                cadence = other.cadence;
+            }
+
+            return this;
+        }
+
+        public MultiSummary end() {
+            return new MultiSummary(keySize.build(), series.end(), dataSize.build(), cadence);
+        }
     }
 
     @Data
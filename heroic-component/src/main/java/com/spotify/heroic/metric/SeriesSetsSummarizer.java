@@ -21,53 +21,139 @@
 
 package com.spotify.heroic.metric;
 
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.Multimap;
 import com.spotify.heroic.common.Histogram;
+import com.spotify.heroic.common.HyperLogLog;
 import com.spotify.heroic.common.Series;
-import java.util.Collection;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 import lombok.Data;
 
+/**
+ * Summarizes sets of series in bounded memory.
+ * <p>
+ * Unique keys and the distinct values of each tag are estimated with {@link HyperLogLog}, and at
+ * most {@link #MAX_TAG_KEYS} tag keys are tracked, keeping the most frequent ones. Summarizers
+ * can be merged.
+ */
 @Data
 public class SeriesSetsSummarizer {
-    private final HashSet<String> uniqueKeys = new HashSet<>();
-    private final Multimap<String, String> tags = HashMultimap.create();
-    private final Multimap<String, String> resource = HashMultimap.create();
+    static final int UNIQUE_KEYS_PRECISION = 14;
+    static final int TAG_VALUES_PRECISION = 10;
+    static final int MAX_TAG_KEYS = 128;
+
+    private final HyperLogLog uniqueKeys = new HyperLogLog(UNIQUE_KEYS_PRECISION);
+    private final TagsSummarizer tags = new TagsSummarizer();
+    private final TagsSummarizer resource = new TagsSummarizer();
     private final Histogram.Builder seriesSize = Histogram.builder();
 
     public void add(Set<Series> series) {
         this.seriesSize.add(series.size());
 
         for (final Series s : series) {
-            uniqueKeys.add(s.getKey());
+            uniqueKeys.offer(s.getKey());
 
             for (Map.Entry<String, String> e : s.getTags().entrySet()) {
-                tags.put(e.getKey(), e.getValue());
+                tags.add(e.getKey(), e.getValue());
             }
 
             for (Map.Entry<String, String> e : s.getResource().entrySet()) {
-                resource.put(e.getKey(), e.getValue());
+                resource.add(e.getKey(), e.getValue());
             }
         }
     }
 
+    /**
+     * Merge everything summarized by another summarizer into this one.
+     */
+    public SeriesSetsSummarizer merge(final SeriesSetsSummarizer other) {
+        uniqueKeys.merge(other.uniqueKeys);
+        tags.merge(other.tags);
+        resource.merge(other.resource);
+        seriesSize.merge(other.seriesSize);
+        return this;
+    }
+
     public Summary end() {
-        final Histogram.Builder tagsSize = Histogram.builder();
-        final Histogram.Builder resourceSize = Histogram.builder();
+        return new Summary(uniqueKeys.cardinality(), tags.sizes(), resource.sizes(),
+            seriesSize.build());
+    }
+
+    /**
+     * Tracks the number of distinct values for the most frequent tag keys, evicting the least
+     * frequent key when full (space-saving).
+     */
+    static class TagsSummarizer {
+        private final Map<String, TagValues> keys = new HashMap<>();
+
+        void add(final String key, final String value) {
+            TagValues values = keys.get(key);
 
-        for (final Map.Entry<String, Collection<String>> e : this.tags.asMap().entrySet()) {
-            tagsSize.add(e.getValue().size());
+            if (values == null) {
+                values = new TagValues(evict());
+                keys.put(key, values);
+            }
+
+            values.hits += 1;
+            values.values.offer(value);
         }
 
-        for (final Map.Entry<String, Collection<String>> e : this.resource.asMap().entrySet()) {
-            resourceSize.add(e.getValue().size());
+        void merge(final TagsSummarizer other) {
+            for (final Map.Entry<String, TagValues> e : other.keys.entrySet()) {
+                TagValues values = keys.get(e.getKey());
+
+                if (values == null) {
+                    values = new TagValues(evict());
+                    keys.put(e.getKey(), values);
+                }
+
+                values.hits += e.getValue().hits;
+                values.values.merge(e.getValue().values);
+            }
         }
 
-        return new Summary(uniqueKeys.size(), tagsSize.build(), resourceSize.build(),
-            seriesSize.build());
+        Histogram sizes() {
+            final Histogram.Builder sizes = Histogram.builder();
+
+            for (final TagValues values : keys.values()) {
+                sizes.add(values.values.cardinality());
+            }
+
+            return sizes.build();
+        }
+
+        int size() {
+            return keys.size();
+        }
+
+        /**
+         * Make room for a new key if needed, returning the hits of the evicted key.
+         */
+        private long evict() {
+            if (keys.size() < MAX_TAG_KEYS) {
+                return 0L;
+            }
+
+            Map.Entry<String, TagValues> least = null;
+
+            for (final Map.Entry<String, TagValues> e : keys.entrySet()) {
+                if (least == null || e.getValue().hits < least.getValue().hits) {
+                    least = e;
+                }
+            }
+
+            keys.remove(least.getKey());
+            return least.getValue().hits;
+        }
+    }
+
+    private static class TagValues {
+        private final HyperLogLog values = new HyperLogLog(TAG_VALUES_PRECISION);
+        private long hits;
+
+        private TagValues(final long hits) {
+            this.hits = hits;
+        }
     }
 
     @Data
@@ -30,6 +30,7 @@ import com.google.common.hash.HashFunction;
 import com.google.common.hash.Hasher;
 import com.spotify.heroic.common.Histogram;
 import com.spotify.heroic.common.Series;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -80,23 +81,28 @@ public final class ShardedResultGroup {
         return hasher.hash().asInt();
     }
 
+    /**
+     * Summarize the result groups of each shard separately, and merge the summaries of all shards.
+     */
     public static MultiSummary summarize(List<ShardedResultGroup> resultGroups) {
-        final ImmutableSet.Builder<Map<String, String>> shardSummary = ImmutableSet.builder();
-        final Histogram.Builder keySize = Histogram.builder();
-        final SeriesSetsSummarizer seriesSummarizer = new SeriesSetsSummarizer();
-        final Histogram.Builder dataSize = Histogram.builder();
-        Optional<Long> cadence = Optional.empty();
+        final Map<Map<String, String>, ResultGroup.Summarizer> shards = new LinkedHashMap<>();
 
         for (ShardedResultGroup rg : resultGroups) {
-            shardSummary.add(rg.getShard());
-            keySize.add(rg.getKey().size());
-            seriesSummarizer.add(rg.getSeries());
-            dataSize.add(rg.getMetrics().size());
-            cadence = Optional.of(rg.getCadence());
+            shards
+                .computeIfAbsent(rg.getShard(), shard -> new ResultGroup.Summarizer())
+                .add(rg.getKey(), rg.getSeries(), rg.getMetrics(), rg.getCadence());
         }
 
-        return new MultiSummary(shardSummary.build(), keySize.build(), seriesSummarizer.end(),
-            dataSize.build(), cadence);
+        final ResultGroup.Summarizer merged = new ResultGroup.Summarizer();
+
+        for (final ResultGroup.Summarizer shard : shards.values()) {
+            merged.merge(shard);
+        }
+
+        final ResultGroup.MultiSummary summary = merged.end();
+
+        return new MultiSummary(ImmutableSet.copyOf(shards.keySet()), summary.getKeySize(),
+            summary.getSeries(), summary.getDataSize(), summary.getCadence());
     }
 
     @Data
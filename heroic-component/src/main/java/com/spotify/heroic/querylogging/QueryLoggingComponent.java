@@ -21,6 +21,14 @@
 
 package com.spotify.heroic.querylogging;
 
+import com.spotify.heroic.lifecycle.LifeCycle;
+import javax.inject.Named;
+
 public interface QueryLoggingComponent {
     QueryLoggerFactory queryLoggerFactory();
+
+    @Named("queryLogging")
+    default LifeCycle queryLoggingLife() {
+        return LifeCycle.empty();
+    }
 }
@@ -42,6 +42,14 @@ public interface HeroicReporter {
 
     MemcachedReporter newMemcachedReporter(final String consumerType);
 
+    /**
+     * Create a reporter for a named executor pool.
+     *
+     * @param pool name of the pool
+     * @param queueDepth supplier of the current number of queued tasks in the pool
+     */
+    ExecutorReporter newExecutor(String pool, Supplier<Long> queueDepth);
+
     void registerShards(Set<Map<String, String>> knownShards);
 
     /**
@@ -41,4 +41,10 @@ public interface QueryReporter {
     void reportClusterNodeRpcError();
 
     void reportClusterNodeRpcCancellation();
+
+    /**
+     * Report a query which was attached to an identical query that was already in flight, instead
+     * of being executed.
+     */
+    void reportCoalescedQuery();
 }
@@ -25,6 +25,7 @@ import com.spotify.heroic.statistics.MemcachedReporter;
 import com.spotify.heroic.statistics.QueryReporter;
 import com.spotify.heroic.statistics.AnalyticsReporter;
 import com.spotify.heroic.statistics.ConsumerReporter;
+import com.spotify.heroic.statistics.ExecutorReporter;
 import com.spotify.heroic.statistics.HeroicReporter;
 import com.spotify.heroic.statistics.IngestionManagerReporter;
 import com.spotify.heroic.statistics.MetadataBackendReporter;
@@ -76,6 +77,11 @@ public class NoopHeroicReporter implements HeroicReporter {
         return NoopMemcachedReporter.get();
     }
 
+    @Override
+    public ExecutorReporter newExecutor(final String pool, final Supplier<Long> queueDepth) {
+        return NoopExecutorReporter.get();
+    }
+
     @Override
     public void registerShards(Set<Map<String, String>> knownShards) {
     }
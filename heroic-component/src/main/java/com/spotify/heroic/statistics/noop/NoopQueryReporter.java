@@ -51,4 +51,8 @@ public class NoopQueryReporter implements QueryReporter {
     @Override
     public void reportClusterNodeRpcCancellation() {
     }
+
+    @Override
+    public void reportCoalescedQuery() {
+    }
 }
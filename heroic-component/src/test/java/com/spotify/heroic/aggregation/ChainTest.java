@@ -26,6 +26,15 @@ public class ChainTest {
     @Mock
     private AggregationInstance cred;
 
+    @Mock
+    private AggregationInstance d;
+
+    @Mock
+    private AggregationInstance ddis;
+
+    @Mock
+    private AggregationInstance dred;
+
     @Before
     public void setup() {
         doReturn(false).when(a).distributable();
@@ -35,6 +44,11 @@ public class ChainTest {
         doReturn(true).when(c).distributable();
         doReturn(cdis).when(c).distributed();
         doReturn(cred).when(c).reducer();
+
+        doReturn(false).when(d).distributable();
+        doReturn(true).when(d).splittable();
+        doReturn(ddis).when(d).distributed();
+        doReturn(dred).when(d).reducer();
     }
 
     @Test
@@ -46,6 +60,12 @@ public class ChainTest {
             ChainInstance.of(a, a));
     }
 
+    @Test
+    public void testSplitDistributed() throws IOException {
+        assertDistributed(ddis, ChainInstance.of(dred, c, a), ChainInstance.of(d, c, a));
+        assertDistributed(cdis, ChainInstance.of(cred, d, c), ChainInstance.of(c, d, c));
+    }
+
     @Test
     public void testNestedDistributed() throws IOException {
         assertDistributed(ChainInstance.of(c, ChainInstance.of(c, cdis)), cred,
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import com.spotify.heroic.statistics.ExecutorReporter;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BoundedExecutorTest {
+    private final AtomicReference<Throwable> unhandled = new AtomicReference<>();
+
+    private ExecutorReporter reporter;
+    private BoundedExecutor executor;
+    private CountDownLatch release;
+
+    @Before
+    public void setup() {
+        reporter = mock(ExecutorReporter.class);
+        release = new CountDownLatch(1);
+        executor = new BoundedExecutor("test", 1, 1, Executors.defaultThreadFactory(),
+            unhandled::set);
+        executor.setReporter(reporter);
+    }
+
+    @After
+    public void teardown() throws Exception {
+        release.countDown();
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testRejectWhenSaturated() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+
+        executor.execute(() -> {
+            started.countDown();
+            await(release);
+        });
+
+        started.await();
+        executor.execute(() -> await(release));
+        assertEquals(1L, executor.queueDepth());
+
+        try {
+            executor.execute(() -> {
+            });
+            fail("expected task to be rejected");
+        } catch (final GoAwayException e) {
+            assertTrue(e.getMessage().contains("test"));
+        }
+
+        verify(reporter).reportRejected();
+    }
+
+    @Test
+    public void testReportQueueWait() throws Exception {
+        final CountDownLatch done = new CountDownLatch(1);
+        executor.execute(done::countDown);
+        done.await();
+
+        verify(reporter, atLeast(1)).reportQueueWait(anyLong());
+    }
+
+    @Test
+    public void testUnhandled() throws Exception {
+        final RuntimeException error = new RuntimeException("error");
+
+        executor.submit(() -> {
+            throw error;
+        });
+
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        assertEquals(error, unhandled.get());
+    }
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
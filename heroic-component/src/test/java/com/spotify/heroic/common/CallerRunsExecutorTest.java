@@ -0,0 +1,73 @@
+package com.spotify.heroic.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CallerRunsExecutorTest {
+    private BoundedExecutor pool;
+    private CallerRunsExecutor executor;
+    private CountDownLatch release;
+
+    @Before
+    public void setup() {
+        release = new CountDownLatch(1);
+        pool = new BoundedExecutor("test", 1, 1, Executors.defaultThreadFactory(), t -> {
+        });
+        executor = new CallerRunsExecutor(pool);
+    }
+
+    @After
+    public void teardown() throws Exception {
+        release.countDown();
+        pool.shutdown();
+        pool.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testRunsOnPool() throws Exception {
+        final AtomicReference<Thread> thread = new AtomicReference<>();
+        final CountDownLatch done = new CountDownLatch(1);
+
+        executor.execute(() -> {
+            thread.set(Thread.currentThread());
+            done.countDown();
+        });
+
+        done.await();
+        assertNotEquals(Thread.currentThread(), thread.get());
+    }
+
+    @Test
+    public void testRunsOnCallerWhenSaturated() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+
+        pool.execute(() -> {
+            started.countDown();
+            await(release);
+        });
+
+        started.await();
+        pool.execute(() -> await(release));
+
+        final AtomicReference<Thread> thread = new AtomicReference<>();
+        executor.execute(() -> thread.set(Thread.currentThread()));
+
+        assertEquals(Thread.currentThread(), thread.get());
+    }
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.common;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+import org.junit.Test;
+
+public class DoubleFormatTest {
+    private final char[] buffer = new char[DoubleFormat.MAX_LENGTH];
+
+    private String format(final double value) {
+        return new String(buffer, 0, DoubleFormat.format(value, buffer, 0));
+    }
+
+    @Test
+    public void testLayout() {
+        assertEquals("0.0", format(0.0));
+        assertEquals("-0.0", format(-0.0));
+        assertEquals("1.0", format(1.0));
+        assertEquals("-1.5", format(-1.5));
+        assertEquals("100.0", format(100.0));
+        assertEquals("123.456", format(123.456));
+        assertEquals("0.001", format(0.001));
+        assertEquals("9.99E-4", format(0.000999));
+        assertEquals("9999999.0", format(9999999.0));
+        assertEquals("1.0E7", format(1e7));
+        assertEquals("1.23456789E7", format(12345678.9));
+        assertEquals("1.7976931348623157E308", format(Double.MAX_VALUE));
+    }
+
+    @Test
+    public void testShortest() {
+        assertEquals("0.3", format(0.3));
+        assertEquals("0.30000000000000004", format(0.1 + 0.2));
+        assertEquals("1.0E23", format(1e23));
+        assertEquals("5.0E-324", format(Double.MIN_VALUE));
+    }
+
+    @Test
+    public void testRoundTrip() {
+        final Random random = new Random(0x5eed);
+
+        for (int i = 0; i < 100000; i++) {
+            final double value = Double.longBitsToDouble(random.nextLong());
+
+            if (!Double.isFinite(value)) {
+                continue;
+            }
+
+            assertEquals(value, Double.parseDouble(format(value)), 0.0);
+        }
+
+        for (int i = 0; i < 100000; i++) {
+            final double value = random.nextInt(1000000) / 100.0;
+            assertEquals(value, Double.parseDouble(format(value)), 0.0);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNotFinite() {
+        format(Double.NaN);
+    }
+}
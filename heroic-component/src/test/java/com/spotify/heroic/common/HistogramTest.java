@@ -54,4 +54,54 @@ public class HistogramTest {
         assertEquals(Optional.of(100.0), h.getMean());
         assertEquals(Optional.of(100L), h.getSum());
     }
+
+    @Test
+    public void bucketed() {
+        final Histogram.Builder builder = Histogram.builder();
+
+        for (long value = 1L; value <= 100_000L; value++) {
+            builder.add(value);
+        }
+
+        final Histogram h = builder.build();
+        final double error = 1.0 / Histogram.Builder.SUB_BUCKETS;
+
+        assertEquals(Optional.of(1L), h.getMin());
+        assertEquals(Optional.of(100_000L), h.getMax());
+        assertEquals(50_000L, h.getMedian().get(), 50_000L * error);
+        assertEquals(75_000L, h.getP75().get(), 75_000L * error);
+        assertEquals(99_000L, h.getP99().get(), 99_000L * error);
+        assertEquals(Optional.of(50_000.5), h.getMean());
+        assertEquals(Optional.of(5_000_050_000L), h.getSum());
+    }
+
+    @Test
+    public void merge() {
+        final Histogram.Builder a = Histogram.builder();
+        final Histogram.Builder b = Histogram.builder();
+        final Histogram.Builder c = Histogram.builder();
+
+        a.add(100L);
+        a.add(200L);
+        b.add(300L);
+        b.add(400L);
+
+        for (long value = 0L; value < Histogram.Builder.EXACT_SAMPLES; value++) {
+            c.add(1000L);
+        }
+
+        final Histogram exact = Histogram.builder().merge(a).merge(b).build();
+
+        assertEquals(Optional.of(100L), exact.getMin());
+        assertEquals(Optional.of(300L), exact.getP75());
+        assertEquals(Optional.of(1000L), exact.getSum());
+
+        final Histogram bucketed = Histogram.builder().merge(a).merge(b).merge(c).build();
+
+        assertEquals(Optional.of(100L), bucketed.getMin());
+        assertEquals(Optional.of(1000L), bucketed.getMax());
+        assertEquals(Optional.of(1000L), bucketed.getMedian());
+        assertEquals(Optional.of(1000L * Histogram.Builder.EXACT_SAMPLES + 1000L),
+            bucketed.getSum());
+    }
 }
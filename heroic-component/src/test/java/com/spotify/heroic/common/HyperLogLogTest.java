@@ -0,0 +1,49 @@
+package com.spotify.heroic.common;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class HyperLogLogTest {
+    @Test
+    public void small() {
+        final HyperLogLog hll = new HyperLogLog(10);
+
+        assertEquals(0L, hll.cardinality());
+
+        hll.offer("a");
+        hll.offer("b");
+        hll.offer("a");
+
+        assertEquals(2L, hll.cardinality());
+    }
+
+    @Test
+    public void large() {
+        final HyperLogLog hll = new HyperLogLog(14);
+
+        for (int i = 0; i < 1_000_000; i++) {
+            hll.offer("value-" + i);
+        }
+
+        assertEquals(1_000_000L, hll.cardinality(), 1_000_000L * 0.03);
+    }
+
+    @Test
+    public void merge() {
+        final HyperLogLog a = new HyperLogLog(14);
+        final HyperLogLog b = new HyperLogLog(14);
+
+        for (int i = 0; i < 100_000; i++) {
+            a.offer("value-" + i);
+            b.offer("value-" + (i + 50_000));
+        }
+
+        assertEquals(150_000L, a.merge(b).cardinality(), 150_000L * 0.03);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void mergeDifferentPrecision() {
+        new HyperLogLog(10).merge(new HyperLogLog(12));
+    }
+}
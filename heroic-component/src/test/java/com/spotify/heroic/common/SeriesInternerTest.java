@@ -0,0 +1,46 @@
+package com.spotify.heroic.common;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class SeriesInternerTest {
+    private final SeriesInterner interner = new SeriesInterner(100);
+
+    @Test
+    public void testInternSeries() {
+        final Series a = Series.of(new String("foo"), ImmutableMap.of("role", new String("db")));
+        final Series b = Series.of(new String("foo"), ImmutableMap.of("role", new String("db")));
+
+        final Series interned = interner.intern(a);
+
+        assertEquals(a, interned);
+        assertSame(interned, interner.intern(b));
+        assertSame(interned, interner.intern(interned));
+    }
+
+    @Test
+    public void testInternStrings() {
+        final Series a = interner.intern(Series.of(new String("foo"), ImmutableMap.of("k", "v")));
+        final Series b = interner.intern(Series.of(new String("foo"), ImmutableMap.of("o", "v")));
+
+        assertSame(a.getKey(), b.getKey());
+        assertSame(a.getTags().get("k"), b.getTags().get("o"));
+    }
+
+    @Test
+    public void testDifferentResource() {
+        final Series a = Series.of("foo", ImmutableMap.of(), ImmutableMap.of("r", "1"));
+        final Series b = Series.of("foo", ImmutableMap.of(), ImmutableMap.of("r", "2"));
+
+        final Series internedA = interner.intern(a);
+        final Series internedB = interner.intern(b);
+
+        assertNotSame(internedA, internedB);
+        assertEquals(a.getResource(), internedA.getResource());
+        assertEquals(b.getResource(), internedB.getResource());
+    }
+}
@@ -0,0 +1,76 @@
+package com.spotify.heroic.common;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedMap;
+import org.junit.Test;
+
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SortedArrayMapTest {
+    private final SortedMap<String, String> reference =
+        ImmutableSortedMap.of("a", "1", "c", "3", "e", "5");
+
+    @Test
+    public void testCopyOf() {
+        final SortedArrayMap map =
+            SortedArrayMap.copyOf(ImmutableMap.of("e", "5", "a", "1", "c", "3"));
+
+        assertEquals(reference, map);
+        assertEquals(map, reference);
+        assertEquals(reference.hashCode(), map.hashCode());
+        assertEquals(reference.toString(), map.toString());
+        assertEquals(ImmutableList.copyOf(reference.keySet()), ImmutableList.copyOf(map.keySet()));
+        assertSame(map, SortedArrayMap.copyOf(map));
+        assertSame(SortedArrayMap.empty(), SortedArrayMap.copyOf(new TreeMap<>()));
+    }
+
+    @Test
+    public void testCopyOfRepeatedKeys() {
+        final ImmutableList<Map.Entry<String, String>> entries = ImmutableList.of(
+            new AbstractMap.SimpleEntry<>("b", "1"), new AbstractMap.SimpleEntry<>("a", "2"),
+            new AbstractMap.SimpleEntry<>("b", "3"));
+
+        final SortedArrayMap map = SortedArrayMap.copyOf(entries.iterator());
+
+        assertEquals(ImmutableSortedMap.of("a", "2", "b", "3"), map);
+    }
+
+    @Test
+    public void testLookup() {
+        final SortedArrayMap map = SortedArrayMap.copyOf(reference);
+
+        assertEquals("3", map.get("c"));
+        assertNull(map.get("b"));
+        assertNull(map.get(42));
+        assertTrue(map.containsKey("e"));
+        assertFalse(map.containsKey("f"));
+        assertEquals("a", map.firstKey());
+        assertEquals("e", map.lastKey());
+    }
+
+    @Test
+    public void testViews() {
+        final SortedArrayMap map = SortedArrayMap.copyOf(reference);
+
+        assertEquals(reference.subMap("b", "e"), map.subMap("b", "e"));
+        assertEquals(reference.headMap("c"), map.headMap("c"));
+        assertEquals(reference.tailMap("c"), map.tailMap("c"));
+        assertEquals(reference.tailMap("b").headMap("d"), map.tailMap("b").headMap("d"));
+        assertTrue(map.subMap("f", "g").isEmpty());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testImmutable() {
+        SortedArrayMap.copyOf(reference).put("b", "2");
+    }
+}
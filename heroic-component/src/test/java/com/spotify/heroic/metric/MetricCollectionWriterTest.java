@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.metric;
+
+import static org.junit.Assert.assertEquals;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.io.StringWriter;
+import org.junit.Test;
+
+public class MetricCollectionWriterTest {
+    private final JsonFactory factory = new JsonFactory();
+
+    private String write(final MetricCollection collection) throws IOException {
+        final StringWriter out = new StringWriter();
+
+        try (final JsonGenerator g = factory.createGenerator(out)) {
+            MetricCollectionWriter.writeValues(g, collection);
+        }
+
+        return out.toString();
+    }
+
+    @Test
+    public void testPoints() throws IOException {
+        final MetricCollection points = MetricCollection.points(
+            ImmutableList.of(new Point(10, 1.5), new Point(20, Double.NaN), new Point(30, 1e23)));
+
+        assertEquals("[[10,1.5],[20,null],[30,1.0E23]]", write(points));
+    }
+
+    @Test
+    public void testSpreads() throws IOException {
+        final MetricCollection spreads = MetricCollection.spreads(
+            ImmutableList.of(new Spread(10, 2, 3.0, 5.0, 1.0, 2.0)));
+
+        assertEquals("[[10,{\"count\":2,\"sum\":3.0,\"sum2\":5.0,\"min\":1.0,\"max\":2.0}]]",
+            write(spreads));
+    }
+}
@@ -0,0 +1,56 @@
+package com.spotify.heroic.metric;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.spotify.heroic.common.Series;
+import java.util.Optional;
+import org.junit.Test;
+
+public class SeriesSetsSummarizerTest {
+    private final Series a = Series.of("a", ImmutableMap.of("host", "a", "site", "sto"));
+    private final Series b = Series.of("b", ImmutableMap.of("host", "b", "site", "sto"));
+    private final Series c = Series.of("a", ImmutableMap.of("host", "c", "site", "lon"));
+
+    @Test
+    public void summary() {
+        final SeriesSetsSummarizer summarizer = new SeriesSetsSummarizer();
+        summarizer.add(ImmutableSet.of(a, b));
+        summarizer.add(ImmutableSet.of(c));
+
+        final SeriesSetsSummarizer.Summary summary = summarizer.end();
+
+        assertEquals(2L, summary.getUniqueKeys());
+        assertEquals(Optional.of(2L), summary.getTagsSize().getMin());
+        assertEquals(Optional.of(3L), summary.getTagsSize().getMax());
+        assertEquals(Optional.of(1L), summary.getSeriesSize().getMin());
+        assertEquals(Optional.of(2L), summary.getSeriesSize().getMax());
+    }
+
+    @Test
+    public void merge() {
+        final SeriesSetsSummarizer first = new SeriesSetsSummarizer();
+        first.add(ImmutableSet.of(a, b));
+
+        final SeriesSetsSummarizer second = new SeriesSetsSummarizer();
+        second.add(ImmutableSet.of(c));
+
+        final SeriesSetsSummarizer all = new SeriesSetsSummarizer();
+        all.add(ImmutableSet.of(a, b));
+        all.add(ImmutableSet.of(c));
+
+        assertEquals(all.end(), first.merge(second).end());
+    }
+
+    @Test
+    public void boundedTagKeys() {
+        final SeriesSetsSummarizer summarizer = new SeriesSetsSummarizer();
+
+        for (int i = 0; i < SeriesSetsSummarizer.MAX_TAG_KEYS * 2; i++) {
+            summarizer.add(ImmutableSet.of(Series.of("a", ImmutableMap.of("key-" + i, "value"))));
+        }
+
+        assertEquals(SeriesSetsSummarizer.MAX_TAG_KEYS, summarizer.getTags().size());
+    }
+}
@@ -1,10 +1,17 @@
 package com.spotify.heroic.metric;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.spotify.heroic.common.Series;
+import com.spotify.heroic.metric.ShardedResultGroup.MultiSummary;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import org.junit.Test;
 
 public class ShardedResultGroupTest {
@@ -20,4 +27,37 @@ public class ShardedResultGroupTest {
 
         assertNotEquals(g1.hashGroup(), g2.hashGroup());
     }
+
+    @Test
+    public void testSummariesAreMergedAcrossShards() {
+        final List<ShardedResultGroup> groups = new ArrayList<>();
+
+        /* enough groups for the histograms of one shard to switch to buckets */
+        for (int i = 0; i < 3000; i++) {
+            final Map<String, String> shard = ImmutableMap.of("shard", "s" + (i % 3 == 0 ? 1 : 2));
+            final Series series = Series.of("key-" + i % 7, ImmutableMap.of("host", "h" + i));
+            final MetricCollection points = MetricCollection.points(
+                Collections.nCopies(i % 50, new Point(0L, 1.0)));
+
+            groups.add(new ShardedResultGroup(shard, ImmutableMap.of("host", "h" + i % 11),
+                ImmutableSet.of(series), points, 60000L));
+        }
+
+        final ResultGroup.Summarizer single = new ResultGroup.Summarizer();
+
+        for (final ShardedResultGroup g : groups) {
+            single.add(g.getKey(), g.getSeries(), g.getMetrics(), g.getCadence());
+        }
+
+        final ResultGroup.MultiSummary expected = single.end();
+        final MultiSummary summary = ShardedResultGroup.summarize(groups);
+
+        assertEquals(
+            ImmutableSet.of(ImmutableMap.of("shard", "s1"), ImmutableMap.of("shard", "s2")),
+            summary.getShards());
+        assertEquals(expected.getKeySize(), summary.getKeySize());
+        assertEquals(expected.getSeries(), summary.getSeries());
+        assertEquals(expected.getDataSize(), summary.getDataSize());
+        assertEquals(expected.getCadence(), summary.getCadence());
+    }
 }
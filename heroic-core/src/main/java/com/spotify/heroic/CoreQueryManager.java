@@ -22,6 +22,7 @@
 package com.spotify.heroic;
 
 import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSortedSet;
 import com.spotify.heroic.aggregation.Aggregation;
 import com.spotify.heroic.aggregation.AggregationCombiner;
@@ -37,6 +38,7 @@ import com.spotify.heroic.cluster.ClusterNode;
 import com.spotify.heroic.cluster.ClusterShard;
 import com.spotify.heroic.common.DateRange;
 import com.spotify.heroic.common.Duration;
+import com.spotify.heroic.common.ExecutorPools;
 import com.spotify.heroic.common.Feature;
 import com.spotify.heroic.common.Features;
 import com.spotify.heroic.common.OptionalLimit;
@@ -62,6 +64,8 @@ import com.spotify.heroic.metric.MetricType;
 import com.spotify.heroic.metric.QueryResult;
 import com.spotify.heroic.metric.QueryResultPart;
 import com.spotify.heroic.metric.QueryTrace;
+import com.spotify.heroic.metric.ResultLimit;
+import com.spotify.heroic.metric.ShardedResultGroup;
 import com.spotify.heroic.metric.Tracing;
 import com.spotify.heroic.metric.WriteMetric;
 import com.spotify.heroic.querylogging.QueryContext;
@@ -88,7 +92,9 @@ import java.util.Optional;
 import java.util.SortedSet;
 import java.util.concurrent.TimeUnit;
 import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import javax.inject.Inject;
 import javax.inject.Named;
 import org.slf4j.Logger;
@@ -109,6 +115,7 @@ public class CoreQueryManager implements QueryManager {
     private final ClusterManager cluster;
     private final QueryParser parser;
     private final QueryCache queryCache;
+    private final QueryCoalescer queryCoalescer;
     private final AggregationFactory aggregations;
     private final OptionalLimit groupLimit;
     private final QueryReporter reporter;
@@ -122,9 +129,11 @@ public class CoreQueryManager implements QueryManager {
 
     @Inject
     public CoreQueryManager(
-        @Named("features") final Features features, final AsyncFramework async, final Clock clock,
+        @Named("features") final Features features,
+        @Named(ExecutorPools.QUERY_ASYNC) final AsyncFramework async, final Clock clock,
         final ClusterManager cluster, final QueryParser parser, final QueryCache queryCache,
-        final AggregationFactory aggregations, @Named("groupLimit") final OptionalLimit groupLimit,
+        final QueryCoalescer queryCoalescer, final AggregationFactory aggregations,
+        @Named("groupLimit") final OptionalLimit groupLimit,
         @Named("smallQueryThreshold") final long smallQueryThreshold, final QueryReporter reporter,
         final Optional<ConditionalFeatures> conditionalFeatures,
         final QueryLoggerFactory queryLoggerFactory
@@ -135,6 +144,7 @@ public class CoreQueryManager implements QueryManager {
         this.cluster = cluster;
         this.parser = parser;
         this.queryCache = queryCache;
+        this.queryCoalescer = queryCoalescer;
         this.aggregations = aggregations;
         this.groupLimit = groupLimit;
         this.reporter = reporter;
@@ -209,6 +219,28 @@ public class CoreQueryManager implements QueryManager {
 
         @Override
         public AsyncFuture<QueryResult> query(final Query q, final QueryContext queryContext) {
+            return query(q, queryContext, Optional.empty());
+        }
+
+        @Override
+        public AsyncFuture<QueryResult> query(
+            final Query q, final QueryContext queryContext,
+            final Consumer<ShardedResultGroup> groups
+        ) {
+            return query(q, queryContext, Optional.of(groups));
+        }
+
+        /**
+         * Run a query, optionally streaming its groups.
+         * <p>
+         * Groups from shards are independent unless the aggregation is distributed, so they are
+         * streamed as soon as each shard responds. Distributed aggregations have to be combined
+         * across all shards first, and are streamed once the full result is available.
+         */
+        private AsyncFuture<QueryResult> query(
+            final Query q, final QueryContext queryContext,
+            final Optional<Consumer<ShardedResultGroup>> groups
+        ) {
             final QueryOptions options = q.getOptions().orElseGet(QueryOptions::defaults);
             final Tracing tracing = options.tracing();
 
@@ -274,7 +306,12 @@ public class CoreQueryManager implements QueryManager {
 
             queryLogger.logOutgoingRequestToShards(queryContext, request);
 
-            final AsyncFuture<QueryResult> query = queryCache.load(request, () -> {
+            final OptionalLimit limit = options.groupLimit().orElse(groupLimit);
+
+            final Optional<GroupStreamer> streamer = isDistributed ? Optional.empty()
+                : groups.map(consumer -> new GroupStreamer(consumer, limit));
+
+            final Supplier<AsyncFuture<QueryResult>> loader = () -> {
                 for (final ClusterShard shard : shards) {
                     final QueryTrace.NamedWatch shardLocalWatch =
                         shardWatch.extendIdentifier(shard.getShard().toString());
@@ -290,15 +327,31 @@ public class CoreQueryManager implements QueryManager {
                     if (!shard.isDarkload()) {
                         // Stash the future to be able to gather result from all shards.
                         // Except if this shard is a darkload shard, then we will just fire & forget
-                        futures.add(queryPart);
+                        futures.add(streamer
+                            .map(s -> queryPart.directTransform(s::stream))
+                            .orElse(queryPart));
                     }
                 }
 
-                final OptionalLimit limit = options.groupLimit().orElse(groupLimit);
-
                 return async.collect(futures,
                     QueryResult.collectParts(QUERY, range, combiner, limit));
-            });
+            };
+
+            final AsyncFuture<QueryResult> query;
+
+            if (streamer.isPresent()) {
+                // groups are handed off as they arrive, there is no complete result to share
+                query = loader.get().directTransform(streamer.get()::complete);
+            } else if (groups.isPresent()) {
+                query = queryCoalescer
+                    .load(request, () -> queryCache.load(request, loader))
+                    .directTransform(result -> {
+                        result.getGroups().forEach(groups.get());
+                        return result.withoutGroups();
+                    });
+            } else {
+                query = queryCoalescer.load(request, () -> queryCache.load(request, loader));
+            }
 
             return query.directTransform(result -> {
                 reportCompletedQuery(result, fullQueryWatch);
@@ -306,6 +359,55 @@ public class CoreQueryManager implements QueryManager {
             }).onDone(onDoneQueryReporter);
         }
 
+        /**
+         * Hands off groups from shard responses as they arrive, applying the group limit across
+         * all of them.
+         */
+        private class GroupStreamer {
+            private final Consumer<ShardedResultGroup> consumer;
+            private final OptionalLimit limit;
+
+            private final Object lock = new Object();
+            private long streamed = 0;
+
+            GroupStreamer(final Consumer<ShardedResultGroup> consumer, final OptionalLimit limit) {
+                this.consumer = consumer;
+                this.limit = limit;
+            }
+
+            QueryResultPart stream(final QueryResultPart part) {
+                synchronized (lock) {
+                    for (final ShardedResultGroup group : part.getGroups()) {
+                        if (limit.isGreaterOrEqual(streamed)) {
+                            break;
+                        }
+
+                        streamed++;
+                        consumer.accept(group);
+                    }
+                }
+
+                return new QueryResultPart(ImmutableList.of(), part.getErrors(),
+                    part.getQueryTrace(), part.getLimits(), part.getPreAggregationSampleSize());
+            }
+
+            QueryResult complete(final QueryResult result) {
+                final boolean limited;
+
+                synchronized (lock) {
+                    limited = limit.isGreaterOrEqual(streamed);
+                }
+
+                if (!limited) {
+                    return result;
+                }
+
+                return new QueryResult(result.getRange(), result.getGroups(), result.getErrors(),
+                    result.getTrace(), result.getLimits().add(ResultLimit.GROUP),
+                    result.getPreAggregationSampleSize(), result.getCache());
+            }
+        }
+
         private void reportCompletedQuery(
             final QueryResult result, final Stopwatch fullQueryWatch
         ) {
@@ -28,7 +28,6 @@ import static java.util.Optional.of;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.ImmutableList;
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.lightstep.opencensus.exporter.LightStepTraceExporter;
 import com.lightstep.tracer.jre.JRETracer;
 import com.lightstep.tracer.shared.Options;
@@ -37,6 +36,7 @@ import com.spotify.heroic.cache.CacheComponent;
 import com.spotify.heroic.cluster.CoreClusterComponent;
 import com.spotify.heroic.cluster.DaggerCoreClusterComponent;
 import com.spotify.heroic.common.Duration;
+import com.spotify.heroic.common.ExecutorPools;
 import com.spotify.heroic.common.Optionals;
 import com.spotify.heroic.common.TypeNameMixin;
 import com.spotify.heroic.consumer.ConsumersComponent;
@@ -100,13 +100,9 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicReference;
@@ -390,20 +386,14 @@ public class HeroicCore implements HeroicConfiguration {
     private CoreLoadingComponent loadingInjector() {
         log.info("Building Loading Injector");
 
-        final ExecutorService executor;
-        final boolean managedExecutor;
-
-        if (this.executor.isPresent()) {
-            executor = this.executor.get();
-            managedExecutor = false;
-        } else {
-            executor = setupExecutor(Runtime.getRuntime().availableProcessors() * 2);
-            managedExecutor = true;
-        }
+        final ExecutorPools pools = this.executor
+            .map(executor -> ExecutorPools.shared(executor, false))
+            .orElseGet(() -> ExecutorPools.bounded(params, uncaughtExceptionHandler,
+                HeroicCore::unhandledException));
 
         return DaggerCoreLoadingComponent
             .builder()
-            .loadingModule(new LoadingModule(executor, managedExecutor, this, params))
+            .loadingModule(new LoadingModule(pools, this, params))
             .build();
     }
 
@@ -420,46 +410,19 @@ public class HeroicCore implements HeroicConfiguration {
     }
 
     /**
-     * Setup a fixed thread pool executor that correctly handles unhandled exceptions.
-     *
-     * @param threads Number of threads to configure.
+     * Handle an exception that failed a task in one of the core executor pools.
      */
-    private ExecutorService setupExecutor(final int threads) {
-        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
-            new LinkedBlockingQueue<>(), new ThreadFactoryBuilder()
-            .setNameFormat("heroic-core-%d")
-            .setUncaughtExceptionHandler(uncaughtExceptionHandler)
-            .build()) {
-            @Override
-            protected void afterExecute(Runnable r, Throwable t) {
-                super.afterExecute(r, t);
-
-                if (t == null && (r instanceof Future<?>)) {
-                    try {
-                        ((Future<?>) r).get();
-                    } catch (CancellationException e) {
-                        t = e;
-                    } catch (ExecutionException e) {
-                        t = e.getCause();
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                    }
-                }
-
-                if (t != null) {
-                    if (log.isErrorEnabled()) {
-                        log.error("Unhandled exception caught in core executor", t);
-                        log.error("Exiting (code=2)");
-                    } else {
-                        System.err.println("Unhandled exception caught in core executor");
-                        System.err.println("Exiting (code=2)");
-                        t.printStackTrace(System.err);
-                    }
+    private static void unhandledException(final Throwable t) {
+        if (log.isErrorEnabled()) {
+            log.error("Unhandled exception caught in core executor", t);
+            log.error("Exiting (code=2)");
+        } else {
+            System.err.println("Unhandled exception caught in core executor");
+            System.err.println("Exiting (code=2)");
+            t.printStackTrace(System.err);
+        }
 
-                    System.exit(2);
-                }
-            }
-        };
+        System.exit(2);
     }
 
     /**
@@ -480,6 +443,7 @@ public class HeroicCore implements HeroicConfiguration {
         life.add(statistics.life());
 
         final HeroicReporter reporter = statistics.reporter();
+        early.executorPools().registerReporter(reporter);
 
         // Register root components.
         final CorePrimaryComponent primary = DaggerCorePrimaryComponent
@@ -490,6 +454,7 @@ public class HeroicCore implements HeroicConfiguration {
             .build();
 
         final QueryLoggingComponent queryLogging = config.queryLogging().component(primary);
+        life.add(queryLogging.queryLoggingLife());
 
         final Optional<HttpServer> server = setupServer(config, life, primary);
 
@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.spotify.heroic.common.Duration;
+import com.spotify.heroic.common.Feature;
+import com.spotify.heroic.metric.FullQuery;
+import com.spotify.heroic.metric.QueryResult;
+import com.spotify.heroic.metric.Tracing;
+import com.spotify.heroic.statistics.QueryReporter;
+import eu.toolchain.async.AsyncFramework;
+import eu.toolchain.async.AsyncFuture;
+import eu.toolchain.async.FutureDone;
+import eu.toolchain.async.ResolvableFuture;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+import javax.inject.Inject;
+
+/**
+ * Lets concurrent, identical queries share a single pending result.
+ * <p>
+ * Requests are identified by {@link FullQuery.Request#hashTo(ObjectHasher)}, together with their
+ * tracing level and timeout since callers share the trace of the query and the deadline it was
+ * admitted with. Detailed traces are never shared. The first request for a given key runs the
+ * loader, any identical request arriving before it has completed is
+ * attached to the same pending result instead of fanning out to the shards again.
+ * <p>
+ * Every caller receives its own future. Cancelling it only detaches that caller, the shared
+ * query is cancelled once every caller has detached.
+ */
+@QueryScope
+public class QueryCoalescer {
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+    private final AsyncFramework async;
+    private final QueryReporter reporter;
+
+    private final ConcurrentMap<HashCode, InFlight> inFlight = new ConcurrentHashMap<>();
+
+    @Inject
+    public QueryCoalescer(final AsyncFramework async, final QueryReporter reporter) {
+        this.async = async;
+        this.reporter = reporter;
+    }
+
+    public AsyncFuture<QueryResult> load(
+        final FullQuery.Request request, final Supplier<AsyncFuture<QueryResult>> loader
+    ) {
+        if (!request.features().hasFeature(Feature.COALESCE_QUERIES)) {
+            return loader.get();
+        }
+
+        if (request.options().tracing().isEnabled(Tracing.DETAILED)) {
+            return loader.get();
+        }
+
+        final HashCode key = buildKey(request);
+
+        while (true) {
+            final InFlight existing = inFlight.get(key);
+
+            if (existing != null) {
+                final AsyncFuture<QueryResult> subscriber = existing.subscribe();
+
+                if (subscriber != null) {
+                    reporter.reportCoalescedQuery();
+                    return subscriber;
+                }
+
+                /* completed concurrently, but not yet removed */
+                inFlight.remove(key, existing);
+                continue;
+            }
+
+            final InFlight created = new InFlight();
+
+            if (inFlight.putIfAbsent(key, created) != null) {
+                continue;
+            }
+
+            final AsyncFuture<QueryResult> subscriber = created.subscribe();
+
+            final AsyncFuture<QueryResult> shared;
+
+            try {
+                shared = loader.get();
+            } catch (final Exception e) {
+                inFlight.remove(key, created);
+                created.failed(e);
+                return subscriber;
+            }
+
+            shared.onFinished(() -> inFlight.remove(key, created));
+            created.attach(shared);
+            return subscriber;
+        }
+    }
+
+    /**
+     * Number of distinct queries currently in flight.
+     */
+    int inFlight() {
+        return inFlight.size();
+    }
+
+    private HashCode buildKey(final FullQuery.Request request) {
+        final Hasher hasher = HASH_FUNCTION.newHasher();
+        final ObjectHasher objectHasher = new ObjectHasher(hasher);
+        final QueryOptions options = request.options();
+
+        request.hashTo(objectHasher);
+        objectHasher.putField("tracing", options.tracing(), objectHasher.enumValue());
+        objectHasher.putField("timeout", options.timeout().map(Duration::toMilliseconds),
+            objectHasher.optional(objectHasher.longValue()));
+        return hasher.hash();
+    }
+
+    /**
+     * A single pending query, and the callers waiting for it.
+     */
+    private class InFlight implements FutureDone<QueryResult> {
+        private final List<ResolvableFuture<QueryResult>> subscribers = new ArrayList<>();
+
+        private AsyncFuture<QueryResult> shared;
+        private int active = 0;
+        private boolean done = false;
+
+        /**
+         * Attach a new caller.
+         *
+         * @return a future for the caller, or {@code null} if the query has already completed.
+         */
+        synchronized AsyncFuture<QueryResult> subscribe() {
+            if (done) {
+                return null;
+            }
+
+            final ResolvableFuture<QueryResult> subscriber = async.future();
+            subscribers.add(subscriber);
+            active++;
+            subscriber.onCancelled(this::unsubscribe);
+            return subscriber;
+        }
+
+        void attach(final AsyncFuture<QueryResult> shared) {
+            final boolean cancel;
+
+            synchronized (this) {
+                this.shared = shared;
+                cancel = active == 0 && !done;
+            }
+
+            if (cancel) {
+                shared.cancel();
+            }
+
+            shared.onDone(this);
+        }
+
+        @Override
+        public void resolved(final QueryResult result) {
+            for (final ResolvableFuture<QueryResult> subscriber : complete()) {
+                subscriber.resolve(result);
+            }
+        }
+
+        @Override
+        public void failed(final Throwable cause) {
+            for (final ResolvableFuture<QueryResult> subscriber : complete()) {
+                subscriber.fail(cause);
+            }
+        }
+
+        @Override
+        public void cancelled() {
+            for (final ResolvableFuture<QueryResult> subscriber : complete()) {
+                subscriber.cancel();
+            }
+        }
+
+        private synchronized List<ResolvableFuture<QueryResult>> complete() {
+            done = true;
+            final List<ResolvableFuture<QueryResult>> all = new ArrayList<>(subscribers);
+            subscribers.clear();
+            return all;
+        }
+
+        private void unsubscribe() {
+            final AsyncFuture<QueryResult> cancel;
+
+            synchronized (this) {
+                if (done) {
+                    return;
+                }
+
+                active--;
+
+                if (active > 0 || shared == null) {
+                    return;
+                }
+
+                done = true;
+                cancel = shared;
+            }
+
+            cancel.cancel();
+        }
+    }
+}
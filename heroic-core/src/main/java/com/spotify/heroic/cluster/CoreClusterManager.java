@@ -34,6 +34,7 @@ import com.spotify.heroic.statistics.QueryReporter;
 import eu.toolchain.async.AsyncFramework;
 import eu.toolchain.async.AsyncFuture;
 import eu.toolchain.async.LazyTransform;
+import eu.toolchain.async.StreamCollector;
 import eu.toolchain.async.Transform;
 import java.net.URI;
 import java.util.ArrayList;
@@ -45,8 +46,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
@@ -73,6 +79,22 @@ import lombok.extern.slf4j.Slf4j;
 public class CoreClusterManager implements ClusterManager, LifeCycles {
     public static final QueryTrace.Identifier LOCAL_IDENTIFIER =
         QueryTrace.Identifier.create("[local]");
+
+    /**
+     * Maximum number of nodes probed at the same time, during refresh and health checks.
+     */
+    static final int PROBE_PARALLELISM = 32;
+    /**
+     * Probes which take longer than this are cancelled and treated as failed.
+     */
+    static final long PROBE_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(10);
+    static final long HEALTH_CHECK_INTERVAL_MS = TimeUnit.SECONDS.toMillis(30);
+    /**
+     * Health check intervals are randomly spread by this fraction, to avoid checking in lockstep
+     * with other nodes.
+     */
+    static final double HEALTH_CHECK_JITTER = 0.2;
+
     private final AsyncFramework async;
     private final ClusterDiscovery discovery;
     private final NodeMetadata localMetadata;
@@ -91,7 +113,11 @@ public class CoreClusterManager implements ClusterManager, LifeCycles {
         new AtomicReference<>(Collections.emptyMap());
     final AtomicLong refreshId = new AtomicLong();
 
-    final Object updateRegistryLock = new Object();
+    /**
+     * Known nodes which failed a health check or reported changed metadata. These are probed
+     * again on the next refresh, all other known nodes are reused as-is.
+     */
+    final Set<URI> unhealthy = ConcurrentHashMap.newKeySet();
 
     @Inject
     public CoreClusterManager(
@@ -170,13 +196,7 @@ public class CoreClusterManager implements ClusterManager, LifeCycles {
      */
     @Override
     public List<ClusterNode> getNodes() {
-        final NodeRegistry registry = this.registry.get();
-
-        if (registry == null) {
-            throw new IllegalStateException("Registry not ready");
-        }
-
-        return registry.getEntries();
+        return readyRegistry().getEntries();
     }
 
     /**
@@ -196,7 +216,9 @@ public class CoreClusterManager implements ClusterManager, LifeCycles {
      * </p>
      * <p>
      * The sweep step takes the existing {@link #clients} map and compares it to the updated list of
-     * URIs.
+     * URIs. Known nodes are reused without being contacted, unless they have been marked as
+     * {@link #unhealthy}. New and unhealthy nodes are probed in parallel, with bounded
+     * parallelism and a timeout.
      * </p>
      * <p>
      * The log and prepare step logs information about which operations happened and prepares for
@@ -249,31 +271,26 @@ public class CoreClusterManager implements ClusterManager, LifeCycles {
         final Map<String, String> shard, final Predicate<ClusterNode> exclude,
         final Consumer<ClusterNode> registerNodeUse, final Function<ClusterNode.Group, T> fn
     ) {
-        synchronized (this.updateRegistryLock) {
-            final Optional<ClusterNode> n =
-                registry.get().getNodeInShardButNotWithId(shard, exclude);
-            if (!n.isPresent()) {
-                return Optional.empty();
-            }
-            ClusterNode node = n.get();
-
-            // Will actually use this node now
-            registerNodeUse.accept(node);
+        final Optional<ClusterNode> n = readyRegistry().getNodeInShardButNotWithId(shard, exclude);
 
-            return Optional.of(
-                new ClusterManager.NodeResult<T>(fn.apply(node.useDefaultGroup()), node));
+        if (!n.isPresent()) {
+            return Optional.empty();
         }
+
+        final ClusterNode node = n.get();
+
+        // Will actually use this node now
+        registerNodeUse.accept(node);
+
+        return Optional.of(
+            new ClusterManager.NodeResult<T>(fn.apply(node.useDefaultGroup()), node));
     }
 
     @Override
     public boolean hasNextButNotWithId(
         final Map<String, String> shard, final Predicate<ClusterNode> exclude
     ) {
-        synchronized (this.updateRegistryLock) {
-            final Optional<ClusterNode> n =
-                registry.get().getNodeInShardButNotWithId(shard, exclude);
-            return n.isPresent();
-        }
+        return readyRegistry().getNodeInShardButNotWithId(shard, exclude).isPresent();
     }
 
     /**
@@ -281,9 +298,21 @@ public class CoreClusterManager implements ClusterManager, LifeCycles {
      */
     @Override
     public List<ClusterNode> getNodesForShard(Map<String, String> shard) {
-        synchronized (this.updateRegistryLock) {
-            return registry.get().getNodesInShard(shard);
+        return readyRegistry().getNodesInShard(shard);
+    }
+
+    /**
+     * The currently published registry snapshot. Reading it does not lock, a concurrent refresh
+     * publishes a new snapshot instead of modifying this one.
+     */
+    private NodeRegistry readyRegistry() {
+        final NodeRegistry registry = this.registry.get();
+
+        if (registry == null) {
+            throw new IllegalStateException("Registry not ready");
         }
+
+        return registry;
     }
 
     @Override
@@ -299,6 +328,7 @@ public class CoreClusterManager implements ClusterManager, LifeCycles {
                 scheduler.periodically("cluster-refresh", 1, TimeUnit.MINUTES,
                     () -> refresh().get());
 
+                scheduleHealthCheck();
                 return null;
             });
         } else {
@@ -324,14 +354,78 @@ public class CoreClusterManager implements ClusterManager, LifeCycles {
             clients.values().stream().map(ClusterNode::close).collect(Collectors.toList()));
     }
 
-    Set<Map<String, String>> allShards() {
-        final NodeRegistry registry = this.registry.get();
+    /**
+     * Schedule the next health check, after a jittered interval.
+     */
+    void scheduleHealthCheck() {
+        final double jitter =
+            HEALTH_CHECK_JITTER * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+        final long delay = (long) (HEALTH_CHECK_INTERVAL_MS * (1 + jitter));
+
+        scheduler.schedule("cluster-health-check", delay, TimeUnit.MILLISECONDS, () -> {
+            if (clients.get() == null) {
+                /* shutting down */
+                return;
+            }
 
-        if (registry == null) {
-            throw new IllegalStateException("Registry not ready");
+            healthCheck().onFinished(this::scheduleHealthCheck);
+        });
+    }
+
+    /**
+     * Actively check all known nodes.
+     * <p>
+     * Nodes which do not respond in time, or which respond with different metadata, are marked as
+     * unhealthy and a refresh is triggered to replace them.
+     *
+     * @return a future indicating when the health check is finished
+     */
+    AsyncFuture<Void> healthCheck() {
+        final Map<URI, ClusterNode> clients = this.clients.get();
+
+        if (clients == null || clients.isEmpty()) {
+            return async.resolved();
         }
 
-        final Set<Map<String, String>> shards = registry.getShards();
+        final List<Callable<AsyncFuture<Boolean>>> checks = new ArrayList<>();
+
+        for (final Map.Entry<URI, ClusterNode> e : clients.entrySet()) {
+            final URI uri = e.getKey();
+            final ClusterNode node = e.getValue();
+
+            checks.add(() -> withTimeout(node.fetchMetadata())
+                .directTransform(m -> node.metadata().equals(m))
+                .catchFailed(error -> false)
+                .catchCancelled(ignore -> false)
+                .directTransform(healthy -> {
+                    if (!healthy) {
+                        log.warn("[health-check] {} is unhealthy", uri);
+                        unhealthy.add(uri);
+                    }
+
+                    return healthy;
+                }));
+        }
+
+        return async
+            .eventuallyCollect(checks, new CountUnhealthy(), PROBE_PARALLELISM)
+            .lazyTransform(count -> count > 0 ? refresh() : async.resolved());
+    }
+
+    /**
+     * Cancel the given probe if it has not completed within {@link #PROBE_TIMEOUT_MS}.
+     */
+    <T> AsyncFuture<T> withTimeout(final AsyncFuture<T> probe) {
+        if (!probe.isDone()) {
+            scheduler.schedule("cluster-probe-timeout", PROBE_TIMEOUT_MS, TimeUnit.MILLISECONDS,
+                probe::cancel);
+        }
+
+        return probe;
+    }
+
+    Set<Map<String, String>> allShards() {
+        final Set<Map<String, String>> shards = readyRegistry().getShards();
 
         /* Actual topology (shards) is detected based on the metadata coming from the nodes.
          * Expected topology is specified in the optional 'topology'. This specifies the minimum
@@ -373,7 +467,7 @@ public class CoreClusterManager implements ClusterManager, LifeCycles {
                 Optional.empty()));
         }
 
-        return protocol.connect(uri).<Update>lazyTransform(node -> {
+        return withTimeout(protocol.connect(uri)).<Update>lazyTransform(node -> {
             if (useLocal && localMetadata.getId().equals(node.metadata().getId())) {
                 log.info("{} using local instead of {} (closing old node)", id, node);
 
@@ -423,8 +517,9 @@ public class CoreClusterManager implements ClusterManager, LifeCycles {
         return uriLists -> {
             final List<URI> uris = ImmutableList.copyOf(Iterables.concat(uriLists));
 
-            final List<AsyncFuture<Update>> updated = new ArrayList<>();
-            final List<RemovedNode> removedNodes = new ArrayList<>();
+            final List<Update> reused = new ArrayList<>();
+            final List<Callable<AsyncFuture<Update>>> probes = new ArrayList<>();
+            final List<RemovedNode> removedNodes = Collections.synchronizedList(new ArrayList<>());
 
             final Map<URI, ClusterNode> oldClients = this.clients.get();
 
@@ -441,14 +536,23 @@ public class CoreClusterManager implements ClusterManager, LifeCycles {
 
                 if (node == null) {
                     /* first time URI has been seen, resolve new node */
-                    updated.add(createClusterNode(id, uri));
+                    probes.add(() -> createClusterNode(id, uri));
+                    continue;
+                }
+
+                /* nodes which passed their last health check are kept as they are, without
+                 * contacting them */
+                if (!unhealthy.contains(uri)) {
+                    reused.add(new SuccessfulUpdate(uri, false, node));
                     continue;
                 }
 
-                /* re-query metadata for nodes already known and make sure it matches.
+                /* re-query metadata for unhealthy nodes and make sure it matches.
                  * if it does not match, create a new cluster node and close the old one.
                  * otherwise, re-use the existing node */
-                updated.add(node.fetchMetadata().lazyTransform(m -> {
+                probes.add(() -> withTimeout(node.fetchMetadata()).lazyTransform(m -> {
+                    unhealthy.remove(uri);
+
                     if (!node.metadata().equals(m)) {
                         /* add to removedNodes list to make sure it is being closed */
                         removedNodes.add(new RemovedNode(uri, node));
@@ -456,7 +560,8 @@ public class CoreClusterManager implements ClusterManager, LifeCycles {
                     }
 
                     return async.resolved(new SuccessfulUpdate(uri, false, node));
-                }).catchFailed(Update.error(uri)).catchCancelled(Update.cancellation(uri)));
+                }).catchFailed(Update.error(uri, node)).catchCancelled(
+                    Update.cancellation(uri, node)));
             }
 
             /* all the nodes that have not been seen in the updates list of uris have been removed
@@ -469,9 +574,19 @@ public class CoreClusterManager implements ClusterManager, LifeCycles {
                 }
             }
 
-            return async
-                .collect(updated)
-                .lazyTransform(refreshLogAndPrepare(id, removedNodes, oldClients));
+            log.info("{} [sweep] reusing {} node(s), probing {} node(s)", id, reused.size(),
+                probes.size());
+
+            final AsyncFuture<Collection<Update>> updates;
+
+            if (probes.isEmpty()) {
+                updates = async.resolved(reused);
+            } else {
+                updates =
+                    async.eventuallyCollect(probes, new CollectUpdates(reused), PROBE_PARALLELISM);
+            }
+
+            return updates.lazyTransform(refreshLogAndPrepare(id, removedNodes, oldClients));
         };
     }
 
@@ -545,10 +660,8 @@ public class CoreClusterManager implements ClusterManager, LifeCycles {
         final List<ClusterNode> failedNodes
     ) {
         if (this.clients.compareAndSet(oldClients, newClients)) {
-            synchronized (this.updateRegistryLock) {
-                registry.getAndSet(
-                    new NodeRegistry(async, new ArrayList<>(okNodes), okNodes.size()));
-            }
+            registry.set(new NodeRegistry(async, new ArrayList<>(okNodes), okNodes.size()));
+            unhealthy.retainAll(newClients.keySet());
 
             // Close removed nodes
             final List<AsyncFuture<Void>> removals = new ArrayList<>();
@@ -597,6 +710,13 @@ public class CoreClusterManager implements ClusterManager, LifeCycles {
             return ignore -> new FailedUpdate(uri, new CancellationException(), Optional.empty());
         }
 
+        static Transform<Void, Update> cancellation(
+            final URI uri, final ClusterNode existingNode
+        ) {
+            return ignore -> new FailedUpdate(uri, new CancellationException(),
+                Optional.of(existingNode));
+        }
+
         /**
          * Handle the current update.
          *
@@ -661,6 +781,67 @@ public class CoreClusterManager implements ClusterManager, LifeCycles {
         }
     }
 
+    /**
+     * Collects the updates of all probes, in addition to the nodes which were reused.
+     * <p>
+     * Probes handle their own errors, so only unexpected failures end up here.
+     */
+    static class CollectUpdates implements StreamCollector<Update, Collection<Update>> {
+        private final ConcurrentLinkedQueue<Update> updates;
+
+        CollectUpdates(final List<Update> reused) {
+            this.updates = new ConcurrentLinkedQueue<>(reused);
+        }
+
+        @Override
+        public void resolved(final Update result) {
+            updates.add(result);
+        }
+
+        @Override
+        public void failed(final Throwable cause) {
+            log.error("probe failed unexpectedly", cause);
+        }
+
+        @Override
+        public void cancelled() {
+        }
+
+        @Override
+        public Collection<Update> end(final int resolved, final int failed, final int cancelled) {
+            return updates;
+        }
+    }
+
+    /**
+     * Counts the number of nodes which failed a health check.
+     */
+    static class CountUnhealthy implements StreamCollector<Boolean, Integer> {
+        private final AtomicInteger unhealthy = new AtomicInteger();
+
+        @Override
+        public void resolved(final Boolean healthy) {
+            if (!healthy) {
+                unhealthy.incrementAndGet();
+            }
+        }
+
+        @Override
+        public void failed(final Throwable cause) {
+            unhealthy.incrementAndGet();
+        }
+
+        @Override
+        public void cancelled() {
+            unhealthy.incrementAndGet();
+        }
+
+        @Override
+        public Integer end(final int resolved, final int failed, final int cancelled) {
+            return unhealthy.get();
+        }
+    }
+
     /**
      * A single removed node.
      */
@@ -22,43 +22,63 @@
 package com.spotify.heroic.cluster;
 
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.LinkedListMultimap;
-import com.google.common.collect.Lists;
-import com.google.common.collect.Multimap;
+import com.google.common.collect.ImmutableMap;
 import eu.toolchain.async.AsyncFramework;
-import java.util.Collection;
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.function.Predicate;
-import java.util.stream.Collectors;
-import lombok.Data;
-
-@Data
+import lombok.ToString;
+
+/**
+ * An immutable snapshot of the nodes in the cluster.
+ * <p>
+ * Snapshots are built off to the side when the cluster is refreshed, and published atomically.
+ * Nodes are grouped by shard up front so that selecting a node for a shard does not need to
+ * allocate or lock.
+ */
+@ToString(of = {"entries", "totalNodes"})
 public class NodeRegistry {
-    private static final Random random = new Random();
-
     private final AsyncFramework async;
     private final List<ClusterNode> entries;
     private final int totalNodes;
+    private final Map<Map<String, String>, ClusterNode[]> shards;
+
+    public NodeRegistry(
+        final AsyncFramework async, final List<ClusterNode> entries, final int totalNodes
+    ) {
+        this.async = async;
+        this.entries = ImmutableList.copyOf(entries);
+        this.totalNodes = totalNodes;
+        this.shards = buildShards(this.entries);
+    }
 
-    private Multimap<Map<String, String>, ClusterNode> buildShards(
-        List<ClusterNode> entries
+    private static Map<Map<String, String>, ClusterNode[]> buildShards(
+        final List<ClusterNode> entries
     ) {
-        final Multimap<Map<String, String>, ClusterNode> shards = LinkedListMultimap.create();
+        final Map<Map<String, String>, List<ClusterNode>> shards = new LinkedHashMap<>();
 
         for (final ClusterNode e : entries) {
-            shards.put(e.metadata().getTags(), e);
+            shards.computeIfAbsent(e.metadata().getTags(), k -> new ArrayList<>()).add(e);
         }
 
-        return shards;
+        final ImmutableMap.Builder<Map<String, String>, ClusterNode[]> builder =
+            ImmutableMap.builder();
+
+        for (final Map.Entry<Map<String, String>, List<ClusterNode>> e : shards.entrySet()) {
+            builder.put(e.getKey(), e.getValue().toArray(new ClusterNode[0]));
+        }
+
+        return builder.build();
     }
 
     public List<ClusterNode> getEntries() {
-        return ImmutableList.copyOf(entries);
+        return entries;
     }
 
     public int getOnlineNodes() {
@@ -70,37 +90,51 @@ public class NodeRegistry {
     }
 
     public Set<Map<String, String>> getShards() {
-        return buildShards(entries).keySet();
+        return shards.keySet();
     }
 
     public List<ClusterNode> getNodesInShard(final Map<String, String> shard) {
-        final Multimap<Map<String, String>, ClusterNode> shardToNode = buildShards(entries);
+        final ClusterNode[] nodes = shards.get(shard);
 
-        final Collection<ClusterNode> nodesInShard = shardToNode.get(shard);
-        final List<ClusterNode> result = Lists.newArrayList();
-        result.addAll(nodesInShard);
+        if (nodes == null) {
+            return new ArrayList<>();
+        }
 
-        return result;
+        return new ArrayList<>(Arrays.asList(nodes));
     }
 
+    /**
+     * Pick a random node in the given shard which is alive and not excluded.
+     * <p>
+     * Every eligible node is equally likely to be picked, using reservoir sampling over a single
+     * pass of the shard.
+     */
     public Optional<ClusterNode> getNodeInShardButNotWithId(
         final Map<String, String> shard, final Predicate<ClusterNode> exclude
     ) {
-        final Multimap<Map<String, String>, ClusterNode> shardToNode = buildShards(entries);
+        final ClusterNode[] nodes = shards.get(shard);
+
+        if (nodes == null || nodes.length == 0) {
+            return Optional.empty();
+        }
 
-        final Collection<ClusterNode> nodesInShard = shardToNode.get(shard);
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
 
-        final List<ClusterNode> randomizedList =
-            nodesInShard.stream().filter(ClusterNode::isAlive).collect(Collectors.toList());
-        Collections.shuffle(randomizedList, random);
+        ClusterNode picked = null;
+        int eligible = 0;
 
-        for (final ClusterNode n : randomizedList) {
-            if (exclude.test(n)) {
+        for (final ClusterNode n : nodes) {
+            if (!n.isAlive() || exclude.test(n)) {
                 continue;
             }
-            return Optional.of(n);
+
+            eligible++;
+
+            if (random.nextInt(eligible) == 0) {
+                picked = n;
+            }
         }
 
-        return Optional.empty();
+        return Optional.ofNullable(picked);
     }
 }
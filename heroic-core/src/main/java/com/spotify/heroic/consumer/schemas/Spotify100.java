@@ -21,6 +21,7 @@
 
 package com.spotify.heroic.consumer.schemas;
 
+import static io.opencensus.trace.AttributeValue.longAttributeValue;
 import static io.opencensus.trace.AttributeValue.stringAttributeValue;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
@@ -37,6 +38,7 @@ import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.node.JsonNodeType;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.databind.node.TreeTraversingParser;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
@@ -52,6 +54,7 @@ import com.spotify.heroic.metric.Point;
 import com.spotify.heroic.statistics.ConsumerReporter;
 import com.spotify.heroic.time.Clock;
 import dagger.Component;
+import eu.toolchain.async.AsyncFramework;
 import eu.toolchain.async.AsyncFuture;
 import io.opencensus.common.Scope;
 import io.opencensus.trace.Span;
@@ -59,6 +62,9 @@ import io.opencensus.trace.Status;
 import io.opencensus.trace.Tracer;
 import io.opencensus.trace.Tracing;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -140,13 +146,17 @@ public class Spotify100 implements ConsumerSchema {
     }
 
     @SchemaScope
-    public static class Consumer implements ConsumerSchema.Consumer {
+    public static class Consumer implements ConsumerSchema.BatchConsumer {
+        private final AsyncFramework async;
         private final Clock clock;
         private final IngestionGroup ingestion;
         private final ConsumerReporter reporter;
 
         @Inject
-        public Consumer(Clock clock, IngestionGroup ingestion, ConsumerReporter reporter) {
+        public Consumer(
+            AsyncFramework async, Clock clock, IngestionGroup ingestion, ConsumerReporter reporter
+        ) {
+            this.async = async;
             this.clock = clock;
             this.ingestion = ingestion;
             this.reporter = reporter;
@@ -154,58 +164,128 @@ public class Spotify100 implements ConsumerSchema {
 
         @Override
         public AsyncFuture<Void> consume(final byte[] message) throws ConsumerSchemaException {
-            final JsonNode tree;
-            final Span span = tracer.spanBuilder("ConsumerSchema.consume").startSpan();
+            return consume(() -> mapper.readTree(message));
+        }
+
+        @Override
+        public AsyncFuture<Void> consume(final ByteBuffer message)
+            throws ConsumerSchemaException {
+            return consume(() -> mapper.readTree(new ByteBufferBackedInputStream(message)));
+        }
+
+        /**
+         * Consume a batch of messages, with a single write for all points of the same series.
+         */
+        @Override
+        public List<AsyncFuture<Void>> consumeBatch(final List<ByteBuffer> messages) {
+            final Span span = tracer.spanBuilder("ConsumerSchema.consumeBatch").startSpan();
             span.putAttribute("schema", stringAttributeValue("Spotify100"));
+            span.putAttribute("size", longAttributeValue(messages.size()));
 
             try (Scope ws = tracer.withSpan(span)) {
-                try {
-                    tree = mapper.readTree(message);
-                } catch (final Exception e) {
-                    span.setStatus(Status.INVALID_ARGUMENT.withDescription(e.toString()));
-                    span.end();
-                    throw new ConsumerSchemaValidationException("Invalid metric", e);
-                }
+                final List<AsyncFuture<Void>> results = new ArrayList<>(messages.size());
+                final List<Series> series = new ArrayList<>(messages.size());
+                final Map<Series, List<Point>> points = new HashMap<>();
+
+                for (final ByteBuffer message : messages) {
+                    final Ingestion.Request request;
+
+                    try {
+                        request =
+                            parse(() -> mapper.readTree(new ByteBufferBackedInputStream(message)));
+                    } catch (final ConsumerSchemaValidationException e) {
+                        results.add(async.failed(e));
+                        series.add(null);
+                        continue;
+                    }
 
-                if (tree.getNodeType() != JsonNodeType.OBJECT) {
-                    span.setStatus(
-                        Status.INVALID_ARGUMENT.withDescription("Metric is not an object"));
-                    span.end();
-                    throw new ConsumerSchemaValidationException(
-                        "Expected object, but got: " + tree.getNodeType());
+                    results.add(null);
+                    series.add(request.getSeries());
+                    points
+                        .computeIfAbsent(request.getSeries(), s -> new ArrayList<>())
+                        .addAll(request.getData().getDataAs(Point.class));
                 }
 
-                final ObjectNode object = (ObjectNode) tree;
+                final Map<Series, AsyncFuture<Void>> writes = new HashMap<>();
 
-                final JsonNode versionNode = object.remove("version");
+                points.forEach((s, p) -> {
+                    p.sort(Comparator.comparingLong(Point::getTimestamp));
+                    writes.put(s, write(new Ingestion.Request(s, MetricCollection.points(p))));
+                });
 
-                if (versionNode == null) {
-                    span.setStatus(Status.INVALID_ARGUMENT.withDescription("Missing version"));
-                    span.end();
-                    throw new ConsumerSchemaValidationException(
-                        "Missing version in received object");
+                for (int i = 0; i < results.size(); i++) {
+                    if (results.get(i) == null) {
+                        results.set(i, writes.get(series.get(i)));
+                    }
                 }
 
-                final Version version;
+                async.collectAndDiscard(writes.values()).onFinished(span::end);
+                return results;
+            }
+        }
+
+        private AsyncFuture<Void> consume(final TreeSource source)
+            throws ConsumerSchemaException {
+            final Span span = tracer.spanBuilder("ConsumerSchema.consume").startSpan();
+            span.putAttribute("schema", stringAttributeValue("Spotify100"));
+
+            try (Scope ws = tracer.withSpan(span)) {
+                final Ingestion.Request request;
 
                 try {
-                    version = Version.parse(versionNode.asText());
-                } catch (final Exception e) {
-                    span.setStatus(Status.INVALID_ARGUMENT.withDescription("Bad version"));
-                    throw new ConsumerSchemaValidationException("Bad version: " + versionNode);
+                    request = parse(source);
+                } catch (final ConsumerSchemaValidationException e) {
+                    span.setStatus(Status.INVALID_ARGUMENT.withDescription(e.getMessage()));
+                    span.end();
+                    throw e;
                 }
 
-                if (version.getMajor() == 1) {
-                    return handleVersion1(tree).onFinished(span::end);
-                }
+                return write(request).onFinished(span::end);
+            }
+        }
+
+        /**
+         * Parse and validate a single message into the request to ingest it with.
+         */
+        private Ingestion.Request parse(final TreeSource source)
+            throws ConsumerSchemaValidationException {
+            final JsonNode tree;
+
+            try {
+                tree = source.read();
+            } catch (final Exception e) {
+                throw new ConsumerSchemaValidationException("Invalid metric", e);
+            }
+
+            if (tree.getNodeType() != JsonNodeType.OBJECT) {
+                throw new ConsumerSchemaValidationException(
+                    "Expected object, but got: " + tree.getNodeType());
+            }
 
-                span.setStatus(Status.INVALID_ARGUMENT.withDescription("Unsupported version"));
-                span.end();
-                throw new ConsumerSchemaValidationException("Unsupported version: " + version);
+            final ObjectNode object = (ObjectNode) tree;
+
+            final JsonNode versionNode = object.remove("version");
+
+            if (versionNode == null) {
+                throw new ConsumerSchemaValidationException("Missing version in received object");
+            }
+
+            final Version version;
+
+            try {
+                version = Version.parse(versionNode.asText());
+            } catch (final Exception e) {
+                throw new ConsumerSchemaValidationException("Bad version: " + versionNode);
+            }
+
+            if (version.getMajor() == 1) {
+                return parseVersion1(tree);
             }
+
+            throw new ConsumerSchemaValidationException("Unsupported version: " + version);
         }
 
-        private AsyncFuture<Void> handleVersion1(final JsonNode tree)
+        private Ingestion.Request parseVersion1(final JsonNode tree)
             throws ConsumerSchemaValidationException {
             final JsonMetric metric;
 
@@ -246,15 +326,23 @@ public class Spotify100 implements ConsumerSchema {
             final List<Point> points = ImmutableList.of(p);
 
             reporter.reportMessageDrift(clock.currentTimeMillis() - p.getTimestamp());
-            AsyncFuture<Ingestion> ingestionFuture =
-                ingestion.write(new Ingestion.Request(series, MetricCollection.points(points)));
+            return new Ingestion.Request(series, MetricCollection.points(points));
+        }
 
+        private AsyncFuture<Void> write(final Ingestion.Request request) {
             // Return Void future, to not leak unnecessary information from the backend but just
             // allow monitoring of when the consumption is done.
-            return ingestionFuture.directTransform(future -> null);
+            return ingestion.write(request).directTransform(future -> null);
         }
     }
 
+    /**
+     * Source of the JSON tree for a single message.
+     */
+    private interface TreeSource {
+        JsonNode read() throws IOException;
+    }
+
     @Override
     public Exposed setup(final ConsumerSchema.Depends depends) {
         return DaggerSpotify100_C.builder().depends(depends).build();
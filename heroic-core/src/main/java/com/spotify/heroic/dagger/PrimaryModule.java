@@ -126,6 +126,24 @@ public class PrimaryModule {
         return mapper;
     }
 
+    @Provides
+    @Named(HeroicMappers.APPLICATION_CBOR)
+    @PrimaryScope
+    ObjectMapper cborMapper(QueryParser parser, AggregationRegistry aggregation) {
+        final ObjectMapper m = HeroicMappers.cbor(parser);
+        m.registerModule(aggregation.module());
+        return m;
+    }
+
+    @Provides
+    @Named(HeroicMappers.APPLICATION_SMILE)
+    @PrimaryScope
+    ObjectMapper smileMapper(QueryParser parser, AggregationRegistry aggregation) {
+        final ObjectMapper m = HeroicMappers.smile(parser);
+        m.registerModule(aggregation.module());
+        return m;
+    }
+
     @Provides
     @PrimaryScope
     QueryParser queryParser(CoreQueryParser queryParser) {
@@ -32,6 +32,7 @@ import com.spotify.heroic.jetty.JettyServerConnector;
 import com.spotify.heroic.lifecycle.LifeCycleRegistry;
 import com.spotify.heroic.lifecycle.LifeCycles;
 import com.spotify.heroic.servlet.ShutdownFilter;
+import com.spotify.heroic.ws.ZstdEncoder;
 import eu.toolchain.async.AsyncFramework;
 import eu.toolchain.async.AsyncFuture;
 import lombok.ToString;
@@ -50,6 +51,7 @@ import org.eclipse.jetty.servlet.FilterHolder;
 import org.eclipse.jetty.servlet.ServletContextHandler;
 import org.eclipse.jetty.servlet.ServletHolder;
 import org.glassfish.jersey.server.ResourceConfig;
+import org.glassfish.jersey.server.filter.EncodingFilter;
 import org.glassfish.jersey.servlet.ServletContainer;
 
 import javax.inject.Inject;
@@ -271,6 +273,9 @@ public class HttpServer implements LifeCycles {
             count += resources.size();
         }
 
+        // Negotiated through Accept-Encoding, gzip is handled by the GzipHandler.
+        EncodingFilter.enableFor(config, ZstdEncoder.class);
+
         // Resources.
         if (enableCors) {
             config.register(
@@ -0,0 +1,366 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.http.query;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+import com.spotify.heroic.metric.CacheInfo;
+import com.spotify.heroic.metric.QueryError;
+import com.spotify.heroic.metric.QueryMetricsResponse;
+import com.spotify.heroic.metric.ShardedResultGroup;
+import eu.toolchain.async.AsyncFuture;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.core.StreamingOutput;
+import lombok.Data;
+
+/**
+ * Streams query responses as newline-delimited JSON.
+ * <p>
+ * Every query is written as a header frame, followed by one frame for each result group and
+ * finally a trailer frame with the range, statistics and errors of the query. Frames are queued
+ * by the query as its results arrive, and are written and flushed as soon as they are available,
+ * which causes the container to send the response using chunked transfer instead of buffering
+ * the complete document. When several queries share a stream their frames are interleaved, and
+ * each frame is tagged with the query it belongs to.
+ * <p>
+ * The number of queued groups is bounded, a query which produces groups faster than the client
+ * reads them is blocked until there is room. Once the stream is closed, because all queries are written, they
+ * timed out or the output failed, queries which are still running are cancelled.
+ * <p>
+ * Since groups are written one at a time, common tags and resource are accumulated while writing
+ * and are sent with the trailer.
+ */
+public class QueryMetricsStream implements StreamingOutput {
+    public static final String MEDIA_TYPE = "application/x-ndjson";
+
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private static final char FRAME_SEPARATOR = '\n';
+    /* how often a blocked producer checks whether the stream has been closed */
+    private static final long OFFER_INTERVAL_MS = 100L;
+
+    private final ObjectMapper mapper;
+    private final int queries;
+    private final long timeout;
+    private final TimeUnit unit;
+
+    private final BlockingQueue<Frame> frames = new LinkedBlockingQueue<>();
+    private final Semaphore room;
+
+    private final Object lock = new Object();
+    private final List<AsyncFuture<?>> running = new ArrayList<>();
+    private volatile boolean closed = false;
+
+    public QueryMetricsStream(
+        final ObjectMapper mapper, final int queries, final long timeout, final TimeUnit unit
+    ) {
+        this(mapper, queries, timeout, unit, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param queries number of queries that will be completed or failed on this stream
+     * @param timeout how long to wait for all queries to finish once writing has started, and
+     * how long a query waits for room in the queue
+     * @param capacity number of groups which can be queued before queries are blocked
+     */
+    public QueryMetricsStream(
+        final ObjectMapper mapper, final int queries, final long timeout, final TimeUnit unit,
+        final int capacity
+    ) {
+        this.mapper = mapper;
+        this.queries = queries;
+        this.timeout = timeout;
+        this.unit = unit;
+        this.room = new Semaphore(capacity);
+    }
+
+    /**
+     * Cancel the given query if the stream is closed before it has finished.
+     */
+    public void bind(final AsyncFuture<?> query) {
+        synchronized (lock) {
+            if (!closed) {
+                running.add(query);
+                query.onFinished(() -> {
+                    synchronized (lock) {
+                        running.remove(query);
+                    }
+                });
+                return;
+            }
+        }
+
+        query.cancel();
+    }
+
+    public void header(final Optional<String> query, final UUID queryId) {
+        add(new Header(query, queryId));
+    }
+
+    /**
+     * Queue a group, waiting for room if too many groups are queued. The stream is closed if there
+     * is no room before the timeout.
+     */
+    public void group(final Optional<String> query, final ShardedResultGroup group) {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+        try {
+            while (!closed) {
+                final long left = deadline - System.nanoTime();
+
+                if (left <= 0) {
+                    close();
+                    return;
+                }
+
+                if (room.tryAcquire(Math.min(left, TimeUnit.MILLISECONDS.toNanos(
+                    OFFER_INTERVAL_MS)), TimeUnit.NANOSECONDS)) {
+                    add(new Group(query, group));
+                    return;
+                }
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+        }
+    }
+
+    /**
+     * Complete a query, the groups of the response are expected to already have been streamed.
+     */
+    public void complete(final Optional<String> query, final QueryMetricsResponse response) {
+        add(new Trailer(query, Optional.of(response), Optional.empty()));
+    }
+
+    public void fail(final Optional<String> query, final Throwable error) {
+        add(new Trailer(query, Optional.empty(), Optional.of(error.toString())));
+    }
+
+    /**
+     * Queue a frame, frames are dropped once the stream is closed.
+     */
+    private void add(final Frame frame) {
+        if (!closed) {
+            frames.add(frame);
+        }
+    }
+
+    /**
+     * Close the stream, dropping queued frames and cancelling the queries which are still running.
+     */
+    private void close() {
+        final List<AsyncFuture<?>> cancelled;
+
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+
+            closed = true;
+            cancelled = ImmutableList.copyOf(running);
+            running.clear();
+        }
+
+        frames.clear();
+        cancelled.forEach(AsyncFuture::cancel);
+    }
+
+    @Override
+    public void write(final OutputStream output) throws IOException {
+        final JsonGenerator g = mapper.getFactory().createGenerator(output);
+        g.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        // frames are separated by newlines, not by the default root value separator
+        g.setRootValueSeparator(null);
+
+        final Map<Optional<String>, Common> open = new HashMap<>();
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+        int remaining = queries;
+
+        try {
+            while (remaining > 0) {
+                final Frame frame;
+
+                try {
+                    frame = frames.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("interrupted while waiting for results");
+                }
+
+                if (frame == null) {
+                    // queries which haven't finished in time are failed, so that clients can tell
+                    // an incomplete response from a complete one
+                    for (final Optional<String> query : ImmutableList.copyOf(open.keySet())) {
+                        writeTrailer(g, new Trailer(query, Optional.empty(),
+                            Optional.of("Query timed out")), open);
+                    }
+
+                    break;
+                }
+
+                if (frame instanceof Header) {
+                    open.put(frame.getQuery(), new Common());
+                    writeHeader(g, (Header) frame);
+                } else if (frame instanceof Group) {
+                    room.release();
+                    writeGroup(g, (Group) frame, open);
+                } else {
+                    writeTrailer(g, (Trailer) frame, open);
+                    remaining--;
+                }
+
+                g.flush();
+            }
+        } finally {
+            try {
+                g.close();
+            } finally {
+                close();
+            }
+        }
+    }
+
+    private void writeHeader(final JsonGenerator g, final Header header) throws IOException {
+        startFrame(g, "header", header.getQuery());
+        g.writeObjectField("queryId", header.getQueryId());
+        endFrame(g);
+    }
+
+    private void writeGroup(
+        final JsonGenerator g, final Group frame, final Map<Optional<String>, Common> open
+    ) throws IOException {
+        final ShardedResultGroup group = frame.getGroup();
+        final Common common = open.computeIfAbsent(frame.getQuery(), query -> new Common());
+
+        common.tags.add(group);
+        common.resource.add(group);
+
+        startFrame(g, "group", frame.getQuery());
+        QueryMetricsResponse.Serializer.serializeGroupFields(g, group);
+        endFrame(g);
+    }
+
+    private void writeTrailer(
+        final JsonGenerator g, final Trailer trailer, final Map<Optional<String>, Common> open
+    ) throws IOException {
+        final Common common = Optional
+            .ofNullable(open.remove(trailer.getQuery()))
+            .orElseGet(Common::new);
+
+        startFrame(g, "trailer", trailer.getQuery());
+
+        if (trailer.getResponse().isPresent()) {
+            final QueryMetricsResponse response = trailer.getResponse().get();
+
+            g.writeObjectField("range", response.getRange());
+            g.writeObjectField("trace", response.getTrace());
+            g.writeObjectField("limits", response.getLimits());
+            g.writeBooleanField("cached",
+                response.getCache().map(CacheInfo::isCached).orElse(false));
+            g.writeObjectField("cache", response.getCache());
+        }
+
+        g.writeFieldName("commonTags");
+        QueryMetricsResponse.Serializer.serializeCommonTags(g, common.tags.get());
+
+        g.writeFieldName("commonResource");
+        QueryMetricsResponse.Serializer.serializeCommonTags(g, common.resource.get());
+
+        if (trailer.getResponse().isPresent()) {
+            final QueryMetricsResponse response = trailer.getResponse().get();
+
+            g.writeObjectField("preAggregationSampleSize",
+                response.getPreAggregationSampleSize());
+
+            g.writeFieldName("errors");
+            QueryMetricsResponse.Serializer.serializeErrors(g, response.getErrors());
+        } else {
+            g.writeFieldName("errors");
+            QueryMetricsResponse.Serializer.serializeErrors(g,
+                ImmutableList.of(QueryError.fromMessage(trailer.getError().orElse(""))));
+        }
+
+        endFrame(g);
+    }
+
+    private void startFrame(final JsonGenerator g, final String frame, final Optional<String> query)
+        throws IOException {
+        g.writeStartObject();
+        g.writeStringField("frame", frame);
+
+        if (query.isPresent()) {
+            g.writeStringField("query", query.get());
+        }
+    }
+
+    private void endFrame(final JsonGenerator g) throws IOException {
+        g.writeEndObject();
+        g.writeRaw(FRAME_SEPARATOR);
+    }
+
+    /**
+     * Common tags and resource of the groups written so far for a query.
+     */
+    private static class Common {
+        private final QueryMetricsResponse.CommonAccumulator tags =
+            QueryMetricsResponse.CommonAccumulator.tags();
+        private final QueryMetricsResponse.CommonAccumulator resource =
+            QueryMetricsResponse.CommonAccumulator.resource();
+    }
+
+    interface Frame {
+        Optional<String> getQuery();
+    }
+
+    @Data
+    static class Header implements Frame {
+        private final Optional<String> query;
+        private final UUID queryId;
+    }
+
+    @Data
+    static class Group implements Frame {
+        private final Optional<String> query;
+        private final ShardedResultGroup group;
+    }
+
+    @Data
+    static class Trailer implements Frame {
+        private final Optional<String> query;
+        private final Optional<QueryMetricsResponse> response;
+        private final Optional<String> error;
+    }
+}
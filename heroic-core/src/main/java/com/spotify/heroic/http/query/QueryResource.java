@@ -21,7 +21,11 @@
 
 package com.spotify.heroic.http.query;
 
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.ImmutableMap;
+import com.spotify.heroic.HeroicMappers;
 import com.spotify.heroic.Query;
 import com.spotify.heroic.QueryManager;
 import com.spotify.heroic.common.JavaxRestFramework;
@@ -33,8 +37,10 @@ import com.spotify.heroic.querylogging.HttpContext;
 import com.spotify.heroic.querylogging.QueryContext;
 import com.spotify.heroic.querylogging.QueryLogger;
 import com.spotify.heroic.querylogging.QueryLoggerFactory;
+import com.spotify.heroic.ws.ArrowMessageBodyWriter;
 import eu.toolchain.async.AsyncFramework;
 import eu.toolchain.async.AsyncFuture;
+import eu.toolchain.async.FutureDone;
 import io.opencensus.trace.Span;
 import io.opencensus.trace.Tracer;
 import io.opencensus.trace.Tracing;
@@ -42,8 +48,9 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CancellationException;
 import javax.inject.Inject;
+import javax.inject.Named;
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.POST;
@@ -53,7 +60,9 @@ import javax.ws.rs.QueryParam;
 import javax.ws.rs.container.AsyncResponse;
 import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 import org.apache.commons.lang3.tuple.Triple;
 
 @Path("query")
@@ -64,23 +73,30 @@ public class QueryResource {
     private final QueryManager query;
     private final AsyncFramework async;
     private final QueryLogger queryLogger;
+    private final ObjectMapper mapper;
     private static final Tracer tracer = Tracing.getTracer();
 
 
     @Inject
     public QueryResource(
         final JavaxRestFramework httpAsync, final QueryManager query, final AsyncFramework async,
-        final QueryLoggerFactory queryLoggerFactory
+        final QueryLoggerFactory queryLoggerFactory,
+        @Named(MediaType.APPLICATION_JSON) final ObjectMapper mapper
     ) {
         this.httpAsync = httpAsync;
         this.query = query;
         this.async = async;
         this.queryLogger = queryLoggerFactory.create("QueryResource");
+        this.mapper = mapper;
     }
 
     @POST
     @Path("metrics")
     @Consumes(MediaType.TEXT_PLAIN)
+    @Produces({
+        MediaType.APPLICATION_JSON, QueryMetricsStream.MEDIA_TYPE, HeroicMappers.APPLICATION_CBOR,
+        HeroicMappers.APPLICATION_SMILE, ArrowMessageBodyWriter.MEDIA_TYPE
+    })
     public void metricsText(
         @Suspended final AsyncResponse response, @QueryParam("group") String group,
         @Context final HttpServletRequest servletReq, final String query
@@ -92,14 +108,24 @@ public class QueryResource {
         final Query q = this.query.newQueryFromString(query).build();
 
         final QueryManager.Group g = this.query.useOptionalGroup(Optional.ofNullable(group));
-        final AsyncFuture<QueryResult> callback = g.query(q, queryContext);
 
-        bindMetricsResponse(response, callback, queryContext);
+        if (isStreaming(servletReq)) {
+            final QueryMetricsStream stream = new QueryMetricsStream(mapper, 1, 300, SECONDS);
+            streamQuery(stream, Optional.empty(), g, q, queryContext);
+            response.resume(Response.ok(stream).type(QueryMetricsStream.MEDIA_TYPE).build());
+            return;
+        }
+
+        bindMetricsResponse(response, g.query(q, queryContext), queryContext);
     }
 
     @POST
     @Path("metrics")
     @Consumes(MediaType.APPLICATION_JSON)
+    @Produces({
+        MediaType.APPLICATION_JSON, QueryMetricsStream.MEDIA_TYPE, HeroicMappers.APPLICATION_CBOR,
+        HeroicMappers.APPLICATION_SMILE, ArrowMessageBodyWriter.MEDIA_TYPE
+    })
     public void metrics(
         @Suspended final AsyncResponse response, @QueryParam("group") String group,
         @Context final HttpServletRequest servletReq, final QueryMetrics query
@@ -112,13 +138,23 @@ public class QueryResource {
         final Query q = query.toQueryBuilder(this.query::newQueryFromString).build();
 
         final QueryManager.Group g = this.query.useOptionalGroup(Optional.ofNullable(group));
-        final AsyncFuture<QueryResult> callback = g.query(q, queryContext);
 
-        bindMetricsResponse(response, callback, queryContext);
+        if (isStreaming(servletReq)) {
+            final QueryMetricsStream stream = new QueryMetricsStream(mapper, 1, 300, SECONDS);
+            streamQuery(stream, Optional.empty(), g, q, queryContext);
+            response.resume(Response.ok(stream).type(QueryMetricsStream.MEDIA_TYPE).build());
+            return;
+        }
+
+        bindMetricsResponse(response, g.query(q, queryContext), queryContext);
     }
 
     @POST
     @Path("batch")
+    @Produces({
+        MediaType.APPLICATION_JSON, QueryMetricsStream.MEDIA_TYPE, HeroicMappers.APPLICATION_CBOR,
+        HeroicMappers.APPLICATION_SMILE
+    })
     public void metrics(
         @Suspended final AsyncResponse response, @QueryParam("backend") String group,
         @Context final HttpServletRequest servletReq, final QueryBatch query
@@ -126,6 +162,11 @@ public class QueryResource {
         final HttpContext httpContext = CoreHttpContextFactory.create(servletReq);
         final QueryManager.Group g = this.query.useOptionalGroup(Optional.ofNullable(group));
 
+        if (isStreaming(servletReq)) {
+            streamBatch(response, g, httpContext, query);
+            return;
+        }
+
         final List<AsyncFuture<Triple<String, QueryContext, QueryResult>>> futures =
             new ArrayList<>();
 
@@ -156,7 +197,7 @@ public class QueryResource {
             }
         });
 
-        final AsyncFuture<QueryBatchResponse> future =
+        final AsyncFuture<Map<String, QueryMetricsResponse>> future =
             async.collect(futures).directTransform(entries -> {
                 final ImmutableMap.Builder<String, QueryMetricsResponse> results =
                     ImmutableMap.builder();
@@ -164,38 +205,109 @@ public class QueryResource {
                 for (final Triple<String, QueryContext, QueryResult> e : entries) {
                     final String queryKey = e.getLeft();
                     final QueryContext queryContext = e.getMiddle();
-                    final QueryResult r = e.getRight();
-                    final QueryMetricsResponse qmr =
-                        new QueryMetricsResponse(queryContext.queryId(), r.getRange(),
-                            r.getGroups(), r.getErrors(), r.getTrace(), r.getLimits(),
-                            Optional.of(r.getPreAggregationSampleSize()), r.getCache());
+                    final QueryMetricsResponse qmr = toResponse(queryContext, e.getRight());
 
                     queryLogger.logFinalResponse(queryContext, qmr);
 
                     results.put(queryKey, qmr);
                 }
 
-                return new QueryBatchResponse(results.build());
+                return results.build();
             });
 
-        response.setTimeout(300, TimeUnit.SECONDS);
+        response.setTimeout(300, SECONDS);
+        httpAsync.bind(response, future, QueryBatchResponse::new);
+    }
+
+    private void streamBatch(
+        final AsyncResponse response, final QueryManager.Group g, final HttpContext httpContext,
+        final QueryBatch query
+    ) {
+        final Map<String, QueryMetrics> queries = query.getQueries().orElseGet(ImmutableMap::of);
+        final QueryMetricsStream stream =
+            new QueryMetricsStream(mapper, queries.size(), 300, SECONDS);
 
-        httpAsync.bind(response, future);
+        final Span currentSpan = tracer.getCurrentSpan();
+
+        for (final Map.Entry<String, QueryMetrics> e : queries.entrySet()) {
+            final Span span = tracer
+                .spanBuilderWithExplicitParent("batch.query", currentSpan)
+                .startSpan();
+
+            final QueryMetrics qm = e.getValue();
+            final Query q = qm
+                .toQueryBuilder(this.query::newQueryFromString)
+                .rangeIfAbsent(query.getRange())
+                .build();
+
+            final QueryContext queryContext = QueryContext.create(qm.clientContext(), httpContext);
+            queryLogger.logHttpQueryJson(queryContext, qm);
+
+            streamQuery(stream, Optional.of(e.getKey()), g, q, queryContext).onFinished(span::end);
+        }
+
+        response.resume(Response.ok(stream).type(QueryMetricsStream.MEDIA_TYPE).build());
+    }
+
+    /**
+     * Run a query which writes its groups to the given stream as soon as they are available.
+     */
+    private AsyncFuture<QueryResult> streamQuery(
+        final QueryMetricsStream stream, final Optional<String> key, final QueryManager.Group g,
+        final Query q, final QueryContext queryContext
+    ) {
+        stream.header(key, queryContext.queryId());
+
+        final AsyncFuture<QueryResult> future =
+            g.query(q, queryContext, group -> stream.group(key, group));
+        stream.bind(future);
+
+        return future.onDone(new FutureDone<QueryResult>() {
+            @Override
+            public void failed(final Throwable cause) {
+                stream.fail(key, cause);
+            }
+
+            @Override
+            public void resolved(final QueryResult result) {
+                final QueryMetricsResponse qmr = toResponse(queryContext, result);
+                queryLogger.logFinalResponse(queryContext, qmr);
+                stream.complete(key, qmr);
+            }
+
+            @Override
+            public void cancelled() {
+                stream.fail(key, new CancellationException("Query was cancelled"));
+            }
+        });
     }
 
     private void bindMetricsResponse(
         final AsyncResponse response, final AsyncFuture<QueryResult> callback,
         final QueryContext queryContext
     ) {
-        response.setTimeout(300, TimeUnit.SECONDS);
+        response.setTimeout(300, SECONDS);
 
         httpAsync.bind(response, callback, r -> {
-            final QueryMetricsResponse qmr =
-                new QueryMetricsResponse(queryContext.queryId(), r.getRange(), r.getGroups(),
-                    r.getErrors(), r.getTrace(), r.getLimits(),
-                    Optional.of(r.getPreAggregationSampleSize()), r.getCache());
+            final QueryMetricsResponse qmr = toResponse(queryContext, r);
             queryLogger.logFinalResponse(queryContext, qmr);
             return qmr;
         });
     }
+
+    private static QueryMetricsResponse toResponse(
+        final QueryContext queryContext, final QueryResult r
+    ) {
+        return new QueryMetricsResponse(queryContext.queryId(), r.getRange(), r.getGroups(),
+            r.getErrors(), r.getTrace(), r.getLimits(),
+            Optional.of(r.getPreAggregationSampleSize()), r.getCache());
+    }
+
+    /**
+     * Responses are streamed as newline-delimited JSON if the client accepts it.
+     */
+    private boolean isStreaming(final HttpServletRequest servletReq) {
+        final String accept = servletReq.getHeader(HttpHeaders.ACCEPT);
+        return accept != null && accept.contains(QueryMetricsStream.MEDIA_TYPE);
+    }
 }
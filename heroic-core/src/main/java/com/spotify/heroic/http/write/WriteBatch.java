@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.http.write;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.google.common.collect.ImmutableList;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.ExtensionRegistryLite;
+import com.google.protobuf.WireFormat;
+import com.spotify.heroic.common.Series;
+import com.spotify.heroic.ingestion.Ingestion;
+import com.spotify.heroic.metric.Metric;
+import com.spotify.heroic.metric.MetricCollection;
+import com.spotify.heroic.metric.MetricType;
+import com.spotify.heroic.metric.Point;
+import com.spotify.proto.Spotify100;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.xerial.snappy.Snappy;
+
+/**
+ * A batch of metrics being written, grouped by series and metric type.
+ * <p>
+ * Points for the same series are merged into a single ingestion request, regardless of where in
+ * the batch they appear. Items which could not be decoded are kept as errors, so that they can be
+ * reported back to the client without rejecting the rest of the batch.
+ */
+public class WriteBatch {
+    private final Map<Series, Map<MetricType, List<Metric>>> series = new LinkedHashMap<>();
+    private final List<WriteBatchResponse.Error> errors = new ArrayList<>();
+
+    private int size = 0;
+
+    /**
+     * Decode a snappy compressed batch using the spotify_100.proto {@code Batch} message.
+     * <p>
+     * Metrics are read one at a time from the uncompressed buffer and added directly to the
+     * batch, without first materializing the protobuf {@code Batch}.
+     */
+    public static WriteBatch fromSpotify100Proto(final byte[] compressed) throws IOException {
+        final WriteBatch batch = new WriteBatch();
+        final CodedInputStream input = CodedInputStream.newInstance(Snappy.uncompress(compressed));
+
+        while (true) {
+            final int tag = input.readTag();
+
+            if (tag == 0) {
+                break;
+            }
+
+            if (WireFormat.getTagFieldNumber(tag) != Spotify100.Batch.METRIC_FIELD_NUMBER) {
+                input.skipField(tag);
+                continue;
+            }
+
+            final Spotify100.Metric metric = input.readMessage(Spotify100.Metric.parser(),
+                ExtensionRegistryLite.getEmptyRegistry());
+
+            batch.addSpotify100(metric);
+        }
+
+        return batch;
+    }
+
+    /**
+     * Decode a stream of newline-delimited {@link WriteMetricRequest}s.
+     * <p>
+     * Every line is decoded separately, so that a malformed line is reported as an error of the
+     * batch instead of rejecting the lines around it.
+     *
+     * @throws IOException if the stream could not be read
+     */
+    public static WriteBatch fromJson(final ObjectReader reader, final InputStream input)
+        throws IOException {
+        final WriteBatch batch = new WriteBatch();
+        final ObjectReader requestReader = reader.forType(WriteMetricRequest.class);
+
+        try (final BufferedReader lines =
+                 new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            int number = 0;
+            String line;
+
+            while ((line = lines.readLine()) != null) {
+                number++;
+
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+
+                final WriteMetricRequest request;
+
+                try {
+                    request = requestReader.readValue(line);
+                } catch (final JsonProcessingException e) {
+                    batch.error(Series.empty(),
+                        "line " + number + ": " + e.getOriginalMessage());
+                    continue;
+                }
+
+                if (!request.getSeries().isPresent()) {
+                    batch.error(Series.empty(),
+                        "line " + number + ": series: field must be defined");
+                    continue;
+                }
+
+                if (request.getData().isPresent()) {
+                    batch.add(request.getSeries().get(), request.getData().get());
+                }
+            }
+        }
+
+        return batch;
+    }
+
+    public void add(final Series s, final MetricCollection data) {
+        metrics(s, data.getType()).addAll(data.data());
+        size += data.size();
+    }
+
+    public void add(final Series s, final Point point) {
+        metrics(s, MetricType.POINT).add(point);
+        size += 1;
+    }
+
+    public void error(final Series s, final String message) {
+        errors.add(new WriteBatchResponse.Error(s, message));
+    }
+
+    /**
+     * The number of metrics in the batch.
+     */
+    public int size() {
+        return size;
+    }
+
+    public List<WriteBatchResponse.Error> errors() {
+        return errors;
+    }
+
+    /**
+     * Build one ingestion request for every distinct series and metric type in the batch.
+     */
+    public List<Ingestion.Request> requests() {
+        final ImmutableList.Builder<Ingestion.Request> requests = ImmutableList.builder();
+
+        for (final Map.Entry<Series, Map<MetricType, List<Metric>>> e : series.entrySet()) {
+            for (final Map.Entry<MetricType, List<Metric>> m : e.getValue().entrySet()) {
+                final List<Metric> metrics = m.getValue();
+                metrics.sort(Metric.comparator());
+                requests.add(
+                    new Ingestion.Request(e.getKey(), MetricCollection.build(m.getKey(), metrics)));
+            }
+        }
+
+        return requests.build();
+    }
+
+    private void addSpotify100(final Spotify100.Metric metric) {
+        final Series s = Series.of(metric.getKey(), metric.getTagsMap(), metric.getResourceMap());
+
+        if (metric.getTime() <= 0) {
+            error(s, "time: field must be a positive number");
+            return;
+        }
+
+        if (metric.getKey().isEmpty()) {
+            error(s, "key: field must be defined");
+            return;
+        }
+
+        add(s, new Point(metric.getTime(), metric.getValue()));
+    }
+
+    private List<Metric> metrics(final Series s, final MetricType type) {
+        return series
+            .computeIfAbsent(s, k -> new EnumMap<>(MetricType.class))
+            .computeIfAbsent(type, k -> new ArrayList<>());
+    }
+}
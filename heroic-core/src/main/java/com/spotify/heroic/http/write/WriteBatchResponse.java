@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.http.write;
+
+import com.google.common.collect.ImmutableList;
+import com.spotify.heroic.common.Series;
+import com.spotify.heroic.ingestion.Ingestion;
+import com.spotify.heroic.metric.RequestError;
+import eu.toolchain.async.StreamCollector;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import lombok.Data;
+
+@Data
+public class WriteBatchResponse {
+    /**
+     * Number of distinct series and metric type combinations that were submitted.
+     */
+    private final int requests;
+
+    /**
+     * Number of metrics that were submitted.
+     */
+    private final int metrics;
+
+    /**
+     * Items in the batch that could not be decoded or written.
+     */
+    private final List<Error> failed;
+
+    /**
+     * Errors reported by the backends for the items that were written.
+     */
+    private final List<RequestError> errors;
+
+    /**
+     * Collect the outcome of every request in a batch into a single response.
+     *
+     * @param batch The batch being written, its decoding errors are included in the response.
+     */
+    public static StreamCollector<Item, WriteBatchResponse> collector(final WriteBatch batch) {
+        final ConcurrentLinkedQueue<Error> failed = new ConcurrentLinkedQueue<>(batch.errors());
+        final ConcurrentLinkedQueue<RequestError> errors = new ConcurrentLinkedQueue<>();
+
+        return new StreamCollector<Item, WriteBatchResponse>() {
+            @Override
+            public void resolved(final Item result) throws Exception {
+                result.getFailure().ifPresent(failed::add);
+                errors.addAll(result.getIngestion().getErrors());
+            }
+
+            @Override
+            public void failed(final Throwable cause) throws Exception {
+                failed.add(new Error(Series.empty(), cause.getMessage()));
+            }
+
+            @Override
+            public void cancelled() throws Exception {
+            }
+
+            @Override
+            public WriteBatchResponse end(final int resolved, final int failedCount,
+                final int cancelled
+            ) throws Exception {
+                return new WriteBatchResponse(resolved + failedCount + cancelled, batch.size(),
+                    ImmutableList.copyOf(failed), ImmutableList.copyOf(errors));
+            }
+        };
+    }
+
+    @Data
+    public static class Error {
+        private final Series series;
+        private final String error;
+    }
+
+    /**
+     * The outcome of writing a single request.
+     */
+    @Data
+    public static class Item {
+        private final Ingestion ingestion;
+        private final Optional<Error> failure;
+
+        public static Item ingested(final Ingestion ingestion) {
+            return new Item(ingestion, Optional.empty());
+        }
+
+        public static Item failed(final Series series, final Throwable cause) {
+            return new Item(Ingestion.EMPTY, Optional.of(new Error(series, cause.getMessage())));
+        }
+    }
+}
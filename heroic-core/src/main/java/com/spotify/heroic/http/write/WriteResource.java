@@ -21,13 +21,21 @@
 
 package com.spotify.heroic.http.write;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.spotify.heroic.common.JavaxRestFramework;
 import com.spotify.heroic.ingestion.Ingestion;
 import com.spotify.heroic.ingestion.IngestionGroup;
 import com.spotify.heroic.ingestion.IngestionManager;
 import eu.toolchain.async.AsyncFramework;
 import eu.toolchain.async.AsyncFuture;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
 import javax.inject.Inject;
+import javax.inject.Named;
+import javax.ws.rs.BadRequestException;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
@@ -41,18 +49,29 @@ import javax.ws.rs.core.MediaType;
 @Produces(MediaType.APPLICATION_JSON)
 @Consumes(MediaType.APPLICATION_JSON)
 public class WriteResource {
+    public static final String SPOTIFY100_PROTO = "application/x-protobuf";
+    public static final String NDJSON = "application/x-ndjson";
+
+    /**
+     * Maximum number of concurrent ingestion requests for a single batch.
+     */
+    public static final int BATCH_PARALLELISM = 32;
+
     private final AsyncFramework async;
     private final IngestionManager ingestion;
     private final JavaxRestFramework httpAsync;
+    private final ObjectMapper mapper;
 
     @Inject
     public WriteResource(
         final AsyncFramework async, final IngestionManager ingestion,
-        final JavaxRestFramework httpAsync
+        final JavaxRestFramework httpAsync,
+        @Named(MediaType.APPLICATION_JSON) final ObjectMapper mapper
     ) {
         this.async = async;
         this.ingestion = ingestion;
         this.httpAsync = httpAsync;
+        this.mapper = mapper;
     }
 
     @POST
@@ -69,4 +88,67 @@ public class WriteResource {
 
         httpAsync.bind(response, future);
     }
+
+    /**
+     * Write a snappy compressed batch of metrics, encoded with the spotify_100.proto
+     * {@code Batch} message.
+     */
+    @POST
+    @Path("batch")
+    @Consumes(SPOTIFY100_PROTO)
+    public void batchProto(
+        @Suspended final AsyncResponse response, @QueryParam("group") String group,
+        final byte[] body
+    ) throws Exception {
+        final WriteBatch batch;
+
+        try {
+            batch = WriteBatch.fromSpotify100Proto(body);
+        } catch (final IOException e) {
+            throw new BadRequestException("Invalid batch of metrics: " + e.getMessage());
+        }
+
+        bindBatch(response, group, batch);
+    }
+
+    /**
+     * Write a batch of newline-delimited write requests.
+     * <p>
+     * Lines which can't be decoded are reported in the response, the remaining lines are written.
+     */
+    @POST
+    @Path("batch")
+    @Consumes(NDJSON)
+    public void batchJson(
+        @Suspended final AsyncResponse response, @QueryParam("group") String group,
+        final InputStream body
+    ) throws Exception {
+        final WriteBatch batch;
+
+        try {
+            batch = WriteBatch.fromJson(mapper.reader(), body);
+        } catch (final IOException e) {
+            throw new BadRequestException("Invalid batch of metrics: " + e.getMessage());
+        }
+
+        bindBatch(response, group, batch);
+    }
+
+    private void bindBatch(
+        final AsyncResponse response, final String group, final WriteBatch batch
+    ) throws Exception {
+        final IngestionGroup ingestionGroup = ingestion.useGroup(group);
+
+        final List<Callable<AsyncFuture<WriteBatchResponse.Item>>> writes = new ArrayList<>();
+
+        for (final Ingestion.Request request : batch.requests()) {
+            writes.add(() -> ingestionGroup
+                .write(request)
+                .directTransform(WriteBatchResponse.Item::ingested)
+                .catchFailed(e -> WriteBatchResponse.Item.failed(request.getSeries(), e)));
+        }
+
+        httpAsync.bind(response, async.eventuallyCollect(writes,
+            WriteBatchResponse.collector(batch), BATCH_PARALLELISM));
+    }
 }
@@ -26,6 +26,8 @@ import com.spotify.heroic.common.Collected;
 import com.spotify.heroic.common.DateRange;
 import com.spotify.heroic.common.Grouped;
 import com.spotify.heroic.common.Groups;
+import com.spotify.heroic.common.Series;
+import com.spotify.heroic.common.SeriesInterner;
 import com.spotify.heroic.filter.Filter;
 import com.spotify.heroic.metadata.MetadataBackend;
 import com.spotify.heroic.metadata.WriteMetadata;
@@ -151,7 +153,7 @@ public class CoreIngestionGroup implements IngestionGroup {
         final MetricBackend metric, final Ingestion.Request write, final Span parentSpan
     ) {
         return metric
-            .write(new WriteMetric.Request(write.getSeries(), write.getData()), parentSpan)
+            .write(new WriteMetric.Request(intern(write), write.getData()), parentSpan)
             .directTransform(Ingestion::fromWriteMetric);
     }
 
@@ -160,7 +162,7 @@ public class CoreIngestionGroup implements IngestionGroup {
         final Span parentSpan
     ) {
         return metadata
-            .write(new WriteMetadata.Request(write.getSeries(), range), parentSpan)
+            .write(new WriteMetadata.Request(intern(write), range), parentSpan)
             .directTransform(Ingestion::fromWriteMetadata);
     }
 
@@ -169,10 +171,17 @@ public class CoreIngestionGroup implements IngestionGroup {
         final Span parentSpan
     ) {
         return suggest
-            .write(new WriteSuggest.Request(write.getSeries(), range), parentSpan)
+            .write(new WriteSuggest.Request(intern(write), range), parentSpan)
             .directTransform(Ingestion::fromWriteSuggest);
     }
 
+    /**
+     * Backends may hold on to written series, make sure they all share one interned copy.
+     */
+    private Series intern(final Ingestion.Request write) {
+        return SeriesInterner.global().intern(write.getSeries());
+    }
+
     /**
      * Setup a range supplier that memoizes the result.
      */
@@ -21,6 +21,7 @@
 
 package com.spotify.heroic.ingestion;
 
+import com.spotify.heroic.common.ExecutorPools;
 import com.spotify.heroic.common.Statistics;
 import com.spotify.heroic.filter.Filter;
 import com.spotify.heroic.metadata.MetadataBackend;
@@ -68,7 +69,8 @@ public class IngestionManagerImpl implements IngestionManager {
      */
     @Inject
     public IngestionManagerImpl(
-        final AsyncFramework async, final MetadataManager metadata, final MetricManager metric,
+        @Named(ExecutorPools.INGESTION_ASYNC) final AsyncFramework async,
+        final MetadataManager metadata, final MetricManager metric,
         final SuggestManager suggest, final IngestionManagerReporter reporter,
         @Named("updateMetrics") final boolean updateMetrics,
         @Named("updateMetadata") final boolean updateMetadata,
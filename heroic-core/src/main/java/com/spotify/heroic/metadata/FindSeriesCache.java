@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.metadata;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.spotify.heroic.common.DateRange;
+import com.spotify.heroic.common.Duration;
+import com.spotify.heroic.common.OptionalLimit;
+import com.spotify.heroic.common.Series;
+import com.spotify.heroic.filter.Filter;
+import eu.toolchain.async.AsyncFramework;
+import eu.toolchain.async.AsyncFuture;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import lombok.Data;
+
+/**
+ * A near cache for {@link MetadataBackend#findSeries(FindSeries.Request)}.
+ * <p>
+ * Results are keyed by the selected backends, the optimized filter, the limit, and the requested
+ * range widened to a coarse bucket, so that queries for a moving window share entries. The
+ * widened range is what is requested from the backends.
+ * <p>
+ * Entries expire after a fixed time and the cache is bounded by the total number of series held.
+ * Local writes of series which have not been seen recently invalidate every entry whose filter
+ * matches them, deletes invalidate everything.
+ * <p>
+ * Written series are queued, and are matched against the cached entries in a single pass on the
+ * next lookup, so that a burst of new series costs one pass instead of one per series. Loads in
+ * flight are only discarded if a written series matches their filter.
+ */
+public class FindSeriesCache {
+    private final AsyncFramework async;
+    private final long rangeBucket;
+
+    private final Cache<Key, FindSeries> results;
+    private final Cache<HashCode, Boolean> written;
+
+    /**
+     * Series written since the last lookup, which haven't yet invalidated the entries they match.
+     */
+    private final Queue<Series> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicLong pendingCount = new AtomicLong();
+    private final Object invalidateLock = new Object();
+
+    /**
+     * Loads in flight, which are not cached if a matching series is written while loading.
+     */
+    private final Set<Load> loads = ConcurrentHashMap.newKeySet();
+
+    public FindSeriesCache(final AsyncFramework async, final Config config) {
+        this.async = async;
+        this.rangeBucket = config.getRangeBucket().toMilliseconds();
+
+        final long ttl = config.getTtl().toMilliseconds();
+
+        this.results = CacheBuilder
+            .newBuilder()
+            .maximumWeight(config.getMaxSeries())
+            .weigher((Key k, FindSeries v) -> v.getSeries().size() + 1)
+            .expireAfterWrite(ttl, TimeUnit.MILLISECONDS)
+            .build();
+
+        this.written = CacheBuilder
+            .newBuilder()
+            .maximumSize(config.getMaxSeries())
+            .expireAfterWrite(ttl, TimeUnit.MILLISECONDS)
+            .build();
+    }
+
+    public AsyncFuture<FindSeries> findSeries(
+        final Set<MetadataBackend> backends, final FindSeries.Request request,
+        final Function<FindSeries.Request, AsyncFuture<FindSeries>> lookup
+    ) {
+        final Key key = new Key(backends, request.getFilter().optimize(),
+            widen(request.getRange()), request.getLimit());
+
+        invalidatePending();
+
+        final FindSeries cached = results.getIfPresent(key);
+
+        if (cached != null) {
+            return async.resolved(cached);
+        }
+
+        final Load load = new Load(key);
+        loads.add(load);
+
+        return lookup
+            .apply(new FindSeries.Request(request.getFilter(), key.range, key.limit))
+            .directTransform(result -> {
+                if (result.getErrors().isEmpty() && !load.stale) {
+                    results.put(key, result);
+                }
+
+                return result;
+            })
+            .onFinished(() -> loads.remove(load));
+    }
+
+    /**
+     * Must be called once a series has been written to the metadata backends.
+     */
+    public void written(final Series series) {
+        if (written.getIfPresent(series.getHashCode()) != null) {
+            return;
+        }
+
+        written.put(series.getHashCode(), Boolean.TRUE);
+
+        for (final Load load : loads) {
+            if (load.key.filter.apply(series)) {
+                load.stale = true;
+            }
+        }
+
+        pendingCount.incrementAndGet();
+        pending.add(series);
+    }
+
+    public void invalidateAll() {
+        for (final Load load : loads) {
+            load.stale = true;
+        }
+
+        results.invalidateAll();
+    }
+
+    public long size() {
+        return results.size();
+    }
+
+    /**
+     * Invalidate the entries matching any series written since the last call.
+     * <p>
+     * Lookups racing with an invalidation wait for it to finish, so that they never see an entry
+     * that a completed write should have invalidated.
+     */
+    private void invalidatePending() {
+        if (pendingCount.get() == 0) {
+            return;
+        }
+
+        synchronized (invalidateLock) {
+            final List<Series> batch = new ArrayList<>();
+            Series series;
+
+            while ((series = pending.poll()) != null) {
+                batch.add(series);
+            }
+
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            for (final Key key : results.asMap().keySet()) {
+                for (final Series s : batch) {
+                    if (key.filter.apply(s)) {
+                        results.invalidate(key);
+                        break;
+                    }
+                }
+            }
+
+            pendingCount.addAndGet(-batch.size());
+        }
+    }
+
+    DateRange widen(final DateRange range) {
+        if (rangeBucket <= 0) {
+            return range;
+        }
+
+        final long start = range.getStart() - Math.floorMod(range.getStart(), rangeBucket);
+        final long endOffset = Math.floorMod(range.getEnd(), rangeBucket);
+        final long end = endOffset == 0 ? range.getEnd() : range.getEnd() - endOffset + rangeBucket;
+        return new DateRange(start, end);
+    }
+
+    private static class Load {
+        private final Key key;
+        private volatile boolean stale = false;
+
+        Load(final Key key) {
+            this.key = key;
+        }
+    }
+
+    @Data
+    static class Key {
+        private final Set<MetadataBackend> backends;
+        private final Filter filter;
+        private final DateRange range;
+        private final OptionalLimit limit;
+    }
+
+    @Data
+    public static class Config {
+        public static final Duration DEFAULT_TTL = Duration.of(1, TimeUnit.MINUTES);
+        public static final long DEFAULT_MAX_SERIES = 1_000_000L;
+        public static final Duration DEFAULT_RANGE_BUCKET = Duration.of(1, TimeUnit.MINUTES);
+
+        private final Duration ttl;
+        private final long maxSeries;
+        private final Duration rangeBucket;
+
+        @JsonCreator
+        public Config(
+            @JsonProperty("ttl") Optional<Duration> ttl,
+            @JsonProperty("maxSeries") Optional<Long> maxSeries,
+            @JsonProperty("rangeBucket") Optional<Duration> rangeBucket
+        ) {
+            this.ttl = ttl.orElse(DEFAULT_TTL);
+            this.maxSeries = maxSeries.orElse(DEFAULT_MAX_SERIES);
+            this.rangeBucket = rangeBucket.orElse(DEFAULT_RANGE_BUCKET);
+        }
+
+        public static Config defaults() {
+            return new Config(Optional.empty(), Optional.empty(), Optional.empty());
+        }
+    }
+}
@@ -21,6 +21,7 @@
 
 package com.spotify.heroic.metadata;
 
+import com.spotify.heroic.common.ExecutorPools;
 import com.spotify.heroic.common.GroupSet;
 import eu.toolchain.async.AsyncFramework;
 
@@ -32,18 +33,22 @@ import java.util.Optional;
 public class LocalMetadataManager implements MetadataManager {
     private final AsyncFramework async;
     private final GroupSet<MetadataBackend> groupSet;
+    private final Optional<FindSeriesCache> findSeriesCache;
 
     @Inject
     public LocalMetadataManager(
-        final AsyncFramework async, @Named("groupSet") final GroupSet<MetadataBackend> groupSet
+        @Named(ExecutorPools.METADATA_ASYNC) final AsyncFramework async,
+        @Named("groupSet") final GroupSet<MetadataBackend> groupSet,
+        final Optional<FindSeriesCache> findSeriesCache
     ) {
         this.async = async;
         this.groupSet = groupSet;
+        this.findSeriesCache = findSeriesCache;
     }
 
     @Override
     public MetadataBackend useOptionalGroup(Optional<String> group) {
-        return new MetadataBackendGroup(groupSet.useOptionalGroup(group), async);
+        return new MetadataBackendGroup(groupSet.useOptionalGroup(group), async, findSeriesCache);
     }
 
     @Override
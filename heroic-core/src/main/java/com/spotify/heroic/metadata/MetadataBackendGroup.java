@@ -29,18 +29,27 @@ import com.spotify.heroic.common.Statistics;
 import eu.toolchain.async.AsyncFramework;
 import eu.toolchain.async.AsyncFuture;
 import java.util.List;
+import java.util.Optional;
 import lombok.ToString;
 
 @ToString(of = {"backends"})
 public class MetadataBackendGroup implements MetadataBackend {
     private final SelectedGroup<MetadataBackend> backends;
     private final AsyncFramework async;
+    private final Optional<FindSeriesCache> findSeriesCache;
 
     @java.beans.ConstructorProperties({ "backends", "async" })
     public MetadataBackendGroup(final SelectedGroup<MetadataBackend> backends,
                                 final AsyncFramework async) {
+        this(backends, async, Optional.empty());
+    }
+
+    public MetadataBackendGroup(final SelectedGroup<MetadataBackend> backends,
+                                final AsyncFramework async,
+                                final Optional<FindSeriesCache> findSeriesCache) {
         this.backends = backends;
         this.async = async;
+        this.findSeriesCache = findSeriesCache;
     }
 
     @Override
@@ -60,6 +69,16 @@ public class MetadataBackendGroup implements MetadataBackend {
 
     @Override
     public AsyncFuture<FindSeries> findSeries(final FindSeries.Request request) {
+        if (findSeriesCache.isPresent()) {
+            return findSeriesCache
+                .get()
+                .findSeries(backends.getMembers(), request, this::findSeriesUncached);
+        }
+
+        return findSeriesUncached(request);
+    }
+
+    private AsyncFuture<FindSeries> findSeriesUncached(final FindSeries.Request request) {
         return async.collect(run(v -> v.findSeries(request)),
             FindSeries.reduce(request.getLimit()));
     }
@@ -84,7 +103,9 @@ public class MetadataBackendGroup implements MetadataBackend {
 
     @Override
     public AsyncFuture<DeleteSeries> deleteSeries(final DeleteSeries.Request request) {
-        return async.collect(run(b -> b.deleteSeries(request)), DeleteSeries.reduce());
+        return async
+            .collect(run(b -> b.deleteSeries(request)), DeleteSeries.reduce())
+            .onFinished(() -> findSeriesCache.ifPresent(FindSeriesCache::invalidateAll));
     }
 
     @Override
@@ -94,7 +115,12 @@ public class MetadataBackendGroup implements MetadataBackend {
 
     @Override
     public AsyncFuture<WriteMetadata> write(final WriteMetadata.Request request) {
-        return async.collect(run(b -> b.write(request)), WriteMetadata.reduce());
+        final AsyncFuture<WriteMetadata> write =
+            async.collect(run(b -> b.write(request)), WriteMetadata.reduce());
+
+        return findSeriesCache
+            .map(c -> write.onFinished(() -> c.written(request.getSeries())))
+            .orElse(write);
     }
 
     @Override
@@ -22,6 +22,7 @@
 package com.spotify.heroic.metadata;
 
 import static com.spotify.heroic.common.Optionals.mergeOptionalList;
+import static com.spotify.heroic.common.Optionals.pickOptional;
 import static java.util.Optional.empty;
 import static java.util.Optional.of;
 
@@ -29,6 +30,7 @@ import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.spotify.heroic.common.ExecutorPools;
 import com.spotify.heroic.common.GroupSet;
 import com.spotify.heroic.common.ModuleIdBuilder;
 import com.spotify.heroic.dagger.PrimaryComponent;
@@ -38,6 +40,7 @@ import com.spotify.heroic.statistics.HeroicReporter;
 import com.spotify.heroic.statistics.MetadataBackendReporter;
 import dagger.Module;
 import dagger.Provides;
+import eu.toolchain.async.AsyncFramework;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
@@ -48,13 +51,16 @@ import javax.inject.Named;
 public class MetadataManagerModule {
     private final List<MetadataModule> backends;
     private final Optional<List<String>> defaultBackends;
+    private final Optional<FindSeriesCache.Config> findSeriesCache;
 
     public MetadataManagerModule(
         List<MetadataModule> backends,
-        Optional<List<String>> defaultBackends
+        Optional<List<String>> defaultBackends,
+        Optional<FindSeriesCache.Config> findSeriesCache
     ) {
         this.backends = backends;
         this.defaultBackends = defaultBackends;
+        this.findSeriesCache = findSeriesCache;
     }
 
     @Provides
@@ -97,6 +103,14 @@ public class MetadataManagerModule {
         return GroupSet.build(configured, defaultBackends);
     }
 
+    @Provides
+    @MetadataScope
+    public Optional<FindSeriesCache> findSeriesCache(
+        @Named(ExecutorPools.METADATA_ASYNC) final AsyncFramework async
+    ) {
+        return findSeriesCache.map(config -> new FindSeriesCache(async, config));
+    }
+
     @Provides
     @Named("metadata")
     @MetadataScope
@@ -111,6 +125,7 @@ public class MetadataManagerModule {
     public static class Builder {
         private Optional<List<MetadataModule>> backends = empty();
         private Optional<List<String>> defaultBackends = empty();
+        private Optional<FindSeriesCache.Config> findSeriesCache = empty();
 
         private Builder() {
         }
@@ -118,10 +133,12 @@ public class MetadataManagerModule {
         @JsonCreator
         public Builder(
             @JsonProperty("backends") Optional<List<MetadataModule>> backends,
-            @JsonProperty("defaultBackends") Optional<List<String>> defaultBackends
+            @JsonProperty("defaultBackends") Optional<List<String>> defaultBackends,
+            @JsonProperty("findSeriesCache") Optional<FindSeriesCache.Config> findSeriesCache
         ) {
             this.backends = backends;
             this.defaultBackends = defaultBackends;
+            this.findSeriesCache = findSeriesCache;
         }
 
         public Builder backends(List<MetadataModule> backends) {
@@ -134,11 +151,20 @@ public class MetadataManagerModule {
             return this;
         }
 
+        /**
+         * Enable the near cache for findSeries results on this node.
+         */
+        public Builder findSeriesCache(FindSeriesCache.Config findSeriesCache) {
+            this.findSeriesCache = of(findSeriesCache);
+            return this;
+        }
+
         public Builder merge(final Builder o) {
             // @formatter:off
             return new Builder(
                 mergeOptionalList(o.backends, backends),
-                mergeOptionalList(o.defaultBackends, defaultBackends)
+                mergeOptionalList(o.defaultBackends, defaultBackends),
+                pickOptional(findSeriesCache, o.findSeriesCache)
             );
             // @formatter:on
         }
@@ -147,7 +173,8 @@ public class MetadataManagerModule {
             // @formatter:off
             return new MetadataManagerModule(
                 backends.orElseGet(ImmutableList::of),
-                defaultBackends
+                defaultBackends,
+                findSeriesCache
             );
             // @formatter:on
         }
@@ -34,9 +34,10 @@ import com.spotify.heroic.aggregation.BucketStrategy;
 import com.spotify.heroic.aggregation.RetainQuotaWatcher;
 import com.spotify.heroic.async.AsyncObservable;
 import com.spotify.heroic.common.DateRange;
+import com.spotify.heroic.common.Duration;
+import com.spotify.heroic.common.ExecutorPools;
 import com.spotify.heroic.common.Feature;
 import com.spotify.heroic.common.Features;
-import com.spotify.heroic.common.GoAwayException;
 import com.spotify.heroic.common.GroupSet;
 import com.spotify.heroic.common.Groups;
 import com.spotify.heroic.common.Histogram;
@@ -65,7 +66,6 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
@@ -89,7 +89,6 @@ public class LocalMetricManager implements MetricManager {
     private final OptionalLimit seriesLimit;
     private final OptionalLimit aggregationLimit;
     private final OptionalLimit dataLimit;
-    private final int concurrentQueriesBackoff;
     private final int fetchParallelism;
     private final boolean failOnLimits;
 
@@ -98,7 +97,7 @@ public class LocalMetricManager implements MetricManager {
     private final MetadataManager metadata;
     private final MetricBackendReporter reporter;
     private final QueryLogger queryLogger;
-    private final Semaphore concurrentQueries;
+    private final QueryAdmissionController admission;
 
     /**
      * @param groupLimit The maximum amount of groups this manager will allow to be generated.
@@ -107,6 +106,7 @@ public class LocalMetricManager implements MetricManager {
      * may produce.
      * @param dataLimit The maximum number of samples a single query is allowed to fetch.
      * @param fetchParallelism How many fetches that are allowed to be performed in parallel.
+     * @param admission Decides when queries are allowed to execute.
      */
     @Inject
     public LocalMetricManager(
@@ -114,17 +114,17 @@ public class LocalMetricManager implements MetricManager {
         @Named("seriesLimit") final OptionalLimit seriesLimit,
         @Named("aggregationLimit") final OptionalLimit aggregationLimit,
         @Named("dataLimit") final OptionalLimit dataLimit,
-        @Named("concurrentQueriesBackoff") final OptionalLimit concurrentQueriesBackoff,
         @Named("fetchParallelism") final int fetchParallelism,
-        @Named("failOnLimits") final boolean failOnLimits, final AsyncFramework async,
+        @Named("failOnLimits") final boolean failOnLimits,
+        @Named(ExecutorPools.QUERY_ASYNC) final AsyncFramework async,
         final GroupSet<MetricBackend> groupSet, final MetadataManager metadata,
-        final MetricBackendReporter reporter, final QueryLoggerFactory queryLoggerFactory
+        final MetricBackendReporter reporter, final QueryLoggerFactory queryLoggerFactory,
+        final QueryAdmissionController admission
     ) {
         this.groupLimit = groupLimit;
         this.seriesLimit = seriesLimit;
         this.aggregationLimit = aggregationLimit;
         this.dataLimit = dataLimit;
-        this.concurrentQueriesBackoff = concurrentQueriesBackoff.asMaxInteger(Integer.MAX_VALUE);
         this.fetchParallelism = fetchParallelism;
         this.failOnLimits = failOnLimits;
         this.async = async;
@@ -132,7 +132,7 @@ public class LocalMetricManager implements MetricManager {
         this.metadata = metadata;
         this.reporter = reporter;
         this.queryLogger = queryLoggerFactory.create("LocalMetricManager");
-        this.concurrentQueries = new Semaphore(this.concurrentQueriesBackoff);
+        this.admission = admission;
     }
 
     @Override
@@ -145,6 +145,37 @@ public class LocalMetricManager implements MetricManager {
         return new Group(groupSet.useOptionalGroup(group), metadata.useDefaultGroup());
     }
 
+    /**
+     * Pick the coarsest rollup that the aggregation can be fed with instead of raw points.
+     * <p>
+     * Rollups summarize the intervals {@code [t, t + resolution)}, so they are only used with start
+     * buckets and when both ends of the range are aligned with the resolution. A rollup is only
+     * complete within the range it is mapped to, so the whole query range must be covered by it.
+     */
+    static Optional<Long> planRollup(
+        final AggregationInstance aggregation, final DateRange range,
+        final BucketStrategy bucketStrategy, final MetricType source,
+        final Map<Long, DateRange> rollups
+    ) {
+        if (source != MetricType.POINT || !BucketStrategy.START.equals(bucketStrategy)) {
+            return Optional.empty();
+        }
+
+        return rollups
+            .entrySet()
+            .stream()
+            .filter(e -> covers(e.getValue(), range))
+            .map(Map.Entry::getKey)
+            .filter(resolution -> range.start() % resolution == 0 &&
+                range.end() % resolution == 0)
+            .filter(aggregation::acceptsRollup)
+            .max(Long::compare);
+    }
+
+    private static boolean covers(final DateRange covered, final DateRange range) {
+        return covered.start() <= range.start() && range.end() <= covered.end();
+    }
+
     @ToString
     private class Group extends AbstractMetricBackend implements MetricBackendGroup {
         private final SelectedGroup<MetricBackend> backends;
@@ -278,10 +309,13 @@ public class LocalMetricManager implements MetricManager {
 
                 /* setup fetches */
                 accept(metricBackend -> {
+                    final Optional<Long> rollup = planRollup(aggregation, range, bucketStrategy,
+                        source, metricBackend.rollups());
+
                     for (final Series series : result.getSeries()) {
                         fetches.add(() -> metricBackend.fetch(
-                            new FetchData.Request(source, series, range, options), quotaWatcher,
-                            mcr -> collector.acceptMetricsCollection(series, mcr)));
+                            new FetchData.Request(source, series, range, options, rollup),
+                            quotaWatcher, mcr -> collector.acceptMetricsCollection(series, mcr)));
                     }
                 });
 
@@ -291,20 +325,17 @@ public class LocalMetricManager implements MetricManager {
 
         @Override
         public AsyncFuture<FullQuery> query(final FullQuery.Request request) {
-            if (!concurrentQueries.tryAcquire()) {
-                // There's currently too many concurrent queries. Fail now so that the QueryManager
-                // gets an opportunity to try another node in the same shard instead.
-                return async.failed(new GoAwayException(
-                    "Node has reached maximum number of concurrent MetricManager requests (" +
-                        concurrentQueriesBackoff + ")"));
-            }
+            final QueryAdmissionSettings settings = admission.settings();
 
-            try {
-                return protectedQuery(request).onFinished(concurrentQueries::release);
-            } catch (Exception e) {
-                concurrentQueries.release();
-                throw new RuntimeException(e);
-            }
+            final QueryClass queryClass = QueryClass.fromContext(request.context(),
+                settings.getClients(), settings.getDefaultClass());
+
+            final long timeout =
+                request.options().timeout().map(Duration::toMilliseconds).orElse(-1L);
+
+            // If the node is overloaded this fails with a GoAwayException, so that the
+            // QueryManager gets an opportunity to try another node in the same shard instead.
+            return admission.submit(queryClass, timeout, () -> protectedQuery(request));
         }
 
         private AsyncFuture<FullQuery> protectedQuery(final FullQuery.Request request) {
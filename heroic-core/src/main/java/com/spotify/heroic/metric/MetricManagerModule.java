@@ -31,15 +31,19 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.spotify.heroic.analytics.MetricAnalytics;
+import com.spotify.heroic.common.ExecutorPools;
 import com.spotify.heroic.common.GroupSet;
 import com.spotify.heroic.common.ModuleIdBuilder;
 import com.spotify.heroic.common.OptionalLimit;
 import com.spotify.heroic.dagger.CorePrimaryComponent;
 import com.spotify.heroic.lifecycle.LifeCycle;
+import com.spotify.heroic.scheduler.Scheduler;
 import com.spotify.heroic.statistics.HeroicReporter;
 import com.spotify.heroic.statistics.MetricBackendReporter;
+import com.spotify.heroic.time.Clock;
 import dagger.Module;
 import dagger.Provides;
+import eu.toolchain.async.AsyncFramework;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
@@ -81,6 +85,11 @@ public class MetricManagerModule {
      */
     private final OptionalLimit concurrentQueriesBackoff;
 
+    /**
+     * How queries are admitted once the limit of concurrent queries has been reached.
+     */
+    private final QueryAdmissionSettings admission;
+
     /**
      * How many data fetches are performed in parallel.
      */
@@ -104,6 +113,7 @@ public class MetricManagerModule {
         OptionalLimit aggregationLimit,
         OptionalLimit dataLimit,
         OptionalLimit concurrentQueriesBackoff,
+        QueryAdmissionSettings admission,
         int fetchParallelism,
         boolean failOnLimits,
         long smallQueryThreshold
@@ -115,6 +125,7 @@ public class MetricManagerModule {
         this.aggregationLimit = aggregationLimit;
         this.dataLimit = dataLimit;
         this.concurrentQueriesBackoff = concurrentQueriesBackoff;
+        this.admission = admission;
         this.fetchParallelism = fetchParallelism;
         this.failOnLimits = failOnLimits;
         this.smallQueryThreshold = smallQueryThreshold;
@@ -209,6 +220,16 @@ public class MetricManagerModule {
         return concurrentQueriesBackoff;
     }
 
+    @Provides
+    @MetricScope
+    public QueryAdmissionController admission(
+        @Named(ExecutorPools.QUERY_ASYNC) final AsyncFramework async, final Clock clock,
+        final Scheduler scheduler
+    ) {
+        return new QueryAdmissionController(async, clock, scheduler, admission,
+            concurrentQueriesBackoff.asMaxInteger(Integer.MAX_VALUE));
+    }
+
     @Provides
     @MetricScope
     @Named("fetchParallelism")
@@ -242,6 +263,7 @@ public class MetricManagerModule {
         private OptionalLimit aggregationLimit = OptionalLimit.empty();
         private OptionalLimit dataLimit = OptionalLimit.empty();
         private OptionalLimit concurrentQueriesBackoff = OptionalLimit.empty();
+        private Optional<QueryAdmissionSettings> admission = empty();
         private Optional<Integer> fetchParallelism = empty();
         private Optional<Boolean> failOnLimits = empty();
         private Optional<Long> smallQueryThreshold = empty();
@@ -258,6 +280,7 @@ public class MetricManagerModule {
             @JsonProperty("aggregationLimit") OptionalLimit aggregationLimit,
             @JsonProperty("dataLimit") OptionalLimit dataLimit,
             @JsonProperty("concurrentQueriesBackoff") OptionalLimit concurrentQueriesBackoff,
+            @JsonProperty("admission") Optional<QueryAdmissionSettings> admission,
             @JsonProperty("fetchParallelism") Optional<Integer> fetchParallelism,
             @JsonProperty("failOnLimits") Optional<Boolean> failOnLimits,
             @JsonProperty("smallQueryThreshold") Optional<Long> smallQueryThreshold
@@ -269,6 +292,7 @@ public class MetricManagerModule {
             this.aggregationLimit = aggregationLimit;
             this.dataLimit = dataLimit;
             this.concurrentQueriesBackoff = concurrentQueriesBackoff;
+            this.admission = admission;
             this.fetchParallelism = fetchParallelism;
             this.failOnLimits = failOnLimits;
             this.smallQueryThreshold = smallQueryThreshold;
@@ -309,6 +333,11 @@ public class MetricManagerModule {
             return this;
         }
 
+        public Builder admission(QueryAdmissionSettings admission) {
+            this.admission = of(admission);
+            return this;
+        }
+
         public Builder fetchParallelism(Integer fetchParallelism) {
             this.fetchParallelism = of(fetchParallelism);
             return this;
@@ -334,6 +363,7 @@ public class MetricManagerModule {
                 aggregationLimit.orElse(o.aggregationLimit),
                 dataLimit.orElse(o.dataLimit),
                 concurrentQueriesBackoff.orElse(o.concurrentQueriesBackoff),
+                pickOptional(admission, o.admission),
                 pickOptional(fetchParallelism, o.fetchParallelism),
                 pickOptional(failOnLimits, o.failOnLimits),
                 pickOptional(smallQueryThreshold, o.smallQueryThreshold)
@@ -351,6 +381,7 @@ public class MetricManagerModule {
                 aggregationLimit,
                 dataLimit,
                 concurrentQueriesBackoff,
+                admission.orElseGet(QueryAdmissionSettings::defaults),
                 fetchParallelism.orElse(DEFAULT_FETCH_PARALLELISM),
                 failOnLimits.orElse(DEFAULT_FAIL_ON_LIMITS),
                 smallQueryThreshold.orElse(DEFAULT_SMALL_QUERY_THRESHOLD)
@@ -0,0 +1,336 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.metric;
+
+import com.spotify.heroic.common.GoAwayException;
+import com.spotify.heroic.scheduler.Scheduler;
+import com.spotify.heroic.time.Clock;
+import eu.toolchain.async.AsyncFramework;
+import eu.toolchain.async.AsyncFuture;
+import eu.toolchain.async.FutureDone;
+import eu.toolchain.async.ResolvableFuture;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Decides when queries are allowed to execute on this node.
+ * <p>
+ * At most {@link #limit()} queries execute concurrently. Queries arriving when the limit has been
+ * reached wait in a bounded queue per {@link QueryClass}, and are dequeued in proportion to the
+ * configured class weights. A query is rejected with a {@link GoAwayException} if its queue is
+ * full, if it is estimated to not complete before its deadline, or if its deadline passes while it
+ * is waiting. This gives the caller a chance to try another node in the same shard. A waiting query
+ * which is cancelled leaves its queue right away.
+ * <p>
+ * If adaptive, the limit starts at {@link QueryAdmissionSettings#getInitialLimit()}. It is
+ * decreased multiplicatively when latency grows beyond a tolerance of the observed baseline, and
+ * increased additively otherwise, up to {@link QueryAdmissionSettings#getMaxLimit()}.
+ */
+public class QueryAdmissionController {
+    /* weight of every new latency sample in the per-class latency estimate */
+    private static final double LATENCY_ALPHA = 0.2D;
+    /* weight of every new latency sample when the baseline drifts upwards */
+    private static final double BASELINE_ALPHA = 0.01D;
+
+    private final AsyncFramework async;
+    private final Clock clock;
+    private final Scheduler scheduler;
+    private final QueryAdmissionSettings settings;
+    private final int maxLimit;
+
+    private final Map<QueryClass, ArrayDeque<Pending<?>>> queues =
+        new EnumMap<>(QueryClass.class);
+    private final Map<QueryClass, Integer> currentWeights = new EnumMap<>(QueryClass.class);
+    private final Map<QueryClass, Double> latencyEstimates = new EnumMap<>(QueryClass.class);
+
+    private double limit;
+    private double baselineLatency = 0D;
+    private int running = 0;
+    private int queued = 0;
+
+    /**
+     * @param limit the configured limit of concurrent queries, which the adaptive limit is also
+     * capped at
+     */
+    public QueryAdmissionController(
+        final AsyncFramework async, final Clock clock, final Scheduler scheduler,
+        final QueryAdmissionSettings settings, final int limit
+    ) {
+        this.async = async;
+        this.clock = clock;
+        this.scheduler = scheduler;
+        this.settings = settings;
+
+        if (settings.isAdaptive()) {
+            this.maxLimit = Math.max(1, Math.min(limit, settings.getMaxLimit()));
+            this.limit = Math.max(1, Math.min(this.maxLimit, settings.getInitialLimit()));
+        } else {
+            this.maxLimit = Math.max(1, limit);
+            this.limit = this.maxLimit;
+        }
+
+        for (final QueryClass c : QueryClass.values()) {
+            queues.put(c, new ArrayDeque<>());
+            currentWeights.put(c, 0);
+        }
+    }
+
+    public QueryAdmissionSettings settings() {
+        return settings;
+    }
+
+    /**
+     * Current concurrency limit.
+     */
+    public synchronized int limit() {
+        return (int) limit;
+    }
+
+    /**
+     * Submit a query.
+     *
+     * @param queryClass class of the query
+     * @param timeoutMillis how long the caller is prepared to wait, or a negative number if
+     * unbounded
+     * @param query supplier which starts the query once admitted
+     * @return a future which completes with the query
+     */
+    public <T> AsyncFuture<T> submit(
+        final QueryClass queryClass, final long timeoutMillis,
+        final Supplier<AsyncFuture<T>> query
+    ) {
+        final long now = clock.currentTimeMillis();
+        final long deadline = timeoutMillis < 0 ? Long.MAX_VALUE : now + timeoutMillis;
+
+        synchronized (this) {
+            if (queued > 0 || running >= (int) limit) {
+                return enqueue(queryClass, now, deadline, query);
+            }
+
+            running++;
+        }
+
+        return start(queryClass, now, query);
+    }
+
+    private synchronized <T> AsyncFuture<T> enqueue(
+        final QueryClass queryClass, final long now, final long deadline,
+        final Supplier<AsyncFuture<T>> query
+    ) {
+        final ArrayDeque<Pending<?>> queue = queues.get(queryClass);
+
+        if (queue.size() >= settings.getQueueSizes().get(queryClass)) {
+            return async.failed(new GoAwayException(
+                "Node has reached maximum number of concurrent MetricManager requests (" +
+                    (int) limit + "), and queue for " + queryClass + " queries is full"));
+        }
+
+        if (!canMeetDeadline(queryClass, now, deadline)) {
+            return async.failed(new GoAwayException(
+                "Node can not complete " + queryClass + " query within its timeout"));
+        }
+
+        final ResolvableFuture<T> future = async.future();
+        final Pending<T> pending = new Pending<>(queryClass, deadline, query, future);
+        queue.add(pending);
+        queued++;
+
+        future.onCancelled(() -> remove(pending));
+
+        if (deadline != Long.MAX_VALUE) {
+            scheduler.schedule("query-admission-expire", deadline - now, TimeUnit.MILLISECONDS,
+                () -> expire(pending));
+        }
+
+        return future;
+    }
+
+    private synchronized boolean remove(final Pending<?> pending) {
+        if (!queues.get(pending.queryClass).remove(pending)) {
+            return false;
+        }
+
+        queued--;
+        return true;
+    }
+
+    private void expire(final Pending<?> pending) {
+        if (!remove(pending)) {
+            return;
+        }
+
+        pending.future.fail(new GoAwayException(
+            "Node could not start " + pending.queryClass + " query within its timeout"));
+    }
+
+    private <T> AsyncFuture<T> start(
+        final QueryClass queryClass, final long started, final Supplier<AsyncFuture<T>> query
+    ) {
+        final AsyncFuture<T> future;
+
+        try {
+            future = query.get();
+        } catch (final Exception e) {
+            finished(queryClass, started);
+            return async.failed(e);
+        }
+
+        return future.onFinished(() -> finished(queryClass, started));
+    }
+
+    private void finished(final QueryClass queryClass, final long started) {
+        final long now = clock.currentTimeMillis();
+        final List<Pending<?>> admitted = new ArrayList<>();
+        final List<Pending<?>> shed = new ArrayList<>();
+
+        synchronized (this) {
+            running--;
+            observe(queryClass, now - started);
+
+            while (queued > 0 && running < (int) limit) {
+                final Pending<?> next = dequeue();
+
+                if (!canMeetDeadline(next.queryClass, now, next.deadline)) {
+                    shed.add(next);
+                    continue;
+                }
+
+                running++;
+                admitted.add(next);
+            }
+        }
+
+        for (final Pending<?> pending : shed) {
+            pending.future.fail(new GoAwayException(
+                "Node could not complete " + pending.queryClass + " query within its timeout"));
+        }
+
+        for (final Pending<?> pending : admitted) {
+            pending.run(now);
+        }
+    }
+
+    /**
+     * Pick the next query to run using smooth weighted round-robin over the non-empty queues.
+     */
+    private Pending<?> dequeue() {
+        QueryClass best = null;
+        int total = 0;
+
+        for (final QueryClass c : QueryClass.values()) {
+            if (queues.get(c).isEmpty()) {
+                continue;
+            }
+
+            final int weight = Math.max(1, settings.getWeights().get(c));
+            final int current = currentWeights.get(c) + weight;
+            currentWeights.put(c, current);
+            total += weight;
+
+            if (best == null || current > currentWeights.get(best)) {
+                best = c;
+            }
+        }
+
+        currentWeights.put(best, currentWeights.get(best) - total);
+        queued--;
+        return queues.get(best).poll();
+    }
+
+    private boolean canMeetDeadline(
+        final QueryClass queryClass, final long now, final long deadline
+    ) {
+        if (deadline == Long.MAX_VALUE) {
+            return true;
+        }
+
+        final double estimate = latencyEstimates.getOrDefault(queryClass, 0D);
+        return now + (long) estimate <= deadline;
+    }
+
+    private void observe(final QueryClass queryClass, final long latency) {
+        final Double previous = latencyEstimates.get(queryClass);
+        latencyEstimates.put(queryClass, previous == null ? latency
+            : previous + LATENCY_ALPHA * (latency - previous));
+
+        if (!settings.isAdaptive()) {
+            return;
+        }
+
+        if (baselineLatency <= 0D || latency < baselineLatency) {
+            baselineLatency = Math.max(1D, latency);
+        } else {
+            baselineLatency += BASELINE_ALPHA * (latency - baselineLatency);
+        }
+
+        if (latency > baselineLatency * settings.getLatencyTolerance()) {
+            limit = Math.max(settings.getMinLimit(), limit * settings.getBackoffRatio());
+        } else {
+            limit = Math.min(maxLimit, limit + 1D / limit);
+        }
+    }
+
+    private class Pending<T> {
+        private final QueryClass queryClass;
+        private final long deadline;
+        private final Supplier<AsyncFuture<T>> query;
+        private final ResolvableFuture<T> future;
+
+        Pending(
+            final QueryClass queryClass, final long deadline,
+            final Supplier<AsyncFuture<T>> query, final ResolvableFuture<T> future
+        ) {
+            this.queryClass = queryClass;
+            this.deadline = deadline;
+            this.query = query;
+            this.future = future;
+        }
+
+        void run(final long now) {
+            final AsyncFuture<T> result = start(queryClass, now, query);
+
+            future.onCancelled(result::cancel);
+
+            result.onDone(new FutureDone<T>() {
+                @Override
+                public void failed(final Throwable cause) {
+                    future.fail(cause);
+                }
+
+                @Override
+                public void resolved(final T value) {
+                    future.resolve(value);
+                }
+
+                @Override
+                public void cancelled() {
+                    future.cancel();
+                }
+            });
+        }
+    }
+}
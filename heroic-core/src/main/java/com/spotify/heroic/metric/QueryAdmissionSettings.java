@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.metric;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.ImmutableMap;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import lombok.Data;
+
+/**
+ * Configuration for {@link QueryAdmissionController}.
+ * <p>
+ * The defaults admit queries the same way as a plain concurrency limit would, queries are rejected
+ * as soon as the limit is reached. Configure {@code queueSizes} to let queries wait for capacity.
+ */
+@Data
+public class QueryAdmissionSettings {
+    public static final Map<QueryClass, Integer> DEFAULT_WEIGHTS =
+        ImmutableMap.of(QueryClass.INTERACTIVE, 8, QueryClass.DASHBOARD, 4, QueryClass.BATCH, 1);
+    public static final int DEFAULT_QUEUE_SIZE = 0;
+    public static final QueryClass DEFAULT_CLASS = QueryClass.INTERACTIVE;
+    public static final boolean DEFAULT_ADAPTIVE = false;
+    public static final int DEFAULT_MIN_LIMIT = 1;
+    public static final int DEFAULT_INITIAL_LIMIT = 64;
+    public static final int DEFAULT_MAX_LIMIT = 1024;
+    public static final double DEFAULT_LATENCY_TOLERANCE = 2.0D;
+    public static final double DEFAULT_BACKOFF_RATIO = 0.9D;
+
+    /**
+     * Relative share of capacity given to each class when queries are waiting.
+     */
+    private final Map<QueryClass, Integer> weights;
+
+    /**
+     * How many queries of each class are allowed to wait for capacity.
+     */
+    private final Map<QueryClass, Integer> queueSizes;
+
+    /**
+     * Class of queries from known client ids.
+     */
+    private final Map<String, QueryClass> clients;
+
+    /**
+     * Class of queries that do not specify one.
+     */
+    private final QueryClass defaultClass;
+
+    /**
+     * Adapt the concurrency limit to observed latency.
+     */
+    private final boolean adaptive;
+
+    /**
+     * Lower bound of the adaptive concurrency limit.
+     */
+    private final int minLimit;
+
+    /**
+     * The adaptive concurrency limit to start from.
+     */
+    private final int initialLimit;
+
+    /**
+     * Upper bound of the adaptive concurrency limit, it is also bounded by the configured
+     * {@code concurrentQueriesBackoff}.
+     */
+    private final int maxLimit;
+
+    /**
+     * How much latency may grow over the observed baseline before the limit is decreased.
+     */
+    private final double latencyTolerance;
+
+    /**
+     * Factor the limit is multiplied with when latency grows beyond the tolerance.
+     */
+    private final double backoffRatio;
+
+    @JsonCreator
+    public QueryAdmissionSettings(
+        @JsonProperty("weights") final Optional<Map<String, Integer>> weights,
+        @JsonProperty("queueSizes") final Optional<Map<String, Integer>> queueSizes,
+        @JsonProperty("clients") final Optional<Map<String, QueryClass>> clients,
+        @JsonProperty("defaultClass") final Optional<QueryClass> defaultClass,
+        @JsonProperty("adaptive") final Optional<Boolean> adaptive,
+        @JsonProperty("minLimit") final Optional<Integer> minLimit,
+        @JsonProperty("latencyTolerance") final Optional<Double> latencyTolerance,
+        @JsonProperty("backoffRatio") final Optional<Double> backoffRatio,
+        @JsonProperty("initialLimit") final Optional<Integer> initialLimit,
+        @JsonProperty("maxLimit") final Optional<Integer> maxLimit
+    ) {
+        this.weights = perClass(weights, DEFAULT_WEIGHTS, 1);
+        this.queueSizes = perClass(queueSizes, ImmutableMap.of(), DEFAULT_QUEUE_SIZE);
+        this.clients = clients.map(ImmutableMap::copyOf).orElseGet(ImmutableMap::of);
+        this.defaultClass = defaultClass.orElse(DEFAULT_CLASS);
+        this.adaptive = adaptive.orElse(DEFAULT_ADAPTIVE);
+        this.minLimit = minLimit.orElse(DEFAULT_MIN_LIMIT);
+        this.latencyTolerance = latencyTolerance.orElse(DEFAULT_LATENCY_TOLERANCE);
+        this.backoffRatio = backoffRatio.orElse(DEFAULT_BACKOFF_RATIO);
+        this.initialLimit = initialLimit.orElse(DEFAULT_INITIAL_LIMIT);
+        this.maxLimit = maxLimit.orElse(DEFAULT_MAX_LIMIT);
+    }
+
+    public static QueryAdmissionSettings defaults() {
+        return new QueryAdmissionSettings(Optional.empty(), Optional.empty(), Optional.empty(),
+            Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(),
+            Optional.empty(), Optional.empty(), Optional.empty());
+    }
+
+    private static Map<QueryClass, Integer> perClass(
+        final Optional<Map<String, Integer>> configured, final Map<QueryClass, Integer> defaults,
+        final int fallback
+    ) {
+        final Map<QueryClass, Integer> result = new EnumMap<>(QueryClass.class);
+
+        for (final QueryClass c : QueryClass.values()) {
+            result.put(c, defaults.getOrDefault(c, fallback));
+        }
+
+        configured.ifPresent(values -> values.forEach(
+            (key, value) -> result.put(QueryClass.create(key), value)));
+
+        return ImmutableMap.copyOf(result);
+    }
+}
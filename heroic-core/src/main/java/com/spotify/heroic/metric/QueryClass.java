@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.metric;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.spotify.heroic.querylogging.HttpContext;
+import com.spotify.heroic.querylogging.QueryContext;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Classes of queries which are admitted separately by {@link QueryAdmissionController}.
+ */
+public enum QueryClass {
+    /**
+     * Queries with a user waiting for the result.
+     */
+    INTERACTIVE("interactive"),
+    /**
+     * Queries issued by dashboards, typically refreshing periodically.
+     */
+    DASHBOARD("dashboard"),
+    /**
+     * Batch and analytics queries, which can tolerate waiting.
+     */
+    BATCH("batch");
+
+    /**
+     * Field in the client context that can be used by clients to select their class.
+     */
+    public static final String CLIENT_CONTEXT_FIELD = "queryClass";
+
+    private final String id;
+
+    QueryClass(final String id) {
+        this.id = id;
+    }
+
+    @JsonCreator
+    public static QueryClass create(final String id) {
+        return lookup(id).orElseThrow(() -> new IllegalArgumentException(id));
+    }
+
+    /**
+     * Determine the class of a query.
+     * <p>
+     * An explicit class in the client context has precedence, followed by the configured class of
+     * the client id.
+     */
+    public static QueryClass fromContext(
+        final QueryContext context, final Map<String, QueryClass> clients,
+        final QueryClass defaultClass
+    ) {
+        final Optional<QueryClass> explicit = context
+            .clientContext()
+            .map(node -> node.get(CLIENT_CONTEXT_FIELD))
+            .filter(JsonNode::isTextual)
+            .flatMap(node -> lookup(node.asText()));
+
+        if (explicit.isPresent()) {
+            return explicit.get();
+        }
+
+        return context
+            .httpContext()
+            .flatMap(HttpContext::getClientId)
+            .map(clients::get)
+            .orElse(defaultClass);
+    }
+
+    private static Optional<QueryClass> lookup(final String id) {
+        for (final QueryClass c : values()) {
+            if (c.id.equals(id)) {
+                return Optional.of(c);
+            }
+        }
+
+        return Optional.empty();
+    }
+
+    @JsonValue
+    public String id() {
+        return id;
+    }
+
+    @Override
+    public String toString() {
+        return id;
+    }
+}
@@ -24,6 +24,7 @@ package com.spotify.heroic.querylogging;
 import com.spotify.heroic.HeroicConfigurationContext;
 import com.spotify.heroic.HeroicModule;
 import com.spotify.heroic.dagger.LoadingComponent;
+import com.spotify.heroic.querylogging.async.AsyncQueryLoggingModule;
 
 public class Module implements HeroicModule {
     @Override
@@ -32,6 +33,7 @@ public class Module implements HeroicModule {
 
         return () -> {
             config.registerType("slf4j", Slf4jQueryLoggingModule.class);
+            config.registerType("async", AsyncQueryLoggingModule.class);
         };
     }
 }
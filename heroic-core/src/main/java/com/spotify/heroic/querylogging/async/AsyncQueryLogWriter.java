@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.querylogging.async;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.spotify.heroic.lifecycle.LifeCycleRegistry;
+import com.spotify.heroic.lifecycle.LifeCycles;
+import eu.toolchain.async.AsyncFramework;
+import eu.toolchain.async.AsyncFuture;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Drains query log events from a bounded buffer on a dedicated thread, and writes them as
+ * newline-delimited JSON to a rolling local file.
+ * <p>
+ * Producers never wait for the writer. If the buffer is full the event is dropped and counted.
+ */
+@Slf4j
+public class AsyncQueryLogWriter implements LifeCycles {
+    private static final long DROPPED_REPORT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final AsyncFramework async;
+    private final ObjectWriter writer;
+    private final QueryLogRingBuffer<QueryLogEvent> buffer;
+    private final RollingFileOutput output;
+    private final int batchSize;
+    private final long idleNanos;
+
+    private final AtomicLong dropped = new AtomicLong();
+    private final ByteArrayOutputStream batch = new ByteArrayOutputStream();
+
+    private volatile boolean running = false;
+    private volatile Thread thread;
+
+    private long lastReportedDropped = 0L;
+    private long lastReportedDroppedAt = 0L;
+
+    public AsyncQueryLogWriter(
+        final AsyncFramework async, final ObjectMapper mapper, final Path path,
+        final long maxFileSize, final int maxFiles, final int bufferSize, final int batchSize,
+        final long flushIntervalMs
+    ) {
+        this.async = async;
+        this.writer = mapper.writer();
+        this.buffer = new QueryLogRingBuffer<>(bufferSize);
+        this.output = new RollingFileOutput(path, maxFileSize, maxFiles);
+        this.batchSize = batchSize;
+        this.idleNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+    }
+
+    @Override
+    public void register(final LifeCycleRegistry registry) {
+        registry.start(this::start);
+        registry.stop(this::stop);
+    }
+
+    /**
+     * Enqueue an event for writing.
+     *
+     * @return {@code true} if the event was accepted, {@code false} if it was dropped.
+     */
+    public boolean offer(final QueryLogEvent event) {
+        if (buffer.offer(event)) {
+            return true;
+        }
+
+        dropped.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Total number of events that have been dropped because the buffer was full.
+     */
+    public long dropped() {
+        return dropped.get();
+    }
+
+    AsyncFuture<Void> start() {
+        return async.call(() -> {
+            running = true;
+            final Thread thread = new Thread(this::run);
+            thread.setName("heroic-query-log-writer");
+            thread.setDaemon(true);
+            thread.start();
+            this.thread = thread;
+            return null;
+        });
+    }
+
+    AsyncFuture<Void> stop() {
+        return async.call(() -> {
+            running = false;
+
+            final Thread thread = this.thread;
+
+            if (thread != null) {
+                LockSupport.unpark(thread);
+                thread.join();
+            }
+
+            return null;
+        });
+    }
+
+    void run() {
+        log.info("Writing query log to {}", output);
+
+        while (running) {
+            if (writeBatch() == 0) {
+                flush();
+                reportDropped(false);
+                LockSupport.parkNanos(this, idleNanos);
+            }
+        }
+
+        /* write everything that was accepted before we were stopped */
+        while (writeBatch() > 0) {
+        }
+
+        reportDropped(true);
+
+        try {
+            output.close();
+        } catch (final IOException e) {
+            log.error("Failed to close query log", e);
+        }
+    }
+
+    int writeBatch() {
+        batch.reset();
+
+        final int count = buffer.drain(event -> {
+            try {
+                writer.writeValue(batch, event);
+                batch.write('\n');
+            } catch (final IOException e) {
+                log.error("Failed to serialize query log event", e);
+            }
+        }, batchSize);
+
+        if (batch.size() > 0) {
+            try {
+                output.write(batch.toByteArray(), 0, batch.size());
+            } catch (final IOException e) {
+                log.error("Failed to write query log", e);
+            }
+        }
+
+        return count;
+    }
+
+    private void flush() {
+        try {
+            output.flush();
+        } catch (final IOException e) {
+            log.error("Failed to flush query log", e);
+        }
+    }
+
+    private void reportDropped(final boolean force) {
+        final long now = System.nanoTime();
+
+        if (!force && now - lastReportedDroppedAt < DROPPED_REPORT_INTERVAL_NANOS) {
+            return;
+        }
+
+        final long total = dropped.get();
+
+        if (total > lastReportedDropped) {
+            log.warn("Dropped {} query log event(s) since last report, buffer is full",
+                total - lastReportedDropped);
+        }
+
+        lastReportedDropped = total;
+        lastReportedDroppedAt = now;
+    }
+
+    @Override
+    public String toString() {
+        return "AsyncQueryLogWriter(output=" + output + ", batchSize=" + batchSize + ")";
+    }
+}
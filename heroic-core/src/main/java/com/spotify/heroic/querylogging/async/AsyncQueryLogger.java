@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.querylogging.async;
+
+import com.spotify.heroic.Query;
+import com.spotify.heroic.metric.FullQuery;
+import com.spotify.heroic.metric.QueryMetrics;
+import com.spotify.heroic.metric.QueryMetricsResponse;
+import com.spotify.heroic.querylogging.QueryContext;
+import com.spotify.heroic.querylogging.QueryLogger;
+import java.time.Instant;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Query logger which hands events over to a {@link AsyncQueryLogWriter}.
+ * <p>
+ * The calling thread only performs sampling and summarization, serialization and IO happens on
+ * the writer thread.
+ */
+@Slf4j
+public class AsyncQueryLogger implements QueryLogger {
+    private final AsyncQueryLogWriter writer;
+    private final QueryLogSampler sampler;
+    private final String component;
+
+    public AsyncQueryLogger(
+        final AsyncQueryLogWriter writer, final QueryLogSampler sampler, final String component
+    ) {
+        this.writer = writer;
+        this.sampler = sampler;
+        this.component = component;
+    }
+
+    @Override
+    public void logHttpQueryText(final QueryContext context, final String query) {
+        enqueue(context, "http-query-text", () -> query);
+    }
+
+    @Override
+    public void logHttpQueryJson(final QueryContext context, final QueryMetrics query) {
+        enqueue(context, "http-query-json", () -> query);
+    }
+
+    @Override
+    public void logQuery(final QueryContext context, final Query query) {
+        enqueue(context, "query", () -> query);
+    }
+
+    @Override
+    public void logOutgoingRequestToShards(
+        final QueryContext context, final FullQuery.Request request
+    ) {
+        enqueue(context, "outgoing-request-to-shards", request::summarize);
+    }
+
+    @Override
+    public void logIncomingRequestAtNode(
+        final QueryContext context, final FullQuery.Request request
+    ) {
+        enqueue(context, "incoming-request-at-node", request::summarize);
+    }
+
+    @Override
+    public void logOutgoingResponseAtNode(final QueryContext context, final FullQuery response) {
+        enqueue(context, "outgoing-response-at-node", response::summarize);
+    }
+
+    @Override
+    public void logIncomingResponseFromShard(
+        final QueryContext context, final FullQuery response
+    ) {
+        enqueue(context, "incoming-response-from-shard", response::summarize);
+    }
+
+    @Override
+    public void logFinalResponse(
+        final QueryContext context, final QueryMetricsResponse queryMetricsResponse
+    ) {
+        enqueue(context, "final-response", queryMetricsResponse::summarize);
+    }
+
+    /**
+     * Sample and enqueue an event.
+     * <p>
+     * The data is only computed if the event is sampled. Summaries are computed here rather than on
+     * the writer thread to avoid keeping complete responses alive in the buffer.
+     */
+    private void enqueue(
+        final QueryContext context, final String type, final Supplier<Object> data
+    ) {
+        try {
+            if (!sampler.isSampled(context.queryId(), type)) {
+                return;
+            }
+
+            final QueryLogEvent.Message message =
+                new QueryLogEvent.Message(component, context.queryId(), context.clientContext(),
+                    context.httpContext(), type, data.get());
+
+            writer.offer(new QueryLogEvent(Instant.now().toString(), message));
+        } catch (final Exception e) {
+            log.error("Failed while trying to log query", e);
+        }
+    }
+}
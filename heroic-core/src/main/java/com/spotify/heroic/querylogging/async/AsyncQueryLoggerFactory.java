@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.querylogging.async;
+
+import com.spotify.heroic.querylogging.QueryLoggerFactory;
+import com.spotify.heroic.querylogging.QueryLoggingScope;
+import javax.inject.Inject;
+
+@QueryLoggingScope
+public class AsyncQueryLoggerFactory implements QueryLoggerFactory {
+    private final AsyncQueryLogWriter writer;
+    private final QueryLogSampler sampler;
+
+    @Inject
+    public AsyncQueryLoggerFactory(
+        final AsyncQueryLogWriter writer, final QueryLogSampler sampler
+    ) {
+        this.writer = writer;
+        this.sampler = sampler;
+    }
+
+    @Override
+    public AsyncQueryLogger create(String component) {
+        return new AsyncQueryLogger(writer, sampler, component);
+    }
+}
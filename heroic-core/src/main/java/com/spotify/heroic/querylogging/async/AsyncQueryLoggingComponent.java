@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.querylogging.async;
+
+import com.spotify.heroic.dagger.PrimaryComponent;
+import com.spotify.heroic.lifecycle.LifeCycle;
+import com.spotify.heroic.querylogging.QueryLoggingComponent;
+import com.spotify.heroic.querylogging.QueryLoggingScope;
+import dagger.Component;
+import javax.inject.Named;
+
+@QueryLoggingScope
+@Component(modules = AsyncQueryLoggingModule.class, dependencies = PrimaryComponent.class)
+public interface AsyncQueryLoggingComponent extends QueryLoggingComponent {
+    @Override
+    AsyncQueryLoggerFactory queryLoggerFactory();
+
+    @Override
+    @Named("queryLogging")
+    LifeCycle queryLoggingLife();
+}
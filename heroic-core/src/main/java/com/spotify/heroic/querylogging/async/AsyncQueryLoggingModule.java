@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.querylogging.async;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spotify.heroic.dagger.PrimaryComponent;
+import com.spotify.heroic.lifecycle.LifeCycle;
+import com.spotify.heroic.lifecycle.LifeCycleManager;
+import com.spotify.heroic.querylogging.QueryLoggingModule;
+import com.spotify.heroic.querylogging.QueryLoggingScope;
+import dagger.Module;
+import dagger.Provides;
+import eu.toolchain.async.AsyncFramework;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import javax.inject.Named;
+import javax.ws.rs.core.MediaType;
+import lombok.Data;
+
+/**
+ * Query logging which writes newline-delimited JSON to a rolling local file from a dedicated
+ * thread.
+ * <p>
+ * Sampling can be configured per event type (e.g. {@code query}, {@code final-response}) with
+ * {@code sampling}, types which are not listed use {@code defaultSampleRate}.
+ */
+@Data
+@Module
+public class AsyncQueryLoggingModule implements QueryLoggingModule {
+    public static final String DEFAULT_PATH = "heroic-query.log";
+    public static final long DEFAULT_MAX_FILE_SIZE = 256L * 1024L * 1024L;
+    public static final int DEFAULT_MAX_FILES = 5;
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    public static final int DEFAULT_BATCH_SIZE = 1024;
+    public static final long DEFAULT_FLUSH_INTERVAL_MS = 100L;
+    public static final double DEFAULT_SAMPLE_RATE = 1.0D;
+
+    private final Path path;
+    private final long maxFileSize;
+    private final int maxFiles;
+    private final int bufferSize;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final double defaultSampleRate;
+    private final Map<String, Double> sampling;
+
+    @JsonCreator
+    public AsyncQueryLoggingModule(
+        @JsonProperty("path") final Optional<String> path,
+        @JsonProperty("maxFileSize") final Optional<Long> maxFileSize,
+        @JsonProperty("maxFiles") final Optional<Integer> maxFiles,
+        @JsonProperty("bufferSize") final Optional<Integer> bufferSize,
+        @JsonProperty("batchSize") final Optional<Integer> batchSize,
+        @JsonProperty("flushIntervalMs") final Optional<Long> flushIntervalMs,
+        @JsonProperty("defaultSampleRate") final Optional<Double> defaultSampleRate,
+        @JsonProperty("sampling") final Optional<Map<String, Double>> sampling
+    ) {
+        this.path = Paths.get(path.orElse(DEFAULT_PATH));
+        this.maxFileSize = maxFileSize.orElse(DEFAULT_MAX_FILE_SIZE);
+        this.maxFiles = maxFiles.orElse(DEFAULT_MAX_FILES);
+        this.bufferSize = bufferSize.orElse(DEFAULT_BUFFER_SIZE);
+        this.batchSize = batchSize.orElse(DEFAULT_BATCH_SIZE);
+        this.flushIntervalMs = flushIntervalMs.orElse(DEFAULT_FLUSH_INTERVAL_MS);
+        this.defaultSampleRate = defaultSampleRate.orElse(DEFAULT_SAMPLE_RATE);
+        this.sampling = sampling.orElseGet(Collections::emptyMap);
+    }
+
+    @QueryLoggingScope
+    @Provides
+    public QueryLogSampler sampler() {
+        return new QueryLogSampler(defaultSampleRate, sampling);
+    }
+
+    @QueryLoggingScope
+    @Provides
+    public AsyncQueryLogWriter writer(
+        final AsyncFramework async, @Named(MediaType.APPLICATION_JSON) final ObjectMapper mapper
+    ) {
+        return new AsyncQueryLogWriter(async, mapper, path, maxFileSize, maxFiles, bufferSize,
+            batchSize, flushIntervalMs);
+    }
+
+    @QueryLoggingScope
+    @Provides
+    @Named("queryLogging")
+    public LifeCycle queryLoggingLife(
+        final LifeCycleManager manager, final AsyncQueryLogWriter writer
+    ) {
+        return manager.build(writer);
+    }
+
+    @Override
+    public AsyncQueryLoggingComponent component(PrimaryComponent primary) {
+        return DaggerAsyncQueryLoggingComponent
+            .builder()
+            .primaryComponent(primary)
+            .asyncQueryLoggingModule(this)
+            .build();
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.querylogging.async;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.spotify.heroic.querylogging.HttpContext;
+import java.util.Optional;
+import java.util.UUID;
+import lombok.Data;
+
+/**
+ * A single query log entry, waiting in the buffer to be serialized by the writer thread.
+ * <p>
+ * The serialized form is identical to the one produced by the slf4j query logger.
+ */
+@Data
+public class QueryLogEvent {
+    @JsonProperty("@timestamp")
+    private final String timestamp;
+    @JsonProperty("@message")
+    private final Message message;
+
+    @Data
+    public static class Message {
+        private final String component;
+        private final UUID queryId;
+        private final Optional<JsonNode> clientContext;
+        private final Optional<HttpContext> httpContext;
+        private final String type;
+        private final Object data;
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.querylogging.async;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * A bounded, lock-free, multi-producer ring buffer.
+ * <p>
+ * Every slot carries a sequence number which tells producers and consumers if the slot is free
+ * for writing or ready for reading. Producers never block, {@link #offer(Object)} returns {@code
+ * false} if the buffer is full.
+ *
+ * @param <T> type of the buffered elements
+ */
+class QueryLogRingBuffer<T> {
+    private final int mask;
+    private final AtomicReferenceArray<T> elements;
+    private final AtomicLongArray sequences;
+
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    QueryLogRingBuffer(final int requestedCapacity) {
+        if (requestedCapacity < 2) {
+            throw new IllegalArgumentException("capacity must be at least 2");
+        }
+
+        final int capacity = roundToPowerOfTwo(requestedCapacity);
+
+        this.mask = capacity - 1;
+        this.elements = new AtomicReferenceArray<>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Offer an element to the buffer.
+     *
+     * @return {@code true} if the element was added, {@code false} if the buffer is full.
+     */
+    boolean offer(final T element) {
+        while (true) {
+            final long position = tail.get();
+            final int index = (int) (position & mask);
+            final long diff = sequences.get(index) - position;
+
+            if (diff == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements.set(index, element);
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+
+                continue;
+            }
+
+            if (diff < 0) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Take the next element from the buffer.
+     *
+     * @return the next element, or {@code null} if the buffer is empty.
+     */
+    T poll() {
+        while (true) {
+            final long position = head.get();
+            final int index = (int) (position & mask);
+            final long diff = sequences.get(index) - (position + 1);
+
+            if (diff == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    final T element = elements.getAndSet(index, null);
+                    sequences.set(index, position + mask + 1);
+                    return element;
+                }
+
+                continue;
+            }
+
+            if (diff < 0) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Drain up to the given number of elements into the consumer.
+     *
+     * @return the number of drained elements.
+     */
+    int drain(final Consumer<T> consumer, final int limit) {
+        int count = 0;
+
+        while (count < limit) {
+            final T element = poll();
+
+            if (element == null) {
+                break;
+            }
+
+            consumer.accept(element);
+            count++;
+        }
+
+        return count;
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+
+    int size() {
+        return (int) Math.max(0L, tail.get() - head.get());
+    }
+
+    static int roundToPowerOfTwo(final int value) {
+        final int highest = Integer.highestOneBit(value);
+        return highest == value ? value : highest << 1;
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.querylogging.async;
+
+import com.google.common.collect.ImmutableMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import lombok.ToString;
+
+/**
+ * Decides which query log events to keep, based on a sample rate per event type.
+ * <p>
+ * The decision is derived from the query id when available, so that all events belonging to a
+ * sampled query are kept together.
+ */
+@ToString
+public class QueryLogSampler {
+    private final double defaultRate;
+    private final Map<String, Double> rates;
+
+    public QueryLogSampler(final double defaultRate, final Map<String, Double> rates) {
+        this.defaultRate = defaultRate;
+        this.rates = ImmutableMap.copyOf(rates);
+    }
+
+    public boolean isSampled(final UUID queryId, final String type) {
+        final double rate = rates.getOrDefault(type, defaultRate);
+
+        if (rate >= 1.0D) {
+            return true;
+        }
+
+        if (rate <= 0.0D) {
+            return false;
+        }
+
+        return position(queryId) < rate;
+    }
+
+    private double position(final UUID queryId) {
+        if (queryId == null) {
+            return ThreadLocalRandom.current().nextDouble();
+        }
+
+        final long bits = queryId.getLeastSignificantBits() ^ queryId.getMostSignificantBits();
+        return (double) (bits >>> 11) / (double) (1L << 53);
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.querylogging.async;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A local file which is rotated once it grows beyond a configured size.
+ * <p>
+ * Rotated files are renamed to {@code <path>.1} through {@code <path>.<maxFiles>}, where the
+ * highest suffix is the oldest file. Not thread-safe, only accessed by the writer thread.
+ */
+class RollingFileOutput implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path path;
+    private final long maxFileSize;
+    private final int maxFiles;
+
+    private OutputStream output;
+    private long size;
+
+    RollingFileOutput(final Path path, final long maxFileSize, final int maxFiles) {
+        this.path = path;
+        this.maxFileSize = maxFileSize;
+        this.maxFiles = maxFiles;
+    }
+
+    void write(final byte[] bytes, final int offset, final int length) throws IOException {
+        if (output == null) {
+            open();
+        } else if (size > 0 && size + length > maxFileSize) {
+            rotate();
+        }
+
+        output.write(bytes, offset, length);
+        size += length;
+    }
+
+    void flush() throws IOException {
+        if (output != null) {
+            output.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (output != null) {
+            output.close();
+            output = null;
+        }
+    }
+
+    private void open() throws IOException {
+        final Path parent = path.toAbsolutePath().getParent();
+
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+
+        output = new BufferedOutputStream(
+            Files.newOutputStream(path, StandardOpenOption.CREATE, StandardOpenOption.APPEND),
+            BUFFER_SIZE);
+        size = Files.size(path);
+    }
+
+    private void rotate() throws IOException {
+        close();
+
+        if (maxFiles <= 0) {
+            Files.deleteIfExists(path);
+        } else {
+            Files.deleteIfExists(rotated(maxFiles));
+
+            for (int i = maxFiles - 1; i >= 1; i--) {
+                final Path source = rotated(i);
+
+                if (Files.exists(source)) {
+                    Files.move(source, rotated(i + 1), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+
+            Files.move(path, rotated(1), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        open();
+    }
+
+    private Path rotated(final int index) {
+        return Paths.get(path.toString() + "." + index);
+    }
+
+    @Override
+    public String toString() {
+        return path.toString();
+    }
+}
@@ -21,6 +21,7 @@
 
 package com.spotify.heroic.suggest;
 
+import com.spotify.heroic.common.ExecutorPools;
 import com.spotify.heroic.common.GroupSet;
 import eu.toolchain.async.AsyncFramework;
 
@@ -35,7 +36,8 @@ public class LocalSuggestManager implements SuggestManager {
 
     @Inject
     public LocalSuggestManager(
-        final AsyncFramework async, @Named("groupSet") final GroupSet<SuggestBackend> groupSet
+        @Named(ExecutorPools.METADATA_ASYNC) final AsyncFramework async,
+        @Named("groupSet") final GroupSet<SuggestBackend> groupSet
     ) {
         this.async = async;
         this.groupSet = groupSet;
@@ -0,0 +1,305 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.ws;
+
+import com.google.common.collect.ImmutableMap;
+import com.spotify.heroic.metric.MetricType;
+import com.spotify.heroic.metric.Point;
+import com.spotify.heroic.metric.QueryMetricsResponse;
+import com.spotify.heroic.metric.SeriesValues;
+import com.spotify.heroic.metric.ShardedResultGroup;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import javax.inject.Inject;
+import javax.ws.rs.NotAcceptableException;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.TimeStampMilliTZVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.dictionary.Dictionary;
+import org.apache.arrow.vector.dictionary.DictionaryProvider;
+import org.apache.arrow.vector.ipc.ArrowStreamWriter;
+import org.apache.arrow.vector.types.FloatingPointPrecision;
+import org.apache.arrow.vector.types.TimeUnit;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.DictionaryEncoding;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
+import org.apache.arrow.vector.types.pojo.Schema;
+
+/**
+ * Writes a {@link QueryMetricsResponse} as an Apache Arrow IPC stream.
+ * <p>
+ * Every result group becomes one record batch with a {@code timestamp} and a {@code value}
+ * column. The series key and every tag seen in the response are added as dictionary-encoded
+ * columns named {@code key} and {@code tag.<name>}, set on every row of a group when the group
+ * has a single value for it and null otherwise. Since a stream has a single schema, the set of tag
+ * columns is the union over all groups.
+ * <p>
+ * Only point results can be encoded, other types are rejected with 406 Not Acceptable.
+ */
+public class ArrowMessageBodyWriter implements MessageBodyWriter<QueryMetricsResponse> {
+    public static final String MEDIA_TYPE = "application/vnd.apache.arrow.stream";
+    public static final MediaType MEDIA_TYPE_TYPE =
+        new MediaType("application", "vnd.apache.arrow.stream");
+
+    public static final String TIMESTAMP = "timestamp";
+    public static final String VALUE = "value";
+    public static final String KEY = "key";
+    public static final String TAG_PREFIX = "tag.";
+
+    private static final ArrowType.Int INDEX_TYPE = new ArrowType.Int(32, true);
+
+    private static final BufferAllocator ROOT = new RootAllocator(Long.MAX_VALUE);
+
+    @Inject
+    public ArrowMessageBodyWriter() {
+    }
+
+    @Override
+    public boolean isWriteable(
+        final Class<?> type, final Type genericType, final Annotation[] annotations,
+        final MediaType mediaType
+    ) {
+        return QueryMetricsResponse.class.isAssignableFrom(type) &&
+            mediaType.isCompatible(MEDIA_TYPE_TYPE);
+    }
+
+    @Override
+    public long getSize(
+        final QueryMetricsResponse response, final Class<?> type, final Type genericType,
+        final Annotation[] annotations, final MediaType mediaType
+    ) {
+        return -1;
+    }
+
+    @Override
+    public void writeTo(
+        final QueryMetricsResponse response, final Class<?> type, final Type genericType,
+        final Annotation[] annotations, final MediaType mediaType,
+        final MultivaluedMap<String, Object> httpHeaders, final OutputStream out
+    ) throws IOException, WebApplicationException {
+        final List<ShardedResultGroup> groups = response.getResult();
+
+        for (final ShardedResultGroup group : groups) {
+            if (group.getMetrics().getType() != MetricType.POINT) {
+                throw new NotAcceptableException(
+                    "Only point results can be encoded as " + MEDIA_TYPE + ", got: " +
+                        group.getMetrics().getType());
+            }
+        }
+
+        final List<SeriesValues> values = new ArrayList<>(groups.size());
+        final Column key = new Column(KEY, 0);
+        final Map<String, Column> tags = new LinkedHashMap<>();
+
+        final SortedSet<String> tagNames = new TreeSet<>();
+
+        for (final ShardedResultGroup group : groups) {
+            final SeriesValues v = SeriesValues.fromSeries(group.getSeries().iterator());
+            values.add(v);
+            tagNames.addAll(v.getTags().keySet());
+        }
+
+        long id = 1;
+
+        for (final String name : tagNames) {
+            tags.put(name, new Column(TAG_PREFIX + name, id++));
+        }
+
+        for (final SeriesValues v : values) {
+            key.add(v.getKeys());
+
+            for (final Map.Entry<String, SortedSet<String>> e : v.getTags().entrySet()) {
+                tags.get(e.getKey()).add(e.getValue());
+            }
+        }
+
+        final List<Field> fields = new ArrayList<>();
+        fields.add(new Field(TIMESTAMP,
+            FieldType.nullable(new ArrowType.Timestamp(TimeUnit.MILLISECOND, "UTC")),
+            Collections.emptyList()));
+        fields.add(new Field(VALUE,
+            FieldType.nullable(new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE)),
+            Collections.emptyList()));
+        fields.add(key.field());
+
+        for (final Column column : tags.values()) {
+            fields.add(column.field());
+        }
+
+        final Schema schema = new Schema(fields, ImmutableMap.of(
+            "queryId", response.getQueryId().toString(),
+            "range.start", Long.toString(response.getRange().getStart()),
+            "range.end", Long.toString(response.getRange().getEnd())));
+
+        try (final BufferAllocator allocator = ROOT.newChildAllocator("query-metrics", 0,
+            Long.MAX_VALUE)) {
+            final DictionaryProvider.MapDictionaryProvider provider =
+                new DictionaryProvider.MapDictionaryProvider();
+
+            final List<VarCharVector> dictionaries = new ArrayList<>();
+
+            try (final VectorSchemaRoot root = VectorSchemaRoot.create(schema, allocator)) {
+                dictionaries.add(key.dictionary(allocator, provider));
+
+                for (final Column column : tags.values()) {
+                    dictionaries.add(column.dictionary(allocator, provider));
+                }
+
+                try (final PooledOutputStream buffered = new PooledOutputStream(out)) {
+                    final ArrowStreamWriter writer =
+                        new ArrowStreamWriter(root, provider, buffered);
+
+                    writer.start();
+
+                    for (int i = 0; i < groups.size(); i++) {
+                        writeGroup(root, groups.get(i), values.get(i), key, tags);
+                        writer.writeBatch();
+                    }
+
+                    writer.end();
+                }
+            } finally {
+                for (final VarCharVector dictionary : dictionaries) {
+                    dictionary.close();
+                }
+            }
+        }
+    }
+
+    private void writeGroup(
+        final VectorSchemaRoot root, final ShardedResultGroup group, final SeriesValues values,
+        final Column key, final Map<String, Column> tags
+    ) {
+        final List<Point> points = group.getMetrics().getDataAs(Point.class);
+        final int rows = points.size();
+
+        final TimeStampMilliTZVector timestamp = (TimeStampMilliTZVector) root.getVector(TIMESTAMP);
+        final Float8Vector value = (Float8Vector) root.getVector(VALUE);
+
+        timestamp.allocateNew(rows);
+        value.allocateNew(rows);
+
+        for (int i = 0; i < rows; i++) {
+            final Point p = points.get(i);
+            timestamp.setSafe(i, p.getTimestamp());
+            value.setSafe(i, p.getValue());
+        }
+
+        timestamp.setValueCount(rows);
+        value.setValueCount(rows);
+
+        key.fill(root, values.getKeys(), rows);
+
+        for (final Column column : tags.values()) {
+            column.fill(root, null, rows);
+        }
+
+        for (final Map.Entry<String, SortedSet<String>> e : values.getTags().entrySet()) {
+            tags.get(e.getKey()).fill(root, e.getValue(), rows);
+        }
+
+        root.setRowCount(rows);
+    }
+
+    /**
+     * A dictionary-encoded string column, with its dictionary built up front from every value
+     * which will be written to it.
+     */
+    private static class Column {
+        private final String name;
+        private final DictionaryEncoding encoding;
+        private final Map<String, Integer> index = new LinkedHashMap<>();
+
+        Column(final String name, final long id) {
+            this.name = name;
+            this.encoding = new DictionaryEncoding(id, false, INDEX_TYPE);
+        }
+
+        void add(final SortedSet<String> values) {
+            if (values.size() == 1) {
+                index.putIfAbsent(values.first(), index.size());
+            }
+        }
+
+        Field field() {
+            return new Field(name, new FieldType(true, INDEX_TYPE, encoding),
+                Collections.emptyList());
+        }
+
+        VarCharVector dictionary(
+            final BufferAllocator allocator, final DictionaryProvider.MapDictionaryProvider provider
+        ) {
+            final VarCharVector vector = new VarCharVector(name, allocator);
+            vector.allocateNew();
+
+            for (final Map.Entry<String, Integer> e : index.entrySet()) {
+                vector.setSafe(e.getValue(), e.getKey().getBytes(StandardCharsets.UTF_8));
+            }
+
+            vector.setValueCount(index.size());
+            provider.put(new Dictionary(vector, encoding));
+            return vector;
+        }
+
+        /**
+         * Set every row of the column to the single value in values, or null if there isn't
+         * exactly one value.
+         */
+        void fill(final VectorSchemaRoot root, final SortedSet<String> values, final int rows) {
+            final IntVector vector = (IntVector) root.getVector(name);
+            vector.allocateNew(rows);
+
+            if (values != null && values.size() == 1) {
+                final int i = index.get(values.first());
+
+                for (int row = 0; row < rows; row++) {
+                    vector.setSafe(row, i);
+                }
+            } else {
+                for (int row = 0; row < rows; row++) {
+                    vector.setNull(row);
+                }
+            }
+
+            vector.setValueCount(rows);
+        }
+    }
+}
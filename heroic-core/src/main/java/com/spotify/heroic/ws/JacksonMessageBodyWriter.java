@@ -37,14 +37,30 @@ import java.lang.reflect.Type;
 /**
  * A Jackson-based MessageBodyWriter.
  * <p>
- * This is used instead of the jackson provided ones to avoid bad default behaviours.
+ * This is used instead of the jackson provided ones to avoid bad default behaviours. Output is
+ * buffered through a pooled buffer, see {@link PooledOutputStream}.
+ * <p>
+ * Besides JSON, the binary CBOR and Smile encodings of the same model are produced when requested
+ * through content negotiation.
  */
 public class JacksonMessageBodyWriter implements MessageBodyWriter<Object> {
-    private final ObjectMapper mapper;
+    public static final MediaType APPLICATION_CBOR_TYPE = new MediaType("application", "cbor");
+    public static final MediaType APPLICATION_SMILE_TYPE =
+        new MediaType("application", "x-jackson-smile");
+
+    private final ObjectMapper json;
+    private final ObjectMapper cbor;
+    private final ObjectMapper smile;
 
     @Inject
-    public JacksonMessageBodyWriter(@Named("application/json") ObjectMapper mapper) {
-        this.mapper = mapper;
+    public JacksonMessageBodyWriter(
+        @Named("application/json") ObjectMapper json,
+        @Named("application/cbor") ObjectMapper cbor,
+        @Named("application/x-jackson-smile") ObjectMapper smile
+    ) {
+        this.json = json;
+        this.cbor = cbor;
+        this.smile = smile;
     }
 
     @Override
@@ -52,7 +68,7 @@ public class JacksonMessageBodyWriter implements MessageBodyWriter<Object> {
         final Class<?> type, final Type genericType, final Annotation[] annotations,
         final MediaType mediaType
     ) {
-        return mediaType.isCompatible(MediaType.APPLICATION_JSON_TYPE);
+        return mapperFor(mediaType) != null;
     }
 
     @Override
@@ -69,6 +85,27 @@ public class JacksonMessageBodyWriter implements MessageBodyWriter<Object> {
         final MediaType mediaType, final MultivaluedMap<String, Object> httpHeaders,
         final OutputStream out
     ) throws IOException, WebApplicationException {
-        mapper.writeValue(out, o);
+        try (final PooledOutputStream buffered = new PooledOutputStream(out)) {
+            mapperFor(mediaType).writeValue(buffered, o);
+        }
+    }
+
+    /**
+     * Pick the mapper matching the negotiated media type, or {@code null} if none is suitable.
+     */
+    private ObjectMapper mapperFor(final MediaType mediaType) {
+        if (mediaType.isCompatible(MediaType.APPLICATION_JSON_TYPE)) {
+            return json;
+        }
+
+        if (mediaType.isCompatible(APPLICATION_CBOR_TYPE)) {
+            return cbor;
+        }
+
+        if (mediaType.isCompatible(APPLICATION_SMILE_TYPE)) {
+            return smile;
+        }
+
+        return null;
     }
 }
@@ -46,7 +46,8 @@ public class Module implements HeroicModule {
                     errorMapper.webApplicationExceptionMapper(),
                     errorMapper.validationBodyErrorMapper(),
                     errorMapper.jacksonMessageBodyReader(),
-                    errorMapper.jacksonMessageBodyWriter()
+                    errorMapper.jacksonMessageBodyWriter(),
+                    errorMapper.arrowMessageBodyWriter()
                 );
                 // @formatter:on
             });
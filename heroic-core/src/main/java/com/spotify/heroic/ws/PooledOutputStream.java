@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.ws;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A buffered output stream which borrows its buffer from a shared pool.
+ * <p>
+ * Response bodies are written through this to cut down on the number of small writes passing
+ * through the container and its compression layers, without allocating a new buffer per response.
+ * Closing this stream flushes it and returns the buffer, but does not close the underlying stream.
+ */
+public class PooledOutputStream extends OutputStream {
+    public static final int BUFFER_SIZE = 64 * 1024;
+    public static final int POOL_SIZE = 64;
+
+    private static final BlockingQueue<byte[]> POOL = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    private final OutputStream out;
+
+    private byte[] buffer;
+    private int position = 0;
+
+    public PooledOutputStream(final OutputStream out) {
+        this.out = out;
+
+        final byte[] pooled = POOL.poll();
+        this.buffer = pooled != null ? pooled : new byte[BUFFER_SIZE];
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        if (position >= buffer.length) {
+            flushBuffer();
+        }
+
+        buffer[position++] = (byte) b;
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+        if (len >= buffer.length) {
+            /* larger than the buffer, write straight through */
+            flushBuffer();
+            out.write(b, off, len);
+            return;
+        }
+
+        if (len > buffer.length - position) {
+            flushBuffer();
+        }
+
+        System.arraycopy(b, off, buffer, position, len);
+        position += len;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (buffer == null) {
+            return;
+        }
+
+        try {
+            flushBuffer();
+        } finally {
+            POOL.offer(buffer);
+            buffer = null;
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (buffer == null) {
+            throw new IOException("Stream is closed");
+        }
+
+        if (position > 0) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+}
@@ -46,4 +46,6 @@ public interface RestfulComponent {
     JacksonMessageBodyReader jacksonMessageBodyReader();
 
     JacksonMessageBodyWriter jacksonMessageBodyWriter();
+
+    ArrowMessageBodyWriter arrowMessageBodyWriter();
 }
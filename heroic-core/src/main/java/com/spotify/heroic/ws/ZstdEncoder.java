@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.ws;
+
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import org.glassfish.jersey.spi.ContentEncoder;
+
+/**
+ * Zstandard content encoding.
+ * <p>
+ * Applied to responses when requested through the Accept-Encoding header, and to request bodies
+ * with a matching Content-Encoding. Gzip is handled separately by the http server.
+ */
+public class ZstdEncoder extends ContentEncoder {
+    public static final String ZSTD = "zstd";
+
+    private static final int LEVEL = 3;
+
+    public ZstdEncoder() {
+        super(ZSTD);
+    }
+
+    @Override
+    public InputStream decode(final String contentEncoding, final InputStream encodedStream)
+        throws IOException {
+        return new ZstdInputStream(encodedStream);
+    }
+
+    @Override
+    public OutputStream encode(final String contentEncoding, final OutputStream entityStream)
+        throws IOException {
+        return new ZstdOutputStream(entityStream, LEVEL);
+    }
+}
@@ -53,8 +53,9 @@ public class CoreQueryManagerTest {
         when(queryLoggerFactory.create(any())).thenReturn(queryLogger);
 
         manager = new CoreQueryManager(Features.empty(), async, Clock.system(), cluster, parser,
-            queryCache, aggregations, OptionalLimit.empty(), smallQueryThreshold, queryReporter,
-            Optional.empty(), queryLoggerFactory);
+            queryCache, new QueryCoalescer(async, queryReporter), aggregations,
+            OptionalLimit.empty(), smallQueryThreshold, queryReporter, Optional.empty(),
+            queryLoggerFactory);
     }
 
     @Test
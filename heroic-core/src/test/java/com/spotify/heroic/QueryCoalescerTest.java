@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.spotify.heroic.common.Duration;
+import com.spotify.heroic.common.Feature;
+import com.spotify.heroic.common.Features;
+import com.spotify.heroic.metric.FullQuery;
+import com.spotify.heroic.metric.QueryResult;
+import com.spotify.heroic.metric.Tracing;
+import com.spotify.heroic.statistics.QueryReporter;
+import eu.toolchain.async.AsyncFramework;
+import eu.toolchain.async.AsyncFuture;
+import eu.toolchain.async.ResolvableFuture;
+import eu.toolchain.async.TinyAsync;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class QueryCoalescerTest {
+    private ExecutorService executor;
+    private AsyncFramework async;
+    private QueryReporter reporter;
+    private QueryCoalescer coalescer;
+
+    private FullQuery.Request request;
+    private QueryResult result;
+
+    private ResolvableFuture<QueryResult> shared;
+    private AtomicInteger loads;
+    private Supplier<AsyncFuture<QueryResult>> loader;
+
+    @Before
+    public void setup() {
+        executor = Executors.newSingleThreadExecutor();
+        async = TinyAsync.builder().executor(executor).build();
+        reporter = mock(QueryReporter.class);
+        coalescer = new QueryCoalescer(async, reporter);
+
+        request = mock(FullQuery.Request.class);
+        when(request.features()).thenReturn(Features.of(Feature.COALESCE_QUERIES));
+        when(request.options()).thenReturn(QueryOptions.defaults());
+        result = mock(QueryResult.class);
+
+        shared = async.future();
+        loads = new AtomicInteger();
+        loader = () -> {
+            loads.incrementAndGet();
+            return shared;
+        };
+    }
+
+    @After
+    public void teardown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void testIdenticalQueriesShareResult() throws Exception {
+        final AsyncFuture<QueryResult> a = coalescer.load(request, loader);
+        final AsyncFuture<QueryResult> b = coalescer.load(request, loader);
+
+        assertEquals(1, loads.get());
+        verify(reporter, times(1)).reportCoalescedQuery();
+
+        shared.resolve(result);
+
+        assertSame(result, a.get());
+        assertSame(result, b.get());
+        assertEquals(0, coalescer.inFlight());
+    }
+
+    @Test
+    public void testCompletedQueryIsNotShared() {
+        coalescer.load(request, loader);
+        shared.resolve(result);
+
+        shared = async.future();
+        coalescer.load(request, loader);
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testCancellingOneSubscriber() throws Exception {
+        final AsyncFuture<QueryResult> a = coalescer.load(request, loader);
+        final AsyncFuture<QueryResult> b = coalescer.load(request, loader);
+
+        a.cancel();
+        assertFalse(shared.isDone());
+
+        shared.resolve(result);
+        assertTrue(a.isCancelled());
+        assertSame(result, b.get());
+    }
+
+    @Test
+    public void testCancellingAllSubscribers() {
+        final AsyncFuture<QueryResult> a = coalescer.load(request, loader);
+        final AsyncFuture<QueryResult> b = coalescer.load(request, loader);
+
+        a.cancel();
+        b.cancel();
+
+        assertTrue(shared.isCancelled());
+        assertEquals(0, coalescer.inFlight());
+    }
+
+    @Test
+    public void testFailureIsShared() {
+        final AsyncFuture<QueryResult> a = coalescer.load(request, loader);
+        final AsyncFuture<QueryResult> b = coalescer.load(request, loader);
+
+        shared.fail(new RuntimeException("boom"));
+
+        assertTrue(a.isFailed());
+        assertTrue(b.isFailed());
+    }
+
+    @Test
+    public void testDifferentTimeoutsAreNotShared() {
+        final FullQuery.Request other = mock(FullQuery.Request.class);
+        when(other.features()).thenReturn(Features.of(Feature.COALESCE_QUERIES));
+        when(other.options()).thenReturn(
+            QueryOptions.builder().timeout(Duration.of(10, TimeUnit.SECONDS)).build());
+
+        coalescer.load(request, loader);
+        coalescer.load(other, loader);
+
+        assertEquals(2, loads.get());
+        assertEquals(2, coalescer.inFlight());
+    }
+
+    @Test
+    public void testDetailedTracingIsNotShared() {
+        when(request.options()).thenReturn(
+            QueryOptions.builder().tracing(Tracing.DETAILED).build());
+
+        coalescer.load(request, loader);
+        coalescer.load(request, loader);
+
+        assertEquals(2, loads.get());
+        assertEquals(0, coalescer.inFlight());
+    }
+
+    @Test
+    public void testDisabledWithoutFeature() {
+        when(request.features()).thenReturn(Features.empty());
+
+        coalescer.load(request, loader);
+        coalescer.load(request, loader);
+
+        assertEquals(2, loads.get());
+        assertEquals(0, coalescer.inFlight());
+    }
+}
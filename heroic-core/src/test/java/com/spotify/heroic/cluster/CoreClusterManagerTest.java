@@ -1,19 +1,29 @@
 package com.spotify.heroic.cluster;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.spotify.heroic.HeroicConfiguration;
 import com.spotify.heroic.HeroicContext;
 import com.spotify.heroic.scheduler.Scheduler;
 import com.spotify.heroic.statistics.QueryReporter;
 import eu.toolchain.async.AsyncFramework;
 import eu.toolchain.async.AsyncFuture;
+import eu.toolchain.async.TinyAsync;
+import java.net.URI;
 import java.util.Map;
 import org.junit.Before;
 import org.junit.Test;
@@ -71,4 +81,85 @@ public class CoreClusterManagerTest {
         verify(reporter, times(0)).reportClusterNodeRpcError();
         verify(reporter, times(0)).reportClusterNodeRpcCancellation();
     }
+
+    @Test
+    public void refreshReusesHealthyNodes() throws Exception {
+        final AsyncFramework async = directAsync();
+        final CoreClusterManager manager = directManager(async);
+
+        final URI uri1 = URI.create("jvm://one");
+        final URI uri2 = URI.create("jvm://two");
+        final ClusterNode node1 = node(ImmutableMap.of("shard", "a"));
+        final ClusterNode node2 = node(ImmutableMap.of("shard", "a"));
+
+        manager.clients.set(ImmutableMap.of(uri1, node1));
+        doReturn(async.resolved(new CoreClusterManager.SuccessfulUpdate(uri2, true, node2)))
+            .when(manager)
+            .createClusterNode(any(String.class), eq(uri2));
+
+        manager.refreshSweep("id").transform(ImmutableList.of(ImmutableList.of(uri1, uri2))).get();
+
+        assertEquals(ImmutableSet.of(node1, node2), ImmutableSet.copyOf(manager.getNodes()));
+        verify(node1, never()).fetchMetadata();
+        verify(node1, never()).close();
+    }
+
+    @Test
+    public void refreshProbesUnhealthyNodes() throws Exception {
+        final AsyncFramework async = directAsync();
+        final CoreClusterManager manager = directManager(async);
+
+        final URI uri1 = URI.create("jvm://one");
+        final ClusterNode node1 = node(ImmutableMap.of("shard", "a"));
+        doReturn(async.failed(new RuntimeException("down"))).when(node1).fetchMetadata();
+        doReturn(async.resolved()).when(node1).close();
+
+        manager.clients.set(ImmutableMap.of(uri1, node1));
+        manager.unhealthy.add(uri1);
+
+        manager.refreshSweep("id").transform(ImmutableList.of(ImmutableList.of(uri1))).get();
+
+        /* failed node is closed and dropped */
+        assertFalse(manager.getNodes().contains(node1));
+        assertFalse(manager.unhealthy.contains(uri1));
+        verify(node1).close();
+    }
+
+    @Test
+    public void healthCheckMarksUnhealthy() throws Exception {
+        final AsyncFramework async = directAsync();
+        final CoreClusterManager manager = directManager(async);
+
+        final URI uri1 = URI.create("jvm://one");
+        final URI uri2 = URI.create("jvm://two");
+        final ClusterNode node1 = node(ImmutableMap.of("shard", "a"));
+        final ClusterNode node2 = node(ImmutableMap.of("shard", "a"));
+        doReturn(async.resolved(node1.metadata())).when(node1).fetchMetadata();
+        doReturn(async.failed(new RuntimeException("down"))).when(node2).fetchMetadata();
+
+        manager.clients.set(ImmutableMap.of(uri1, node1, uri2, node2));
+        doReturn(async.resolved()).when(manager).refresh();
+
+        manager.healthCheck().get();
+
+        assertEquals(ImmutableSet.of(uri2), manager.unhealthy);
+        verify(manager).refresh();
+    }
+
+    private AsyncFramework directAsync() {
+        return TinyAsync.builder().executor(MoreExecutors.newDirectExecutorService()).build();
+    }
+
+    private CoreClusterManager directManager(final AsyncFramework async) {
+        return spy(new CoreClusterManager(async, discovery, localMetadata, protocols, scheduler,
+            false, options, local, context, ImmutableSet.of(), reporter));
+    }
+
+    private ClusterNode node(final Map<String, String> tags) {
+        final ClusterNode node = mock(ClusterNode.class);
+        final NodeMetadata metadata = mock(NodeMetadata.class);
+        doReturn(tags).when(metadata).getTags();
+        doReturn(metadata).when(node).metadata();
+        return node;
+    }
 }
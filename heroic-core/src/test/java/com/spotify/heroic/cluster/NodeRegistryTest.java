@@ -0,0 +1,103 @@
+package com.spotify.heroic.cluster;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import eu.toolchain.async.AsyncFramework;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import org.junit.Before;
+import org.junit.Test;
+
+public class NodeRegistryTest {
+    private final Map<String, String> shard1 = ImmutableMap.of("shard", "1");
+    private final Map<String, String> shard2 = ImmutableMap.of("shard", "2");
+
+    private ClusterNode a;
+    private ClusterNode b;
+    private ClusterNode c;
+    private ClusterNode dead;
+
+    private NodeRegistry registry;
+
+    @Before
+    public void setup() {
+        a = node(shard1, true);
+        b = node(shard1, true);
+        dead = node(shard1, false);
+        c = node(shard2, true);
+
+        registry = new NodeRegistry(mock(AsyncFramework.class), ImmutableList.of(a, b, dead, c),
+            4);
+    }
+
+    @Test
+    public void testShards() {
+        assertEquals(ImmutableSet.of(shard1, shard2), registry.getShards());
+        assertEquals(ImmutableList.of(a, b, dead), registry.getNodesInShard(shard1));
+        assertEquals(ImmutableList.of(c), registry.getNodesInShard(shard2));
+        assertEquals(ImmutableList.of(), registry.getNodesInShard(ImmutableMap.of()));
+    }
+
+    @Test
+    public void testNodeInShard() {
+        final Set<ClusterNode> picked = new HashSet<>();
+
+        for (int i = 0; i < 100; i++) {
+            picked.add(registry.getNodeInShardButNotWithId(shard1, n -> false).get());
+        }
+
+        /* dead nodes are never picked */
+        assertEquals(ImmutableSet.of(a, b), picked);
+
+        assertEquals(Optional.of(b), registry.getNodeInShardButNotWithId(shard1, n -> n == a));
+        assertFalse(registry.getNodeInShardButNotWithId(shard2, n -> n == c).isPresent());
+        assertFalse(
+            registry.getNodeInShardButNotWithId(ImmutableMap.of(), n -> false).isPresent());
+    }
+
+    @Test
+    public void testNodeInShardIsUniform() {
+        final ClusterNode w = node(shard1, true);
+        final ClusterNode x = node(shard1, true);
+        final ClusterNode y = node(shard1, true);
+        final ClusterNode z = node(shard1, true);
+
+        final NodeRegistry uniform =
+            new NodeRegistry(mock(AsyncFramework.class), ImmutableList.of(w, x, y, z), 4);
+
+        final Map<ClusterNode, Integer> counts = new HashMap<>();
+        final int picks = 30000;
+
+        for (int i = 0; i < picks; i++) {
+            counts.merge(uniform.getNodeInShardButNotWithId(shard1, n -> n == x).get(), 1,
+                Integer::sum);
+        }
+
+        /* the node following an excluded node must not get its share of picks */
+        assertEquals(ImmutableSet.of(w, y, z), counts.keySet());
+
+        for (final int count : counts.values()) {
+            assertTrue("expected about a third of all picks, got " + count,
+                Math.abs(count - picks / 3) < picks / 20);
+        }
+    }
+
+    private ClusterNode node(final Map<String, String> tags, final boolean alive) {
+        final ClusterNode node = mock(ClusterNode.class);
+        final NodeMetadata metadata = mock(NodeMetadata.class);
+        doReturn(tags).when(metadata).getTags();
+        doReturn(metadata).when(node).metadata();
+        doReturn(alive).when(node).isAlive();
+        return node;
+    }
+}
@@ -0,0 +1,367 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.http.query;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.spotify.heroic.common.DateRange;
+import com.spotify.heroic.common.Series;
+import com.spotify.heroic.metric.MetricCollection;
+import com.spotify.heroic.metric.Point;
+import com.spotify.heroic.metric.QueryError;
+import com.spotify.heroic.metric.QueryMetricsResponse;
+import com.spotify.heroic.metric.QueryTrace;
+import com.spotify.heroic.metric.RequestError;
+import com.spotify.heroic.metric.ResultLimits;
+import com.spotify.heroic.metric.ShardedResultGroup;
+import com.spotify.heroic.test.FakeModuleLoader;
+import eu.toolchain.async.AsyncFramework;
+import eu.toolchain.async.ResolvableFuture;
+import eu.toolchain.async.TinyAsync;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.stream.Collectors;
+import org.junit.Before;
+import org.junit.Test;
+
+public class QueryMetricsStreamTest {
+    private final ObjectMapper mapper = FakeModuleLoader.builder().build().json();
+    private final AsyncFramework async =
+        TinyAsync.builder().executor(MoreExecutors.newDirectExecutorService()).build();
+
+    private QueryMetricsResponse response;
+
+    @Before
+    public void setup() {
+        final UUID queryId = UUID.fromString("d11d0ad7-cc27-4667-a617-67a481f61c30");
+        final DateRange range = DateRange.create(1000L, 2000L);
+
+        final ShardedResultGroup a = new ShardedResultGroup(ImmutableMap.of(), ImmutableMap.of(),
+            ImmutableSet.of(Series.of("a", ImmutableMap.of("role", "web", "host", "a"))),
+            MetricCollection.points(ImmutableList.of(new Point(1000L, 1.0d))), 10L);
+
+        final ShardedResultGroup b = new ShardedResultGroup(ImmutableMap.of(), ImmutableMap.of(),
+            ImmutableSet.of(Series.of("a", ImmutableMap.of("role", "web", "site", "lon"))),
+            MetricCollection.points(ImmutableList.of(new Point(1000L, 2.0d))), 10L);
+
+        final List<RequestError> errors = ImmutableList.of(QueryError.fromMessage("error"));
+
+        response = new QueryMetricsResponse(queryId, range, ImmutableList.of(a, b), errors,
+            QueryTrace.of(QueryTrace.identifier("test"), 0L), ResultLimits.of(), Optional.of(2L),
+            Optional.empty());
+    }
+
+    @Test
+    public void testSingle() throws Exception {
+        final List<JsonNode> frames = write(single());
+
+        assertEquals(4, frames.size());
+
+        assertEquals("header", frames.get(0).get("frame").asText());
+        assertEquals(response.getQueryId().toString(), frames.get(0).get("queryId").asText());
+
+        assertEquals("group", frames.get(1).get("frame").asText());
+        assertEquals(1.0d, frames.get(1).get("values").get(0).get(1).asDouble(), 0d);
+        assertEquals("a", frames.get(1).get("tags").get("host").asText());
+
+        assertEquals("group", frames.get(2).get("frame").asText());
+        assertEquals(2.0d, frames.get(2).get("values").get(0).get(1).asDouble(), 0d);
+
+        final JsonNode trailer = frames.get(3);
+        assertEquals("trailer", trailer.get("frame").asText());
+        assertEquals(1000L, trailer.get("range").get("start").asLong());
+        assertEquals(2L, trailer.get("preAggregationSampleSize").asLong());
+        assertEquals(1, trailer.get("errors").size());
+        assertEquals(ImmutableList.of("role"), fieldNames(trailer.get("commonTags")));
+        assertEquals("web", trailer.get("commonTags").get("role").get(0).asText());
+    }
+
+    @Test
+    public void testMatchesRegularResponse() throws Exception {
+        final JsonNode expected = mapper.valueToTree(response);
+        final List<JsonNode> frames = write(single());
+        final JsonNode trailer = frames.get(frames.size() - 1);
+
+        assertEquals(expected.get("range"), trailer.get("range"));
+        assertEquals(expected.get("commonTags"), trailer.get("commonTags"));
+        assertEquals(expected.get("commonResource"), trailer.get("commonResource"));
+        assertEquals(expected.get("errors"), trailer.get("errors"));
+
+        for (int i = 0; i < response.getResult().size(); i++) {
+            final JsonNode group = frames.get(i + 1);
+            final JsonNode expectedGroup = expected.get("result").get(i);
+
+            for (final String field : fieldNames(expectedGroup)) {
+                assertEquals(expectedGroup.get(field), group.get(field));
+            }
+        }
+    }
+
+    @Test
+    public void testBatch() throws Exception {
+        final QueryMetricsStream stream = new QueryMetricsStream(mapper, 2, 10, SECONDS);
+        final Optional<String> first = Optional.of("first");
+        final Optional<String> second = Optional.of("second");
+
+        stream.header(first, response.getQueryId());
+        stream.header(second, response.getQueryId());
+
+        // groups from both queries arrive interleaved
+        for (final ShardedResultGroup group : response.getResult()) {
+            stream.group(second, group);
+            stream.group(first, group);
+        }
+
+        stream.complete(second, withoutResult(response));
+        stream.complete(first, withoutResult(response));
+
+        final List<JsonNode> frames = write(stream);
+
+        assertEquals(8, frames.size());
+        assertEquals(ImmutableList.of("header", "group", "group", "trailer"),
+            frameTypes(frames, "first"));
+        assertEquals(ImmutableList.of("header", "group", "group", "trailer"),
+            frameTypes(frames, "second"));
+    }
+
+    @Test
+    public void testWritesGroupsBeforeCompletion() throws Exception {
+        final QueryMetricsStream stream = new QueryMetricsStream(mapper, 1, 10, SECONDS);
+        final BlockingQueue<String> lines = new LinkedBlockingQueue<>();
+
+        stream.header(Optional.empty(), response.getQueryId());
+        stream.group(Optional.empty(), response.getResult().get(0));
+
+        final Thread writer = new Thread(() -> {
+            try {
+                stream.write(new LineOutputStream(lines));
+            } catch (final IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        writer.start();
+
+        assertEquals("header", mapper.readTree(lines.poll(10, SECONDS)).get("frame").asText());
+        assertEquals("group", mapper.readTree(lines.poll(10, SECONDS)).get("frame").asText());
+
+        stream.complete(Optional.empty(), withoutResult(response));
+
+        assertEquals("trailer", mapper.readTree(lines.poll(10, SECONDS)).get("frame").asText());
+        writer.join();
+    }
+
+    @Test
+    public void testFailed() throws Exception {
+        final QueryMetricsStream stream = new QueryMetricsStream(mapper, 1, 10, SECONDS);
+
+        stream.header(Optional.empty(), response.getQueryId());
+        stream.group(Optional.empty(), response.getResult().get(0));
+        stream.fail(Optional.empty(), new RuntimeException("failed"));
+
+        final List<JsonNode> frames = write(stream);
+
+        assertEquals(3, frames.size());
+
+        final JsonNode trailer = frames.get(2);
+        assertEquals("trailer", trailer.get("frame").asText());
+        assertEquals(1, trailer.get("errors").size());
+        assertTrue(trailer.get("errors").get(0).get("error").asText().contains("failed"));
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        final QueryMetricsStream stream = new QueryMetricsStream(mapper, 1, 10, MILLISECONDS);
+
+        stream.header(Optional.empty(), response.getQueryId());
+
+        final List<JsonNode> frames = write(stream);
+
+        assertEquals(2, frames.size());
+        assertEquals("trailer", frames.get(1).get("frame").asText());
+        assertEquals(1, frames.get(1).get("errors").size());
+    }
+
+    @Test
+    public void testGroupsAreBounded() throws Exception {
+        final QueryMetricsStream stream = new QueryMetricsStream(mapper, 1, 10, SECONDS, 1);
+        final CountDownLatch done = new CountDownLatch(1);
+
+        final Thread producer = new Thread(() -> {
+            stream.header(Optional.empty(), response.getQueryId());
+            response.getResult().forEach(group -> stream.group(Optional.empty(), group));
+            stream.complete(Optional.empty(), withoutResult(response));
+            done.countDown();
+        });
+
+        producer.start();
+
+        // the second group waits until the first has been written
+        assertFalse(done.await(200, MILLISECONDS));
+
+        final List<JsonNode> frames = write(stream);
+        producer.join();
+
+        assertEquals(ImmutableList.of("header", "group", "group", "trailer"),
+            frames.stream().map(f -> f.get("frame").asText()).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testTimeoutCancelsQueries() throws Exception {
+        final QueryMetricsStream stream = new QueryMetricsStream(mapper, 1, 10, MILLISECONDS);
+        final ResolvableFuture<Void> query = async.future();
+
+        stream.header(Optional.empty(), response.getQueryId());
+        stream.bind(query);
+        write(stream);
+
+        assertTrue(query.isCancelled());
+
+        // queries bound after the stream is closed are cancelled right away
+        final ResolvableFuture<Void> late = async.future();
+        stream.bind(late);
+        assertTrue(late.isCancelled());
+    }
+
+    @Test
+    public void testFailedOutputCancelsQueries() throws Exception {
+        final QueryMetricsStream stream = new QueryMetricsStream(mapper, 1, 10, SECONDS);
+        final ResolvableFuture<Void> query = async.future();
+
+        stream.header(Optional.empty(), response.getQueryId());
+        stream.bind(query);
+
+        try {
+            stream.write(new OutputStream() {
+                @Override
+                public void write(final int b) throws IOException {
+                    throw new IOException("client went away");
+                }
+            });
+            fail("expected write to fail");
+        } catch (final IOException e) {
+            assertTrue(query.isCancelled());
+        }
+    }
+
+    @Test
+    public void testFinishedQueriesAreNotCancelled() throws Exception {
+        final ResolvableFuture<Void> query = async.future();
+        final QueryMetricsStream stream = single();
+
+        stream.bind(query);
+        query.resolve(null);
+        write(stream);
+
+        assertTrue(query.isResolved());
+    }
+
+    private QueryMetricsStream single() {
+        final QueryMetricsStream stream = new QueryMetricsStream(mapper, 1, 10, SECONDS);
+
+        stream.header(Optional.empty(), response.getQueryId());
+        response.getResult().forEach(group -> stream.group(Optional.empty(), group));
+        stream.complete(Optional.empty(), withoutResult(response));
+        return stream;
+    }
+
+    /**
+     * Groups are streamed separately, so completed responses don't carry them.
+     */
+    private QueryMetricsResponse withoutResult(final QueryMetricsResponse r) {
+        return new QueryMetricsResponse(r.getQueryId(), r.getRange(), ImmutableList.of(),
+            r.getErrors(), r.getTrace(), r.getLimits(), r.getPreAggregationSampleSize(),
+            r.getCache());
+    }
+
+    private List<String> frameTypes(final List<JsonNode> frames, final String query) {
+        final List<String> types = new ArrayList<>();
+
+        for (final JsonNode frame : frames) {
+            if (query.equals(frame.get("query").asText())) {
+                types.add(frame.get("frame").asText());
+            }
+        }
+
+        return types;
+    }
+
+    private List<JsonNode> write(final QueryMetricsStream stream) throws Exception {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        stream.write(output);
+
+        final List<JsonNode> frames = new ArrayList<>();
+
+        for (final String line : output.toString(StandardCharsets.UTF_8.name()).split("\n")) {
+            frames.add(mapper.readTree(line));
+        }
+
+        return frames;
+    }
+
+    private List<String> fieldNames(final JsonNode node) {
+        return ImmutableList.copyOf(node.fieldNames());
+    }
+
+    /**
+     * Collects written lines as soon as they are complete.
+     */
+    private static class LineOutputStream extends OutputStream {
+        private final BlockingQueue<String> lines;
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+        LineOutputStream(final BlockingQueue<String> lines) {
+            this.lines = lines;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            if (b == '\n') {
+                lines.add(line.toString(StandardCharsets.UTF_8.name()));
+                line.reset();
+                return;
+            }
+
+            line.write(b);
+        }
+    }
+}
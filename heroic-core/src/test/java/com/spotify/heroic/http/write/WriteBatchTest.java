@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.http.write;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.spotify.heroic.common.Series;
+import com.spotify.heroic.ingestion.Ingestion;
+import com.spotify.heroic.metric.MetricCollection;
+import com.spotify.heroic.metric.Point;
+import com.spotify.heroic.test.FakeModuleLoader;
+import com.spotify.proto.Spotify100.Batch;
+import com.spotify.proto.Spotify100.Metric;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.junit.Test;
+import org.xerial.snappy.Snappy;
+
+public class WriteBatchTest {
+    private final ObjectMapper mapper = FakeModuleLoader.builder().build().json();
+
+    private final Series a = Series.of("a", ImmutableMap.of("host", "a"));
+    private final Series b = Series.of("b", ImmutableMap.of("host", "b"));
+
+    @Test
+    public void testSpotify100Proto() throws Exception {
+        final Batch batch = Batch
+            .newBuilder()
+            .addMetric(metric("a", 2000L, 2.0d))
+            .addMetric(metric("b", 1000L, 3.0d))
+            .addMetric(metric("a", 1000L, 1.0d))
+            .build();
+
+        final WriteBatch writeBatch =
+            WriteBatch.fromSpotify100Proto(Snappy.compress(batch.toByteArray()));
+
+        assertEquals(3, writeBatch.size());
+        assertEquals(ImmutableList.of(), writeBatch.errors());
+        assertEquals(ImmutableList.of(
+            new Ingestion.Request(a, MetricCollection.points(
+                ImmutableList.of(new Point(1000L, 1.0d), new Point(2000L, 2.0d)))),
+            new Ingestion.Request(b, MetricCollection.points(
+                ImmutableList.of(new Point(1000L, 3.0d))))), writeBatch.requests());
+    }
+
+    @Test
+    public void testSpotify100ProtoInvalidItems() throws Exception {
+        final Batch batch = Batch
+            .newBuilder()
+            .addMetric(metric("a", 1000L, 1.0d))
+            .addMetric(metric("a", 0L, 2.0d))
+            .addMetric(metric("", 1000L, 3.0d))
+            .build();
+
+        final WriteBatch writeBatch =
+            WriteBatch.fromSpotify100Proto(Snappy.compress(batch.toByteArray()));
+
+        assertEquals(1, writeBatch.size());
+        assertEquals(2, writeBatch.errors().size());
+        assertEquals(a, writeBatch.errors().get(0).getSeries());
+        assertEquals(1, writeBatch.requests().size());
+    }
+
+    @Test
+    public void testJson() throws Exception {
+        final String input = String.join("\n",
+            "{\"series\": {\"key\": \"a\", \"tags\": {\"host\": \"a\"}}, "
+                + "\"data\": {\"type\": \"points\", \"data\": [[2000, 2.0]]}}",
+            "{\"series\": {\"key\": \"a\", \"tags\": {\"host\": \"a\"}}, "
+                + "\"data\": {\"type\": \"points\", \"data\": [[1000, 1.0]]}}",
+            "{\"data\": {\"type\": \"points\", \"data\": [[1000, 1.0]]}}");
+
+        final WriteBatch writeBatch = WriteBatch.fromJson(mapper.reader(),
+            new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)));
+
+        final List<Ingestion.Request> requests = writeBatch.requests();
+
+        assertEquals(2, writeBatch.size());
+        assertEquals(1, writeBatch.errors().size());
+        assertEquals(ImmutableList.of(new Ingestion.Request(a, MetricCollection.points(
+            ImmutableList.of(new Point(1000L, 1.0d), new Point(2000L, 2.0d))))), requests);
+    }
+
+    @Test
+    public void testJsonMalformedLines() throws Exception {
+        final String input = String.join("\n",
+            "{\"series\": {\"key\": \"a\", \"tags\": {\"host\": \"a\"}}, "
+                + "\"data\": {\"type\": \"points\", \"data\": [[1000, 1.0]]}}",
+            "{\"series\": {\"key\": ",
+            "",
+            "not json",
+            "{\"series\": {\"key\": \"a\", \"tags\": {\"host\": \"a\"}}, "
+                + "\"data\": {\"type\": \"points\", \"data\": [[2000, 2.0]]}}");
+
+        final WriteBatch writeBatch = WriteBatch.fromJson(mapper.reader(),
+            new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(2, writeBatch.size());
+        assertEquals(2, writeBatch.errors().size());
+        assertTrue(writeBatch.errors().get(0).getError().startsWith("line 2: "));
+        assertTrue(writeBatch.errors().get(1).getError().startsWith("line 4: "));
+        assertEquals(ImmutableList.of(new Ingestion.Request(a, MetricCollection.points(
+            ImmutableList.of(new Point(1000L, 1.0d), new Point(2000L, 2.0d))))),
+            writeBatch.requests());
+    }
+
+    private Metric metric(final String key, final long time, final double value) {
+        return Metric
+            .newBuilder()
+            .setKey(key)
+            .setTime(time)
+            .setValue(value)
+            .putTags("host", key)
+            .build();
+    }
+}
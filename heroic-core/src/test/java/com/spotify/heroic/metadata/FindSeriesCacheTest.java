@@ -0,0 +1,175 @@
+package com.spotify.heroic.metadata;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import com.spotify.heroic.common.DateRange;
+import com.spotify.heroic.common.Duration;
+import com.spotify.heroic.common.Groups;
+import com.spotify.heroic.common.OptionalLimit;
+import com.spotify.heroic.common.SelectedGroup;
+import com.spotify.heroic.common.Series;
+import com.spotify.heroic.filter.MatchKeyFilter;
+import com.spotify.heroic.metadata.memory.MemoryBackend;
+import eu.toolchain.async.AsyncFramework;
+import eu.toolchain.async.AsyncFuture;
+import eu.toolchain.async.ResolvableFuture;
+import eu.toolchain.async.TinyAsync;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FindSeriesCacheTest {
+    private static final DateRange RANGE = new DateRange(1000, 2000);
+
+    private final Series a = Series.of("foo", ImmutableMap.of("host", "a"));
+    private final Series b = Series.of("foo", ImmutableMap.of("host", "b"));
+    private final Series c = Series.of("bar", ImmutableMap.of("host", "c"));
+
+    private ExecutorService executor;
+    private AsyncFramework async;
+    private Set<Series> storage;
+    private FindSeriesCache cache;
+    private MetadataBackendGroup group;
+
+    @Before
+    public void setup() {
+        executor = Executors.newSingleThreadExecutor();
+        async = TinyAsync.builder().executor(executor).build();
+
+        storage = Sets.newConcurrentHashSet();
+        cache = new FindSeriesCache(async,
+            new FindSeriesCache.Config(Optional.of(Duration.of(1, TimeUnit.HOURS)),
+                Optional.of(1000L), Optional.of(Duration.of(1, TimeUnit.MINUTES))));
+
+        final MemoryBackend backend = new MemoryBackend(async, Groups.of("memory"), storage);
+        group = new MetadataBackendGroup(new SelectedGroup<>(ImmutableSet.of(backend)), async,
+            Optional.of(cache));
+    }
+
+    @After
+    public void teardown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testCached() throws Exception {
+        storage.add(a);
+        assertEquals(ImmutableSet.of(a), findFoo(RANGE));
+
+        /* not written through the group, so the cached entry is still used */
+        storage.add(b);
+        assertEquals(ImmutableSet.of(a), findFoo(RANGE));
+        assertEquals(ImmutableSet.of(a), findFoo(new DateRange(1500, 2500)));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testInvalidatedByMatchingWrite() throws Exception {
+        storage.add(a);
+        assertEquals(ImmutableSet.of(a), findFoo(RANGE));
+
+        group.write(new WriteMetadata.Request(b, RANGE)).get();
+        assertEquals(ImmutableSet.of(a, b), findFoo(RANGE));
+    }
+
+    @Test
+    public void testNotInvalidatedByOtherWrite() throws Exception {
+        storage.add(a);
+        assertEquals(ImmutableSet.of(a), findFoo(RANGE));
+
+        storage.add(b);
+        group.write(new WriteMetadata.Request(c, RANGE)).get();
+        assertEquals(ImmutableSet.of(a), findFoo(RANGE));
+    }
+
+    @Test
+    public void testInvalidatedByDelete() throws Exception {
+        storage.add(a);
+        storage.add(b);
+        assertEquals(ImmutableSet.of(a, b), findFoo(RANGE));
+
+        group
+            .deleteSeries(new DeleteSeries.Request(MatchKeyFilter.create("foo"), RANGE,
+                OptionalLimit.empty()))
+            .get();
+        assertEquals(ImmutableSet.of(), findFoo(RANGE));
+    }
+
+    @Test
+    public void testBatchedWrites() throws Exception {
+        storage.add(a);
+        assertEquals(ImmutableSet.of(a), findFoo(RANGE));
+
+        group.write(new WriteMetadata.Request(c, RANGE)).get();
+        group.write(new WriteMetadata.Request(b, RANGE)).get();
+        assertEquals(ImmutableSet.of(a, b), findFoo(RANGE));
+    }
+
+    @Test
+    public void testLoadRacingWithMatchingWrite() throws Exception {
+        final ResolvableFuture<FindSeries> load = async.future();
+        final AsyncFuture<FindSeries> result = cache.findSeries(ImmutableSet.of(), fooRequest(),
+            request -> load);
+
+        cache.written(b);
+        load.resolve(FindSeries.of(ImmutableSet.of(a), false));
+        result.get();
+
+        /* the loaded result might not contain b, so it's not cached */
+        final AtomicInteger lookups = new AtomicInteger();
+        cache.findSeries(ImmutableSet.of(), fooRequest(), request -> {
+            lookups.incrementAndGet();
+            return async.resolved(FindSeries.of(ImmutableSet.of(a, b), false));
+        }).get();
+
+        assertEquals(1, lookups.get());
+    }
+
+    @Test
+    public void testLoadRacingWithOtherWrite() throws Exception {
+        final ResolvableFuture<FindSeries> load = async.future();
+        final AsyncFuture<FindSeries> result = cache.findSeries(ImmutableSet.of(), fooRequest(),
+            request -> load);
+
+        cache.written(c);
+        load.resolve(FindSeries.of(ImmutableSet.of(a), false));
+        result.get();
+
+        assertEquals(ImmutableSet.of(a), cache
+            .findSeries(ImmutableSet.of(), fooRequest(), request -> {
+                throw new IllegalStateException("should be cached");
+            })
+            .get()
+            .getSeries());
+    }
+
+    @Test
+    public void testWiden() {
+        final long minute = TimeUnit.MINUTES.toMillis(1);
+
+        assertEquals(new DateRange(0, minute), cache.widen(RANGE));
+        assertEquals(new DateRange(minute, 3 * minute),
+            cache.widen(new DateRange(minute, 2 * minute + 1)));
+    }
+
+    private FindSeries.Request fooRequest() {
+        return new FindSeries.Request(MatchKeyFilter.create("foo"), RANGE, OptionalLimit.empty());
+    }
+
+    private Set<Series> findFoo(final DateRange range) throws Exception {
+        return group
+            .findSeries(
+                new FindSeries.Request(MatchKeyFilter.create("foo"), range, OptionalLimit.empty()))
+            .get()
+            .getSeries();
+    }
+}
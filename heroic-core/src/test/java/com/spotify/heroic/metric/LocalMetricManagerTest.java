@@ -1,21 +1,29 @@
 package com.spotify.heroic.metric;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import com.google.common.collect.ImmutableMap;
+import com.spotify.heroic.aggregation.AggregationInstance;
+import com.spotify.heroic.aggregation.BucketStrategy;
+import com.spotify.heroic.common.DateRange;
 import com.spotify.heroic.common.GroupSet;
 import com.spotify.heroic.common.Groups;
 import com.spotify.heroic.common.OptionalLimit;
 import com.spotify.heroic.metadata.MetadataManager;
 import com.spotify.heroic.querylogging.QueryLogger;
 import com.spotify.heroic.querylogging.QueryLoggerFactory;
+import com.spotify.heroic.scheduler.Scheduler;
 import com.spotify.heroic.statistics.MetricBackendReporter;
+import com.spotify.heroic.time.Clock;
 import eu.toolchain.async.AsyncFramework;
 import eu.toolchain.async.AsyncFuture;
 import java.util.Collections;
+import java.util.Map;
 import java.util.Optional;
 import org.junit.Before;
 import org.junit.Test;
@@ -54,7 +62,6 @@ public class LocalMetricManagerTest {
         final OptionalLimit seriesLimit = OptionalLimit.empty();
         final OptionalLimit aggregationLimit = OptionalLimit.empty();
         final OptionalLimit dataLimit = OptionalLimit.empty();
-        final OptionalLimit concurrentQueriesBackoff = OptionalLimit.empty();
         final int fetchParallelism = 20;
         final boolean failOnLimits = true;
         final Groups groups = Groups.of("foo");
@@ -66,13 +73,59 @@ public class LocalMetricManagerTest {
         final QueryLoggerFactory queryLoggerFactory = mock(QueryLoggerFactory.class);
         when(queryLoggerFactory.create(any())).thenReturn(queryLogger);
 
+        final QueryAdmissionController admission = new QueryAdmissionController(async,
+            Clock.system(), mock(Scheduler.class), QueryAdmissionSettings.defaults(),
+            Integer.MAX_VALUE);
+
         manager = new LocalMetricManager(groupLimit, seriesLimit, aggregationLimit, dataLimit,
-            concurrentQueriesBackoff, fetchParallelism, failOnLimits, async, groupSet, metadata,
-            reporter, queryLoggerFactory);
+            fetchParallelism, failOnLimits, async, groupSet, metadata, reporter,
+            queryLoggerFactory, admission);
     }
 
     @Test
     public void testUseDefaultBackend() {
         assertNotNull(manager.useDefaultGroup());
     }
+
+    @Test
+    public void testPlanRollup() {
+        final long minute = 60_000L;
+        final long hour = 60 * minute;
+        final DateRange covered = new DateRange(0, 48 * hour);
+        final Map<Long, DateRange> rollups = ImmutableMap.of(minute, covered, hour, covered);
+
+        final AggregationInstance aggregation = mock(AggregationInstance.class);
+        when(aggregation.acceptsRollup(minute)).thenReturn(true);
+        when(aggregation.acceptsRollup(hour)).thenReturn(true);
+
+        final DateRange aligned = new DateRange(0, 24 * hour);
+
+        assertEquals(Optional.of(hour), LocalMetricManager.planRollup(aggregation, aligned,
+            BucketStrategy.START, MetricType.POINT, rollups));
+
+        // only aligned with the finer resolution
+        assertEquals(Optional.of(minute), LocalMetricManager.planRollup(aggregation,
+            new DateRange(minute, 24 * hour), BucketStrategy.START, MetricType.POINT, rollups));
+
+        // rollups cover [t, t + resolution), which does not match end buckets
+        assertEquals(Optional.empty(), LocalMetricManager.planRollup(aggregation, aligned,
+            BucketStrategy.END, MetricType.POINT, rollups));
+
+        assertEquals(Optional.empty(), LocalMetricManager.planRollup(aggregation, aligned,
+            BucketStrategy.START, MetricType.EVENT, rollups));
+
+        // the range extends past what the rollups are complete for
+        assertEquals(Optional.empty(), LocalMetricManager.planRollup(aggregation,
+            new DateRange(24 * hour, 72 * hour), BucketStrategy.START, MetricType.POINT, rollups));
+
+        // the coarser rollup lags behind the finer one
+        assertEquals(Optional.of(minute), LocalMetricManager.planRollup(aggregation, aligned,
+            BucketStrategy.START, MetricType.POINT,
+            ImmutableMap.of(minute, covered, hour, new DateRange(0, 12 * hour))));
+
+        when(aggregation.acceptsRollup(hour)).thenReturn(false);
+
+        assertEquals(Optional.of(minute), LocalMetricManager.planRollup(aggregation, aligned,
+            BucketStrategy.START, MetricType.POINT, rollups));
+    }
 }
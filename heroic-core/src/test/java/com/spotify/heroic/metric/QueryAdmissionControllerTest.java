@@ -0,0 +1,298 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.metric;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.spotify.heroic.common.GoAwayException;
+import com.spotify.heroic.querylogging.HttpContext;
+import com.spotify.heroic.querylogging.QueryContext;
+import com.spotify.heroic.scheduler.Scheduler;
+import com.spotify.heroic.scheduler.Task;
+import eu.toolchain.async.AsyncFramework;
+import eu.toolchain.async.AsyncFuture;
+import eu.toolchain.async.ResolvableFuture;
+import eu.toolchain.async.TinyAsync;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class QueryAdmissionControllerTest {
+    private ExecutorService executor;
+    private AsyncFramework async;
+    private long now;
+
+    private final List<String> started = new ArrayList<>();
+    private final List<ResolvableFuture<Void>> running = new ArrayList<>();
+    private final List<Task> timers = new ArrayList<>();
+
+    @Before
+    public void setup() {
+        executor = Executors.newSingleThreadExecutor();
+        async = TinyAsync.builder().executor(executor).build();
+        now = 0L;
+    }
+
+    @After
+    public void teardown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void testRejectsWithoutQueue() throws Exception {
+        final QueryAdmissionController controller = controller(settings(0, false), 2);
+
+        final AsyncFuture<Void> a = controller.submit(QueryClass.INTERACTIVE, -1, query("a"));
+        final AsyncFuture<Void> b = controller.submit(QueryClass.INTERACTIVE, -1, query("b"));
+        final AsyncFuture<Void> c = controller.submit(QueryClass.INTERACTIVE, -1, query("c"));
+
+        assertEquals(ImmutableList.of("a", "b"), started);
+        assertFalse(a.isDone());
+        assertFalse(b.isDone());
+        assertGoAway(c);
+    }
+
+    @Test
+    public void testQueuedQueryRunsWhenCapacityIsAvailable() {
+        final QueryAdmissionController controller = controller(settings(10, false), 1);
+
+        controller.submit(QueryClass.INTERACTIVE, -1, query("a"));
+        final AsyncFuture<Void> b = controller.submit(QueryClass.INTERACTIVE, -1, query("b"));
+
+        assertEquals(ImmutableList.of("a"), started);
+
+        running.get(0).resolve(null);
+        assertEquals(ImmutableList.of("a", "b"), started);
+
+        running.get(1).resolve(null);
+        assertTrue(b.isResolved());
+    }
+
+    @Test
+    public void testWeightedFairDequeue() {
+        final QueryAdmissionSettings settings = new QueryAdmissionSettings(
+            Optional.of(ImmutableMap.of("interactive", 2, "batch", 1)),
+            Optional.of(ImmutableMap.of("interactive", 10, "batch", 10)), Optional.empty(),
+            Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(),
+            Optional.empty(), Optional.empty(), Optional.empty());
+
+        final QueryAdmissionController controller = controller(settings, 1);
+
+        controller.submit(QueryClass.INTERACTIVE, -1, query("first"));
+
+        for (int i = 0; i < 3; i++) {
+            controller.submit(QueryClass.BATCH, -1, query("b" + i));
+            controller.submit(QueryClass.INTERACTIVE, -1, query("i" + i));
+        }
+
+        for (int i = 0; i < 6; i++) {
+            running.get(i).resolve(null);
+        }
+
+        assertEquals(ImmutableList.of("first", "i0", "b0", "i1", "i2", "b1", "b2"), started);
+    }
+
+    @Test
+    public void testShedsQueriesThatCanNotMeetDeadline() throws Exception {
+        final QueryAdmissionController controller = controller(settings(10, false), 1);
+
+        /* establish a latency estimate of 100ms */
+        controller.submit(QueryClass.INTERACTIVE, -1, query("a"));
+        now += 100L;
+        running.get(0).resolve(null);
+
+        controller.submit(QueryClass.INTERACTIVE, -1, query("b"));
+        final AsyncFuture<Void> c = controller.submit(QueryClass.INTERACTIVE, 50L, query("c"));
+
+        assertGoAway(c);
+        assertEquals(ImmutableList.of("a", "b"), started);
+    }
+
+    @Test
+    public void testQueuedQueryExpiresAtDeadline() throws Exception {
+        final QueryAdmissionController controller = controller(settings(10, false), 1);
+
+        controller.submit(QueryClass.INTERACTIVE, -1, query("a"));
+        final AsyncFuture<Void> b = controller.submit(QueryClass.INTERACTIVE, 50L, query("b"));
+        final AsyncFuture<Void> c = controller.submit(QueryClass.INTERACTIVE, -1, query("c"));
+
+        /* only the query with a deadline has a timer */
+        assertEquals(1, timers.size());
+        assertFalse(b.isDone());
+
+        now += 50L;
+        timers.get(0).run();
+        assertGoAway(b);
+
+        running.get(0).resolve(null);
+        assertEquals(ImmutableList.of("a", "c"), started);
+        assertFalse(c.isDone());
+    }
+
+    @Test
+    public void testCancelledQueryLeavesQueue() throws Exception {
+        final QueryAdmissionController controller = controller(settings(1, false), 1);
+
+        controller.submit(QueryClass.INTERACTIVE, -1, query("a"));
+        final AsyncFuture<Void> b = controller.submit(QueryClass.INTERACTIVE, -1, query("b"));
+        b.cancel();
+
+        /* the queue has room again */
+        final AsyncFuture<Void> c = controller.submit(QueryClass.INTERACTIVE, -1, query("c"));
+        assertFalse(c.isDone());
+
+        running.get(0).resolve(null);
+        assertEquals(ImmutableList.of("a", "c"), started);
+    }
+
+    @Test
+    public void testAdaptiveLimitStartsAtInitialLimit() {
+        final QueryAdmissionController controller =
+            controller(settings(0, true), Integer.MAX_VALUE);
+
+        assertEquals(QueryAdmissionSettings.DEFAULT_INITIAL_LIMIT, controller.limit());
+
+        final QueryAdmissionSettings capped = new QueryAdmissionSettings(Optional.empty(),
+            Optional.empty(), Optional.empty(), Optional.empty(), Optional.of(true),
+            Optional.empty(), Optional.empty(), Optional.empty(), Optional.of(1000),
+            Optional.of(100));
+
+        /* the initial limit is bounded by the configured limit and the adaptive cap */
+        assertEquals(100, controller(capped, Integer.MAX_VALUE).limit());
+        assertEquals(10, controller(capped, 10).limit());
+
+        /* a non-adaptive limit is used as configured */
+        assertEquals(Integer.MAX_VALUE,
+            controller(settings(0, false), Integer.MAX_VALUE).limit());
+    }
+
+    @Test
+    public void testAdaptiveLimitBacksOffOnLatency() {
+        final QueryAdmissionController controller = controller(settings(0, true), 10);
+
+        controller.submit(QueryClass.INTERACTIVE, -1, query("a"));
+        now += 10L;
+        running.get(0).resolve(null);
+        assertEquals(10, controller.limit());
+
+        controller.submit(QueryClass.INTERACTIVE, -1, query("b"));
+        now += 1000L;
+        running.get(1).resolve(null);
+        assertEquals(9, controller.limit());
+    }
+
+    @Test
+    public void testClassFromContext() {
+        final Map<String, QueryClass> clients = ImmutableMap.of("grafana", QueryClass.DASHBOARD);
+
+        final QueryContext anonymous = QueryContext.empty();
+        assertEquals(QueryClass.BATCH,
+            QueryClass.fromContext(anonymous, clients, QueryClass.BATCH));
+
+        final QueryContext dashboard = QueryContext.create(Optional.empty(),
+            new HttpContext("127.0.0.1", "localhost", "127.0.0.1", Optional.empty(),
+                Optional.of("grafana")));
+        assertEquals(QueryClass.DASHBOARD,
+            QueryClass.fromContext(dashboard, clients, QueryClass.INTERACTIVE));
+
+        final ObjectNode clientContext = JsonNodeFactory.instance.objectNode();
+        clientContext.put(QueryClass.CLIENT_CONTEXT_FIELD, "batch");
+        final QueryContext explicit = QueryContext.create(Optional.of(clientContext),
+            new HttpContext("127.0.0.1", "localhost", "127.0.0.1", Optional.empty(),
+                Optional.of("grafana")));
+        assertEquals(QueryClass.BATCH,
+            QueryClass.fromContext(explicit, clients, QueryClass.INTERACTIVE));
+    }
+
+    private Supplier<AsyncFuture<Void>> query(final String name) {
+        return () -> {
+            started.add(name);
+            final ResolvableFuture<Void> future = async.future();
+            running.add(future);
+            return future;
+        };
+    }
+
+    private QueryAdmissionController controller(
+        final QueryAdmissionSettings settings, final int limit
+    ) {
+        final Scheduler scheduler = new Scheduler() {
+            @Override
+            public void periodically(final long value, final TimeUnit unit, final Task task) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void periodically(
+                final String name, final long value, final TimeUnit unit, final Task task
+            ) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void schedule(final long value, final TimeUnit unit, final Task task) {
+                timers.add(task);
+            }
+
+            @Override
+            public void schedule(
+                final String name, final long value, final TimeUnit unit, final Task task
+            ) {
+                timers.add(task);
+            }
+        };
+
+        return new QueryAdmissionController(async, () -> now, scheduler, settings, limit);
+    }
+
+    private QueryAdmissionSettings settings(final int queueSize, final boolean adaptive) {
+        return new QueryAdmissionSettings(Optional.empty(), Optional.of(
+            ImmutableMap.of("interactive", queueSize, "dashboard", queueSize, "batch", queueSize)),
+            Optional.empty(), Optional.empty(), Optional.of(adaptive), Optional.empty(),
+            Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty());
+    }
+
+    private void assertGoAway(final AsyncFuture<Void> future) throws Exception {
+        assertTrue(future.isFailed());
+
+        try {
+            future.get();
+        } catch (final ExecutionException e) {
+            assertTrue(e.getCause() instanceof GoAwayException);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.querylogging.async;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.google.common.collect.ImmutableMap;
+import com.spotify.heroic.querylogging.QueryContext;
+import eu.toolchain.async.AsyncFramework;
+import eu.toolchain.async.TinyAsync;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AsyncQueryLoggerTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ObjectMapper mapper = new ObjectMapper().registerModule(new Jdk8Module());
+
+    private ExecutorService executor;
+    private AsyncFramework async;
+    private Path path;
+
+    @Before
+    public void setup() throws Exception {
+        executor = Executors.newSingleThreadExecutor();
+        async = TinyAsync.builder().executor(executor).build();
+        path = folder.getRoot().toPath().resolve("query.log");
+    }
+
+    @After
+    public void teardown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void testWritesNewlineDelimitedJson() throws Exception {
+        final AsyncQueryLogWriter writer = writer(16);
+        final AsyncQueryLogger logger =
+            new AsyncQueryLogger(writer, new QueryLogSampler(1.0D, ImmutableMap.of()), "api");
+
+        writer.start().get();
+        logger.logHttpQueryText(QueryContext.empty(), "average by host");
+        logger.logHttpQueryText(QueryContext.empty(), "sum");
+        writer.stop().get();
+
+        final List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+        assertEquals(2, lines.size());
+
+        final JsonNode first = mapper.readTree(lines.get(0));
+        assertTrue(first.has("@timestamp"));
+        assertEquals("api", first.get("@message").get("component").asText());
+        assertEquals("http-query-text", first.get("@message").get("type").asText());
+        assertEquals("average by host", first.get("@message").get("data").asText());
+    }
+
+    @Test
+    public void testDropsWhenBufferIsFull() {
+        final AsyncQueryLogWriter writer = writer(2);
+        final AsyncQueryLogger logger =
+            new AsyncQueryLogger(writer, new QueryLogSampler(1.0D, ImmutableMap.of()), "api");
+
+        for (int i = 0; i < 5; i++) {
+            logger.logHttpQueryText(QueryContext.empty(), "query");
+        }
+
+        assertEquals(3L, writer.dropped());
+    }
+
+    @Test
+    public void testSamplingPerType() {
+        final QueryLogSampler sampler =
+            new QueryLogSampler(1.0D, ImmutableMap.of("final-response", 0.0D));
+
+        final UUID queryId = UUID.randomUUID();
+        assertTrue(sampler.isSampled(queryId, "query"));
+        assertFalse(sampler.isSampled(queryId, "final-response"));
+    }
+
+    @Test
+    public void testSamplingIsConsistentPerQuery() {
+        final QueryLogSampler sampler = new QueryLogSampler(0.5D, ImmutableMap.of());
+
+        for (int i = 0; i < 100; i++) {
+            final UUID queryId = UUID.randomUUID();
+            assertEquals(sampler.isSampled(queryId, "query"),
+                sampler.isSampled(queryId, "final-response"));
+        }
+    }
+
+    @Test
+    public void testUnsampledEventIsNotBuffered() {
+        final AsyncQueryLogWriter writer = writer(2);
+        final AsyncQueryLogger logger =
+            new AsyncQueryLogger(writer, new QueryLogSampler(0.0D, ImmutableMap.of()), "api");
+
+        final QueryContext context = mock(QueryContext.class);
+        when(context.queryId()).thenReturn(UUID.randomUUID());
+        when(context.clientContext()).thenReturn(Optional.empty());
+
+        for (int i = 0; i < 5; i++) {
+            logger.logHttpQueryText(context, "query");
+        }
+
+        assertEquals(0L, writer.dropped());
+        assertEquals(0, writer.writeBatch());
+    }
+
+    private AsyncQueryLogWriter writer(final int bufferSize) {
+        return new AsyncQueryLogWriter(async, mapper, path, 1024L * 1024L, 2, bufferSize, 16, 10L);
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.querylogging.async;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class QueryLogRingBufferTest {
+    @Test
+    public void testCapacityIsRoundedToPowerOfTwo() {
+        assertEquals(8, new QueryLogRingBuffer<>(5).capacity());
+        assertEquals(8, new QueryLogRingBuffer<>(8).capacity());
+    }
+
+    @Test
+    public void testOfferAndPollInOrder() {
+        final QueryLogRingBuffer<Integer> buffer = new QueryLogRingBuffer<>(4);
+
+        assertTrue(buffer.offer(1));
+        assertTrue(buffer.offer(2));
+        assertTrue(buffer.offer(3));
+        assertTrue(buffer.offer(4));
+        assertFalse(buffer.offer(5));
+
+        assertEquals(Integer.valueOf(1), buffer.poll());
+        assertTrue(buffer.offer(5));
+
+        final List<Integer> drained = new ArrayList<>();
+        assertEquals(4, buffer.drain(drained::add, 10));
+        assertEquals(ImmutableList.of(2, 3, 4, 5), drained);
+        assertNull(buffer.poll());
+    }
+
+    @Test
+    public void testConcurrentProducers() throws Exception {
+        final int producers = 4;
+        final int perProducer = 10000;
+
+        final QueryLogRingBuffer<Integer> buffer = new QueryLogRingBuffer<>(1024);
+        final ExecutorService executor = Executors.newFixedThreadPool(producers);
+        final CountDownLatch done = new CountDownLatch(producers);
+        final AtomicInteger rejected = new AtomicInteger();
+
+        for (int p = 0; p < producers; p++) {
+            executor.execute(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    if (!buffer.offer(i)) {
+                        rejected.incrementAndGet();
+                    }
+                }
+
+                done.countDown();
+            });
+        }
+
+        int consumed = 0;
+
+        while (done.getCount() > 0 || buffer.size() > 0) {
+            consumed += buffer.drain(v -> {
+            }, 256);
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        assertEquals(producers * perProducer, consumed + rejected.get());
+    }
+}
@@ -0,0 +1,175 @@
+package com.spotify.heroic.ws;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.spotify.heroic.common.DateRange;
+import com.spotify.heroic.common.Series;
+import com.spotify.heroic.metric.MetricCollection;
+import com.spotify.heroic.metric.Point;
+import com.spotify.heroic.metric.QueryMetricsResponse;
+import com.spotify.heroic.metric.QueryTrace;
+import com.spotify.heroic.metric.ResultLimits;
+import com.spotify.heroic.metric.ShardedResultGroup;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import javax.ws.rs.NotAcceptableException;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.TimeStampMilliTZVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ArrowStreamReader;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ArrowMessageBodyWriterTest {
+    private static final UUID QUERY_ID = UUID.fromString("d11d0ad7-cc27-4667-a617-67a481f61c30");
+
+    private final ArrowMessageBodyWriter writer = new ArrowMessageBodyWriter();
+
+    private BufferAllocator allocator;
+
+    @Before
+    public void setup() {
+        allocator = new RootAllocator(Long.MAX_VALUE);
+    }
+
+    @After
+    public void teardown() {
+        allocator.close();
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        final ShardedResultGroup a = group(
+            ImmutableSet.of(Series.of("a", ImmutableMap.of("host", "a", "role", "web"))),
+            new Point(1000L, 1.0d), new Point(2000L, 2.0d));
+
+        // two hosts in the same group, so the host column has no single value
+        final ShardedResultGroup b = group(ImmutableSet.of(
+            Series.of("a", ImmutableMap.of("host", "b", "role", "web")),
+            Series.of("a", ImmutableMap.of("host", "c", "role", "web"))), new Point(1000L, 3.0d));
+
+        // a group without any points, nor any tags
+        final ShardedResultGroup c = group(ImmutableSet.of(Series.of("c")));
+
+        try (final ArrowStreamReader reader = read(response(a, b, c))) {
+            final VectorSchemaRoot root = reader.getVectorSchemaRoot();
+            final Schema schema = root.getSchema();
+
+            assertEquals(ImmutableList.of("timestamp", "value", "key", "tag.host", "tag.role"),
+                schema.getFields().stream().map(Field::getName).collect(Collectors.toList()));
+            assertEquals(QUERY_ID.toString(), schema.getCustomMetadata().get("queryId"));
+            assertEquals("0", schema.getCustomMetadata().get("range.start"));
+            assertEquals("3000", schema.getCustomMetadata().get("range.end"));
+
+            assertTrue(reader.loadNextBatch());
+            assertEquals(2, root.getRowCount());
+            assertEquals(1000L, timestamp(root).get(0));
+            assertEquals(2000L, timestamp(root).get(1));
+            assertEquals(1.0d, value(root).get(0), 0d);
+            assertEquals(2.0d, value(root).get(1), 0d);
+            assertEquals("a", decode(reader, root, "key", 1));
+            assertEquals("a", decode(reader, root, "tag.host", 1));
+            assertEquals("web", decode(reader, root, "tag.role", 1));
+
+            assertTrue(reader.loadNextBatch());
+            assertEquals(1, root.getRowCount());
+            assertEquals(3.0d, value(root).get(0), 0d);
+            assertEquals("a", decode(reader, root, "key", 0));
+            assertTrue(index(root, "tag.host").isNull(0));
+            assertEquals("web", decode(reader, root, "tag.role", 0));
+
+            assertTrue(reader.loadNextBatch());
+            assertEquals(0, root.getRowCount());
+
+            assertFalse(reader.loadNextBatch());
+        }
+    }
+
+    @Test
+    public void testEmptyResponse() throws Exception {
+        try (final ArrowStreamReader reader = read(response())) {
+            final Schema schema = reader.getVectorSchemaRoot().getSchema();
+
+            assertEquals(ImmutableList.of("timestamp", "value", "key"),
+                schema.getFields().stream().map(Field::getName).collect(Collectors.toList()));
+            assertFalse(reader.loadNextBatch());
+        }
+    }
+
+    @Test(expected = NotAcceptableException.class)
+    public void testRejectsNonPoints() throws Exception {
+        final ShardedResultGroup events = new ShardedResultGroup(ImmutableMap.of(),
+            ImmutableMap.of(), ImmutableSet.of(Series.of("a")),
+            MetricCollection.events(ImmutableList.of()), 0L);
+
+        write(response(events));
+    }
+
+    private ShardedResultGroup group(final ImmutableSet<Series> series, final Point... points) {
+        return new ShardedResultGroup(ImmutableMap.of(), ImmutableMap.of(), series,
+            MetricCollection.points(ImmutableList.copyOf(points)), 0L);
+    }
+
+    private QueryMetricsResponse response(final ShardedResultGroup... groups) {
+        return new QueryMetricsResponse(QUERY_ID, DateRange.create(0L, 3000L),
+            ImmutableList.copyOf(groups), ImmutableList.of(),
+            QueryTrace.of(QueryTrace.identifier("test"), 0L), ResultLimits.of(), Optional.empty(),
+            Optional.empty());
+    }
+
+    private byte[] write(final QueryMetricsResponse response) throws Exception {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        writer.writeTo(response, QueryMetricsResponse.class, QueryMetricsResponse.class, null,
+            ArrowMessageBodyWriter.MEDIA_TYPE_TYPE, null, output);
+        return output.toByteArray();
+    }
+
+    private ArrowStreamReader read(final QueryMetricsResponse response) throws Exception {
+        return new ArrowStreamReader(new ByteArrayInputStream(write(response)), allocator);
+    }
+
+    private TimeStampMilliTZVector timestamp(final VectorSchemaRoot root) {
+        return (TimeStampMilliTZVector) root.getVector(ArrowMessageBodyWriter.TIMESTAMP);
+    }
+
+    private Float8Vector value(final VectorSchemaRoot root) {
+        return (Float8Vector) root.getVector(ArrowMessageBodyWriter.VALUE);
+    }
+
+    private IntVector index(final VectorSchemaRoot root, final String column) {
+        return (IntVector) root.getVector(column);
+    }
+
+    /**
+     * Look up the dictionary-encoded value of a column at the given row.
+     */
+    private String decode(
+        final ArrowStreamReader reader, final VectorSchemaRoot root, final String column,
+        final int row
+    ) {
+        final IntVector indices = index(root, column);
+        final long id = indices.getField().getDictionary().getId();
+        final VarCharVector dictionary =
+            (VarCharVector) reader.lookup(id).getVector();
+
+        assertFalse(indices.isNull(row));
+        return new String(dictionary.get(indices.get(row)), StandardCharsets.UTF_8);
+    }
+}
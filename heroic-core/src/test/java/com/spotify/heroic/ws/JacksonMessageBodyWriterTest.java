@@ -0,0 +1,103 @@
+package com.spotify.heroic.ws;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.spotify.heroic.HeroicMappers;
+import com.spotify.heroic.grammar.QueryParser;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import javax.ws.rs.core.MediaType;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class JacksonMessageBodyWriterTest {
+    @Mock
+    QueryParser parser;
+
+    final Map<String, Object> value =
+        ImmutableMap.of("name", "heroic", "values", ImmutableList.of(1, 2, 3));
+
+    ObjectMapper json;
+    ObjectMapper cbor;
+    ObjectMapper smile;
+
+    JacksonMessageBodyWriter writer;
+
+    @Before
+    public void setup() {
+        json = HeroicMappers.json(parser);
+        cbor = HeroicMappers.cbor(parser);
+        smile = HeroicMappers.smile(parser);
+        writer = new JacksonMessageBodyWriter(json, cbor, smile);
+    }
+
+    @Test
+    public void testWriteable() {
+        assertTrue(writeable(MediaType.APPLICATION_JSON_TYPE));
+        assertTrue(writeable(MediaType.WILDCARD_TYPE));
+        assertTrue(writeable(JacksonMessageBodyWriter.APPLICATION_CBOR_TYPE));
+        assertTrue(writeable(JacksonMessageBodyWriter.APPLICATION_SMILE_TYPE));
+        assertFalse(writeable(MediaType.TEXT_PLAIN_TYPE));
+        assertFalse(writeable(ArrowMessageBodyWriter.MEDIA_TYPE_TYPE));
+    }
+
+    @Test
+    public void testJson() throws Exception {
+        final byte[] output = write(MediaType.APPLICATION_JSON_TYPE);
+
+        assertEquals("{\"name\":\"heroic\",\"values\":[1,2,3]}",
+            new String(output, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testWildcardIsJson() throws Exception {
+        assertEquals(new String(write(MediaType.APPLICATION_JSON_TYPE), StandardCharsets.UTF_8),
+            new String(write(MediaType.WILDCARD_TYPE), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testCbor() throws Exception {
+        final byte[] output = write(JacksonMessageBodyWriter.APPLICATION_CBOR_TYPE);
+
+        // a cbor map, not a json object
+        assertNotEquals('{', output[0]);
+        assertEquals(expected(), cbor.readTree(output));
+    }
+
+    @Test
+    public void testSmile() throws Exception {
+        final byte[] output = write(JacksonMessageBodyWriter.APPLICATION_SMILE_TYPE);
+
+        // smile documents start with the ":)\n" header
+        assertEquals(':', output[0]);
+        assertEquals(')', output[1]);
+        assertEquals('\n', output[2]);
+        assertEquals(expected(), smile.readTree(output));
+    }
+
+    private JsonNode expected() {
+        return json.valueToTree(value);
+    }
+
+    private boolean writeable(final MediaType mediaType) {
+        return writer.isWriteable(Object.class, Object.class, null, mediaType);
+    }
+
+    private byte[] write(final MediaType mediaType) throws Exception {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        writer.writeTo(value, Object.class, Object.class, null, mediaType, null, output);
+        return output.toByteArray();
+    }
+}
@@ -9,6 +9,7 @@ import com.spotify.heroic.common.Duration;
 import com.spotify.heroic.common.Series;
 import com.spotify.heroic.consumer.kafka.FakeKafkaConnection;
 import com.spotify.heroic.consumer.kafka.KafkaConsumerModule;
+import com.spotify.heroic.consumer.kafka.KafkaPartition;
 import com.spotify.heroic.consumer.schemas.Spotify100;
 import com.spotify.heroic.ingestion.IngestionModule;
 import com.spotify.heroic.instrumentation.OperationsLogImpl;
@@ -19,6 +20,10 @@ import com.spotify.heroic.metric.MetricType;
 import com.spotify.heroic.metric.Point;
 import com.spotify.heroic.metric.WriteMetric;
 import com.spotify.heroic.metric.memory.MemoryMetricModule;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import org.junit.After;
@@ -36,6 +41,10 @@ public abstract class AbstractKafkaConsumerIT extends AbstractConsumerIT {
 
     abstract boolean useTransactionalConsumer();
 
+    boolean usePipelinedConsumer() {
+        return false;
+    }
+
     @Override
     protected HeroicConfig.Builder setupConfig() {
         opLog = new OperationsLogImpl();
@@ -54,6 +63,7 @@ public abstract class AbstractKafkaConsumerIT extends AbstractConsumerIT {
                 .schema(Spotify100.class)
                 .fakeKafkaConnection(connection)
                 .transactional(useTransactionalConsumer())
+                .pipelined(usePipelinedConsumer())
                 .transactionCommitInterval(COMMIT_INTERVAL)))
             .ingestion(IngestionModule.builder().updateMetrics(true))
             .metrics(MetricManagerModule
@@ -99,7 +109,20 @@ public abstract class AbstractKafkaConsumerIT extends AbstractConsumerIT {
         long writeCompletions = 0;
         long offsetsCommits = 0;
 
-        for (OperationsLogImpl.OpType op : opLog.getLog()) {
+        /* the latest committed offset of each partition, every message is written exactly once so
+         * the sum of these is the number of writes that must have completed */
+        final Map<KafkaPartition, Long> committedOffsets = new HashMap<>();
+
+        /* commits are recorded by the connection before they are logged, so take the log first to
+         * have a recorded commit for every logged one */
+        final List<OperationsLogImpl.OpType> log = ImmutableList.copyOf(opLog.getLog());
+        final Iterator<Map<KafkaPartition, Long>> commits;
+
+        synchronized (connection.getCommitted()) {
+            commits = ImmutableList.copyOf(connection.getCommitted()).iterator();
+        }
+
+        for (OperationsLogImpl.OpType op : log) {
             if (op == OperationsLogImpl.OpType.WRITE_REQUEST) {
                 writeRequests++;
             }
@@ -110,6 +133,20 @@ public abstract class AbstractKafkaConsumerIT extends AbstractConsumerIT {
 
             if (op == OperationsLogImpl.OpType.OFFSETS_COMMIT) {
                 offsetsCommits++;
+
+                committedOffsets.putAll(commits.next());
+                final long committedMessages =
+                    committedOffsets.values().stream().mapToLong(Long::longValue).sum();
+
+                assertTrue("committed offsets should never be ahead of completed writes",
+                    committedMessages <= writeCompletions);
+
+                /* the pipelined consumer commits offsets of completed writes while other writes
+                 * are in flight */
+                if (usePipelinedConsumer()) {
+                    continue;
+                }
+
                 assertEquals(
                     "all write requests should have completed, at the point of offsets commit",
                     writeRequests, writeCompletions);
@@ -0,0 +1,14 @@
+package com.spotify.heroic;
+
+public class KafkaPipelinedConsumerIT extends AbstractKafkaConsumerIT {
+
+    @Override
+    boolean useTransactionalConsumer() {
+        return true;
+    }
+
+    @Override
+    boolean usePipelinedConsumer() {
+        return true;
+    }
+}
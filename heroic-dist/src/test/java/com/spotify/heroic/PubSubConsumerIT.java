@@ -76,17 +76,20 @@ public class PubSubConsumerIT extends AbstractConsumerIT {
         return HeroicConfig
             .builder()
             .stopTimeout(Duration.of(5, TimeUnit.SECONDS))
-            .consumers(ImmutableList.of(PubSubConsumerModule
-                .builder()
-                .topicId(topic)
-                .schema(Spotify100.class)
-                .subscriptionId(subscription)
-                .projectId(project)
-            ))
+            .consumers(ImmutableList.of(setupModule()))
             .ingestion(IngestionModule.builder().updateMetrics(true))
             .metrics(MetricManagerModule.builder().backends(ImmutableList.of(metricModule)));
     }
 
+    protected PubSubConsumerModule.Builder setupModule() {
+        return PubSubConsumerModule
+            .builder()
+            .topicId(topic)
+            .schema(Spotify100.class)
+            .subscriptionId(subscription)
+            .projectId(project);
+    }
+
     @Override
     protected Consumer<WriteMetric.Request> setupConsumer() {
         return request -> {
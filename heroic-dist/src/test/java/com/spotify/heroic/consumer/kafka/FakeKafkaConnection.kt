@@ -28,6 +28,13 @@ data class FakeKafkaConnection(val opLog: OperationsLog) : KafkaConnection {
     private val streams = HashMap<String, List<FakeKafkaStream<ByteArray>>>()
     private val rand = Random()
 
+    /**
+     * Offsets of every commit, in the order they were committed. Commits of all consumed offsets
+     * are recorded as empty maps.
+     */
+    val committed: MutableList<Map<KafkaPartition, Long>> =
+        Collections.synchronizedList(ArrayList())
+
     override fun createMessageStreams(
         wantedStreams: Map<String, Int>
     ): Map<String, List<KafkaStream<ByteArray>>> {
@@ -36,7 +43,7 @@ data class FakeKafkaConnection(val opLog: OperationsLog) : KafkaConnection {
             val streamList = ArrayList<FakeKafkaStream<ByteArray>>()
 
             for (i in 0 until value) {
-                streamList.add(FakeKafkaStream())
+                streamList.add(FakeKafkaStream(KafkaPartition(topicName, i)))
             }
 
             resultMap[topicName] = streamList
@@ -47,7 +54,15 @@ data class FakeKafkaConnection(val opLog: OperationsLog) : KafkaConnection {
         return resultMap
     }
 
+    @Synchronized
     override fun commitOffsets() {
+        committed.add(emptyMap())
+        opLog.registerConsumerOffsetsCommit()
+    }
+
+    @Synchronized
+    override fun commitOffsets(offsets: Map<KafkaPartition, Long>) {
+        committed.add(HashMap(offsets))
         opLog.registerConsumerOffsetsCommit()
     }
 
@@ -25,14 +25,30 @@ import java.util.*
 import java.util.concurrent.LinkedBlockingQueue
 
 data class FakeKafkaStream<T>(
+    val partition: KafkaPartition,
     val messages: LinkedBlockingQueue<Optional<T>> = LinkedBlockingQueue()
 ) : KafkaStream<T> {
+    private var offset = 0L
     private val iterator = KafkaIterator()
     private val iterable = object : Iterable<T> {
         override fun iterator(): Iterator<T> {
             return iterator
         }
     }
+    private val messageIterable = object : Iterable<KafkaMessage<T>?> {
+        override fun iterator(): Iterator<KafkaMessage<T>?> {
+            return object : Iterator<KafkaMessage<T>?> {
+                override fun hasNext(): Boolean {
+                    return true
+                }
+
+                override fun next(): KafkaMessage<T>? {
+                    val message = iterator.next() ?: return null
+                    return KafkaMessage(partition, offset++, message)
+                }
+            }
+        }
+    }
 
     fun publish(message: T) {
         messages.add(Optional.of(message))
@@ -46,6 +62,10 @@ data class FakeKafkaStream<T>(
         return iterable
     }
 
+    override fun messageAndOffsetIterable(): Iterable<KafkaMessage<T>?> {
+        return messageIterable
+    }
+
     inner class KafkaIterator : Iterator<T> {
         override fun hasNext(): Boolean {
             return true
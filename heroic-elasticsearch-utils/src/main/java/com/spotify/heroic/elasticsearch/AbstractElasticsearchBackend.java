@@ -25,6 +25,7 @@ import eu.toolchain.async.AsyncFramework;
 import eu.toolchain.async.AsyncFuture;
 import eu.toolchain.async.ResolvableFuture;
 import eu.toolchain.async.Transform;
+import java.util.concurrent.CompletionStage;
 import javax.inject.Provider;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.ActionResponse;
@@ -59,6 +60,20 @@ public class AbstractElasticsearchBackend {
         return future;
     }
 
+    protected <T> AsyncFuture<T> bind(final CompletionStage<T> stage) {
+        final ResolvableFuture<T> future = async.future();
+
+        stage.whenComplete((result, e) -> {
+            if (e != null) {
+                future.fail(e);
+            } else {
+                future.resolve(result);
+            }
+        });
+
+        return future;
+    }
+
     protected <T> Transform<Throwable, T> handleVersionConflict(
         Provider<T> emptyProvider, Runnable reportWriteDroppedByDuplicate
     ) {
@@ -25,6 +25,7 @@ import com.google.common.hash.HashFunction;
 import com.google.common.hash.Hasher;
 import com.google.common.hash.Hashing;
 import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.spotify.folsom.MemcacheClient;
 import com.spotify.heroic.statistics.MemcachedReporter;
 import io.opencensus.common.Scope;
@@ -33,10 +34,23 @@ import io.opencensus.trace.Status;
 import io.opencensus.trace.Tracer;
 import io.opencensus.trace.Tracing;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -47,11 +61,26 @@ import org.slf4j.LoggerFactory;
  * to be distributed. This became necessary when migrating from Kafka -> Google PubSub as
  * a consumer with PubSub will not have a stable partition of metrics.
  *
+ * The asynchronous variant, {@link #acquireAsync(Object, Runnable)}, never blocks the calling
+ * thread. Concurrent lookups of the same key are coalesced, misses in the local cache are
+ * batched into memcached multi-gets and waiting for the rate limiter happens on a dedicated
+ * thread. Lookups are completed on the callbacks executor, so that work chained onto them does
+ * not hold up the permits thread or the memcached client.
+ *
+ * At most {@code maxPending} lookups are in flight at a time, once that is reached callers fall
+ * back to {@link #acquire(Object, Runnable)} which blocks until a permit is available.
+ *
  * @author dmichel
  */
 public class DistributedRateLimitedCache<K> implements RateLimitedCache<K> {
     private static final Logger log = LoggerFactory.getLogger(DistributedRateLimitedCache.class);
     private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+    private static final long MEMCACHED_TIMEOUT_MS = 100;
+
+    public static final int DEFAULT_MAX_BATCH_SIZE = 100;
+    public static final long DEFAULT_BATCH_DELAY_MS = 2;
+    public static final int DEFAULT_MAX_PENDING = 10000;
+
     private final Tracer tracer = Tracing.getTracer();
 
     private final ConcurrentMap<K, Boolean> cache;
@@ -60,6 +89,28 @@ public class DistributedRateLimitedCache<K> implements RateLimitedCache<K> {
     private final int memcachedTtlSeconds;
     private final MemcachedReporter memcachedReporter;
 
+    private final ScheduledExecutorService scheduler;
+    private final Executor permits;
+    private final Executor callbacks;
+    private final int maxBatchSize;
+    private final long batchDelayMs;
+    private final int maxPending;
+
+    /* executors created by this cache, shut down on close */
+    private final List<ExecutorService> owned = new ArrayList<>();
+
+    /* lookups which are queued or in flight, used to coalesce concurrent lookups of a key */
+    private final ConcurrentMap<K, CompletableFuture<Boolean>> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    private volatile boolean closed = false;
+
+    private final Object batchLock = new Object();
+    /* guarded by batchLock */
+    private List<K> batch = new ArrayList<>();
+    /* guarded by batchLock */
+    private boolean flushScheduled = false;
+
     @java.beans.ConstructorProperties({ "cache", "rateLimiter", "memcachedClient",
         "memcachedTtlSeconds", "memcachedReporter" })
     public DistributedRateLimitedCache(final ConcurrentMap<K, Boolean> cache,
@@ -67,11 +118,59 @@ public class DistributedRateLimitedCache<K> implements RateLimitedCache<K> {
         final MemcacheClient memcachedClient,
         final int memcachedTtlSeconds,
         final MemcachedReporter memcachedReporter) {
+        this(cache, rateLimiter, memcachedClient, memcachedTtlSeconds, memcachedReporter,
+            ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Build a cache which owns its batching and permits threads, they are shut down by
+     * {@link #close()}.
+     *
+     * @param callbacks executor on which lookups are completed
+     */
+    public DistributedRateLimitedCache(final ConcurrentMap<K, Boolean> cache,
+        final RateLimiter rateLimiter,
+        final MemcacheClient memcachedClient,
+        final int memcachedTtlSeconds,
+        final MemcachedReporter memcachedReporter,
+        final Executor callbacks) {
+        this(cache, rateLimiter, memcachedClient, memcachedTtlSeconds, memcachedReporter,
+            Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("distributed-cache-batch#%d")
+                .setDaemon(true)
+                .build()),
+            Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("distributed-cache-permits#%d")
+                .setDaemon(true)
+                .build()),
+            callbacks, DEFAULT_MAX_BATCH_SIZE, DEFAULT_BATCH_DELAY_MS, DEFAULT_MAX_PENDING);
+
+        owned.add(scheduler);
+        owned.add((ExecutorService) permits);
+    }
+
+    public DistributedRateLimitedCache(final ConcurrentMap<K, Boolean> cache,
+        final RateLimiter rateLimiter,
+        final MemcacheClient memcachedClient,
+        final int memcachedTtlSeconds,
+        final MemcachedReporter memcachedReporter,
+        final ScheduledExecutorService scheduler,
+        final Executor permits,
+        final Executor callbacks,
+        final int maxBatchSize,
+        final long batchDelayMs,
+        final int maxPending) {
         this.cache = cache;
         this.rateLimiter = rateLimiter;
         this.memcachedClient = memcachedClient;
         this.memcachedTtlSeconds = memcachedTtlSeconds;
         this.memcachedReporter = memcachedReporter;
+        this.scheduler = scheduler;
+        this.permits = permits;
+        this.callbacks = callbacks;
+        this.maxBatchSize = maxBatchSize;
+        this.batchDelayMs = batchDelayMs;
+        this.maxPending = maxPending;
     }
 
 
@@ -93,8 +192,8 @@ public class DistributedRateLimitedCache<K> implements RateLimitedCache<K> {
 
             final String cacheKey = buildKey(key);
             try {
-                if (memcachedClient.get(
-                    cacheKey).toCompletableFuture().get(100, TimeUnit.MILLISECONDS) != null) {
+                if (memcachedClient.get(cacheKey).toCompletableFuture().get(
+                    MEMCACHED_TIMEOUT_MS, TimeUnit.MILLISECONDS) != null) {
                     memcachedReporter.reportMemcachedHit();
                     span.addAnnotation("Found key in memcached");
                     cache.putIfAbsent(key, true);
@@ -128,6 +227,202 @@ public class DistributedRateLimitedCache<K> implements RateLimitedCache<K> {
         }
     }
 
+    /**
+     * Asynchronous version of {@link #acquire(Object, Runnable)}.
+     *
+     * Only the first of concurrent callers for the same key can be granted a permit, the others
+     * complete with {@code false} once the first lookup has finished. Keys found in memcached are
+     * added to the local cache.
+     * <p>
+     * If too many lookups are already pending, or the cache has been closed, this blocks the
+     * calling thread like {@link #acquire(Object, Runnable)} to push back on writers.
+     *
+     * @param key key to store/lookup in cache.
+     * @param cacheHit function to call when the cache is hit (usually a metric reporter)
+     * @return a stage completed with true - write to backend, false - do not write to backend
+     */
+    @Override
+    public CompletionStage<Boolean> acquireAsync(final K key, final Runnable cacheHit) {
+        if (cache.get(key) != null) {
+            cacheHit.run();
+            return CompletableFuture.completedFuture(false);
+        }
+
+        if (closed || pendingCount.get() >= maxPending) {
+            return CompletableFuture.completedFuture(acquire(key, cacheHit));
+        }
+
+        final CompletableFuture<Boolean> lookup = new CompletableFuture<>();
+        final CompletableFuture<Boolean> existing = pending.putIfAbsent(key, lookup);
+
+        if (existing != null) {
+            return existing.handle((acquired, e) -> {
+                cacheHit.run();
+                return false;
+            });
+        }
+
+        pendingCount.incrementAndGet();
+
+        lookup.whenComplete((acquired, e) -> {
+            pending.remove(key, lookup);
+            pendingCount.decrementAndGet();
+        });
+
+        enqueue(key);
+
+        return lookup.thenApply(acquired -> {
+            if (!acquired) {
+                cacheHit.run();
+            }
+
+            return acquired;
+        });
+    }
+
+    private void enqueue(final K key) {
+        final List<K> full;
+
+        synchronized (batchLock) {
+            batch.add(key);
+
+            if (batch.size() < maxBatchSize) {
+                if (flushScheduled) {
+                    return;
+                }
+
+                try {
+                    scheduler.schedule(this::flush, batchDelayMs, TimeUnit.MILLISECONDS);
+                    flushScheduled = true;
+                    return;
+                } catch (final RejectedExecutionException e) {
+                    /* closed, look up what has been batched so far right away */
+                }
+            }
+
+            full = batch;
+            batch = new ArrayList<>();
+        }
+
+        lookup(full);
+    }
+
+    void flush() {
+        final List<K> keys;
+
+        synchronized (batchLock) {
+            flushScheduled = false;
+
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            keys = batch;
+            batch = new ArrayList<>();
+        }
+
+        lookup(keys);
+    }
+
+    /**
+     * Look up a batch of keys in memcached, and complete their pending lookups.
+     */
+    private void lookup(final List<K> keys) {
+        final List<String> cacheKeys = new ArrayList<>(keys.size());
+
+        for (final K key : keys) {
+            cacheKeys.add(buildKey(key));
+        }
+
+        final AtomicBoolean done = new AtomicBoolean();
+
+        try {
+            scheduler.schedule(() -> {
+                if (done.compareAndSet(false, true)) {
+                    memcachedReporter.reportMemcachedTimeout();
+                    log.debug("Timed out getting {} key(s) from memcached", keys.size());
+                    keys.forEach(this::miss);
+                }
+            }, MEMCACHED_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (final RejectedExecutionException e) {
+            /* closed, without a timeout the lookup could hang so treat the keys as misses */
+            keys.forEach(this::miss);
+            return;
+        }
+
+        @SuppressWarnings("unchecked")
+        final CompletionStage<List<Object>> get = memcachedClient.get(cacheKeys);
+
+        get.whenComplete((values, e) -> {
+            if (!done.compareAndSet(false, true)) {
+                return;
+            }
+
+            if (e != null) {
+                memcachedReporter.reportMemcachedError();
+                log.error("Failed to get keys from memcached", e);
+                keys.forEach(this::miss);
+                return;
+            }
+
+            for (int i = 0; i < keys.size(); i++) {
+                final K key = keys.get(i);
+
+                if (values.get(i) != null) {
+                    memcachedReporter.reportMemcachedHit();
+                    cache.putIfAbsent(key, true);
+                    complete(key, false);
+                } else {
+                    memcachedReporter.reportMemcachedMiss();
+                    miss(key);
+                }
+            }
+        });
+    }
+
+    /**
+     * Handle a key which was not found in memcached by waiting for the rate limiter on the
+     * permits executor.
+     */
+    private void miss(final K key) {
+        final Runnable acquire = () -> {
+            rateLimiter.acquire();
+
+            if (cache.putIfAbsent(key, true) != null) {
+                complete(key, false);
+                return;
+            }
+
+            memcachedClient.set(buildKey(key), "true", memcachedTtlSeconds);
+            complete(key, true);
+        };
+
+        try {
+            permits.execute(acquire);
+        } catch (final RejectedExecutionException e) {
+            /* closed while the lookup was in flight, wait for the permit in place */
+            acquire.run();
+        }
+    }
+
+    /**
+     * Complete the pending lookup for the given key on the callbacks executor, so that whatever is
+     * chained onto it runs off the permits thread and the memcached client.
+     */
+    private void complete(final K key, final boolean acquired) {
+        final CompletableFuture<Boolean> lookup = pending.get(key);
+
+        if (lookup == null) {
+            return;
+        }
+
+        try {
+            callbacks.execute(() -> lookup.complete(acquired));
+        } catch (final RejectedExecutionException e) {
+            lookup.complete(acquired);
+        }
+    }
+
     private String buildKey(final K key) {
         final Hasher hasher = HASH_FUNCTION.newHasher();
         return hasher.putString(key.toString(), Charset.defaultCharset()).hash().toString();
@@ -136,4 +431,15 @@ public class DistributedRateLimitedCache<K> implements RateLimitedCache<K> {
     public int size() {
         return cache.size();
     }
+
+    /**
+     * Stop accepting asynchronous lookups and shut down the executors owned by this cache.
+     * Lookups which are already queued are allowed to finish.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        flush();
+        owned.forEach(ExecutorService::shutdown);
+    }
 }
@@ -21,16 +21,37 @@
 
 package com.spotify.heroic.elasticsearch;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
 public interface RateLimitedCache<K> {
     /**
      * Acquire a permit to perform a piece of work identified by the given key.
      */
     boolean acquire(K key, Runnable cacheHit);
 
+    /**
+     * Asynchronously acquire a permit to perform a piece of work identified by the given key.
+     * <p>
+     * The default implementation delegates to {@link #acquire(Object, Runnable)} on the calling
+     * thread, implementations that perform remote lookups should override this to avoid blocking.
+     *
+     * @return a stage completed with {@code true} if the work should be performed
+     */
+    default CompletionStage<Boolean> acquireAsync(K key, Runnable cacheHit) {
+        return CompletableFuture.completedFuture(acquire(key, cacheHit));
+    }
+
     /**
      * Get number of cached entries.
      *
      * @return Number of entries cached.
      */
     int size();
+
+    /**
+     * Release any resources held by the cache.
+     */
+    default void close() {
+    }
 }
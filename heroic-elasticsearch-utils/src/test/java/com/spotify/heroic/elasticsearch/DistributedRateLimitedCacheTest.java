@@ -6,16 +6,25 @@ import static org.junit.Assert.assertFalse;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 import com.google.common.util.concurrent.RateLimiter;
 import com.spotify.folsom.MemcacheClient;
 import com.spotify.heroic.statistics.noop.NoopHeroicReporter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import org.junit.Before;
 import org.junit.Test;
@@ -42,6 +51,9 @@ public class DistributedRateLimitedCacheTest {
     @Mock
     Runnable cacheHit;
 
+    @Mock
+    ScheduledExecutorService scheduler;
+
     @Before
     public void setUp() {
        cache = new ConcurrentHashMap<>();
@@ -87,6 +99,151 @@ public class DistributedRateLimitedCacheTest {
     }
 
 
+    @Test
+    public void asyncLocalCacheHit() throws Exception {
+        cache.putIfAbsent(key1, true);
+
+        assertFalse(asyncCache(2).acquireAsync(key1, cacheHit).toCompletableFuture().get());
+
+        verify(cacheHit).run();
+        verify(memcacheClient, never()).get(Matchers.anyListOf(String.class));
+    }
+
+    @Test
+    public void asyncBatchesLookups() throws Exception {
+        final DistributedRateLimitedCache<String> asyncCache = asyncCache(2);
+        doReturn(CompletableFuture.completedFuture(Arrays.asList("true", null)))
+            .when(memcacheClient)
+            .get(Matchers.anyListOf(String.class));
+
+        final CompletionStage<Boolean> first = asyncCache.acquireAsync(key1, cacheHit);
+        assertFalse(first.toCompletableFuture().isDone());
+
+        final CompletionStage<Boolean> second = asyncCache.acquireAsync("key2", cacheHit);
+
+        // key1 was found in memcached, key2 was not
+        assertFalse(first.toCompletableFuture().get());
+        assertTrue(second.toCompletableFuture().get());
+        assertTrue(cache.get(key1));
+        assertTrue(cache.get("key2"));
+
+        verify(memcacheClient, times(1)).get(Matchers.anyListOf(String.class));
+        verify(memcacheClient).set(
+            Matchers.anyString(), Matchers.eq("true"), Matchers.eq(MEMCACHED_TTL_SECONDS));
+        verify(cacheHit, times(1)).run();
+        verify(rateLimiter, times(1)).acquire();
+    }
+
+    @Test
+    public void asyncCoalescesLookups() throws Exception {
+        final DistributedRateLimitedCache<String> asyncCache = asyncCache(10);
+        doReturn(CompletableFuture.completedFuture(Collections.singletonList(null)))
+            .when(memcacheClient)
+            .get(Matchers.anyListOf(String.class));
+
+        final CompletionStage<Boolean> first = asyncCache.acquireAsync(key1, cacheHit);
+        final CompletionStage<Boolean> second = asyncCache.acquireAsync(key1, cacheHit);
+
+        asyncCache.flush();
+
+        assertTrue(first.toCompletableFuture().get());
+        assertFalse(second.toCompletableFuture().get());
+
+        verify(memcacheClient, times(1)).get(Matchers.anyListOf(String.class));
+        verify(cacheHit, times(1)).run();
+        verify(rateLimiter, times(1)).acquire();
+    }
+
+    @Test
+    public void asyncTimesOutMemcached() throws Exception {
+        final ScheduledExecutorService realScheduler = Executors.newSingleThreadScheduledExecutor();
+
+        try {
+            final DistributedRateLimitedCache<String> asyncCache =
+                new DistributedRateLimitedCache<>(cache, rateLimiter, memcacheClient,
+                    MEMCACHED_TTL_SECONDS, new NoopHeroicReporter().newMemcachedReporter("test"),
+                    realScheduler, Runnable::run, Runnable::run, 10, 1, 10);
+
+            // memcached never answers
+            doReturn(new CompletableFuture<>())
+                .when(memcacheClient)
+                .get(Matchers.anyListOf(String.class));
+
+            final CompletionStage<Boolean> lookup = asyncCache.acquireAsync(key1, cacheHit);
+
+            assertTrue(lookup.toCompletableFuture().get(5, TimeUnit.SECONDS));
+            assertTrue(cache.get(key1));
+
+            verify(rateLimiter, times(1)).acquire();
+            verify(cacheHit, never()).run();
+        } finally {
+            realScheduler.shutdownNow();
+        }
+    }
+
+    @Test
+    public void asyncCompletesOnCallbacks() throws Exception {
+        final List<Runnable> callbacks = new ArrayList<>();
+        final DistributedRateLimitedCache<String> asyncCache = asyncCache(1, callbacks::add, 10);
+        doReturn(CompletableFuture.completedFuture(Collections.singletonList(null)))
+            .when(memcacheClient)
+            .get(Matchers.anyListOf(String.class));
+
+        final CompletionStage<Boolean> lookup = asyncCache.acquireAsync(key1, cacheHit);
+
+        // the permit has been acquired, but the caller is only resumed on the callbacks executor
+        verify(rateLimiter, times(1)).acquire();
+        assertFalse(lookup.toCompletableFuture().isDone());
+        assertEquals(1, callbacks.size());
+
+        callbacks.get(0).run();
+        assertTrue(lookup.toCompletableFuture().get());
+    }
+
+    @Test
+    public void asyncBlocksWhenSaturated() throws Exception {
+        final DistributedRateLimitedCache<String> asyncCache = asyncCache(10, Runnable::run, 1);
+        doReturn(setupMockedMemcachedGet(null)).when(memcacheClient).get(Matchers.anyString());
+
+        final CompletionStage<Boolean> first = asyncCache.acquireAsync(key1, cacheHit);
+        assertFalse(first.toCompletableFuture().isDone());
+
+        // too many pending lookups, the caller waits for its permit in place
+        final CompletionStage<Boolean> second = asyncCache.acquireAsync("key2", cacheHit);
+        assertTrue(second.toCompletableFuture().isDone());
+        assertTrue(second.toCompletableFuture().get());
+
+        verify(memcacheClient).get(Matchers.anyString());
+        verify(memcacheClient, never()).get(Matchers.anyListOf(String.class));
+        verify(rateLimiter, times(1)).acquire();
+    }
+
+    @Test
+    public void asyncAfterClose() throws Exception {
+        final DistributedRateLimitedCache<String> owning = new DistributedRateLimitedCache<>(
+            cache, rateLimiter, memcacheClient, MEMCACHED_TTL_SECONDS,
+            new NoopHeroicReporter().newMemcachedReporter("test"), Runnable::run);
+        doReturn(setupMockedMemcachedGet(null)).when(memcacheClient).get(Matchers.anyString());
+
+        owning.close();
+
+        // once closed, lookups no longer go through the batching thread
+        assertTrue(owning.acquireAsync(key1, cacheHit).toCompletableFuture().get());
+        verify(memcacheClient, never()).get(Matchers.anyListOf(String.class));
+    }
+
+    private DistributedRateLimitedCache<String> asyncCache(final int maxBatchSize) {
+        return asyncCache(maxBatchSize, Runnable::run, 10);
+    }
+
+    private DistributedRateLimitedCache<String> asyncCache(
+        final int maxBatchSize, final Executor callbacks, final int maxPending
+    ) {
+        return new DistributedRateLimitedCache<>(cache, rateLimiter, memcacheClient,
+            MEMCACHED_TTL_SECONDS, new NoopHeroicReporter().newMemcachedReporter("test"),
+            scheduler, Runnable::run, callbacks, maxBatchSize, 1, maxPending);
+    }
+
     public CompletionStage setupMockedMemcachedGet(final String key)
       throws InterruptedException, ExecutionException, TimeoutException {
         final CompletableFuture completableFuture = Mockito.mock(CompletableFuture.class);
@@ -26,6 +26,8 @@ import com.fasterxml.jackson.databind.Module;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import com.fasterxml.jackson.module.kotlin.KotlinModule;
@@ -71,6 +73,8 @@ import com.spotify.heroic.suggest.SuggestModule;
 public final class HeroicMappers {
     public static final String APPLICATION_JSON_INTERNAL = "application/json+internal";
     public static final String APPLICATION_JSON = "application/json";
+    public static final String APPLICATION_CBOR = "application/cbor";
+    public static final String APPLICATION_SMILE = "application/x-jackson-smile";
     public static final String APPLICATION_HEROIC_CONFIG = "application/heroic-config";
 
     /**
@@ -108,8 +112,24 @@ public final class HeroicMappers {
     }
 
     public static ObjectMapper json(final QueryParser parser) {
-        final ObjectMapper mapper = new ObjectMapper();
+        return configure(new ObjectMapper(), parser);
+    }
+
+    /**
+     * Setup an ObjectMapper producing CBOR, with the same data model as {@link #json}.
+     */
+    public static ObjectMapper cbor(final QueryParser parser) {
+        return configure(new ObjectMapper(new CBORFactory()), parser);
+    }
+
+    /**
+     * Setup an ObjectMapper producing Smile, with the same data model as {@link #json}.
+     */
+    public static ObjectMapper smile(final QueryParser parser) {
+        return configure(new ObjectMapper(new SmileFactory()), parser);
+    }
 
+    private static ObjectMapper configure(final ObjectMapper mapper, final QueryParser parser) {
         mapper.addMixIn(AggregationInstance.class, TypeNameMixin.class);
         mapper.addMixIn(Aggregation.class, TypeNameMixin.class);
 
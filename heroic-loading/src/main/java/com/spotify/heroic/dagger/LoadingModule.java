@@ -31,6 +31,8 @@ import com.spotify.heroic.HeroicMappers;
 import com.spotify.heroic.aggregation.AggregationFactory;
 import com.spotify.heroic.aggregation.AggregationRegistry;
 import com.spotify.heroic.aggregation.CoreAggregationRegistry;
+import com.spotify.heroic.common.CallerRunsExecutor;
+import com.spotify.heroic.common.ExecutorPools;
 import com.spotify.heroic.common.Series;
 import com.spotify.heroic.common.Series_Serializer;
 import com.spotify.heroic.filter.CoreFilterModifier;
@@ -57,17 +59,19 @@ import javax.inject.Named;
 
 @Module
 public class LoadingModule {
-    private final ExecutorService executor;
-    /* {@code true} if this instance manages its own executor and is responsible for stopping it */
-    private final boolean managedExecutor;
+    private final ExecutorPools pools;
     private final HeroicConfiguration options;
     private final ExtraParameters parameters;
 
     public LoadingModule(final ExecutorService executor, final boolean managedExecutor,
                          final HeroicConfiguration options,
                          final ExtraParameters parameters) {
-        this.executor = executor;
-        this.managedExecutor = managedExecutor;
+        this(ExecutorPools.shared(executor, managedExecutor), options, parameters);
+    }
+
+    public LoadingModule(final ExecutorPools pools, final HeroicConfiguration options,
+                         final ExtraParameters parameters) {
+        this.pools = pools;
         this.options = options;
         this.parameters = parameters;
     }
@@ -112,10 +116,44 @@ public class LoadingModule {
     @Provides
     @LoadingScope
     AsyncFramework async(ExecutorService executor, ScheduledExecutorService scheduler) {
+        return buildAsync(executor, scheduler);
+    }
+
+    @Provides
+    @LoadingScope
+    @Named(ExecutorPools.QUERY_ASYNC)
+    AsyncFramework queryAsync(ExecutorPools pools, ScheduledExecutorService scheduler) {
+        return buildAsync(pools.get(ExecutorPools.QUERY), scheduler);
+    }
+
+    @Provides
+    @LoadingScope
+    @Named(ExecutorPools.INGESTION_ASYNC)
+    AsyncFramework ingestionAsync(ExecutorPools pools, ScheduledExecutorService scheduler) {
+        return buildAsync(pools.get(ExecutorPools.INGESTION), scheduler);
+    }
+
+    @Provides
+    @LoadingScope
+    @Named(ExecutorPools.METADATA_ASYNC)
+    AsyncFramework metadataAsync(ExecutorPools pools, ScheduledExecutorService scheduler) {
+        return buildAsync(pools.get(ExecutorPools.METADATA), scheduler);
+    }
+
+    /**
+     * Build an async framework on top of the given pool.
+     * <p>
+     * Callbacks are dispatched on the pool without being subject to its bound, a saturated pool
+     * must never cause the callbacks of an already completed future to be lost.
+     */
+    private AsyncFramework buildAsync(
+        final ExecutorService executor, final ScheduledExecutorService scheduler
+    ) {
         return TinyAsync
             .builder()
             .recursionSafe(true)
             .executor(executor)
+            .callerExecutor(new CallerRunsExecutor(executor))
             .scheduler(scheduler)
             .build();
     }
@@ -148,10 +186,16 @@ public class LoadingModule {
         return new CoreFilterModifier();
     }
 
+    @Provides
+    @LoadingScope
+    ExecutorPools executorPools() {
+        return pools;
+    }
+
     @Provides
     @LoadingScope
     ExecutorService executorService() {
-        return executor;
+        return pools.get(ExecutorPools.CORE);
     }
 
     @Provides
@@ -174,7 +218,7 @@ public class LoadingModule {
     @Named("loading")
     LifeCycle loadingLifeCycles(
         @Named("internal") LifeCycleRegistry registry, final AsyncFramework async,
-        final ScheduledExecutorService scheduler, final ExecutorService executor
+        final ScheduledExecutorService scheduler, final ExecutorPools pools
     ) {
         return () -> {
             registry.scoped("loading scheduler").stop(() -> async.call(() -> {
@@ -182,9 +226,16 @@ public class LoadingModule {
                 return null;
             }, ForkJoinPool.commonPool()));
 
-            if (managedExecutor) {
+            if (pools.isManaged()) {
                 registry.scoped("loading executor").stop(() -> async.call(() -> {
-                    shutdown(executor);
+                    for (final ExecutorService executor : pools.executors()) {
+                        executor.shutdown();
+                    }
+
+                    for (final ExecutorService executor : pools.executors()) {
+                        shutdown(executor);
+                    }
+
                     return null;
                 }, ForkJoinPool.commonPool()));
             }
@@ -69,18 +69,7 @@ public class PointSerialization {
         @Override
         public void serialize(Point d, JsonGenerator g, SerializerProvider provider)
             throws IOException, JsonProcessingException {
-            g.writeStartArray();
-            g.writeNumber(d.getTimestamp());
-
-            final double value = d.getValue();
-
-            if (Double.isFinite(value)) {
-                g.writeNumber(value);
-            } else {
-                g.writeNull();
-            }
-
-            g.writeEndArray();
+            MetricCollectionWriter.writePoint(g, d);
         }
     }
 }
@@ -144,35 +144,7 @@ public class SpreadSerialization {
         @Override
         public void serialize(Spread d, JsonGenerator g, SerializerProvider provider)
             throws IOException, JsonProcessingException {
-            g.writeStartArray();
-            g.writeNumber(d.getTimestamp());
-
-            g.writeStartObject();
-            g.writeFieldName(COUNT);
-            g.writeNumber(d.getCount());
-
-            g.writeFieldName(SUM);
-            writeDouble(g, d.getSum());
-
-            g.writeFieldName(SUM2);
-            writeDouble(g, d.getSum2());
-
-            g.writeFieldName(MIN);
-            writeDouble(g, d.getMin());
-
-            g.writeFieldName(MAX);
-            writeDouble(g, d.getMax());
-
-            g.writeEndObject();
-            g.writeEndArray();
-        }
-
-        private void writeDouble(JsonGenerator g, double value) throws IOException {
-            if (Double.isFinite(value)) {
-                g.writeNumber(value);
-            } else {
-                g.writeNull();
-            }
+            MetricCollectionWriter.writeSpread(g, d);
         }
     }
 }
@@ -65,6 +65,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 import javax.inject.Named;
@@ -235,7 +236,9 @@ public final class ElasticsearchMetadataModule implements MetadataModule, Dynami
 
         @Provides
         @ElasticsearchScope
-        public RateLimitedCache<Pair<String, HashCode>> writeCache(HeroicReporter reporter) {
+        public RateLimitedCache<Pair<String, HashCode>> writeCache(
+            final HeroicReporter reporter, final ExecutorService executor
+        ) {
             final Cache<Pair<String, HashCode>, Boolean> cache = CacheBuilder
                 .newBuilder()
                 .concurrencyLevel(writeCacheConcurrency)
@@ -255,7 +258,8 @@ public final class ElasticsearchMetadataModule implements MetadataModule, Dynami
                   RateLimiter.create(writesPerSecond, rateLimitSlowStartSeconds, SECONDS),
                   MemcachedConnection.create(distributedCacheSrvRecord),
                   toIntExact(Duration.of(writeCacheDurationMinutes, MINUTES).convert(SECONDS)),
-                  reporter.newMemcachedReporter("metadata")
+                  reporter.newMemcachedReporter("metadata"),
+                  executor
                 );
             }
 
@@ -33,6 +33,7 @@ import com.spotify.heroic.common.Groups;
 import com.spotify.heroic.common.OptionalLimit;
 import com.spotify.heroic.common.RequestTimer;
 import com.spotify.heroic.common.Series;
+import com.spotify.heroic.common.SeriesInterner;
 import com.spotify.heroic.common.Statistics;
 import com.spotify.heroic.elasticsearch.AbstractElasticsearchMetadataBackend;
 import com.spotify.heroic.elasticsearch.BackendType;
@@ -209,22 +210,24 @@ public class MetadataBackendKV extends AbstractElasticsearchMetadataBackend
             }
 
             final List<AsyncFuture<WriteMetadata>> writes = new ArrayList<>();
-            final List<Span> indexSpans = new ArrayList<>();
 
             for (final String index : indices) {
                 final String indexSpanName = rootSpanName + ".index";
-                final Span span = tracer.spanBuilder(indexSpanName).startSpan();
-                try (Scope ws = tracer.withSpan(span)) {
-                    span.putAttribute("index", AttributeValue.stringAttributeValue(index));
+                final Span span = tracer
+                    .spanBuilderWithExplicitParent(indexSpanName, rootSpan)
+                    .startSpan();
+                span.putAttribute("index", AttributeValue.stringAttributeValue(index));
 
-                    if (!writeCache.acquire(Pair.of(index, series.getHashCode()),
-                        reporter::reportWriteDroppedByCacheHit)) {
+                final AsyncFuture<Boolean> acquired = bind(
+                    writeCache.acquireAsync(Pair.of(index, series.getHashCode()),
+                        reporter::reportWriteDroppedByCacheHit));
+
+                writes.add(acquired.lazyTransform(permit -> {
+                    if (!permit) {
                         span.setStatus(
                             Status.ALREADY_EXISTS.withDescription("Write dropped by cache hit"));
-                        span.end();
-                        continue;
+                        return async.resolved(WriteMetadata.of());
                     }
-                    indexSpans.add(span);
 
                     final XContentBuilder source = XContentFactory.jsonBuilder();
 
@@ -243,24 +246,20 @@ public class MetadataBackendKV extends AbstractElasticsearchMetadataBackend
                         reporter.setupBackendWriteReporter();
 
                     final Span writeSpan = tracer
-                        .spanBuilder(indexSpanName + ".writeIndex")
+                        .spanBuilderWithExplicitParent(indexSpanName + ".writeIndex", span)
                         .startSpan();
-                    AsyncFuture<WriteMetadata> result = bind(builder.execute())
+
+                    return bind(builder.execute())
                         .directTransform(response -> timer.end())
                         .catchFailed(handleVersionConflict(WriteMetadata::of,
                             reporter::reportWriteDroppedByDuplicate))
                         .onDone(writeContext)
                         .onFinished(writeSpan::end);
-
-                    writes.add(result);
-                }
+                }).onFinished(span::end));
             }
 
             rootScope.close();
-            return async.collect(writes, WriteMetadata.reduce()).onFinished(() -> {
-                indexSpans.forEach(Span::end);
-                rootSpan.end();
-            });
+            return async.collect(writes, WriteMetadata.reduce()).onFinished(rootSpan::end);
         });
     }
 
@@ -392,7 +391,7 @@ public class MetadataBackendKV extends AbstractElasticsearchMetadataBackend
         final String key = (String) source.get(KEY);
         final Iterator<Map.Entry<String, String>> tags =
             ((List<String>) source.get(TAGS)).stream().map(this::buildTag).iterator();
-        return Series.of(key, tags);
+        return SeriesInterner.global().intern(Series.of(key, tags));
     }
 
     private <T, O> AsyncFuture<O> entries(
@@ -501,7 +500,7 @@ public class MetadataBackendKV extends AbstractElasticsearchMetadataBackend
     }
 
     AsyncFuture<Void> stop() {
-        return connection.stop();
+        return connection.stop().onFinished(writeCache::close);
     }
 
     Map.Entry<String, String> buildTag(String kv) {
@@ -23,6 +23,7 @@ package com.spotify.heroic.analytics.bigtable;
 
 import com.spotify.heroic.QueryOptions;
 import com.spotify.heroic.async.AsyncObservable;
+import com.spotify.heroic.common.DateRange;
 import com.spotify.heroic.common.Groups;
 import com.spotify.heroic.common.Statistics;
 import com.spotify.heroic.metric.BackendEntry;
@@ -38,6 +39,7 @@ import com.spotify.heroic.metric.WriteMetric;
 import eu.toolchain.async.AsyncFuture;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Consumer;
 import lombok.ToString;
 
@@ -73,6 +75,11 @@ class BigtableAnalyticsMetricBackend implements MetricBackend {
         return backend.configure();
     }
 
+    @Override
+    public Map<Long, DateRange> rollups() {
+        return backend.rollups();
+    }
+
     @Override
     public AsyncFuture<WriteMetric> write(WriteMetric.Request request) {
         return backend.write(request);
@@ -25,6 +25,7 @@ import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.spotify.heroic.analytics.AnalyticsComponent;
 import com.spotify.heroic.analytics.AnalyticsModule;
+import com.spotify.heroic.common.Duration;
 import com.spotify.heroic.dagger.PrimaryComponent;
 import com.spotify.heroic.lifecycle.LifeCycle;
 import com.spotify.heroic.lifecycle.LifeCycleManager;
@@ -42,6 +43,7 @@ import eu.toolchain.async.Managed;
 import eu.toolchain.async.ManagedSetup;
 import java.util.Optional;
 import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 import javax.inject.Named;
 import lombok.ToString;
 
@@ -53,7 +55,10 @@ public class BigtableAnalyticsModule implements AnalyticsModule {
         new ComputeEngineCredentialsBuilder();
     public static final String HITS_TABLE = "hits";
     public static final String HITS_COLUMN_FAMILY = "hits";
-    public static final int DEFAULT_MAX_PENDING_REPORTS = 1000;
+    public static final int DEFAULT_MAX_PENDING_REPORTS = 100000;
+    /* how often locally aggregated hits are flushed to the hits table */
+    public static final Duration DEFAULT_REPORT_FLUSH_INTERVAL =
+        Duration.of(10, TimeUnit.SECONDS);
     public static final boolean DEFAULT_DISABLE_BULK_MUTATIONS = false;
     public static final int DEFAULT_FLUSH_INTERVAL_SECONDS = 2;
 
@@ -61,15 +66,20 @@ public class BigtableAnalyticsModule implements AnalyticsModule {
     private final String cluster;
     private final CredentialsBuilder credentials;
     private final int maxPendingReports;
+    private final Duration flushInterval;
 
-    @java.beans.ConstructorProperties({ "project", "cluster", "credentials", "maxPendingReports" })
+    @java.beans.ConstructorProperties({
+        "project", "cluster", "credentials", "maxPendingReports", "flushInterval"
+    })
     public BigtableAnalyticsModule(final String project, final String cluster,
                                    final CredentialsBuilder credentials,
-                                   final int maxPendingReports) {
+                                   final int maxPendingReports,
+                                   final Duration flushInterval) {
         this.project = project;
         this.cluster = cluster;
         this.credentials = credentials;
         this.maxPendingReports = maxPendingReports;
+        this.flushInterval = flushInterval;
     }
 
     @Override
@@ -133,6 +143,13 @@ public class BigtableAnalyticsModule implements AnalyticsModule {
         return maxPendingReports;
     }
 
+    @Provides
+    @BigtableScope
+    @Named("flushInterval")
+    Duration flushInterval() {
+        return flushInterval;
+    }
+
     @Provides
     @BigtableScope
     @Named("analytics")
@@ -149,18 +166,21 @@ public class BigtableAnalyticsModule implements AnalyticsModule {
         private Optional<String> instance = Optional.empty();
         private Optional<CredentialsBuilder> credentials = Optional.empty();
         private Optional<Integer> maxPendingReports = Optional.empty();
+        private Optional<Duration> flushInterval = Optional.empty();
 
         @JsonCreator
         public Builder(
             @JsonProperty("project") Optional<String> project,
             @JsonProperty("instance") Optional<String> instance,
             @JsonProperty("credentials") Optional<CredentialsBuilder> credentials,
-            @JsonProperty("maxPendingReports") Optional<Integer> maxPendingReports
+            @JsonProperty("maxPendingReports") Optional<Integer> maxPendingReports,
+            @JsonProperty("flushInterval") Optional<Duration> flushInterval
         ) {
             this.project = project;
             this.instance = instance;
             this.credentials = credentials;
             this.maxPendingReports = maxPendingReports;
+            this.flushInterval = flushInterval;
         }
 
         public Builder() {
@@ -186,13 +206,19 @@ public class BigtableAnalyticsModule implements AnalyticsModule {
             return this;
         }
 
+        public Builder flushInterval(Duration flushInterval) {
+            this.flushInterval = Optional.of(flushInterval);
+            return this;
+        }
+
         public BigtableAnalyticsModule build() {
             final String project = this.project.orElseThrow(
                 () -> new IllegalStateException("'project' configuration is required"));
 
             return new BigtableAnalyticsModule(project, instance.orElse(DEFAULT_CLUSTER),
                 credentials.orElse(DEFAULT_CREDENTIALS),
-                maxPendingReports.orElse(DEFAULT_MAX_PENDING_REPORTS));
+                maxPendingReports.orElse(DEFAULT_MAX_PENDING_REPORTS),
+                flushInterval.orElse(DEFAULT_REPORT_FLUSH_INTERVAL));
         }
     }
 }
@@ -26,6 +26,7 @@ import com.google.protobuf.ByteString;
 import com.spotify.heroic.analytics.MetricAnalytics;
 import com.spotify.heroic.analytics.SeriesHit;
 import com.spotify.heroic.async.AsyncObservable;
+import com.spotify.heroic.common.Duration;
 import com.spotify.heroic.common.Series;
 import com.spotify.heroic.lifecycle.LifeCycleRegistry;
 import com.spotify.heroic.lifecycle.LifeCycles;
@@ -34,35 +35,60 @@ import com.spotify.heroic.metric.bigtable.BigtableConnection;
 import com.spotify.heroic.metric.bigtable.api.Family;
 import com.spotify.heroic.metric.bigtable.api.ReadModifyWriteRules;
 import com.spotify.heroic.metric.bigtable.api.ReadRowsRequest;
-import com.spotify.heroic.metric.bigtable.api.Row;
 import com.spotify.heroic.metric.bigtable.api.RowRange;
 import com.spotify.heroic.metric.bigtable.api.Table;
+import com.spotify.heroic.scheduler.Scheduler;
 import com.spotify.heroic.statistics.AnalyticsReporter;
 import eu.toolchain.async.AsyncFramework;
 import eu.toolchain.async.AsyncFuture;
 import eu.toolchain.async.Borrowed;
 import eu.toolchain.async.Managed;
+import eu.toolchain.async.StreamCollector;
 import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * Series analytics stored in Bigtable.
+ * <p>
+ * Fetches are counted in a local map of series to hit count, which is periodically flushed as
+ * one increment per distinct series. The number of distinct series pending a flush is bounded,
+ * hits for new series are dropped once that bound is reached.
+ */
+@Slf4j
 @BigtableScope
-@ToString(exclude = {"async", "mapper", "reporter"})
+@ToString(exclude = {"async", "mapper", "reporter", "scheduler", "pending", "stopped"})
 public class BigtableMetricAnalytics implements MetricAnalytics, LifeCycles {
+    /**
+     * Number of increments in flight at the same time during a flush.
+     */
+    public static final int FLUSH_PARALLELISM = 32;
+
     final Managed<BigtableConnection> connection;
     final AsyncFramework async;
     final ObjectMapper mapper;
     final AnalyticsReporter reporter;
+    final Scheduler scheduler;
 
     final String hitsTableName;
     final String hitsColumnFamily;
-    final Semaphore pendingReports;
+    final int maxPendingReports;
+    final Duration flushInterval;
+
+    final ConcurrentMap<SeriesKeyEncoding.SeriesKey, Long> pending = new ConcurrentHashMap<>();
+    final AtomicBoolean stopped = new AtomicBoolean();
 
     final SeriesKeyEncoding fetchSeries = new SeriesKeyEncoding("fetch");
 
@@ -70,18 +96,21 @@ public class BigtableMetricAnalytics implements MetricAnalytics, LifeCycles {
     public BigtableMetricAnalytics(
         final Managed<BigtableConnection> connection, final AsyncFramework async,
         @Named("application/json") final ObjectMapper mapper, final AnalyticsReporter reporter,
-        @Named("hitsTableName") final String hitsTableName,
+        final Scheduler scheduler, @Named("hitsTableName") final String hitsTableName,
         @Named("hitsColumnFamily") final String hitsColumnFamily,
-        @Named("maxPendingReports") final int maxPendingReports
+        @Named("maxPendingReports") final int maxPendingReports,
+        @Named("flushInterval") final Duration flushInterval
     ) {
         this.connection = connection;
         this.async = async;
         this.mapper = mapper;
         this.reporter = reporter;
+        this.scheduler = scheduler;
 
         this.hitsTableName = hitsTableName;
         this.hitsColumnFamily = hitsColumnFamily;
-        this.pendingReports = new Semaphore(maxPendingReports);
+        this.maxPendingReports = maxPendingReports;
+        this.flushInterval = flushInterval;
     }
 
     @Override
@@ -153,35 +182,106 @@ public class BigtableMetricAnalytics implements MetricAnalytics, LifeCycles {
 
     @Override
     public AsyncFuture<Void> reportFetchSeries(LocalDate date, Series series) {
-        // limit the number of pending reports that are allowed at the same time to avoid resource
-        // starvation.
-        if (!pendingReports.tryAcquire()) {
+        final SeriesKeyEncoding.SeriesKey key = new SeriesKeyEncoding.SeriesKey(date, series);
+
+        // bound the number of distinct series waiting for a flush to avoid resource starvation,
+        // hits for series which are already pending are always counted.
+        if (!pending.containsKey(key) && pending.size() >= maxPendingReports) {
             reporter.reportDroppedFetchSeries();
             return async.cancelled();
         }
 
+        pending.merge(key, 1L, Long::sum);
+        return async.resolved();
+    }
+
+    /**
+     * Flush all pending hits to Bigtable, issuing one increment per distinct series.
+     * <p>
+     * Increments are not batched: bulk mutations cannot carry read-modify-write rules, so each
+     * series is incremented with its own request, with at most {@link #FLUSH_PARALLELISM} in
+     * flight.
+     *
+     * @return a future which is resolved when all increments have finished
+     */
+    AsyncFuture<Void> flush() {
+        if (pending.isEmpty()) {
+            return async.resolved();
+        }
+
         return connection.doto(c -> {
-            final ByteString key = fetchSeries.encode(new SeriesKeyEncoding.SeriesKey(date, series),
-                mapper::writeValueAsString);
-
-            final AsyncFuture<Row> request = c
-                .dataClient()
-                .readModifyWriteRow(hitsTableName, key, ReadModifyWriteRules
-                    .builder()
-                    .increment(hitsColumnFamily, ByteString.EMPTY, 1L)
-                    .build());
-
-            return request.<Void>directTransform(d -> null).onFailed(e -> {
-                reporter.reportFailedFetchSeries();
+            final List<Callable<AsyncFuture<Void>>> increments = new ArrayList<>();
+
+            for (final SeriesKeyEncoding.SeriesKey key : pending.keySet()) {
+                final Long hits = pending.remove(key);
+
+                if (hits != null) {
+                    increments.add(() -> increment(c, key, hits));
+                }
+            }
+
+            return async.eventuallyCollect(increments, new ReportFailed(), FLUSH_PARALLELISM);
+        });
+    }
+
+    private AsyncFuture<Void> increment(
+        final BigtableConnection c, final SeriesKeyEncoding.SeriesKey key, final long hits
+    ) throws Exception {
+        final ByteString rowKey = fetchSeries.encode(key, mapper::writeValueAsString);
+
+        return c
+            .dataClient()
+            .readModifyWriteRow(hitsTableName, rowKey, ReadModifyWriteRules
+                .builder()
+                .increment(hitsColumnFamily, ByteString.EMPTY, hits)
+                .build())
+            .directTransform(r -> null);
+    }
+
+    private void scheduleFlush() {
+        scheduler.schedule("bigtable-analytics-flush", flushInterval.getDuration(),
+            flushInterval.getUnit(), () -> {
+                if (stopped.get()) {
+                    return;
+                }
+
+                flush().onFinished(this::scheduleFlush);
             });
-        }).onFinished(pendingReports::release);
     }
 
     private AsyncFuture<Void> start() {
-        return connection.start();
+        return connection.start().directTransform(n -> {
+            scheduleFlush();
+            return null;
+        });
     }
 
     private AsyncFuture<Void> stop() {
-        return connection.stop();
+        stopped.set(true);
+
+        return flush().catchFailed((Throwable e) -> {
+            log.error("Failed to flush pending analytics", e);
+            return null;
+        }).lazyTransform(n -> connection.stop());
+    }
+
+    private class ReportFailed implements StreamCollector<Void, Void> {
+        @Override
+        public void resolved(final Void result) {
+        }
+
+        @Override
+        public void failed(final Throwable cause) {
+            reporter.reportFailedFetchSeries();
+        }
+
+        @Override
+        public void cancelled() {
+        }
+
+        @Override
+        public Void end(final int resolved, final int failed, final int cancelled) {
+            return null;
+        }
     }
 }
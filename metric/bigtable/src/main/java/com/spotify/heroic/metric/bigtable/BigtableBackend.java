@@ -28,9 +28,12 @@ import com.google.cloud.bigtable.grpc.scanner.FlatRow;
 import com.google.cloud.bigtable.util.RowKeyUtil;
 import com.google.common.base.Function;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.protobuf.ByteString;
+import com.spotify.heroic.async.AsyncObserver;
 import com.spotify.heroic.common.DateRange;
+import com.spotify.heroic.common.Duration;
 import com.spotify.heroic.common.Groups;
 import com.spotify.heroic.common.RequestTimer;
 import com.spotify.heroic.common.Series;
@@ -49,6 +52,7 @@ import com.spotify.heroic.metric.MetricType;
 import com.spotify.heroic.metric.Point;
 import com.spotify.heroic.metric.QueryError;
 import com.spotify.heroic.metric.QueryTrace;
+import com.spotify.heroic.metric.Spread;
 import com.spotify.heroic.metric.WriteMetric;
 import com.spotify.heroic.metric.bigtable.api.BigtableDataClient;
 import com.spotify.heroic.metric.bigtable.api.BigtableTableAdminClient;
@@ -59,12 +63,17 @@ import com.spotify.heroic.metric.bigtable.api.RowFilter;
 import com.spotify.heroic.metric.bigtable.api.RowRange;
 import com.spotify.heroic.metric.bigtable.api.Table;
 import com.spotify.heroic.metrics.Meter;
+import com.spotify.heroic.scheduler.Scheduler;
 import com.spotify.heroic.statistics.MetricBackendReporter;
+import com.spotify.heroic.time.Clock;
 import eu.toolchain.async.AsyncFramework;
 import eu.toolchain.async.AsyncFuture;
+import eu.toolchain.async.Collector;
 import eu.toolchain.async.Managed;
+import eu.toolchain.async.ResolvableFuture;
 import eu.toolchain.async.RetryPolicy;
 import eu.toolchain.async.RetryResult;
+import eu.toolchain.async.StreamCollector;
 import eu.toolchain.serializer.Serializer;
 import eu.toolchain.serializer.SerializerFramework;
 import io.opencensus.common.Scope;
@@ -80,12 +89,20 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.SortedMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 import javax.inject.Inject;
 import javax.inject.Named;
+import lombok.Data;
 import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.tuple.Pair;
@@ -104,7 +121,28 @@ public class BigtableBackend extends AbstractMetricBackend implements LifeCycles
 
     public static final String POINTS = "points";
     public static final String EVENTS = "events";
+    public static final String BLOCKS = "blocks";
+    public static final String ROLLUP_PREFIX = "rollup_";
     public static final long PERIOD = 0x100000000L;
+    /* size of a compressed block, must evenly divide the period */
+    public static final long BLOCK_SIZE = 0x1000000L;
+
+    /* maximum number of rollup intervals being recomputed at the same time */
+    private static final int ROLLUP_PARALLELISM = 32;
+    /* rollup markers of other nodes are picked up after this many flush intervals */
+    private static final int ROLLUP_ORPHAN_FLUSHES = 2;
+    /* maximum number of blocks being compacted at the same time */
+    private static final int COMPACTION_PARALLELISM = 32;
+    /* how long to wait after a block has ended before compacting it, to let late writes in */
+    private static final long COMPACTION_DELAY = TimeUnit.MINUTES.toMillis(10);
+    /* blocks with more raw cells than this are left alone, to stay within mutation limits */
+    private static final int MAX_COMPACTION_CELLS = 50000;
+    /* block markers of other nodes are picked up after this many compaction intervals */
+    private static final int COMPACTION_ORPHAN_RUNS = 2;
+    /* maximum number of markers of each kind that are scanned for orphans on every run */
+    private static final long MARKER_SCAN_LIMIT = 1000L;
+
+    private static final long[] NO_TIMESTAMPS = new long[0];
 
     private final AsyncFramework async;
     private final SerializerFramework serializer;
@@ -116,8 +154,31 @@ public class BigtableBackend extends AbstractMetricBackend implements LifeCycles
     private final boolean configure;
     private final MetricBackendReporter reporter;
     private final ObjectMapper mapper;
+    private final Scheduler scheduler;
+    private final Set<Long> rollups;
+    private final Duration rollupFlushInterval;
+    private final boolean blocks;
+    private final Duration blockCompactionInterval;
+    private final Clock clock;
+    private final BigtableMarkers markers;
     private final Tracer tracer = Tracing.getTracer();
 
+    /* rollup intervals this node has written to since they were last computed, and the tokens of
+     * their persisted markers */
+    private final ConcurrentMap<RollupInterval, ByteString> dirtyRollups =
+        new ConcurrentHashMap<>();
+    /* when each rollup was enabled */
+    private final ConcurrentMap<Long, Long> rollupsSince = new ConcurrentHashMap<>();
+    /* the range of time that each rollup is known to be complete for */
+    private final ConcurrentMap<Long, DateRange> rollupCoverage = new ConcurrentHashMap<>();
+    /* blocks that this node has written raw cells to, which should be compacted once closed, and
+     * the tokens of their persisted markers */
+    private final ConcurrentMap<PendingBlock, ByteString> pendingBlocks =
+        new ConcurrentHashMap<>();
+    /* the marker row that the next scan of each kind of marker continues after */
+    private final ConcurrentMap<String, ByteString> markerCursors = new ConcurrentHashMap<>();
+    private final AtomicBoolean stopped = new AtomicBoolean();
+
     private static final TypeReference<Map<String, String>> PAYLOAD_TYPE =
         new TypeReference<Map<String, String>>() {
         };
@@ -130,7 +191,12 @@ public class BigtableBackend extends AbstractMetricBackend implements LifeCycles
         final RowKeySerializer rowKeySerializer, final Managed<BigtableConnection> connection,
         final Groups groups, @Named("table") final String table,
         @Named("configure") final boolean configure, MetricBackendReporter reporter,
-        @Named("application/json") ObjectMapper mapper
+        @Named("application/json") ObjectMapper mapper, final Scheduler scheduler,
+        @Named("rollups") final Set<Long> rollups,
+        @Named("rollupFlushInterval") final Duration rollupFlushInterval,
+        @Named("blocks") final boolean blocks,
+        @Named("blockCompactionInterval") final Duration blockCompactionInterval,
+        final Clock clock
     ) {
         super(async);
         this.async = async;
@@ -143,6 +209,13 @@ public class BigtableBackend extends AbstractMetricBackend implements LifeCycles
         this.configure = configure;
         this.reporter = reporter;
         this.mapper = mapper;
+        this.scheduler = scheduler;
+        this.rollups = rollups;
+        this.rollupFlushInterval = rollupFlushInterval;
+        this.blocks = blocks;
+        this.blockCompactionInterval = blockCompactionInterval;
+        this.clock = clock;
+        this.markers = new BigtableMarkers(rowKeySerializer, table);
     }
 
     @Override
@@ -179,6 +252,35 @@ public class BigtableBackend extends AbstractMetricBackend implements LifeCycles
 
             waitUntilColumnFamily(admin, table, EVENTS).get();
 
+            if (blocks) {
+                table.getColumnFamily(BLOCKS).orElseGet(() -> {
+                    log.info("Creating missing column family: " + BLOCKS);
+                    return admin.createColumnFamily(table, BLOCKS);
+                });
+
+                waitUntilColumnFamily(admin, table, BLOCKS).get();
+            }
+
+            if (blocks || !rollups.isEmpty()) {
+                table.getColumnFamily(BigtableMarkers.MARKERS).orElseGet(() -> {
+                    log.info("Creating missing column family: " + BigtableMarkers.MARKERS);
+                    return admin.createColumnFamily(table, BigtableMarkers.MARKERS);
+                });
+
+                waitUntilColumnFamily(admin, table, BigtableMarkers.MARKERS).get();
+            }
+
+            for (final long resolution : rollups) {
+                final String family = rollupFamily(resolution);
+
+                table.getColumnFamily(family).orElseGet(() -> {
+                    log.info("Creating missing column family: " + family);
+                    return admin.createColumnFamily(table, family);
+                });
+
+                waitUntilColumnFamily(admin, table, family).get();
+            }
+
             return null;
         });
     }
@@ -242,18 +344,47 @@ public class BigtableBackend extends AbstractMetricBackend implements LifeCycles
 
             final MetricCollection g = request.getData();
             results.add(writeTyped(series, client, g, parentSpan));
-            return async.collect(results, WriteMetric.reduce());
+            return async
+                .collect(results, WriteMetric.reduce())
+                .onResolved(result -> {
+                    markRollups(client, series, g);
+                    markBlocks(client, series, g);
+                });
         });
     }
 
-    private List<PreparedQuery> pointsRanges(final FetchData.Request request) throws IOException {
+    private List<PreparedQuery<Metric>> pointsRanges(final FetchData.Request request)
+        throws IOException {
         return ranges(request.getSeries(), request.getRange(), POINTS, (t, d) -> {
             final double value = deserializeValue(d);
             return new Point(t, value);
         });
     }
 
-    private List<PreparedQuery> eventsRanges(final FetchData.Request request) throws IOException {
+    private List<PreparedQuery<PointBlock.Decoder>> blocksRanges(
+        final Series series, final DateRange range
+    ) throws IOException {
+        // blocks are stored at their last timestamp, which must be in (start, end of last block]
+        final DateRange keys =
+            new DateRange(range.start(), blockStart(range.end()) + BLOCK_SIZE - 1);
+
+        return ranges(series, keys, BLOCKS,
+            (t, d) -> PointBlock.decoder(d.asReadOnlyByteBuffer()));
+    }
+
+    private List<PreparedQuery<Metric>> rollupRanges(
+        final FetchData.Request request, final long resolution
+    ) throws IOException {
+        // rollups are stored at the start of their interval, which must be in [start, end)
+        final DateRange range = request.getRange();
+        final DateRange starts = new DateRange(range.start() - 1, range.end() - 1);
+
+        return ranges(request.getSeries(), starts, rollupFamily(resolution),
+            BigtableBackend::deserializeSpread);
+    }
+
+    private List<PreparedQuery<Metric>> eventsRanges(final FetchData.Request request)
+        throws IOException {
         return ranges(request.getSeries(), request.getRange(), EVENTS, (t, d) -> {
             try {
                 return new Event(t, mapper.readValue(d.toByteArray(), PAYLOAD_TYPE));
@@ -275,9 +406,15 @@ public class BigtableBackend extends AbstractMetricBackend implements LifeCycles
                 throw new IllegalArgumentException("query violated data limit");
             }
 
+            final Optional<Long> rollup = request.getRollup().filter(rollups::contains);
+
+            if (type == MetricType.POINT && rollup.isPresent()) {
+                return fetchRollups(watcher, request, rollup.get(), c, consumer);
+            }
+
             switch (type) {
                 case POINT:
-                    return fetchBatch(watcher, type, pointsRanges(request), c, consumer);
+                    return fetchRaw(watcher, request, c, consumer);
                 case EVENT:
                     return fetchBatch(watcher, type, eventsRanges(request), c, consumer);
                 default:
@@ -287,6 +424,59 @@ public class BigtableBackend extends AbstractMetricBackend implements LifeCycles
         });
     }
 
+    /**
+     * Fetch points from the rollups of the given resolution.
+     * <p>
+     * The first interval of the range is read from raw points instead. The interval of a rollup
+     * includes the point at its start, while the range of a raw fetch excludes the point at its
+     * start, so this way both agree on the points at the start of the range. A raw point at the
+     * end of the range is not part of any rollup, it falls outside of the last bucket of the
+     * aggregations that rollups are planned for.
+     */
+    private AsyncFuture<FetchData.Result> fetchRollups(
+        final FetchQuotaWatcher watcher, final FetchData.Request request, final long resolution,
+        final BigtableConnection c, final Consumer<MetricReadResult> consumer
+    ) throws IOException {
+        final DateRange range = request.getRange();
+
+        if (range.diff() <= resolution) {
+            return fetchRaw(watcher, request, c, consumer);
+        }
+
+        final long split = range.start() + resolution;
+
+        final AsyncFuture<FetchData.Result> raw = fetchRaw(watcher,
+            new FetchData.Request(request.getType(), request.getSeries(),
+                new DateRange(range.start(), split - 1), request.getOptions()), c, consumer);
+
+        final AsyncFuture<FetchData.Result> spreads = fetchBatch(watcher, MetricType.SPREAD,
+            rollupRanges(new FetchData.Request(request.getType(), request.getSeries(),
+                new DateRange(split, range.end()), request.getOptions()), resolution), c,
+            consumer);
+
+        return async.collect(ImmutableList.of(raw, spreads), FetchData.collectResult(FETCH));
+    }
+
+    private AsyncFuture<FetchData.Result> fetchRaw(
+        final FetchQuotaWatcher watcher, final FetchData.Request request,
+        final BigtableConnection c, final Consumer<MetricReadResult> consumer
+    ) throws IOException {
+        if (blocks) {
+            return fetchPoints(watcher, request, c, consumer);
+        }
+
+        return fetchBatch(watcher, MetricType.POINT, pointsRanges(request), c, consumer);
+    }
+
+    /**
+     * Rollups are only complete from the first interval after they were enabled, up to the first
+     * interval that has been written to since the last flush.
+     */
+    @Override
+    public Map<Long, DateRange> rollups() {
+        return ImmutableMap.copyOf(rollupCoverage);
+    }
+
     @Override
     public Iterable<BackendEntry> listEntries() {
         return ImmutableList.of();
@@ -300,17 +490,649 @@ public class BigtableBackend extends AbstractMetricBackend implements LifeCycles
     }
 
     private AsyncFuture<Void> start() {
-        final AsyncFuture<Void> future = connection.start();
+        AsyncFuture<Void> future = connection.start();
 
-        if (!configure) {
-            return future;
+        if (configure) {
+            future = future.lazyTransform(v -> configure());
         }
 
-        return future.lazyTransform(v -> configure());
+        if (!rollups.isEmpty()) {
+            future.onResolved(v -> scheduleRollups());
+        }
+
+        if (blocks) {
+            future.onResolved(v -> scheduleCompaction());
+        }
+
+        return future;
     }
 
     private AsyncFuture<Void> stop() {
-        return connection.stop();
+        stopped.set(true);
+
+        return flushRollups().catchFailed((Throwable e) -> {
+            log.error("Failed to flush rollups", e);
+            return null;
+        }).lazyTransform(v -> compactBlocks(clock.currentTimeMillis())).catchFailed(
+            (Throwable e) -> {
+                log.error("Failed to compact blocks", e);
+                return null;
+            }).lazyTransform(v -> connection.stop());
+    }
+
+    private void scheduleRollups() {
+        scheduler.schedule("bigtable-rollups", rollupFlushInterval.getDuration(),
+            rollupFlushInterval.getUnit(), () -> {
+                if (stopped.get()) {
+                    return;
+                }
+
+                flushRollups().onFinished(this::scheduleRollups);
+            });
+    }
+
+    private void scheduleCompaction() {
+        scheduler.schedule("bigtable-compaction", blockCompactionInterval.getDuration(),
+            blockCompactionInterval.getUnit(), () -> {
+                if (stopped.get()) {
+                    return;
+                }
+
+                compactBlocks(clock.currentTimeMillis()).onFinished(this::scheduleCompaction);
+            });
+    }
+
+    /**
+     * Mark the blocks that the given points were written to as pending compaction.
+     * <p>
+     * The first time this node writes to a block after it has been compacted, a marker is
+     * persisted so that the block is compacted by another node if this one goes away.
+     */
+    private void markBlocks(
+        final BigtableDataClient client, final Series series, final MetricCollection data
+    ) {
+        if (!blocks || data.getType() != MetricType.POINT) {
+            return;
+        }
+
+        final long now = clock.currentTimeMillis();
+        long last = -1L;
+
+        for (final Point point : data.getDataAs(Point.class)) {
+            final long start = blockStart(point.getTimestamp());
+
+            if (start == last) {
+                continue;
+            }
+
+            last = start;
+
+            final PendingBlock block = new PendingBlock(series, start);
+
+            if (pendingBlocks.containsKey(block)) {
+                continue;
+            }
+
+            final ByteString token = markers.token(now);
+
+            if (pendingBlocks.putIfAbsent(block, token) == null) {
+                mark(client, BLOCKS, new BigtableMarkers.Marker(series, start, token));
+            }
+        }
+    }
+
+    /**
+     * Compact the raw cells of all closed blocks that have been written to into compressed block
+     * cells.
+     * <p>
+     * The raw cells of a block are merged with the existing block cell, if any. The new block cell
+     * is written and the merged raw cells are deleted in a single conditional row mutation, which
+     * only applies if the block cell has not changed since it was read. Readers read raw cells
+     * before blocks, so they see every point. Blocks which fail are compacted again on the next
+     * run.
+     * <p>
+     * Each node compacts the blocks it has written to. Persisted markers of closed blocks that
+     * have not been cleared for a while belong to a node that went away, and are compacted by
+     * whichever node finds them first.
+     *
+     * @param now the current time, used to determine which blocks are closed
+     * @return a future which is resolved when all closed blocks have been compacted
+     */
+    AsyncFuture<Void> compactBlocks(final long now) {
+        if (!blocks) {
+            return async.resolved();
+        }
+
+        return connection.doto(c -> {
+            final BigtableDataClient client = c.dataClient();
+            final long orphaned =
+                now - COMPACTION_ORPHAN_RUNS * blockCompactionInterval.toMilliseconds();
+
+            final Map<PendingBlock, ByteString> compacting = new HashMap<>();
+
+            for (final Map.Entry<PendingBlock, ByteString> e : pendingBlocks.entrySet()) {
+                if (isClosed(e.getKey(), now) &&
+                    pendingBlocks.remove(e.getKey(), e.getValue())) {
+                    compacting.put(e.getKey(), e.getValue());
+                }
+            }
+
+            return scanMarkers(client, BLOCKS).lazyTransform(found -> {
+                final List<Pair<PendingBlock, ByteString>> work = new ArrayList<>();
+
+                compacting.forEach((block, token) -> work.add(Pair.of(block, token)));
+
+                for (final BigtableMarkers.Marker marker : found) {
+                    final PendingBlock block =
+                        new PendingBlock(marker.getSeries(), marker.getTimestamp());
+
+                    if (marker.getToken().equals(compacting.get(block)) ||
+                        marker.getToken().equals(pendingBlocks.get(block))) {
+                        continue;
+                    }
+
+                    if (isClosed(block, now) &&
+                        BigtableMarkers.tokenTime(marker.getToken()) < orphaned) {
+                        work.add(Pair.of(block, marker.getToken()));
+                    }
+                }
+
+                final List<Callable<AsyncFuture<Void>>> compactions = new ArrayList<>();
+
+                for (final Pair<PendingBlock, ByteString> w : work) {
+                    final PendingBlock block = w.getLeft();
+                    final BigtableMarkers.Marker marker =
+                        new BigtableMarkers.Marker(block.getSeries(), block.getStart(),
+                            w.getRight());
+
+                    compactions.add(() -> compactBlock(client, block)
+                        .lazyTransform(v -> markers.clear(client, BLOCKS, marker))
+                        .<Void>directTransform(cleared -> null)
+                        .onFailed(e -> {
+                            log.warn("Failed to compact block {}", block, e);
+                            pendingBlocks.putIfAbsent(block, w.getRight());
+                        }));
+                }
+
+                return async.eventuallyCollect(compactions, new IgnoreResults(),
+                    COMPACTION_PARALLELISM);
+            });
+        });
+    }
+
+    private static boolean isClosed(final PendingBlock block, final long now) {
+        return block.getStart() + BLOCK_SIZE + COMPACTION_DELAY <= now;
+    }
+
+    private AsyncFuture<Void> compactBlock(
+        final BigtableDataClient client, final PendingBlock block
+    ) throws IOException {
+        final long base = base(block.getStart());
+        final ByteString rowKey =
+            rowKeySerializer.serializeFull(new RowKey(block.getSeries(), base));
+        final ByteString blockKey = serializeOffset(offset(block.getStart() + BLOCK_SIZE - 1));
+
+        final AsyncFuture<List<FlatRow>> raw = client.readRows(table,
+            readCellsRequest(rowKey, POINTS, serializeOffset(offset(block.getStart())), blockKey));
+        final AsyncFuture<List<FlatRow>> existing =
+            client.readRows(table, readCellsRequest(rowKey, BLOCKS, blockKey, blockKey));
+
+        return raw.lazyTransform(rawRows -> existing.lazyTransform(blockRows -> {
+            final List<FlatRow.Cell> cells = new ArrayList<>();
+            rawRows.forEach(row -> cells.addAll(row.getCells()));
+
+            if (cells.isEmpty()) {
+                return async.resolved();
+            }
+
+            if (cells.size() > MAX_COMPACTION_CELLS) {
+                log.warn("Not compacting block {} with {} cells", block, cells.size());
+                return async.resolved();
+            }
+
+            final Optional<ByteString> current = blockRows
+                .stream()
+                .flatMap(row -> row.getCells().stream())
+                .findFirst()
+                .map(FlatRow.Cell::getValue);
+
+            final Optional<PointBlock.Decoder> decoder =
+                current.map(value -> PointBlock.decoder(value.asReadOnlyByteBuffer()));
+
+            final PointBlock.Encoder encoder = PointBlock.encoder();
+            final Mutations.Builder mutations = Mutations.builder();
+
+            // both the existing block and the raw cells are sorted, raw cells take precedence
+            boolean hasNext = decoder.isPresent() && decoder.get().next();
+
+            for (final FlatRow.Cell cell : cells) {
+                final long timestamp = base + deserializeOffset(cell.getQualifier());
+
+                while (hasNext && decoder.get().timestamp() <= timestamp) {
+                    if (decoder.get().timestamp() < timestamp) {
+                        encoder.add(decoder.get().timestamp(), decoder.get().value());
+                    }
+
+                    hasNext = decoder.get().next();
+                }
+
+                encoder.add(timestamp, deserializeValue(cell.getValue()));
+                // a point which is written again in the meantime has a newer version and is kept
+                mutations.deleteCell(POINTS, cell.getQualifier(), cell.getTimestamp());
+            }
+
+            while (hasNext) {
+                encoder.add(decoder.get().timestamp(), decoder.get().value());
+                hasNext = decoder.get().next();
+            }
+
+            mutations.setCell(BLOCKS, blockKey, ByteString.copyFrom(encoder.encode()));
+
+            final RowFilter column = RowFilter
+                .newColumnRangeBuilder(BLOCKS)
+                .startQualifierClosed(blockKey)
+                .endQualifierClosed(blockKey)
+                .build();
+
+            // only write if the block is unchanged, another node might have compacted it
+            final AsyncFuture<Boolean> written;
+
+            if (current.isPresent()) {
+                written = client.checkAndMutateRow(table, rowKey, RowFilter.chain(
+                    Arrays.asList(column, RowFilter.onlyLatestCell(),
+                        RowFilter.valueEquals(current.get()))), mutations.build(),
+                    Mutations.builder().build());
+            } else {
+                written = client
+                    .checkAndMutateRow(table, rowKey, column, Mutations.builder().build(),
+                        mutations.build())
+                    .directTransform(exists -> !exists);
+            }
+
+            return written.directTransform(applied -> {
+                if (!applied) {
+                    throw new IllegalStateException("Block modified concurrently");
+                }
+
+                return null;
+            });
+        }));
+    }
+
+    /**
+     * Read all points of a series in the given range, from both raw and block cells.
+     * <p>
+     * Raw cells are read before blocks, see {@link #fetchPoints}. A point which is seen in both is
+     * only returned once, from its raw cell.
+     */
+    private AsyncFuture<List<PointBlock.Points>> readPoints(
+        final BigtableDataClient client, final Series series, final DateRange range
+    ) throws IOException {
+        final List<AsyncFuture<PointBlock.Points>> reads = new ArrayList<>();
+        final ConcurrentMap<Long, long[]> raw = new ConcurrentHashMap<>();
+
+        // raw cells are decoded into arrays below, without going through the deserializer
+        final List<PreparedQuery<Void>> prepared = ranges(series, range, POINTS, (t, d) -> null);
+
+        for (final PreparedQuery<Void> p : prepared) {
+            reads.add(client.readRows(table, p.readRowsRequest()).directTransform(rows -> {
+                final int size = rows.stream().mapToInt(row -> row.getCells().size()).sum();
+                final long[] timestamps = new long[size];
+                final double[] values = new double[size];
+                int n = 0;
+
+                for (final FlatRow row : rows) {
+                    for (final FlatRow.Cell cell : row.getCells()) {
+                        timestamps[n] = p.base + deserializeOffset(cell.getQualifier());
+                        values[n] = deserializeValue(cell.getValue());
+                        n++;
+                    }
+                }
+
+                raw.merge(p.base, timestamps, BigtableBackend::mergeTimestamps);
+                return new PointBlock.Points(timestamps, values, n);
+            }));
+        }
+
+        final AsyncFuture<List<PointBlock.Points>> rawPoints =
+            async.collect(reads).directTransform(ImmutableList::copyOf);
+
+        if (!blocks) {
+            return rawPoints;
+        }
+
+        return rawPoints.lazyTransform(points -> {
+            final List<AsyncFuture<List<PointBlock.Points>>> blockReads = new ArrayList<>();
+
+            for (final PreparedQuery<PointBlock.Decoder> p : blocksRanges(series, range)) {
+                blockReads.add(client.readRows(table, p.readRowsRequest()).directTransform(
+                    rows -> rows
+                        .stream()
+                        .map(row -> decodeBlocks(p, row, range,
+                            raw.getOrDefault(p.base, NO_TIMESTAMPS)))
+                        .collect(Collectors.toList())));
+            }
+
+            return async.collect(blockReads).directTransform(results -> {
+                final List<PointBlock.Points> merged = new ArrayList<>(points);
+                results.forEach(merged::addAll);
+                return merged;
+            });
+        });
+    }
+
+    private static ReadRowsRequest readCellsRequest(
+        final ByteString rowKey, final String columnFamily, final ByteString startQualifierClosed,
+        final ByteString endQualifierClosed
+    ) {
+        return ReadRowsRequest
+            .builder()
+            .rowKey(rowKey)
+            .filter(RowFilter.chain(Arrays.asList(RowFilter
+                .newColumnRangeBuilder(columnFamily)
+                .startQualifierClosed(startQualifierClosed)
+                .endQualifierClosed(endQualifierClosed)
+                .build(), RowFilter.onlyLatestCell())))
+            .build();
+    }
+
+    /**
+     * Mark the rollup intervals that the given points were written to as dirty.
+     * <p>
+     * The first time this node writes to an interval after it has been flushed, a marker is
+     * persisted so that the interval is recomputed by another node if this one goes away.
+     */
+    private void markRollups(
+        final BigtableDataClient client, final Series series, final MetricCollection data
+    ) {
+        if (rollups.isEmpty() || data.getType() != MetricType.POINT) {
+            return;
+        }
+
+        final long now = clock.currentTimeMillis();
+
+        for (final Point point : data.getDataAs(Point.class)) {
+            final long timestamp = point.getTimestamp();
+
+            for (final long resolution : rollups) {
+                final long start = timestamp - timestamp % resolution;
+                final RollupInterval interval = new RollupInterval(series, resolution, start);
+
+                // the interval is no longer complete
+                rollupCoverage.computeIfPresent(resolution,
+                    (r, covered) -> start < covered.end() ? new DateRange(covered.start(),
+                        Math.max(covered.start(), start)) : covered);
+
+                if (dirtyRollups.containsKey(interval)) {
+                    continue;
+                }
+
+                final ByteString token = markers.token(now);
+
+                if (dirtyRollups.putIfAbsent(interval, token) == null) {
+                    mark(client, rollupFamily(resolution),
+                        new BigtableMarkers.Marker(series, start, token));
+                }
+            }
+        }
+    }
+
+    private void mark(
+        final BigtableDataClient client, final String kind, final BigtableMarkers.Marker marker
+    ) {
+        try {
+            markers
+                .mark(client, kind, marker)
+                .onFailed(e -> log.warn("Failed to persist {} marker {}", kind, marker, e));
+        } catch (final IOException e) {
+            log.warn("Failed to persist {} marker {}", kind, marker, e);
+        }
+    }
+
+    /**
+     * Record when each rollup was first enabled, the rollup is not complete for data before that.
+     */
+    AsyncFuture<Void> enableRollups() {
+        final List<Long> missing = rollups
+            .stream()
+            .filter(resolution -> !rollupsSince.containsKey(resolution))
+            .collect(Collectors.toList());
+
+        if (missing.isEmpty()) {
+            return async.resolved();
+        }
+
+        return connection.doto(c -> {
+            final long now = clock.currentTimeMillis();
+            final List<AsyncFuture<Long>> enabling = new ArrayList<>();
+
+            for (final long resolution : missing) {
+                enabling.add(markers
+                    .since(c.dataClient(), rollupFamily(resolution), now)
+                    .onResolved(since -> rollupsSince.put(resolution, since)));
+            }
+
+            return async.collectAndDiscard(enabling);
+        });
+    }
+
+    /**
+     * Recompute the rollups of all intervals that have been written to since they were last
+     * computed.
+     * <p>
+     * A rollup is computed from the raw points of its interval and overwrites the previous rollup,
+     * so recomputing an interval is idempotent and safe with multiple writers. Intervals are only
+     * marked after their points have been written, and intervals which fail are marked again.
+     * <p>
+     * Each node recomputes the intervals it has written to. Persisted markers that have not been
+     * cleared for a while belong to a node that went away, and are recomputed by whichever node
+     * finds them first. Each flush only scans the next page of persisted markers, see
+     * {@link #MARKER_SCAN_LIMIT}. Once done, the range of time for which each rollup is complete is
+     * updated to end at the earliest interval which is still marked.
+     *
+     * @return a future which is resolved when all rollups have been written
+     */
+    AsyncFuture<Void> flushRollups() {
+        if (rollups.isEmpty()) {
+            return async.resolved();
+        }
+
+        return enableRollups().lazyTransform(v -> connection.doto(c -> {
+            final BigtableDataClient client = c.dataClient();
+            final long now = clock.currentTimeMillis();
+            final long orphaned =
+                now - ROLLUP_ORPHAN_FLUSHES * rollupFlushInterval.toMilliseconds();
+
+            final Map<RollupInterval, ByteString> flushing = new HashMap<>();
+
+            for (final Map.Entry<RollupInterval, ByteString> e : dirtyRollups.entrySet()) {
+                if (dirtyRollups.remove(e.getKey(), e.getValue())) {
+                    flushing.put(e.getKey(), e.getValue());
+                }
+            }
+
+            final List<AsyncFuture<List<Pair<RollupInterval, ByteString>>>> scans =
+                new ArrayList<>();
+
+            for (final long resolution : rollups) {
+                scans.add(scanMarkers(client, rollupFamily(resolution)).directTransform(
+                    found -> found
+                        .stream()
+                        .map(m -> Pair.of(
+                            new RollupInterval(m.getSeries(), resolution, m.getTimestamp()),
+                            m.getToken()))
+                        .collect(Collectors.toList())));
+            }
+
+            return async.collect(scans).lazyTransform(scanned -> {
+                final List<Pair<RollupInterval, ByteString>> work = new ArrayList<>();
+
+                flushing.forEach((interval, token) -> work.add(Pair.of(interval, token)));
+
+                for (final List<Pair<RollupInterval, ByteString>> found : scanned) {
+                    for (final Pair<RollupInterval, ByteString> marker : found) {
+                        if (marker.getRight().equals(flushing.get(marker.getLeft()))) {
+                            continue;
+                        }
+
+                        if (BigtableMarkers.tokenTime(marker.getRight()) < orphaned) {
+                            work.add(marker);
+                        }
+                    }
+                }
+
+                final List<Callable<AsyncFuture<Void>>> writes = new ArrayList<>();
+
+                for (final Pair<RollupInterval, ByteString> w : work) {
+                    final RollupInterval interval = w.getLeft();
+                    final BigtableMarkers.Marker marker = new BigtableMarkers.Marker(
+                        interval.getSeries(), interval.getStart(), w.getRight());
+
+                    writes.add(() -> writeRollup(client, interval)
+                        .lazyTransform(
+                            written -> markers.clear(client, rollupFamily(interval.getResolution()),
+                                marker))
+                        .<Void>directTransform(cleared -> null)
+                        .catchFailed((Throwable e) -> {
+                            log.warn("Failed to write rollup for {}", interval, e);
+                            dirtyRollups.putIfAbsent(interval, w.getRight());
+                            return null;
+                        }));
+                }
+
+                return async
+                    .eventuallyCollect(writes, new IgnoreResults(), ROLLUP_PARALLELISM)
+                    .lazyTransform(written -> earliestMarkers(client))
+                    .directTransform(pending -> {
+                        updateCoverage(now, pending);
+                        return null;
+                    });
+            });
+        }));
+    }
+
+    /**
+     * Get the earliest interval of each rollup which is still marked, by any node.
+     */
+    private AsyncFuture<Map<Long, Long>> earliestMarkers(final BigtableDataClient client) {
+        final List<AsyncFuture<Optional<Pair<Long, Long>>>> reads = new ArrayList<>();
+
+        for (final long resolution : rollups) {
+            reads.add(markers
+                .earliest(client, rollupFamily(resolution))
+                .directTransform(earliest -> earliest.map(start -> Pair.of(resolution, start))));
+        }
+
+        return async.collect(reads).directTransform(found -> {
+            final Map<Long, Long> pending = new HashMap<>();
+            found.forEach(f -> f.ifPresent(p -> pending.put(p.getLeft(), p.getRight())));
+            return pending;
+        });
+    }
+
+    /**
+     * Scan the next page of markers of the given kind, continuing after the page that the previous
+     * scan of the same kind ended with, and starting over once all markers have been scanned.
+     */
+    private AsyncFuture<List<BigtableMarkers.Marker>> scanMarkers(
+        final BigtableDataClient client, final String kind
+    ) {
+        final Optional<ByteString> after = Optional.ofNullable(markerCursors.get(kind));
+
+        return markers.scan(client, kind, after, MARKER_SCAN_LIMIT).directTransform(page -> {
+            if (page.getNext().isPresent()) {
+                markerCursors.put(kind, page.getNext().get());
+            } else {
+                markerCursors.remove(kind);
+            }
+
+            return page.getMarkers();
+        });
+    }
+
+    /**
+     * Update the range of time that each rollup is complete for, after a flush which started at
+     * the given time.
+     *
+     * @param pending the earliest interval of each rollup which is still marked
+     */
+    private void updateCoverage(final long now, final Map<Long, Long> pending) {
+        final Map<Long, Long> dirty = new HashMap<>(pending);
+
+        for (final RollupInterval interval : dirtyRollups.keySet()) {
+            dirty.merge(interval.getResolution(), interval.getStart(), Math::min);
+        }
+
+        for (final long resolution : rollups) {
+            final Long since = rollupsSince.get(resolution);
+
+            if (since == null) {
+                continue;
+            }
+
+            // the interval which the rollup was enabled in, and the current one, are incomplete
+            final long start =
+                since % resolution == 0 ? since : since - since % resolution + resolution;
+            long end = now - now % resolution;
+
+            final Long first = dirty.get(resolution);
+
+            if (first != null) {
+                end = Math.min(end, first);
+            }
+
+            rollupCoverage.put(resolution, new DateRange(start, Math.max(start, end)));
+        }
+    }
+
+    private AsyncFuture<Void> writeRollup(
+        final BigtableDataClient client, final RollupInterval interval
+    ) throws IOException {
+        final long start = interval.getStart();
+        final DateRange range = new DateRange(start - 1, start + interval.getResolution() - 1);
+
+        return readPoints(client, interval.getSeries(), range).lazyTransform(parts -> {
+            long count = 0L;
+            double sum = 0D;
+            double sum2 = 0D;
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+
+            for (final PointBlock.Points points : parts) {
+                for (int i = 0; i < points.size(); i++) {
+                    final double value = points.value(i);
+
+                    if (!Double.isFinite(value)) {
+                        continue;
+                    }
+
+                    count += 1;
+                    sum += value;
+                    sum2 += value * value;
+                    min = Math.min(min, value);
+                    max = Math.max(max, value);
+                }
+            }
+
+            final ByteString rowKey =
+                rowKeySerializer.serializeFull(new RowKey(interval.getSeries(), base(start)));
+            final String family = rollupFamily(interval.getResolution());
+            final ByteString qualifier = serializeOffset(offset(start));
+
+            // the interval might have had points when it was last computed
+            if (count == 0L) {
+                return client.mutateRow(table, rowKey,
+                    Mutations.builder().deleteCell(family, qualifier).build());
+            }
+
+            final Mutations mutations = Mutations
+                .builder()
+                .setCell(family, qualifier,
+                    serializeSpread(new Spread(start, count, sum, sum2, min, max)))
+                .build();
+
+            return client.mutateRow(table, rowKey, mutations);
+        });
     }
 
     private AsyncFuture<WriteMetric> writeTyped(
@@ -357,6 +1179,7 @@ public class BigtableBackend extends AbstractMetricBackend implements LifeCycles
 
         final List<Pair<RowKey, Mutations>> saved = new ArrayList<>();
         final Map<RowKey, Mutations.Builder> building = new HashMap<>();
+        final long version = cellVersion(columnFamily);
 
         for (final T d : batch) {
             final long timestamp = d.getTimestamp();
@@ -375,7 +1198,7 @@ public class BigtableBackend extends AbstractMetricBackend implements LifeCycles
                 building.put(rowKey, builder);
             }
 
-            builder.setCell(columnFamily, offsetBytes, valueBytes);
+            builder.setCell(columnFamily, offsetBytes, valueBytes, version);
 
             if (builder.size() >= MAX_BATCH_SIZE) {
                 saved.add(Pair.of(rowKey, builder.build()));
@@ -420,7 +1243,7 @@ public class BigtableBackend extends AbstractMetricBackend implements LifeCycles
         final ByteString offsetBytes = serializeOffset(offset);
         final ByteString valueBytes = serializer.apply(p);
 
-        builder.setCell(columnFamily, offsetBytes, valueBytes);
+        builder.setCell(columnFamily, offsetBytes, valueBytes, cellVersion(columnFamily));
 
         final RequestTimer<WriteMetric> timer = WriteMetric.timer();
 
@@ -430,42 +1253,111 @@ public class BigtableBackend extends AbstractMetricBackend implements LifeCycles
             .directTransform(result -> timer.end());
     }
 
+    /**
+     * Version of the cells which are written now.
+     * <p>
+     * Raw points which are compacted into blocks are written with the current time, so that a
+     * compaction only deletes the versions it has read. Other cells are always written at version
+     * zero, so writing a cell again replaces it.
+     */
+    private long cellVersion(final String columnFamily) {
+        return blocks && POINTS.equals(columnFamily) ? clock.currentTimeMillis() * 1000L : 0L;
+    }
+
     private AsyncFuture<FetchData.Result> fetchBatch(
-        final FetchQuotaWatcher watcher, final MetricType type, final List<PreparedQuery> prepared,
-        final BigtableConnection c, final Consumer<MetricReadResult> metricsConsumer
+        final FetchQuotaWatcher watcher, final MetricType type,
+        final List<PreparedQuery<Metric>> prepared, final BigtableConnection c,
+        final Consumer<MetricReadResult> metricsConsumer
     ) {
         final BigtableDataClient client = c.dataClient();
 
         final List<AsyncFuture<FetchData.Result>> fetches = new ArrayList<>(prepared.size());
 
-        for (final PreparedQuery p : prepared) {
+        for (final PreparedQuery<Metric> p : prepared) {
             QueryTrace.NamedWatch fs = QueryTrace.watch(FETCH_SEGMENT);
 
-            final AsyncFuture<List<FlatRow>> readRows = client.readRows(table, ReadRowsRequest
-                .builder()
-                .range(new RowRange(Optional.of(p.rowKeyStart), Optional.of(p.rowKeyEnd)))
-                .filter(RowFilter.chain(Arrays.asList(RowFilter
-                    .newColumnRangeBuilder(p.columnFamily)
-                    .startQualifierOpen(p.startQualifierOpen)
-                    .endQualifierClosed(p.endQualifierClosed)
-                    .build(), RowFilter.onlyLatestCell())))
-                .build());
-
             final Function<FlatRow.Cell, Metric> transform =
                 cell -> p.deserialize(cell.getQualifier(), cell.getValue());
 
-            fetches.add(readRows.directTransform(result -> {
-                for (final FlatRow row : result) {
-                    SortedMap<String, String> resource = parseResourceFromRowKey(row.getRowKey());
+            fetches.add(observeRows(client, p, row -> {
+                SortedMap<String, String> resource = parseResourceFromRowKey(row.getRowKey());
+
+                watcher.readData(row.getCells().size());
+                final List<Metric> metrics = Lists.transform(row.getCells(), transform);
+                final MetricCollection mc = MetricCollection.build(type, metrics);
+                final MetricReadResult readResult = MetricReadResult.create(mc, resource);
+                metricsConsumer.accept(readResult);
+            }).directTransform(v -> FetchData.result(fs.end())));
+        }
+        return async.collect(fetches, FetchData.collectResult(FETCH)).directTransform(result -> {
+            watcher.accessedRows(prepared.size());
+            return result;
+        });
+    }
+
+    /**
+     * Fetch points from both raw and block cells.
+     * <p>
+     * Raw cells are read before blocks. A compaction moves raw cells into their block in a single
+     * row mutation, and blocks only grow, so every point is seen at least once. A point which is
+     * compacted in between is seen twice, and only emitted from its raw cell. The timestamps of
+     * the raw cells of each row are kept in a sorted array to tell which points those are.
+     */
+    private AsyncFuture<FetchData.Result> fetchPoints(
+        final FetchQuotaWatcher watcher, final FetchData.Request request,
+        final BigtableConnection c, final Consumer<MetricReadResult> metricsConsumer
+    ) throws IOException {
+        final Collector<FetchData.Result, FetchData.Result> collector =
+            FetchData.collectResult(FETCH);
+        final ConcurrentMap<Long, long[]> seen = new ConcurrentHashMap<>();
 
-                    watcher.readData(row.getCells().size());
-                    final List<Metric> metrics = Lists.transform(row.getCells(), transform);
-                    final MetricCollection mc = MetricCollection.build(type, metrics);
-                    final MetricReadResult readResult = MetricReadResult.create(mc, resource);
-                    metricsConsumer.accept(readResult);
+        return fetchBatch(watcher, MetricType.POINT, pointsRanges(request), c, result -> {
+            final List<? extends Metric> data = result.getMetrics().data();
+
+            if (!data.isEmpty()) {
+                final long[] timestamps = new long[data.size()];
+                int n = 0;
+
+                for (final Metric m : data) {
+                    timestamps[n++] = m.getTimestamp();
                 }
-                return FetchData.result(fs.end());
-            }));
+
+                seen.merge(base(timestamps[0]), timestamps, BigtableBackend::mergeTimestamps);
+            }
+
+            metricsConsumer.accept(result);
+        }).lazyTransform(raw -> fetchBlocks(watcher, request, seen, c, metricsConsumer)
+            .directTransform(fetched -> collector.collect(ImmutableList.of(raw, fetched))));
+    }
+
+    private AsyncFuture<FetchData.Result> fetchBlocks(
+        final FetchQuotaWatcher watcher, final FetchData.Request request,
+        final Map<Long, long[]> seen, final BigtableConnection c,
+        final Consumer<MetricReadResult> metricsConsumer
+    ) throws IOException {
+        final BigtableDataClient client = c.dataClient();
+        final List<PreparedQuery<PointBlock.Decoder>> prepared =
+            blocksRanges(request.getSeries(), request.getRange());
+
+        final List<AsyncFuture<FetchData.Result>> fetches = new ArrayList<>(prepared.size());
+
+        for (final PreparedQuery<PointBlock.Decoder> p : prepared) {
+            QueryTrace.NamedWatch fs = QueryTrace.watch(FETCH_SEGMENT);
+
+            fetches.add(observeRows(client, p, row -> {
+                final PointBlock.Points points = decodeBlocks(p, row, request.getRange(),
+                    seen.getOrDefault(p.base, NO_TIMESTAMPS));
+
+                if (points.isEmpty()) {
+                    return;
+                }
+
+                SortedMap<String, String> resource = parseResourceFromRowKey(row.getRowKey());
+
+                watcher.readData(points.size());
+                metricsConsumer.accept(
+                    MetricReadResult.create(MetricCollection.points(points), resource));
+            }).directTransform(v -> FetchData.result(fs.end())));
         }
         return async.collect(fetches, FetchData.collectResult(FETCH)).directTransform(result -> {
             watcher.accessedRows(prepared.size());
@@ -473,6 +1365,98 @@ public class BigtableBackend extends AbstractMetricBackend implements LifeCycles
         });
     }
 
+    /**
+     * Stream the rows matching a query to the given consumer, one row at a time.
+     * <p>
+     * Rows are read in bounded windows as the consumer keeps up, so a large fetch never holds
+     * more than a window of rows in memory. Reading stops as soon as the consumer fails or the
+     * returned future is cancelled.
+     */
+    private AsyncFuture<Void> observeRows(
+        final BigtableDataClient client, final PreparedQuery<?> p, final RowConsumer consumer
+    ) {
+        final ResolvableFuture<Void> future = async.future();
+
+        client
+            .readFlatRowsObserved(table, p.readRowsRequest())
+            .observe(AsyncObserver.bind(future, row -> {
+                if (future.isDone()) {
+                    return async.cancelled();
+                }
+
+                try {
+                    consumer.accept(row);
+                } catch (final Exception e) {
+                    return async.failed(e);
+                }
+
+                return async.resolved();
+            }));
+
+        return future;
+    }
+
+    /**
+     * Decode the points of all blocks in the given row which are in the range (start, end], and
+     * which are not among the given raw timestamps of the same row.
+     * <p>
+     * The blocks of a row are sorted and cover separate windows, and so are the raw timestamps, so
+     * both are compared in a single pass over the decoded arrays, which are compacted in place.
+     */
+    private static PointBlock.Points decodeBlocks(
+        final PreparedQuery<PointBlock.Decoder> p, final FlatRow row, final DateRange range,
+        final long[] raw
+    ) {
+        final List<PointBlock.Decoder> decoders = new ArrayList<>(row.getCells().size());
+        int size = 0;
+
+        for (final FlatRow.Cell cell : row.getCells()) {
+            final PointBlock.Decoder decoder = p.deserialize(cell.getQualifier(), cell.getValue());
+            decoders.add(decoder);
+            size += decoder.size();
+        }
+
+        final long[] timestamps = new long[size];
+        final double[] values = new double[size];
+        int decoded = 0;
+
+        for (final PointBlock.Decoder decoder : decoders) {
+            decoded += decoder.decode(timestamps, values, decoded);
+        }
+
+        int n = 0;
+        int r = 0;
+
+        for (int i = 0; i < decoded; i++) {
+            final long timestamp = timestamps[i];
+
+            if (timestamp <= range.start() || timestamp > range.end()) {
+                continue;
+            }
+
+            while (r < raw.length && raw[r] < timestamp) {
+                r++;
+            }
+
+            if (r < raw.length && raw[r] == timestamp) {
+                continue;
+            }
+
+            timestamps[n] = timestamp;
+            values[n] = values[i];
+            n++;
+        }
+
+        return new PointBlock.Points(timestamps, values, n);
+    }
+
+    private static long[] mergeTimestamps(final long[] a, final long[] b) {
+        final long[] merged = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, merged, a.length, b.length);
+        Arrays.sort(merged);
+        return merged;
+    }
+
     private SortedMap<String, String> parseResourceFromRowKey(final ByteString rowKey)
         throws IOException {
         return rowKeySerializer
@@ -489,11 +1473,15 @@ public class BigtableBackend extends AbstractMetricBackend implements LifeCycles
         return timestamp % PERIOD;
     }
 
-    List<PreparedQuery> ranges(
+    static long blockStart(long timestamp) {
+        return timestamp - timestamp % BLOCK_SIZE;
+    }
+
+    <T> List<PreparedQuery<T>> ranges(
         final Series series, final DateRange range, final String columnFamily,
-        final BiFunction<Long, ByteString, Metric> deserializer
+        final BiFunction<Long, ByteString, T> deserializer
     ) throws IOException {
-        final List<PreparedQuery> bases = new ArrayList<>();
+        final List<PreparedQuery<T>> bases = new ArrayList<>();
 
         final long start = base(range.getStart());
         final long end = base(range.getEnd());
@@ -514,8 +1502,8 @@ public class BigtableBackend extends AbstractMetricBackend implements LifeCycles
             final ByteString startKey = serializeOffset(offset(modified.start()));
             final ByteString endKey = serializeOffset(offset(modified.end()));
 
-            bases.add(
-                new PreparedQuery(key, keyEnd, columnFamily, startKey, endKey, deserializer, base));
+            bases.add(new PreparedQuery<>(key, keyEnd, columnFamily, startKey, endKey, deserializer,
+                base));
         }
 
         return bases;
@@ -527,6 +1515,27 @@ public class BigtableBackend extends AbstractMetricBackend implements LifeCycles
         return ByteString.copyFrom(buffer.array());
     }
 
+    static String rollupFamily(final long resolution) {
+        return ROLLUP_PREFIX + resolution;
+    }
+
+    static ByteString serializeSpread(final Spread spread) {
+        final ByteBuffer buffer = ByteBuffer
+            .allocate(Long.BYTES + 4 * Double.BYTES)
+            .putLong(spread.getCount())
+            .putDouble(spread.getSum())
+            .putDouble(spread.getSum2())
+            .putDouble(spread.getMin())
+            .putDouble(spread.getMax());
+        return ByteString.copyFrom(buffer.array());
+    }
+
+    static Spread deserializeSpread(final long timestamp, final ByteString value) {
+        final ByteBuffer buffer = value.asReadOnlyByteBuffer();
+        return new Spread(timestamp, buffer.getLong(), buffer.getDouble(), buffer.getDouble(),
+            buffer.getDouble(), buffer.getDouble());
+    }
+
     ByteString serializeEvent(Event event) {
         try {
             return ByteString.copyFrom(mapper.writeValueAsBytes(event.getPayload()));
@@ -576,13 +1585,13 @@ public class BigtableBackend extends AbstractMetricBackend implements LifeCycles
         // @formatter:on
     }
 
-    private static final class PreparedQuery {
+    private static final class PreparedQuery<T> {
         private final ByteString rowKeyStart;
         private final ByteString rowKeyEnd;
         private final String columnFamily;
         private final ByteString startQualifierOpen;
         private final ByteString endQualifierClosed;
-        private final BiFunction<Long, ByteString, Metric> deserializer;
+        private final BiFunction<Long, ByteString, T> deserializer;
         private final long base;
 
         @java.beans.ConstructorProperties({ "rowKeyStart", "rowKeyEnd", "columnFamily",
@@ -592,7 +1601,7 @@ public class BigtableBackend extends AbstractMetricBackend implements LifeCycles
         public PreparedQuery(final ByteString rowKeyStart, final ByteString rowKeyEnd,
                              final String columnFamily, final ByteString startQualifierOpen,
                              final ByteString endQualifierClosed,
-                             final BiFunction<Long, ByteString, Metric> deserializer,
+                             final BiFunction<Long, ByteString, T> deserializer,
                              final long base) {
             this.rowKeyStart = rowKeyStart;
             this.rowKeyEnd = rowKeyEnd;
@@ -603,9 +1612,66 @@ public class BigtableBackend extends AbstractMetricBackend implements LifeCycles
             this.base = base;
         }
 
-        private Metric deserialize(final ByteString qualifier, final ByteString value) {
+        private ReadRowsRequest readRowsRequest() {
+            return ReadRowsRequest
+                .builder()
+                .range(new RowRange(Optional.of(rowKeyStart), Optional.of(rowKeyEnd)))
+                .filter(RowFilter.chain(Arrays.asList(RowFilter
+                    .newColumnRangeBuilder(columnFamily)
+                    .startQualifierOpen(startQualifierOpen)
+                    .endQualifierClosed(endQualifierClosed)
+                    .build(), RowFilter.onlyLatestCell())))
+                .build();
+        }
+
+        private T deserialize(final ByteString qualifier, final ByteString value) {
             final long timestamp = base + deserializeOffset(qualifier);
             return deserializer.apply(timestamp, value);
         }
     }
+
+    /**
+     * An interval of a single series that a rollup is computed for.
+     */
+    @Data
+    private static final class RollupInterval {
+        private final Series series;
+        private final long resolution;
+        private final long start;
+    }
+
+    private interface RowConsumer {
+        void accept(FlatRow row) throws Exception;
+    }
+
+    /**
+     * A block of a single series that has raw cells written to it.
+     */
+    @Data
+    private static final class PendingBlock {
+        private final Series series;
+        private final long start;
+    }
+
+    /**
+     * Failed tasks are logged and marked as pending again by the individual tasks.
+     */
+    private static class IgnoreResults implements StreamCollector<Void, Void> {
+        @Override
+        public void resolved(final Void result) {
+        }
+
+        @Override
+        public void failed(final Throwable cause) {
+        }
+
+        @Override
+        public void cancelled() {
+        }
+
+        @Override
+        public Void end(final int resolved, final int failed, final int cancelled) {
+            return null;
+        }
+    }
 }
@@ -27,6 +27,7 @@ import com.google.cloud.bigtable.config.CredentialOptions;
 import com.google.cloud.bigtable.config.RetryOptions;
 import com.google.cloud.bigtable.grpc.BigtableSession;
 import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.spotify.heroic.metric.bigtable.api.BigtableDataClient;
 import com.spotify.heroic.metric.bigtable.api.BigtableDataClientImpl;
 import com.spotify.heroic.metric.bigtable.api.BigtableMutator;
@@ -38,11 +39,15 @@ import eu.toolchain.async.AsyncFuture;
 import io.grpc.Status;
 import java.util.Optional;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import lombok.ToString;
 
 @ToString(of = {"project", "instance", "credentials"})
 public class BigtableConnectionBuilder implements Callable<BigtableConnection> {
     private static final String USER_AGENT = "heroic";
+    /* maximum number of scanners being read from at the same time, one per data channel */
+    private static final int SCANNER_THREADS = 64;
 
     private final String project;
     private final String instance;
@@ -90,7 +95,7 @@ public class BigtableConnectionBuilder implements Callable<BigtableConnection> {
             .setProjectId(project)
             .setInstanceId(instance)
             .setUserAgent(USER_AGENT)
-            .setDataChannelCount(64)
+            .setDataChannelCount(SCANNER_THREADS)
             .setCredentialOptions(credentials)
             .setRetryOptions(retryOptions)
             .setBulkOptions(bulkOptions)
@@ -105,11 +110,14 @@ public class BigtableConnectionBuilder implements Callable<BigtableConnection> {
         final BigtableMutator mutator =
             new BigtableMutatorImpl(async, session, disableBulkMutations, flushIntervalSeconds);
 
+        final ExecutorService scanner = Executors.newFixedThreadPool(SCANNER_THREADS,
+            new ThreadFactoryBuilder().setNameFormat("heroic-bigtable-scanner-%d").build());
+
         final BigtableDataClient client =
-            new BigtableDataClientImpl(async, session, mutator, project, instance);
+            new BigtableDataClientImpl(async, session, mutator, project, instance, scanner);
 
         return new GrpcBigtableConnection(async, project, instance, session, mutator, adminClient,
-            client);
+            client, scanner);
     }
 
     @ToString(of = {"project", "instance"})
@@ -122,14 +130,16 @@ public class BigtableConnectionBuilder implements Callable<BigtableConnection> {
         final BigtableMutator mutator;
         final BigtableTableAdminClient tableAdminClient;
         final BigtableDataClient dataClient;
+        final ExecutorService scanner;
 
         @java.beans.ConstructorProperties({ "async", "project", "instance", "session", "mutator",
-                                            "tableAdminClient", "dataClient" })
+                                            "tableAdminClient", "dataClient", "scanner" })
         public GrpcBigtableConnection(final AsyncFramework async, final String project,
                                       final String instance, final BigtableSession session,
                                       final BigtableMutator mutator,
                                       final BigtableTableAdminClient tableAdminClient,
-                                      final BigtableDataClient dataClient) {
+                                      final BigtableDataClient dataClient,
+                                      final ExecutorService scanner) {
             this.async = async;
             this.project = project;
             this.instance = instance;
@@ -137,6 +147,7 @@ public class BigtableConnectionBuilder implements Callable<BigtableConnection> {
             this.mutator = mutator;
             this.tableAdminClient = tableAdminClient;
             this.dataClient = dataClient;
+            this.scanner = scanner;
         }
 
         @Override
@@ -153,6 +164,8 @@ public class BigtableConnectionBuilder implements Callable<BigtableConnection> {
         public AsyncFuture<Void> close() {
             final AsyncFuture<Void> closeSession = async.call(() -> {
                 session.close();
+                // scans still blocked on the closed session are interrupted
+                scanner.shutdownNow();
                 return null;
             });
 
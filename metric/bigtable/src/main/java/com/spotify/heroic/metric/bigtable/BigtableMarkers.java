@@ -0,0 +1,274 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.metric.bigtable;
+
+import static com.spotify.heroic.metric.bigtable.BigtableBackend.base;
+import static com.spotify.heroic.metric.bigtable.BigtableBackend.deserializeOffset;
+import static com.spotify.heroic.metric.bigtable.BigtableBackend.offset;
+import static com.spotify.heroic.metric.bigtable.BigtableBackend.serializeOffset;
+
+import com.google.cloud.bigtable.grpc.scanner.FlatRow;
+import com.google.cloud.bigtable.util.RowKeyUtil;
+import com.google.protobuf.ByteString;
+import com.spotify.heroic.common.Series;
+import com.spotify.heroic.metric.bigtable.api.BigtableDataClient;
+import com.spotify.heroic.metric.bigtable.api.Mutations;
+import com.spotify.heroic.metric.bigtable.api.ReadRowsRequest;
+import com.spotify.heroic.metric.bigtable.api.RowFilter;
+import com.spotify.heroic.metric.bigtable.api.RowRange;
+import eu.toolchain.async.AsyncFuture;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.Data;
+
+/**
+ * Markers for work that has to be done on the rows of a series, like recomputing a rollup or
+ * compacting a block.
+ * <p>
+ * Markers are stored in their own rows of the metrics table, so that they survive restarts and can
+ * be picked up by any node. Every marker is set with a unique token, and is only cleared if the
+ * token has not changed. A marker which is set again while its work is being done is kept.
+ * <p>
+ * Each marker has a row of its own, keyed by its kind and then its time, so markers of a kind can
+ * be scanned in pages and the earliest marker of a kind is found by reading a single row.
+ */
+class BigtableMarkers {
+    public static final String MARKERS = "markers";
+
+    /* prefix of all marker rows, which can't be the start of a serialized series key */
+    private static final ByteString PREFIX = ByteString
+        .copyFrom(new byte[]{(byte) 0xff, (byte) 0xff})
+        .concat(ByteString.copyFromUtf8("heroic/"));
+    private static final ByteString STATE = PREFIX.concat(ByteString.copyFromUtf8("state"));
+
+    private static final int TOKEN_SIZE = 3 * Long.BYTES;
+
+    private final RowKeySerializer rowKeySerializer;
+    private final String table;
+
+    private final long node = ThreadLocalRandom.current().nextLong();
+    private final AtomicLong sequence = new AtomicLong();
+
+    BigtableMarkers(final RowKeySerializer rowKeySerializer, final String table) {
+        this.rowKeySerializer = rowKeySerializer;
+        this.table = table;
+    }
+
+    /**
+     * Build a new unique token.
+     *
+     * @param now the current time, which can be read back with {@link #tokenTime(ByteString)}
+     */
+    ByteString token(final long now) {
+        return ByteString.copyFrom(ByteBuffer
+            .allocate(TOKEN_SIZE)
+            .putLong(now)
+            .putLong(node)
+            .putLong(sequence.incrementAndGet())
+            .array());
+    }
+
+    static long tokenTime(final ByteString token) {
+        return token.asReadOnlyByteBuffer().getLong();
+    }
+
+    /**
+     * Set the marker of the given kind for a series at the given time.
+     */
+    AsyncFuture<Void> mark(
+        final BigtableDataClient client, final String kind, final Marker marker
+    ) throws IOException {
+        return client.mutateRow(table, rowKey(kind, marker), Mutations
+            .builder()
+            .setCell(MARKERS, serializeOffset(offset(marker.getTimestamp())), marker.getToken())
+            .build());
+    }
+
+    /**
+     * Read a page of markers of the given kind, in the order of their time.
+     *
+     * @param after the row to continue after, as returned by the previous page
+     * @param limit the maximum number of markers to read
+     */
+    AsyncFuture<Page> scan(
+        final BigtableDataClient client, final String kind, final Optional<ByteString> after,
+        final long limit
+    ) {
+        final ByteString prefix = kindPrefix(kind);
+        // the closest row after a given row is the row with a zero byte appended
+        final ByteString start =
+            after.map(row -> row.concat(ByteString.copyFrom(new byte[]{0}))).orElse(prefix);
+
+        return readMarkers(client, prefix, start, limit).directTransform(rows -> {
+            final List<Marker> markers = new ArrayList<>();
+            ByteString last = null;
+
+            for (final FlatRow row : rows) {
+                if (row.getCells().isEmpty()) {
+                    continue;
+                }
+
+                markers.addAll(parse(prefix, row));
+                last = row.getRowKey();
+            }
+
+            final Optional<ByteString> next =
+                rows.size() < limit ? Optional.empty() : Optional.ofNullable(last);
+            return new Page(markers, next);
+        });
+    }
+
+    /**
+     * Get the time of the earliest marker of the given kind, if there is any.
+     */
+    AsyncFuture<Optional<Long>> earliest(final BigtableDataClient client, final String kind) {
+        final ByteString prefix = kindPrefix(kind);
+
+        return readMarkers(client, prefix, prefix, 1L).directTransform(rows -> rows
+            .stream()
+            .filter(row -> !row.getCells().isEmpty())
+            .flatMap(row -> parse(prefix, row).stream())
+            .map(Marker::getTimestamp)
+            .min(Long::compare));
+    }
+
+    private AsyncFuture<List<FlatRow>> readMarkers(
+        final BigtableDataClient client, final ByteString prefix, final ByteString start,
+        final long limit
+    ) {
+        final ByteString end = ByteString.copyFrom(
+            RowKeyUtil.calculateTheClosestNextRowKeyForPrefix(prefix.toByteArray()));
+
+        return client.readRows(table, ReadRowsRequest
+            .builder()
+            .range(new RowRange(Optional.of(start), Optional.of(end)))
+            .filter(RowFilter.chain(Arrays.asList(
+                RowFilter.newColumnRangeBuilder(MARKERS).build(), RowFilter.onlyLatestCell())))
+            .rowsLimit(limit)
+            .build());
+    }
+
+    private List<Marker> parse(final ByteString prefix, final FlatRow row) {
+        final RowKey rowKey = rowKeySerializer.deserializeFull(
+            row.getRowKey().substring(prefix.size() + Long.BYTES).asReadOnlyByteBuffer());
+
+        final List<Marker> markers = new ArrayList<>(row.getCells().size());
+
+        for (final FlatRow.Cell cell : row.getCells()) {
+            markers.add(new Marker(rowKey.getSeries(),
+                rowKey.getBase() + deserializeOffset(cell.getQualifier()), cell.getValue()));
+        }
+
+        return markers;
+    }
+
+    /**
+     * Clear the given marker, unless it has been set again with a different token.
+     *
+     * @return a future resolved with {@code true} if the marker was cleared
+     */
+    AsyncFuture<Boolean> clear(
+        final BigtableDataClient client, final String kind, final Marker marker
+    ) throws IOException {
+        final ByteString qualifier = serializeOffset(offset(marker.getTimestamp()));
+
+        return client.checkAndMutateRow(table, rowKey(kind, marker), RowFilter.chain(
+            Arrays.asList(RowFilter
+                .newColumnRangeBuilder(MARKERS)
+                .startQualifierClosed(qualifier)
+                .endQualifierClosed(qualifier)
+                .build(), RowFilter.valueEquals(marker.getToken()))),
+            Mutations.builder().deleteCell(MARKERS, qualifier).build(),
+            Mutations.builder().build());
+    }
+
+    /**
+     * Get the time at which the given name was first recorded, recording the current time if it
+     * has not been recorded before.
+     */
+    AsyncFuture<Long> since(final BigtableDataClient client, final String name, final long now) {
+        final ByteString qualifier = ByteString.copyFromUtf8(name);
+        final RowFilter column = RowFilter
+            .newColumnRangeBuilder(MARKERS)
+            .startQualifierClosed(qualifier)
+            .endQualifierClosed(qualifier)
+            .build();
+
+        final ByteString value =
+            ByteString.copyFrom(ByteBuffer.allocate(Long.BYTES).putLong(now).array());
+
+        return client
+            .checkAndMutateRow(table, STATE, column, Mutations.builder().build(),
+                Mutations.builder().setCell(MARKERS, qualifier, value).build())
+            .lazyTransform(existed -> client.readRows(table, ReadRowsRequest
+                .builder()
+                .rowKey(STATE)
+                .filter(RowFilter.chain(Arrays.asList(column, RowFilter.onlyLatestCell())))
+                .build()))
+            .directTransform(rows -> rows
+                .stream()
+                .flatMap(row -> row.getCells().stream())
+                .findFirst()
+                .map(cell -> cell.getValue().asReadOnlyByteBuffer().getLong())
+                .orElseThrow(() -> new IllegalStateException("Missing state: " + name)));
+    }
+
+    private static ByteString kindPrefix(final String kind) {
+        return PREFIX.concat(ByteString.copyFromUtf8(kind + "/"));
+    }
+
+    /*
+    Timestamps are not negative, so their big-endian encoding sorts rows by time.
+     */
+    private ByteString rowKey(final String kind, final Marker marker) throws IOException {
+        return kindPrefix(kind)
+            .concat(ByteString.copyFrom(
+                ByteBuffer.allocate(Long.BYTES).putLong(marker.getTimestamp()).array()))
+            .concat(rowKeySerializer.serializeFull(
+                new RowKey(marker.getSeries(), base(marker.getTimestamp()))));
+    }
+
+    /**
+     * A marker for a series at a given time.
+     */
+    @Data
+    static class Marker {
+        private final Series series;
+        private final long timestamp;
+        private final ByteString token;
+    }
+
+    /**
+     * A page of markers, and the row to continue after if there are more.
+     */
+    @Data
+    static class Page {
+        private final List<Marker> markers;
+        private final Optional<ByteString> next;
+    }
+}
@@ -26,7 +26,9 @@ import static java.util.Optional.of;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.ImmutableList;
 import com.spotify.heroic.ExtraParameters;
+import com.spotify.heroic.common.Duration;
 import com.spotify.heroic.common.DynamicModuleId;
 import com.spotify.heroic.common.Groups;
 import com.spotify.heroic.common.ModuleId;
@@ -44,7 +46,11 @@ import eu.toolchain.async.AsyncFramework;
 import eu.toolchain.async.AsyncFuture;
 import eu.toolchain.async.Managed;
 import eu.toolchain.async.ManagedSetup;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 import javax.inject.Named;
 import lombok.Data;
 
@@ -61,6 +67,10 @@ public final class BigtableMetricModule implements MetricModule, DynamicModuleId
     public static final boolean DEFAULT_DISABLE_BULK_MUTATIONS = false;
     public static final int DEFAULT_FLUSH_INTERVAL_SECONDS = 2;
     public static final boolean DEFAULT_FAKE = false;
+    public static final Duration DEFAULT_ROLLUP_FLUSH_INTERVAL = Duration.of(1, TimeUnit.MINUTES);
+    public static final boolean DEFAULT_BLOCKS = false;
+    public static final Duration DEFAULT_BLOCK_COMPACTION_INTERVAL =
+        Duration.of(1, TimeUnit.MINUTES);
 
     private final Optional<String> id;
     private final Groups groups;
@@ -73,6 +83,10 @@ public final class BigtableMetricModule implements MetricModule, DynamicModuleId
     private final int flushIntervalSeconds;
     private final Optional<Integer> batchSize;
     private final boolean fake;
+    private final List<Duration> rollups;
+    private final Duration rollupFlushInterval;
+    private final boolean blocks;
+    private final Duration blockCompactionInterval;
 
     @JsonCreator
     public BigtableMetricModule(
@@ -85,7 +99,11 @@ public final class BigtableMetricModule implements MetricModule, DynamicModuleId
         @JsonProperty("disableBulkMutations") Optional<Boolean> disableBulkMutations,
         @JsonProperty("flushIntervalSeconds") Optional<Integer> flushIntervalSeconds,
         @JsonProperty("batchSize") Optional<Integer> batchSize,
-        @JsonProperty("fake") Optional<Boolean> fake
+        @JsonProperty("fake") Optional<Boolean> fake,
+        @JsonProperty("rollups") Optional<List<Duration>> rollups,
+        @JsonProperty("rollupFlushInterval") Optional<Duration> rollupFlushInterval,
+        @JsonProperty("blocks") Optional<Boolean> blocks,
+        @JsonProperty("blockCompactionInterval") Optional<Duration> blockCompactionInterval
     ) {
         this.id = id;
         this.groups = groups.orElseGet(Groups::empty).or(DEFAULT_GROUP);
@@ -98,6 +116,11 @@ public final class BigtableMetricModule implements MetricModule, DynamicModuleId
         this.flushIntervalSeconds = flushIntervalSeconds.orElse(DEFAULT_FLUSH_INTERVAL_SECONDS);
         this.batchSize = batchSize;
         this.fake = fake.orElse(DEFAULT_FAKE);
+        this.rollups = rollups.orElseGet(ImmutableList::of);
+        this.rollupFlushInterval = rollupFlushInterval.orElse(DEFAULT_ROLLUP_FLUSH_INTERVAL);
+        this.blocks = blocks.orElse(DEFAULT_BLOCKS);
+        this.blockCompactionInterval =
+            blockCompactionInterval.orElse(DEFAULT_BLOCK_COMPACTION_INTERVAL);
     }
 
     @Override
@@ -175,6 +198,34 @@ public final class BigtableMetricModule implements MetricModule, DynamicModuleId
                 params.contains(BIGTABLE_CONFIGURE_PARAM) || configure;
         }
 
+        @Provides
+        @BigtableScope
+        @Named("rollups")
+        public Set<Long> rollups() {
+            return rollups.stream().map(Duration::toMilliseconds).collect(Collectors.toSet());
+        }
+
+        @Provides
+        @BigtableScope
+        @Named("rollupFlushInterval")
+        public Duration rollupFlushInterval() {
+            return rollupFlushInterval;
+        }
+
+        @Provides
+        @BigtableScope
+        @Named("blocks")
+        public boolean blocks() {
+            return blocks;
+        }
+
+        @Provides
+        @BigtableScope
+        @Named("blockCompactionInterval")
+        public Duration blockCompactionInterval() {
+            return blockCompactionInterval;
+        }
+
         @Provides
         @BigtableScope
         public RowKeySerializer rowKeySerializer() {
@@ -215,6 +266,10 @@ public final class BigtableMetricModule implements MetricModule, DynamicModuleId
         private Optional<Integer> flushIntervalSeconds = empty();
         private Optional<Integer> batchSize = empty();
         private Optional<Boolean> fake = empty();
+        private Optional<List<Duration>> rollups = empty();
+        private Optional<Duration> rollupFlushInterval = empty();
+        private Optional<Boolean> blocks = empty();
+        private Optional<Duration> blockCompactionInterval = empty();
 
         public Builder id(String id) {
             this.id = of(id);
@@ -271,9 +326,30 @@ public final class BigtableMetricModule implements MetricModule, DynamicModuleId
             return this;
         }
 
+        public Builder rollups(final List<Duration> rollups) {
+            this.rollups = of(rollups);
+            return this;
+        }
+
+        public Builder rollupFlushInterval(final Duration rollupFlushInterval) {
+            this.rollupFlushInterval = of(rollupFlushInterval);
+            return this;
+        }
+
+        public Builder blocks(final boolean blocks) {
+            this.blocks = of(blocks);
+            return this;
+        }
+
+        public Builder blockCompactionInterval(final Duration blockCompactionInterval) {
+            this.blockCompactionInterval = of(blockCompactionInterval);
+            return this;
+        }
+
         public BigtableMetricModule build() {
             return new BigtableMetricModule(id, groups, project, instance, table, credentials,
-                configure, disableBulkMutations, flushIntervalSeconds, batchSize, fake);
+                configure, disableBulkMutations, flushIntervalSeconds, batchSize, fake, rollups,
+                rollupFlushInterval, blocks, blockCompactionInterval);
         }
     }
 }
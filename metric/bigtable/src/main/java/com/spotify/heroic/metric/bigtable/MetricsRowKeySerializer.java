@@ -24,6 +24,7 @@ package com.spotify.heroic.metric.bigtable;
 import com.google.common.collect.ImmutableSortedMap;
 import com.google.protobuf.ByteString;
 import com.spotify.heroic.common.Series;
+import com.spotify.heroic.common.SeriesInterner;
 import eu.toolchain.serializer.AutoSerialize;
 import eu.toolchain.serializer.BytesSerialWriter;
 import eu.toolchain.serializer.SerialReader;
@@ -120,7 +121,9 @@ public class MetricsRowKeySerializer implements RowKeySerializer {
 
         final RowKeyMinimal.Series s = rowKeyMinimal.getSeries();
         final SortedMap<String, String> resource = resourceMaybe.orElseGet(ImmutableSortedMap::of);
-        return new RowKey(new Series(s.getKey(), s.getTags(), resource), rowKeyMinimal.getBase());
+        final Series series =
+            SeriesInterner.global().intern(new Series(s.getKey(), s.getTags(), resource));
+        return new RowKey(series, rowKeyMinimal.getBase());
     }
 
     enum SuffixEntryType {
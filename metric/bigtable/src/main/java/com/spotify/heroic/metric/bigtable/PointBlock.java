@@ -0,0 +1,403 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.metric.bigtable;
+
+import com.spotify.heroic.metric.Point;
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * Compressed encoding of a block of points, as described in the Gorilla paper.
+ * <p>
+ * Timestamps are stored as deltas of deltas and values as the XOR with the previous value, both
+ * using variable length bit patterns. Regular timestamps and slowly changing values take a
+ * couple of bits per point, compared to the 12 bytes (and the per cell overhead) of storing a
+ * point per cell.
+ * <p>
+ * The block starts with a 32-bit count of the points it contains, followed by the first
+ * timestamp and value in full. Timestamps must be strictly increasing.
+ */
+public final class PointBlock {
+    private static final int COUNT_BYTES = Integer.BYTES;
+
+    private PointBlock() {
+    }
+
+    public static Encoder encoder() {
+        return new Encoder();
+    }
+
+    public static Decoder decoder(final ByteBuffer buffer) {
+        return new Decoder(buffer);
+    }
+
+    /**
+     * Incrementally encode points into a block.
+     */
+    public static final class Encoder {
+        private final BitWriter writer = new BitWriter();
+
+        private int size = 0;
+        private long timestamp;
+        private long delta;
+        private long value;
+        private int leading = Integer.MAX_VALUE;
+        private int trailing = 0;
+
+        /**
+         * Add a point to the block.
+         *
+         * @param timestamp timestamp of the point, must be larger than the previous timestamp
+         * @param value value of the point
+         */
+        public void add(final long timestamp, final double value) {
+            final long bits = Double.doubleToRawLongBits(value);
+
+            if (size == 0) {
+                writer.write(timestamp, 64);
+                writer.write(bits, 64);
+            } else {
+                if (timestamp <= this.timestamp) {
+                    throw new IllegalArgumentException(
+                        "timestamps must be increasing: " + timestamp + " <= " + this.timestamp);
+                }
+
+                final long delta = timestamp - this.timestamp;
+                writeDeltaOfDelta(delta - this.delta);
+                writeXor(bits ^ this.value);
+                this.delta = delta;
+            }
+
+            this.timestamp = timestamp;
+            this.value = bits;
+            this.size += 1;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Build the encoded block.
+         */
+        public byte[] encode() {
+            final byte[] bits = writer.toByteArray();
+            return ByteBuffer
+                .allocate(COUNT_BYTES + bits.length)
+                .putInt(size)
+                .put(bits)
+                .array();
+        }
+
+        private void writeDeltaOfDelta(final long dod) {
+            if (dod == 0) {
+                writer.write(0b0, 1);
+            } else if (dod >= -64 && dod < 64) {
+                writer.write(0b10, 2);
+                writer.write(dod, 7);
+            } else if (dod >= -256 && dod < 256) {
+                writer.write(0b110, 3);
+                writer.write(dod, 9);
+            } else if (dod >= -2048 && dod < 2048) {
+                writer.write(0b1110, 4);
+                writer.write(dod, 12);
+            } else {
+                writer.write(0b1111, 4);
+                writer.write(dod, 64);
+            }
+        }
+
+        private void writeXor(final long xor) {
+            if (xor == 0) {
+                writer.write(0b0, 1);
+                return;
+            }
+
+            final int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+            final int trailing = Long.numberOfTrailingZeros(xor);
+
+            // reuse the previous window of meaningful bits if the new bits fit in it
+            if (leading >= this.leading && trailing >= this.trailing) {
+                writer.write(0b10, 2);
+                writer.write(xor >>> this.trailing, 64 - this.leading - this.trailing);
+                return;
+            }
+
+            final int meaningful = 64 - leading - trailing;
+
+            writer.write(0b11, 2);
+            writer.write(leading, 5);
+            writer.write(meaningful - 1, 6);
+            writer.write(xor >>> trailing, meaningful);
+
+            this.leading = leading;
+            this.trailing = trailing;
+        }
+    }
+
+    /**
+     * Streaming decoder of a block.
+     * <p>
+     * Points are decoded one at a time, either through {@link #next()} or in bulk into primitive
+     * arrays through {@link #decode(long[], double[])}, without allocating per point.
+     */
+    public static final class Decoder {
+        private final BitReader reader;
+        private final int size;
+
+        private int position = 0;
+        private long timestamp;
+        private long delta;
+        private long value;
+        private int leading;
+        private int trailing;
+
+        private Decoder(final ByteBuffer buffer) {
+            this.size = buffer.getInt(buffer.position());
+            this.reader = new BitReader(buffer, buffer.position() + COUNT_BYTES);
+        }
+
+        /**
+         * Number of points in the block.
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Decode the next point.
+         *
+         * @return {@code true} if a point was decoded, {@code false} if the block is exhausted
+         */
+        public boolean next() {
+            if (position >= size) {
+                return false;
+            }
+
+            if (position == 0) {
+                timestamp = reader.read(64);
+                value = reader.read(64);
+            } else {
+                delta += readDeltaOfDelta();
+                timestamp += delta;
+                value ^= readXor();
+            }
+
+            position += 1;
+            return true;
+        }
+
+        public long timestamp() {
+            return timestamp;
+        }
+
+        public double value() {
+            return Double.longBitsToDouble(value);
+        }
+
+        /**
+         * Decode up to as many points as fits in the given arrays.
+         *
+         * @return the number of decoded points
+         */
+        public int decode(final long[] timestamps, final double[] values) {
+            return decode(timestamps, values, 0);
+        }
+
+        /**
+         * Decode up to as many points as fits in the given arrays, starting at the given offset.
+         *
+         * @return the number of decoded points
+         */
+        public int decode(final long[] timestamps, final double[] values, final int offset) {
+            final int length = Math.min(timestamps.length, values.length);
+
+            int n = offset;
+
+            while (n < length && next()) {
+                timestamps[n] = timestamp;
+                values[n] = value();
+                n++;
+            }
+
+            return n - offset;
+        }
+
+        private long readDeltaOfDelta() {
+            if (!reader.readBit()) {
+                return 0L;
+            }
+
+            if (!reader.readBit()) {
+                return reader.readSigned(7);
+            }
+
+            if (!reader.readBit()) {
+                return reader.readSigned(9);
+            }
+
+            if (!reader.readBit()) {
+                return reader.readSigned(12);
+            }
+
+            return reader.read(64);
+        }
+
+        private long readXor() {
+            if (!reader.readBit()) {
+                return 0L;
+            }
+
+            if (reader.readBit()) {
+                leading = (int) reader.read(5);
+                final int meaningful = (int) reader.read(6) + 1;
+                trailing = 64 - leading - meaningful;
+            }
+
+            return reader.read(64 - leading - trailing) << trailing;
+        }
+    }
+
+    private static final class BitWriter {
+        private long[] words = new long[4];
+        private int position = 0;
+
+        /**
+         * Write the lowest {@code bits} bits of the value, most significant bit first.
+         */
+        void write(final long value, final int bits) {
+            final long masked = bits == 64 ? value : value & ((1L << bits) - 1);
+            final int index = position >>> 6;
+            final int free = 64 - (position & 63);
+
+            if (index + 1 >= words.length) {
+                words = Arrays.copyOf(words, words.length * 2);
+            }
+
+            if (bits <= free) {
+                words[index] |= masked << (free - bits);
+            } else {
+                final int rest = bits - free;
+                words[index] |= masked >>> rest;
+                words[index + 1] |= masked << (64 - rest);
+            }
+
+            position += bits;
+        }
+
+        byte[] toByteArray() {
+            final int length = (position + 7) >>> 3;
+            final ByteBuffer buffer = ByteBuffer.allocate(words.length * Long.BYTES);
+
+            for (final long word : words) {
+                buffer.putLong(word);
+            }
+
+            return Arrays.copyOf(buffer.array(), length);
+        }
+    }
+
+    /**
+     * Decoded points, kept in the primitive arrays they were decoded into.
+     * <p>
+     * A {@link Point} is only built when an element is accessed through the {@link java.util.List}
+     * interface.
+     */
+    public static final class Points extends AbstractList<Point> implements RandomAccess {
+        private final long[] timestamps;
+        private final double[] values;
+        private final int size;
+
+        public Points(final long[] timestamps, final double[] values, final int size) {
+            this.timestamps = timestamps;
+            this.values = values;
+            this.size = size;
+        }
+
+        public long timestamp(final int index) {
+            return timestamps[index];
+        }
+
+        public double value(final int index) {
+            return values[index];
+        }
+
+        @Override
+        public Point get(final int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException(Integer.toString(index));
+            }
+
+            return new Point(timestamps[index], values[index]);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    private static final class BitReader {
+        private final ByteBuffer buffer;
+        private final int offset;
+        private int position = 0;
+
+        BitReader(final ByteBuffer buffer, final int offset) {
+            this.buffer = buffer;
+            this.offset = offset;
+        }
+
+        boolean readBit() {
+            final int b = buffer.get(offset + (position >>> 3));
+            final boolean bit = ((b >>> (7 - (position & 7))) & 1) != 0;
+            position += 1;
+            return bit;
+        }
+
+        /**
+         * Read {@code bits} bits as an unsigned value, most significant bit first.
+         */
+        long read(final int bits) {
+            long result = 0L;
+            int remaining = bits;
+
+            while (remaining > 0) {
+                final int b = buffer.get(offset + (position >>> 3)) & 0xff;
+                final int available = 8 - (position & 7);
+                final int take = Math.min(available, remaining);
+
+                result = (result << take) | ((b >>> (available - take)) & ((1 << take) - 1));
+                position += take;
+                remaining -= take;
+            }
+
+            return result;
+        }
+
+        long readSigned(final int bits) {
+            final int shift = 64 - bits;
+            return (read(bits) << shift) >> shift;
+        }
+    }
+}
@@ -48,7 +48,35 @@ public interface BigtableDataClient {
      */
     AsyncObservable<Row> readRowsObserved(String tableName, ReadRowsRequest request);
 
+    /**
+     * Read the given set of rows in an observable way, without converting them.
+     * <p>
+     * The next row is only read once the future returned by the observer for the previous row has
+     * been resolved, which bounds how many rows are held in memory at any time.
+     *
+     * @param tableName The table to read rows from.
+     * @param request Request to use when reading rows.
+     * @return An observable that can be observed to read one row at a time.
+     */
+    AsyncObservable<FlatRow> readFlatRowsObserved(String tableName, ReadRowsRequest request);
+
     AsyncFuture<Row> readModifyWriteRow(
         String tableName, ByteString rowKey, ReadModifyWriteRules rules
     );
+
+    /**
+     * Atomically apply one of two sets of mutations to a row, depending on if any cell of the row
+     * matches the given predicate.
+     *
+     * @param tableName Table containing the row.
+     * @param rowKey Key of the row to mutate.
+     * @param predicate Filter which is applied to the row.
+     * @param trueMutations Mutations to apply if any cell matches the predicate.
+     * @param falseMutations Mutations to apply if no cell matches the predicate.
+     * @return A future resolved with {@code true} if any cell matched the predicate.
+     */
+    AsyncFuture<Boolean> checkAndMutateRow(
+        String tableName, ByteString rowKey, RowFilter predicate, Mutations trueMutations,
+        Mutations falseMutations
+    );
 }
@@ -21,11 +21,14 @@
 
 package com.spotify.heroic.metric.bigtable.api;
 
+import com.google.bigtable.v2.CheckAndMutateRowRequest;
+import com.google.bigtable.v2.CheckAndMutateRowResponse;
 import com.google.bigtable.v2.ReadModifyWriteRowRequest;
 import com.google.cloud.bigtable.grpc.BigtableSession;
 import com.google.cloud.bigtable.grpc.scanner.FlatRow;
 import com.google.cloud.bigtable.grpc.scanner.ResultScanner;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
@@ -34,39 +37,54 @@ import com.spotify.heroic.async.AsyncObservable;
 import com.spotify.heroic.async.AsyncObserver;
 import eu.toolchain.async.AsyncFramework;
 import eu.toolchain.async.AsyncFuture;
+import eu.toolchain.async.FutureDone;
 import eu.toolchain.async.ResolvableFuture;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
 import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
 
+@Slf4j
 @ToString
 public class BigtableDataClientImpl implements BigtableDataClient {
+    /* number of rows read from a scanner before they are passed on to the observer */
+    static final int SCAN_WINDOW = 32;
+
     private final AsyncFramework async;
     private final com.google.cloud.bigtable.grpc.BigtableSession
         session;
     private final BigtableMutator mutator;
     private final String clusterUri;
+    /* executor that blocking reads from scanners are done on */
+    private final ExecutorService scanner;
 
     public BigtableDataClientImpl(
         final AsyncFramework async,
         final com.google.cloud.bigtable.grpc.BigtableSession session,
         BigtableMutator mutator,
         final String project,
-        final String cluster
+        final String cluster,
+        final ExecutorService scanner
     ) {
         this.async = async;
         this.session = session;
         this.mutator = mutator;
         this.clusterUri = String.format("projects/%s/instances/%s", project, cluster);
+        this.scanner = scanner;
     }
 
-    @java.beans.ConstructorProperties({ "async", "session", "mutator", "clusterUri" })
+    @java.beans.ConstructorProperties({ "async", "session", "mutator", "clusterUri", "scanner" })
     public BigtableDataClientImpl(final AsyncFramework async, final BigtableSession session,
-                                  final BigtableMutator mutator, final String clusterUri) {
+                                  final BigtableMutator mutator, final String clusterUri,
+                                  final ExecutorService scanner) {
         this.async = async;
         this.session = session;
         this.mutator = mutator;
         this.clusterUri = clusterUri;
+        this.scanner = scanner;
     }
 
     @Override
@@ -97,52 +115,58 @@ public class BigtableDataClientImpl implements BigtableDataClient {
             .build())).directTransform(r -> convertRow(r.getRow()));
     }
 
+    @Override
+    public AsyncFuture<Boolean> checkAndMutateRow(
+        final String tableName, final ByteString rowKey, final RowFilter predicate,
+        final Mutations trueMutations, final Mutations falseMutations
+    ) {
+        return convert(session.getDataClient().checkAndMutateRowAsync(CheckAndMutateRowRequest
+            .newBuilder()
+            .setTableName(Table.toURI(clusterUri, tableName))
+            .setRowKey(rowKey)
+            .setPredicateFilter(predicate.toPb())
+            .addAllTrueMutations(trueMutations.getMutations())
+            .addAllFalseMutations(falseMutations.getMutations())
+            .build())).directTransform(CheckAndMutateRowResponse::getPredicateMatched);
+    }
+
     @Override
     public AsyncObservable<Row> readRowsObserved(
         final String tableName, final ReadRowsRequest request
     ) {
         return observer -> {
-            final ResultScanner<com.google.bigtable.v2.Row> s =
-                session.getDataClient().readRows(request.toPb(Table.toURI(clusterUri, tableName)));
-
-            final ResultScanner<Row> scanner = new ResultScanner<Row>() {
-                @Override
-                public void close() throws IOException {
-                    s.close();
-                }
+            final ResultScanner<com.google.bigtable.v2.Row> scanner;
 
-                @Override
-                public Row next() throws IOException {
-                    final com.google.bigtable.v2.Row n = s.next();
-
-                    if (n == null) {
-                        return null;
-                    }
-
-                    return convertRow(n);
-                }
-
-                @Override
-                public Row[] next(int count) throws IOException {
-                    final com.google.bigtable.v2.Row[] rows =
-                        s.next(count);
-
-                    final Row[] results = new Row[rows.length];
+            try {
+                scanner = session
+                    .getDataClient()
+                    .readRows(request.toPb(Table.toURI(clusterUri, tableName)));
+            } catch (final Exception e) {
+                observer.fail(e);
+                return;
+            }
 
-                    for (int i = 0; i < rows.length; i++) {
-                        results[i++] = convertRow(rows[i]);
-                    }
+            scanAsync(scanner, this::convertRow, observer);
+        };
+    }
 
-                    return results;
-                }
+    @Override
+    public AsyncObservable<FlatRow> readFlatRowsObserved(
+        final String tableName, final ReadRowsRequest request
+    ) {
+        return observer -> {
+            final ResultScanner<FlatRow> scanner;
 
-                @Override
-                public int available() {
-                    return s.available();
-                }
-            };
+            try {
+                scanner = session
+                    .getDataClient()
+                    .readFlatRows(request.toPb(Table.toURI(clusterUri, tableName)));
+            } catch (final Exception e) {
+                observer.fail(e);
+                return;
+            }
 
-            scanAsync(scanner, observer);
+            scanAsync(scanner, row -> row, observer);
         };
     }
 
@@ -159,44 +183,75 @@ public class BigtableDataClientImpl implements BigtableDataClient {
         return new Row(row.getKey(), families.build());
     }
 
-    <T> void scanAsync(ResultScanner<T> scanner, AsyncObserver<T> observer) {
-        while (true) {
-            final T n;
-
-                /* this will unfortunately block once in a while */
-            try {
-                n = scanner.next();
-            } catch (final Exception e) {
-                observer.fail(e);
-                return;
-            }
-
-            if (n == null) {
-                observer.end();
-                return;
+    /**
+     * Read the scanner one window at a time, and only read the next window once the observer has
+     * processed all rows of the current one.
+     * <p>
+     * The scanner applies flow control to the underlying stream when it is not being read from, so
+     * at most a window of rows and the scanner buffer are held in memory for each scan. Reading
+     * from the scanner blocks until rows are available, so it happens on the dedicated scanner
+     * executor instead of the shared async executor, which would otherwise be starved by slow
+     * scans.
+     */
+    <S, T> void scanAsync(
+        final ResultScanner<S> scanner, final Function<S, T> convert,
+        final AsyncObserver<T> observer
+    ) {
+        async.call(() -> scanner.next(SCAN_WINDOW), this.scanner).onDone(new FutureDone<S[]>() {
+            @Override
+            public void failed(final Throwable cause) {
+                close(scanner);
+                observer.fail(cause);
             }
 
-            final AsyncFuture<Void> f = observer.observe(n);
-
-            // if already resolved, avoid adding more stack frames.
-            if (f.isDone()) {
-                if (f.isFailed()) {
-                    observer.fail(f.cause());
-                    break;
+            @Override
+            public void resolved(final S[] window) {
+                if (window.length == 0) {
+                    close(scanner);
+                    observer.end();
+                    return;
                 }
 
-                if (f.isCancelled()) {
-                    observer.cancel();
-                    break;
-                }
+                AsyncObservable
+                    .fromIterable(Lists.transform(Arrays.asList(window), convert::apply))
+                    .observe(new AsyncObserver<T>() {
+                        @Override
+                        public AsyncFuture<Void> observe(final T value) {
+                            return observer.observe(value);
+                        }
+
+                        @Override
+                        public void cancel() {
+                            close(scanner);
+                            observer.cancel();
+                        }
+
+                        @Override
+                        public void fail(final Throwable cause) {
+                            close(scanner);
+                            observer.fail(cause);
+                        }
+
+                        @Override
+                        public void end() {
+                            scanAsync(scanner, convert, observer);
+                        }
+                    });
+            }
 
-                continue;
+            @Override
+            public void cancelled() {
+                close(scanner);
+                observer.cancel();
             }
+        });
+    }
 
-            f
-                .onResolved(ign -> scanAsync(scanner, observer))
-                .onFailed(observer::fail)
-                .onCancelled(observer::cancel);
+    private void close(final ResultScanner<?> scanner) {
+        try {
+            scanner.close();
+        } catch (final IOException e) {
+            log.warn("Failed to close scanner", e);
         }
     }
 
@@ -23,14 +23,22 @@ package com.spotify.heroic.metric.bigtable.api;
 
 import static com.spotify.heroic.metric.bigtable.api.RowFilter.compareByteStrings;
 
+import com.google.bigtable.v2.Cell;
+import com.google.bigtable.v2.Column;
 import com.google.bigtable.v2.Mutation;
+import com.google.bigtable.v2.ReadModifyWriteRule;
 import com.google.cloud.bigtable.grpc.scanner.FlatRow;
+import com.google.common.collect.ImmutableMap;
 import com.google.protobuf.ByteString;
 import com.spotify.heroic.async.AsyncObservable;
 import com.spotify.heroic.metric.bigtable.BigtableConnection;
 import eu.toolchain.async.AsyncFramework;
 import eu.toolchain.async.AsyncFuture;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -156,11 +164,49 @@ public class FakeBigtableConnection implements BigtableConnection {
             return AsyncObservable.failed(new RuntimeException("not supported"));
         }
 
+        @Override
+        public AsyncObservable<FlatRow> readFlatRowsObserved(
+            final String tableName, final ReadRowsRequest request
+        ) {
+            final TableStorage storage = tables.get(tableName);
+
+            if (storage == null) {
+                return AsyncObservable.failed(
+                    new IllegalStateException("No such table: " + tableName));
+            }
+
+            return observer -> storage
+                .readRows(request)
+                .onResolved(rows -> AsyncObservable.fromIterable(rows).observe(observer))
+                .onFailed(observer::fail)
+                .onCancelled(observer::cancel);
+        }
+
         @Override
         public AsyncFuture<Row> readModifyWriteRow(
             final String tableName, final ByteString rowKey, final ReadModifyWriteRules rules
         ) {
-            return async.failed(new RuntimeException("not supported"));
+            final TableStorage storage = tables.get(tableName);
+
+            if (storage == null) {
+                return async.failed(new IllegalStateException("No such table: " + tableName));
+            }
+
+            return storage.readModifyWriteRow(rowKey, rules);
+        }
+
+        @Override
+        public AsyncFuture<Boolean> checkAndMutateRow(
+            final String tableName, final ByteString rowKey, final RowFilter predicate,
+            final Mutations trueMutations, final Mutations falseMutations
+        ) {
+            final TableStorage storage = tables.get(tableName);
+
+            if (storage == null) {
+                return async.failed(new IllegalStateException("No such table: " + tableName));
+            }
+
+            return storage.checkAndMutateRow(rowKey, predicate, trueMutations, falseMutations);
         }
     }
 
@@ -180,6 +226,33 @@ public class FakeBigtableConnection implements BigtableConnection {
 
         public AsyncFuture<Void> mutateRow(final ByteString rowKey, final Mutations mutations) {
             return async.call(() -> {
+                applyMutations(rowKey, mutations);
+                return null;
+            });
+        }
+
+        public AsyncFuture<Boolean> checkAndMutateRow(
+            final ByteString rowKey, final RowFilter predicate, final Mutations trueMutations,
+            final Mutations falseMutations
+        ) {
+            return async.call(() -> {
+                synchronized (lock) {
+                    final boolean matched = rows.entrySet().stream().anyMatch(entry -> {
+                        final Pair<ByteString, ColumnFamily> key = entry.getKey();
+
+                        return key.getLeft().equals(rowKey) &&
+                            predicate.matchesColumnFamily(key.getRight().getName()) &&
+                            entry.getValue().matches(predicate);
+                    });
+
+                    applyMutations(rowKey, matched ? trueMutations : falseMutations);
+                    return matched;
+                }
+            });
+        }
+
+        private void applyMutations(final ByteString rowKey, final Mutations mutations) {
+            synchronized (lock) {
                 mutations.getMutations().forEach(mutation -> {
                     switch (mutation.getMutationCase()) {
                         case SET_CELL:
@@ -201,13 +274,67 @@ public class FakeBigtableConnection implements BigtableConnection {
 
                             rowStorage.runSetCell(setCell);
                             break;
+                        case DELETE_FROM_COLUMN:
+                            final Mutation.DeleteFromColumn deleteFromColumn =
+                                mutation.getDeleteFromColumn();
+
+                            table.getColumnFamily(deleteFromColumn.getFamilyName()).ifPresent(
+                                family -> {
+                                    final RowStorage storage = rows.get(Pair.of(rowKey, family));
+
+                                    if (storage != null) {
+                                        storage.runDeleteFromColumn(deleteFromColumn);
+                                    }
+                                });
+                            break;
                         default:
                             throw new IllegalArgumentException(
                                 "Unsupported mutation: " + mutation.getMutationCase());
                     }
                 });
+            }
+        }
 
-                return null;
+        public AsyncFuture<Row> readModifyWriteRow(
+            final ByteString rowKey, final ReadModifyWriteRules rules
+        ) {
+            return async.call(() -> {
+                final Map<String, List<Column>> columns = new LinkedHashMap<>();
+
+                for (final ReadModifyWriteRule rule : rules.getRules()) {
+                    if (rule.getRuleCase() != ReadModifyWriteRule.RuleCase.INCREMENT_AMOUNT) {
+                        throw new IllegalArgumentException(
+                            "Unsupported rule: " + rule.getRuleCase());
+                    }
+
+                    final ColumnFamily columnFamily = table
+                        .getColumnFamily(rule.getFamilyName())
+                        .orElseThrow(() -> new IllegalArgumentException(
+                            "no such column family: " + rule.getFamilyName()));
+
+                    final RowStorage rowStorage;
+
+                    synchronized (lock) {
+                        final Pair<ByteString, ColumnFamily> key = Pair.of(rowKey, columnFamily);
+                        rowStorage = rows.computeIfAbsent(key, k -> new RowStorage(columnFamily));
+                    }
+
+                    final ByteString value = rowStorage.runIncrement(
+                        rule.getColumnQualifier(), rule.getIncrementAmount());
+
+                    columns
+                        .computeIfAbsent(columnFamily.getName(), n -> new ArrayList<>())
+                        .add(Column
+                            .newBuilder()
+                            .setQualifier(rule.getColumnQualifier())
+                            .addCells(Cell.newBuilder().setValue(value))
+                            .build());
+                }
+
+                final ImmutableMap.Builder<String, Family> families = ImmutableMap.builder();
+
+                columns.forEach((name, c) -> families.put(name, new Family(name, c)));
+                return new Row(rowKey, families.build());
             });
         }
 
@@ -246,21 +373,43 @@ public class FakeBigtableConnection implements BigtableConnection {
                 return rangeMatches && keyMatches;
             };
 
-            return async.call(() -> rows.entrySet().stream().flatMap(entry -> {
-                final Pair<ByteString, ColumnFamily> key = entry.getKey();
+            return async.call(() -> {
+                final List<FlatRow> result = rows.entrySet().stream().flatMap(entry -> {
+                    final Pair<ByteString, ColumnFamily> key = entry.getKey();
 
-                if (!matchesRowKey.apply(key.getLeft())) {
-                    return Stream.empty();
-                }
+                    if (!matchesRowKey.apply(key.getLeft())) {
+                        return Stream.empty();
+                    }
+
+                    if (!matchesColumnFamily.apply(key.getRight().getName())) {
+                        return Stream.empty();
+                    }
+
+                    return Stream.of(entry
+                        .getValue()
+                        .readRows(key.getLeft(), key.getRight(), request, matchesColumn));
+                }).collect(Collectors.toList());
 
-                if (!matchesColumnFamily.apply(key.getRight().getName())) {
-                    return Stream.empty();
+                if (!request.getRowsLimit().isPresent()) {
+                    return result;
                 }
 
-                return Stream.of(entry
-                    .getValue()
-                    .readRows(key.getLeft(), key.getRight(), request, matchesColumn));
-            }).collect(Collectors.toList()));
+                // like Bigtable, rows without any matching cells are not returned or counted
+                final List<ByteString> keys = result
+                    .stream()
+                    .filter(row -> !row.getCells().isEmpty())
+                    .map(FlatRow::getRowKey)
+                    .distinct()
+                    .sorted(RowFilter::compareByteStrings)
+                    .limit(request.getRowsLimit().get())
+                    .collect(Collectors.toList());
+
+                return result
+                    .stream()
+                    .filter(row -> !row.getCells().isEmpty() && keys.contains(row.getRowKey()))
+                    .sorted((a, b) -> compareByteStrings(a.getRowKey(), b.getRowKey()))
+                    .collect(Collectors.toList());
+            });
         }
     }
 
@@ -269,10 +418,53 @@ public class FakeBigtableConnection implements BigtableConnection {
         private final ColumnFamily columnFamily;
         private final ConcurrentMap<ByteString, ByteString> storage =
             new ConcurrentSkipListMap<>(RowFilter::compareByteStrings);
+        /* only the latest version of each cell is kept */
+        private final ConcurrentMap<ByteString, Long> versions = new ConcurrentHashMap<>();
 
         void runSetCell(final Mutation.SetCell setCell) {
-            // TODO: take timestamp into account
-            storage.put(setCell.getColumnQualifier(), setCell.getValue());
+            final ByteString qualifier = setCell.getColumnQualifier();
+            final long version = setCell.getTimestampMicros();
+
+            if (versions.getOrDefault(qualifier, Long.MIN_VALUE) > version) {
+                return;
+            }
+
+            storage.put(qualifier, setCell.getValue());
+            versions.put(qualifier, version);
+        }
+
+        void runDeleteFromColumn(final Mutation.DeleteFromColumn deleteFromColumn) {
+            final ByteString qualifier = deleteFromColumn.getColumnQualifier();
+
+            if (deleteFromColumn.hasTimeRange()) {
+                final long version = versions.getOrDefault(qualifier, 0L);
+                final long start = deleteFromColumn.getTimeRange().getStartTimestampMicros();
+                final long end = deleteFromColumn.getTimeRange().getEndTimestampMicros();
+
+                if (version < start || (end != 0L && version >= end)) {
+                    return;
+                }
+            }
+
+            storage.remove(qualifier);
+            versions.remove(qualifier);
+        }
+
+        boolean matches(final RowFilter predicate) {
+            return storage
+                .entrySet()
+                .stream()
+                .anyMatch(e -> predicate.matchesColumn(e.getKey()) &&
+                    predicate.matchesValue(e.getValue()));
+        }
+
+        ByteString runIncrement(final ByteString qualifier, final long amount) {
+            // increments are stored as 64-bit big-endian integers, like in Bigtable
+            return storage.compute(qualifier, (k, current) -> {
+                final long value = current == null ? 0L : current.asReadOnlyByteBuffer().getLong();
+                return ByteString.copyFrom(
+                    ByteBuffer.allocate(Long.BYTES).putLong(value + amount).array());
+            });
         }
 
         FlatRow readRows(
@@ -289,6 +481,7 @@ public class FakeBigtableConnection implements BigtableConnection {
                     .newBuilder()
                     .withFamily(columnFamily.getName())
                     .withQualifier(column.getKey())
+                    .withTimestamp(versions.getOrDefault(column.getKey(), 0L))
                     .withValue(column.getValue())
                     .build())
                 .forEach(builder::addCell);
@@ -60,12 +60,22 @@ public class Mutations {
 
         public Builder setCell(
             String family, ByteString columnQualifier, ByteString value
+        ) {
+            return setCell(family, columnQualifier, value, 0L);
+        }
+
+        /**
+         * Set a cell at the given version, cells set without one are all at version zero.
+         */
+        public Builder setCell(
+            String family, ByteString columnQualifier, ByteString value, long timestampMicros
         ) {
             final com.google.bigtable.v2.Mutation.SetCell.Builder
                 setCell = com.google.bigtable.v2.Mutation.SetCell
                     .newBuilder()
                     .setFamilyName(family)
                     .setColumnQualifier(columnQualifier)
+                    .setTimestampMicros(timestampMicros)
                     .setValue(value);
 
             mutations.add(
@@ -77,6 +87,46 @@ public class Mutations {
             return this;
         }
 
+        public Builder deleteCell(String family, ByteString columnQualifier) {
+            final com.google.bigtable.v2.Mutation.DeleteFromColumn.Builder
+                deleteFromColumn = com.google.bigtable.v2.Mutation.DeleteFromColumn
+                    .newBuilder()
+                    .setFamilyName(family)
+                    .setColumnQualifier(columnQualifier);
+
+            mutations.add(
+                com.google.bigtable.v2.Mutation
+                .newBuilder()
+                .setDeleteFromColumn(deleteFromColumn)
+                    .build()
+            );
+            return this;
+        }
+
+        /**
+         * Delete the versions of a cell up to and including the given version, newer versions
+         * are kept. Versions have millisecond granularity.
+         */
+        public Builder deleteCell(String family, ByteString columnQualifier, long timestampMicros) {
+            final com.google.bigtable.v2.Mutation.DeleteFromColumn.Builder
+                deleteFromColumn = com.google.bigtable.v2.Mutation.DeleteFromColumn
+                    .newBuilder()
+                    .setFamilyName(family)
+                    .setColumnQualifier(columnQualifier)
+                    .setTimeRange(com.google.bigtable.v2.TimestampRange
+                        .newBuilder()
+                        .setStartTimestampMicros(0L)
+                        .setEndTimestampMicros(timestampMicros + 1000L));
+
+            mutations.add(
+                com.google.bigtable.v2.Mutation
+                .newBuilder()
+                .setDeleteFromColumn(deleteFromColumn)
+                    .build()
+            );
+            return this;
+        }
+
         public Mutations build() {
             return new Mutations(ImmutableList.copyOf(mutations));
         }
@@ -30,6 +30,8 @@ public class ReadRowsRequest {
     private final Optional<RowRange> range;
     private final Optional<RowFilter> filter;
     private final Optional<ByteString> rowKey;
+    /* maximum number of rows to read */
+    private final Optional<Long> rowsLimit;
 
     public com.google.bigtable.v2.ReadRowsRequest toPb(
         final String tableUri
@@ -48,6 +50,7 @@ public class ReadRowsRequest {
         requestBuilder.setRows(rowSetBuilder.build());
 
         filter.map(RowFilter::toPb).ifPresent(requestBuilder::setFilter);
+        rowsLimit.ifPresent(requestBuilder::setRowsLimit);
 
         return requestBuilder.build();
     }
@@ -60,6 +63,7 @@ public class ReadRowsRequest {
         private Optional<RowRange> range = Optional.empty();
         private Optional<RowFilter> filter = Optional.empty();
         private Optional<ByteString> rowKey = Optional.empty();
+        private Optional<Long> rowsLimit = Optional.empty();
 
         public Builder() {
         }
@@ -79,8 +83,13 @@ public class ReadRowsRequest {
             return this;
         }
 
+        public Builder rowsLimit(final long rowsLimit) {
+            this.rowsLimit = Optional.of(rowsLimit);
+            return this;
+        }
+
         public ReadRowsRequest build() {
-            return new ReadRowsRequest(range, filter, rowKey);
+            return new ReadRowsRequest(range, filter, rowKey, rowsLimit);
         }
     }
 }
@@ -51,6 +51,18 @@ public interface RowFilter {
      */
     boolean matchesColumnFamily(final String familyName);
 
+    /**
+     * Test if the current filter matches the given cell value.
+     * <p>
+     * This method is primarily used when testing.
+     *
+     * @param value value to match
+     * @return {@code true} if the value matches
+     */
+    default boolean matchesValue(final ByteString value) {
+        return true;
+    }
+
     /**
      * Build a filter that blocks all cells.
      *
@@ -79,6 +91,16 @@ public interface RowFilter {
         return new Chain(chain);
     }
 
+    /**
+     * Build a filter that only matches cells with the given value.
+     *
+     * @param value Value to match.
+     * @return A filter that only matches cells with the given value.
+     */
+    static RowFilter valueEquals(final ByteString value) {
+        return new ValueEquals(value);
+    }
+
     com.google.bigtable.v2.RowFilter toPb();
 
     @Data
@@ -95,6 +117,11 @@ public interface RowFilter {
             return chain.stream().allMatch(entry -> entry.matchesColumnFamily(familyName));
         }
 
+        @Override
+        public boolean matchesValue(final ByteString value) {
+            return chain.stream().allMatch(entry -> entry.matchesValue(value));
+        }
+
         @Override
         public com.google.bigtable.v2.RowFilter toPb() {
             final com.google.bigtable.v2.RowFilter.Chain.Builder chain =
@@ -229,6 +256,38 @@ public interface RowFilter {
         }
     }
 
+    @Data
+    class ValueEquals implements RowFilter {
+        private final ByteString value;
+
+        @Override
+        public boolean matchesColumn(final ByteString columnQualifier) {
+            return true;
+        }
+
+        @Override
+        public boolean matchesColumnFamily(final String familyName) {
+            return true;
+        }
+
+        @Override
+        public boolean matchesValue(final ByteString value) {
+            return this.value.equals(value);
+        }
+
+        @Override
+        public com.google.bigtable.v2.RowFilter toPb() {
+            return com.google.bigtable.v2.RowFilter
+                .newBuilder()
+                .setValueRangeFilter(com.google.bigtable.v2.ValueRange
+                    .newBuilder()
+                    .setStartValueClosed(value)
+                    .setEndValueClosed(value)
+                    .build())
+                .build();
+        }
+    }
+
     @Data
     class BlockAll implements RowFilter {
         @Override
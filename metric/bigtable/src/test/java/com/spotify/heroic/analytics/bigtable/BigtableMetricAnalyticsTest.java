@@ -0,0 +1,148 @@
+package com.spotify.heroic.analytics.bigtable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.cloud.bigtable.grpc.scanner.FlatRow;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.protobuf.ByteString;
+import com.spotify.heroic.common.Duration;
+import com.spotify.heroic.common.Series;
+import com.spotify.heroic.metric.bigtable.BigtableConnection;
+import com.spotify.heroic.metric.bigtable.api.FakeBigtableConnection;
+import com.spotify.heroic.metric.bigtable.api.ReadRowsRequest;
+import com.spotify.heroic.metric.bigtable.api.Table;
+import com.spotify.heroic.scheduler.Scheduler;
+import com.spotify.heroic.statistics.AnalyticsReporter;
+import eu.toolchain.async.AsyncFramework;
+import eu.toolchain.async.AsyncFuture;
+import eu.toolchain.async.Managed;
+import eu.toolchain.async.ManagedSetup;
+import eu.toolchain.async.TinyAsync;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class BigtableMetricAnalyticsTest {
+    private static final String TABLE = "hits";
+    private static final String FAMILY = "hits";
+    private static final LocalDate DATE = LocalDate.of(2019, 1, 1);
+
+    @Mock
+    private AnalyticsReporter reporter;
+
+    @Mock
+    private Scheduler scheduler;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final SeriesKeyEncoding encoding = new SeriesKeyEncoding("fetch");
+
+    private final Series a = Series.of("a", ImmutableMap.of("host", "a"));
+    private final Series b = Series.of("b", ImmutableMap.of("host", "b"));
+    private final Series c = Series.of("c", ImmutableMap.of("host", "c"));
+
+    private AsyncFramework async;
+    private FakeBigtableConnection connection;
+    private BigtableMetricAnalytics analytics;
+
+    @Before
+    public void setup() throws Exception {
+        async = TinyAsync.builder().executor(MoreExecutors.newDirectExecutorService()).build();
+        connection = new FakeBigtableConnection(async);
+
+        final Table table = connection.tableAdminClient().createTable(TABLE);
+        connection.tableAdminClient().createColumnFamily(table, FAMILY);
+
+        final Managed<BigtableConnection> managed =
+            async.managed(new ManagedSetup<BigtableConnection>() {
+                @Override
+                public AsyncFuture<BigtableConnection> construct() {
+                    return async.resolved(connection);
+                }
+
+                @Override
+                public AsyncFuture<Void> destruct(final BigtableConnection value) {
+                    return async.resolved();
+                }
+            });
+
+        managed.start().get();
+
+        analytics = new BigtableMetricAnalytics(managed, async, mapper, reporter, scheduler, TABLE,
+            FAMILY, 2, Duration.of(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testAggregatesHitsUntilFlush() throws Exception {
+        analytics.reportFetchSeries(DATE, a).get();
+        analytics.reportFetchSeries(DATE, a).get();
+        analytics.reportFetchSeries(DATE, a).get();
+        analytics.reportFetchSeries(DATE, b).get();
+
+        assertTrue(hits().isEmpty());
+
+        analytics.flush().get();
+
+        assertEquals(ImmutableMap.of(key(a), 3L, key(b), 1L), hits());
+        assertTrue(analytics.pending.isEmpty());
+
+        analytics.reportFetchSeries(DATE, a).get();
+        analytics.flush().get();
+
+        assertEquals(ImmutableMap.of(key(a), 4L, key(b), 1L), hits());
+        verify(reporter, never()).reportFailedFetchSeries();
+    }
+
+    @Test
+    public void testDropsNewSeriesWhenFull() throws Exception {
+        analytics.reportFetchSeries(DATE, a).get();
+        analytics.reportFetchSeries(DATE, b).get();
+
+        assertTrue(analytics.reportFetchSeries(DATE, c).isCancelled());
+        verify(reporter, times(1)).reportDroppedFetchSeries();
+
+        /* series which are already pending are still counted */
+        analytics.reportFetchSeries(DATE, b).get();
+        analytics.flush().get();
+
+        assertEquals(ImmutableMap.of(key(a), 1L, key(b), 2L), hits());
+
+        /* flushing frees up room for new series */
+        analytics.reportFetchSeries(DATE, c).get();
+        analytics.flush().get();
+
+        assertEquals(ImmutableMap.of(key(a), 1L, key(b), 2L, key(c), 1L), hits());
+        verify(reporter, times(1)).reportDroppedFetchSeries();
+    }
+
+    private ByteString key(final Series series) throws Exception {
+        return encoding.encode(new SeriesKeyEncoding.SeriesKey(DATE, series),
+            mapper::writeValueAsString);
+    }
+
+    private Map<ByteString, Long> hits() throws Exception {
+        final Map<ByteString, Long> hits = new HashMap<>();
+
+        for (final FlatRow row : connection
+            .dataClient()
+            .readRows(TABLE, ReadRowsRequest.builder().build())
+            .get()) {
+            final ByteString value = row.getCells().get(0).getValue();
+            hits.put(row.getRowKey(), value.asReadOnlyByteBuffer().getLong());
+        }
+
+        return hits;
+    }
+}
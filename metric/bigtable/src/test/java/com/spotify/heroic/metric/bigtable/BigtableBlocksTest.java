@@ -0,0 +1,293 @@
+package com.spotify.heroic.metric.bigtable;
+
+import static com.spotify.heroic.metric.bigtable.BigtableBackend.BLOCKS;
+import static com.spotify.heroic.metric.bigtable.BigtableBackend.BLOCK_SIZE;
+import static com.spotify.heroic.metric.bigtable.BigtableBackend.serializeOffset;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.protobuf.ByteString;
+import com.spotify.heroic.QueryOptions;
+import com.spotify.heroic.common.DateRange;
+import com.spotify.heroic.common.Duration;
+import com.spotify.heroic.common.Groups;
+import com.spotify.heroic.common.Series;
+import com.spotify.heroic.metric.FetchData;
+import com.spotify.heroic.metric.FetchQuotaWatcher;
+import com.spotify.heroic.metric.Metric;
+import com.spotify.heroic.metric.MetricCollection;
+import com.spotify.heroic.metric.MetricType;
+import com.spotify.heroic.metric.Point;
+import com.spotify.heroic.metric.WriteMetric;
+import com.spotify.heroic.metric.bigtable.api.BigtableDataClient;
+import com.spotify.heroic.metric.bigtable.api.FakeBigtableConnection;
+import com.spotify.heroic.metric.bigtable.api.Mutations;
+import com.spotify.heroic.metric.bigtable.api.RowFilter;
+import com.spotify.heroic.scheduler.Scheduler;
+import com.spotify.heroic.statistics.MetricBackendReporter;
+import eu.toolchain.async.AsyncFramework;
+import eu.toolchain.async.AsyncFuture;
+import eu.toolchain.async.Managed;
+import eu.toolchain.async.ManagedSetup;
+import eu.toolchain.async.TinyAsync;
+import eu.toolchain.serializer.TinySerializer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class BigtableBlocksTest {
+    private static final long CLOSED = 2 * BLOCK_SIZE + TimeUnit.HOURS.toMillis(1);
+
+    @Mock
+    private MetricBackendReporter reporter;
+
+    @Mock
+    private Scheduler scheduler;
+
+    private final Series series = Series.of("a", ImmutableMap.of("host", "a"));
+
+    private AsyncFramework async;
+    private FakeBigtableConnection fake;
+    private BigtableConnection connection;
+    private Managed<BigtableConnection> managed;
+    private BigtableBackend backend;
+    private BigtableBackend legacy;
+
+    /* the current time of the backends */
+    private long now = 0L;
+
+    @Before
+    public void setup() throws Exception {
+        async = TinyAsync.builder().executor(MoreExecutors.newDirectExecutorService()).build();
+        fake = new FakeBigtableConnection(async);
+        connection = mock(BigtableConnection.class, delegatesTo(fake));
+
+        managed = async.managed(new ManagedSetup<BigtableConnection>() {
+            @Override
+            public AsyncFuture<BigtableConnection> construct() {
+                return async.resolved(connection);
+            }
+
+            @Override
+            public AsyncFuture<Void> destruct(final BigtableConnection value) {
+                return async.resolved();
+            }
+        });
+
+        managed.start().get();
+
+        backend = backend(true);
+        legacy = backend(false);
+
+        backend.configure().get();
+    }
+
+    @Test
+    public void testCompactClosedBlocks() throws Exception {
+        write(new Point(BLOCK_SIZE + 1000L, 1D), new Point(BLOCK_SIZE + 2000L, 2D),
+            new Point(BLOCK_SIZE + 3000L, 3D), new Point(2 * BLOCK_SIZE + 1000L, 4D));
+
+        backend.compactBlocks(CLOSED).get();
+
+        // only the first block is closed, and has been moved out of the raw cells
+        assertEquals(ImmutableList.of(new Point(2 * BLOCK_SIZE + 1000L, 4D)),
+            fetch(legacy, new DateRange(0L, 3 * BLOCK_SIZE)));
+
+        assertEquals(ImmutableList.of(new Point(BLOCK_SIZE + 1000L, 1D),
+            new Point(BLOCK_SIZE + 2000L, 2D), new Point(BLOCK_SIZE + 3000L, 3D),
+            new Point(2 * BLOCK_SIZE + 1000L, 4D)),
+            fetch(backend, new DateRange(0L, 3 * BLOCK_SIZE)));
+
+        assertEquals(ImmutableList.of(new Point(BLOCK_SIZE + 2000L, 2D)),
+            fetch(backend, new DateRange(BLOCK_SIZE + 1000L, BLOCK_SIZE + 2000L)));
+    }
+
+    @Test
+    public void testCompactLateWrites() throws Exception {
+        write(new Point(BLOCK_SIZE + 1000L, 1D), new Point(BLOCK_SIZE + 2000L, 2D));
+        backend.compactBlocks(CLOSED).get();
+
+        write(new Point(BLOCK_SIZE + 500L, 0D), new Point(BLOCK_SIZE + 2000L, 42D));
+        backend.compactBlocks(CLOSED).get();
+
+        assertEquals(ImmutableList.of(), fetch(legacy, new DateRange(0L, 2 * BLOCK_SIZE)));
+
+        assertEquals(ImmutableList.of(new Point(BLOCK_SIZE + 500L, 0D),
+            new Point(BLOCK_SIZE + 1000L, 1D), new Point(BLOCK_SIZE + 2000L, 42D)),
+            fetch(backend, new DateRange(0L, 2 * BLOCK_SIZE)));
+    }
+
+    @Test
+    public void testOpenBlocksAreNotCompacted() throws Exception {
+        write(new Point(BLOCK_SIZE + 1000L, 1D));
+
+        backend.compactBlocks(2 * BLOCK_SIZE).get();
+
+        assertEquals(ImmutableList.of(new Point(BLOCK_SIZE + 1000L, 1D)),
+            fetch(legacy, new DateRange(0L, 2 * BLOCK_SIZE)));
+    }
+
+    @Test
+    public void testOrphanedBlocksAreCompacted() throws Exception {
+        // written by a node which goes away before compacting
+        write(new Point(BLOCK_SIZE + 1000L, 1D));
+
+        final BigtableBackend other = backend(true);
+        other.compactBlocks(CLOSED).get();
+
+        assertEquals(ImmutableList.of(), fetch(legacy, new DateRange(0L, 2 * BLOCK_SIZE)));
+        assertEquals(ImmutableList.of(new Point(BLOCK_SIZE + 1000L, 1D)),
+            fetch(other, new DateRange(0L, 2 * BLOCK_SIZE)));
+    }
+
+    @Test
+    public void testRecentBlocksOfOtherNodesAreLeftAlone() throws Exception {
+        now = CLOSED;
+        write(new Point(BLOCK_SIZE + 1000L, 1D));
+
+        backend(true).compactBlocks(CLOSED).get();
+
+        assertEquals(ImmutableList.of(new Point(BLOCK_SIZE + 1000L, 1D)),
+            fetch(legacy, new DateRange(0L, 2 * BLOCK_SIZE)));
+    }
+
+    @Test
+    public void testConcurrentCompaction() throws Exception {
+        write(new Point(BLOCK_SIZE + 1000L, 1D), new Point(BLOCK_SIZE + 2000L, 2D));
+
+        final ByteString rowKey =
+            new MetricsRowKeySerializer().serializeFull(new RowKey(series, 0L));
+        final PointBlock.Encoder encoder = PointBlock.encoder();
+        encoder.add(BLOCK_SIZE + 500L, 0D);
+
+        final BigtableDataClient client = fake.dataClient();
+        final BigtableDataClient racing = mock(BigtableDataClient.class, delegatesTo(client));
+        final AtomicBoolean raced = new AtomicBoolean();
+
+        // another node writes the block right before this one does
+        doAnswer(invocation -> {
+            if (!raced.getAndSet(true)) {
+                client.mutateRow("metrics", rowKey, Mutations
+                    .builder()
+                    .setCell(BLOCKS, serializeOffset(2 * BLOCK_SIZE - 1),
+                        ByteString.copyFrom(encoder.encode()))
+                    .build()).get();
+            }
+
+            final Object[] args = invocation.getArguments();
+            return client.checkAndMutateRow((String) args[0], (ByteString) args[1],
+                (RowFilter) args[2], (Mutations) args[3], (Mutations) args[4]);
+        })
+            .when(racing)
+            .checkAndMutateRow(any(), any(), any(), any(), any());
+        doReturn(racing).when(connection).dataClient();
+
+        backend.compactBlocks(CLOSED).get();
+
+        // the block of the other node is kept, and the raw cells are left for the next run
+        assertEquals(ImmutableList.of(new Point(BLOCK_SIZE + 1000L, 1D),
+            new Point(BLOCK_SIZE + 2000L, 2D)), fetch(legacy, new DateRange(0L, 2 * BLOCK_SIZE)));
+
+        backend.compactBlocks(CLOSED).get();
+
+        assertEquals(ImmutableList.of(), fetch(legacy, new DateRange(0L, 2 * BLOCK_SIZE)));
+        assertEquals(ImmutableList.of(new Point(BLOCK_SIZE + 500L, 0D),
+            new Point(BLOCK_SIZE + 1000L, 1D), new Point(BLOCK_SIZE + 2000L, 2D)),
+            fetch(backend, new DateRange(0L, 2 * BLOCK_SIZE)));
+    }
+
+    @Test
+    public void testPointWrittenDuringCompactionIsKept() throws Exception {
+        now = 1000L;
+        write(new Point(BLOCK_SIZE + 1000L, 1D));
+
+        final BigtableDataClient client = fake.dataClient();
+        final BigtableDataClient racing = mock(BigtableDataClient.class, delegatesTo(client));
+        final AtomicBoolean raced = new AtomicBoolean();
+
+        // the point is written again after it has been read for compaction
+        doAnswer(invocation -> {
+            if (!raced.getAndSet(true)) {
+                now = 2000L;
+                write(new Point(BLOCK_SIZE + 1000L, 42D));
+            }
+
+            final Object[] args = invocation.getArguments();
+            return client.checkAndMutateRow((String) args[0], (ByteString) args[1],
+                (RowFilter) args[2], (Mutations) args[3], (Mutations) args[4]);
+        })
+            .when(racing)
+            .checkAndMutateRow(any(), any(), any(), any(), any());
+        doReturn(racing).when(connection).dataClient();
+
+        backend.compactBlocks(CLOSED).get();
+
+        // only the version which was compacted is deleted
+        assertEquals(ImmutableList.of(new Point(BLOCK_SIZE + 1000L, 42D)),
+            fetch(legacy, new DateRange(0L, 2 * BLOCK_SIZE)));
+        assertEquals(ImmutableList.of(new Point(BLOCK_SIZE + 1000L, 42D)),
+            fetch(backend, new DateRange(0L, 2 * BLOCK_SIZE)));
+
+        backend.compactBlocks(CLOSED).get();
+
+        assertEquals(ImmutableList.of(), fetch(legacy, new DateRange(0L, 2 * BLOCK_SIZE)));
+        assertEquals(ImmutableList.of(new Point(BLOCK_SIZE + 1000L, 42D)),
+            fetch(backend, new DateRange(0L, 2 * BLOCK_SIZE)));
+    }
+
+    @Test
+    public void testPointsAreReadOnce() throws Exception {
+        write(new Point(BLOCK_SIZE + 1000L, 1D));
+        backend.compactBlocks(CLOSED).get();
+
+        // a raw cell which is in a block as well, like one being compacted while it is read
+        write(new Point(BLOCK_SIZE + 1000L, 42D));
+
+        assertEquals(ImmutableList.of(new Point(BLOCK_SIZE + 1000L, 42D)),
+            fetch(backend, new DateRange(0L, 2 * BLOCK_SIZE)));
+    }
+
+    private BigtableBackend backend(final boolean blocks) {
+        return new BigtableBackend(async, TinySerializer.builder().build(),
+            new MetricsRowKeySerializer(), managed, Groups.empty(), "metrics", true, reporter,
+            new ObjectMapper(), scheduler, ImmutableSet.of(), Duration.of(1, TimeUnit.MINUTES),
+            blocks, Duration.of(1, TimeUnit.MINUTES), () -> now);
+    }
+
+    private void write(final Point... points) throws Exception {
+        backend
+            .write(new WriteMetric.Request(series, MetricCollection.points(
+                ImmutableList.copyOf(points))))
+            .get();
+    }
+
+    private List<Metric> fetch(final BigtableBackend backend, final DateRange range)
+        throws Exception {
+        final List<Metric> metrics = new ArrayList<>();
+
+        backend.fetch(
+            new FetchData.Request(MetricType.POINT, series, range, QueryOptions.defaults()),
+            FetchQuotaWatcher.NO_QUOTA,
+            result -> metrics.addAll(result.getMetrics().data())).get();
+
+        metrics.sort(Comparator.comparingLong(Metric::getTimestamp));
+        return metrics;
+    }
+}
@@ -0,0 +1,267 @@
+package com.spotify.heroic.metric.bigtable;
+
+import static org.junit.Assert.assertEquals;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.spotify.heroic.QueryOptions;
+import com.spotify.heroic.common.DateRange;
+import com.spotify.heroic.common.Duration;
+import com.spotify.heroic.common.Groups;
+import com.spotify.heroic.common.Series;
+import com.spotify.heroic.metric.FetchData;
+import com.spotify.heroic.metric.FetchQuotaWatcher;
+import com.spotify.heroic.metric.Metric;
+import com.spotify.heroic.metric.MetricCollection;
+import com.spotify.heroic.metric.MetricType;
+import com.spotify.heroic.metric.Point;
+import com.spotify.heroic.metric.Spread;
+import com.spotify.heroic.metric.WriteMetric;
+import com.spotify.heroic.metric.bigtable.api.BigtableDataClient;
+import com.spotify.heroic.metric.bigtable.api.FakeBigtableConnection;
+import com.spotify.heroic.scheduler.Scheduler;
+import com.spotify.heroic.statistics.MetricBackendReporter;
+import eu.toolchain.async.AsyncFramework;
+import eu.toolchain.async.AsyncFuture;
+import eu.toolchain.async.Managed;
+import eu.toolchain.async.ManagedSetup;
+import eu.toolchain.async.TinyAsync;
+import eu.toolchain.serializer.TinySerializer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class BigtableRollupsTest {
+    private static final long MINUTE = 60000L;
+
+    @Mock
+    private MetricBackendReporter reporter;
+
+    @Mock
+    private Scheduler scheduler;
+
+    private final Series series = Series.of("a", ImmutableMap.of("host", "a"));
+
+    private AsyncFramework async;
+    private FakeBigtableConnection connection;
+    private Managed<BigtableConnection> managed;
+    private BigtableBackend backend;
+
+    /* the current time of the backends */
+    private long now = 10 * MINUTE;
+
+    @Before
+    public void setup() throws Exception {
+        async = TinyAsync.builder().executor(MoreExecutors.newDirectExecutorService()).build();
+        connection = new FakeBigtableConnection(async);
+
+        managed = async.managed(new ManagedSetup<BigtableConnection>() {
+            @Override
+            public AsyncFuture<BigtableConnection> construct() {
+                return async.resolved(connection);
+            }
+
+            @Override
+            public AsyncFuture<Void> destruct(final BigtableConnection value) {
+                return async.resolved();
+            }
+        });
+
+        managed.start().get();
+
+        backend = newBackend();
+        backend.configure().get();
+    }
+
+    private BigtableBackend newBackend() {
+        return new BigtableBackend(async, TinySerializer.builder().build(),
+            new MetricsRowKeySerializer(), managed, Groups.empty(), "metrics", true, reporter,
+            new ObjectMapper(), scheduler, ImmutableSet.of(MINUTE),
+            Duration.of(1, TimeUnit.MINUTES), false, Duration.of(1, TimeUnit.MINUTES),
+            () -> now);
+    }
+
+    @Test
+    public void testRollups() throws Exception {
+        write(new Point(MINUTE, 1D), new Point(MINUTE + 1000L, 3D),
+            new Point(2 * MINUTE - 1L, Double.NaN), new Point(2 * MINUTE, 5D),
+            new Point(3 * MINUTE, 7D));
+
+        backend.flushRollups().get();
+
+        // the first interval is read raw, and the raw point at the end of the range is outside of
+        // the last rollup
+        assertEquals(ImmutableList.of(new Point(MINUTE + 1000L, 3D),
+            new Point(2 * MINUTE - 1L, Double.NaN), new Spread(2 * MINUTE, 1L, 5D, 25D, 5D, 5D)),
+            fetch(new DateRange(MINUTE, 3 * MINUTE), Optional.of(MINUTE)));
+    }
+
+    @Test
+    public void testRangeStartIsExcludedFromRollups() throws Exception {
+        write(new Point(MINUTE, 1D), new Point(2 * MINUTE, 3D), new Point(2 * MINUTE + 1000L, 5D));
+        backend.flushRollups().get();
+
+        // the rollup of the interval at the start of the range includes the point at the start
+        assertEquals(ImmutableList.of(new Point(2 * MINUTE + 1000L, 5D)),
+            fetch(new DateRange(2 * MINUTE, 3 * MINUTE), Optional.empty()));
+        assertEquals(ImmutableList.of(new Point(2 * MINUTE + 1000L, 5D)),
+            fetch(new DateRange(2 * MINUTE, 3 * MINUTE), Optional.of(MINUTE)));
+
+        assertEquals(ImmutableList.of(new Point(2 * MINUTE, 3D), new Point(2 * MINUTE + 1000L, 5D)),
+            fetch(new DateRange(MINUTE, 3 * MINUTE), Optional.empty()));
+        assertEquals(ImmutableList.of(new Spread(2 * MINUTE, 2L, 8D, 34D, 3D, 5D)),
+            fetch(new DateRange(MINUTE, 3 * MINUTE), Optional.of(MINUTE)));
+    }
+
+    @Test
+    public void testRollupsAreRecomputed() throws Exception {
+        write(new Point(2 * MINUTE, 1D));
+        backend.flushRollups().get();
+
+        write(new Point(2 * MINUTE + 1000L, 3D));
+        backend.flushRollups().get();
+
+        assertEquals(ImmutableList.of(new Spread(2 * MINUTE, 2L, 4D, 10D, 1D, 3D)),
+            fetch(new DateRange(MINUTE, 3 * MINUTE), Optional.of(MINUTE)));
+    }
+
+    @Test
+    public void testEmptyRollupsAreDeleted() throws Exception {
+        write(new Point(2 * MINUTE + 1000L, 1D));
+        backend.flushRollups().get();
+
+        write(new Point(2 * MINUTE + 1000L, Double.NaN));
+        backend.flushRollups().get();
+
+        assertEquals(ImmutableList.of(),
+            fetch(new DateRange(MINUTE, 3 * MINUTE), Optional.of(MINUTE)));
+    }
+
+    @Test
+    public void testUnknownRollupFetchesRawData() throws Exception {
+        write(new Point(MINUTE + 1000L, 1D), new Point(MINUTE + 2000L, 3D));
+        backend.flushRollups().get();
+
+        assertEquals(
+            ImmutableList.of(new Point(MINUTE + 1000L, 1D), new Point(MINUTE + 2000L, 3D)),
+            fetch(new DateRange(MINUTE, 2 * MINUTE), Optional.of(10 * MINUTE)));
+    }
+
+    @Test
+    public void testCoverage() throws Exception {
+        // nothing is known before the first flush
+        assertEquals(ImmutableMap.of(), backend.rollups());
+
+        backend.flushRollups().get();
+        assertEquals(ImmutableMap.of(MINUTE, new DateRange(10 * MINUTE, 10 * MINUTE)),
+            backend.rollups());
+
+        write(new Point(11 * MINUTE + 1000L, 1D));
+        now = 13 * MINUTE + 5000L;
+        backend.flushRollups().get();
+        assertEquals(ImmutableMap.of(MINUTE, new DateRange(10 * MINUTE, 13 * MINUTE)),
+            backend.rollups());
+
+        // a late point makes its interval incomplete until the next flush
+        write(new Point(11 * MINUTE + 2000L, 3D));
+        assertEquals(ImmutableMap.of(MINUTE, new DateRange(10 * MINUTE, 11 * MINUTE)),
+            backend.rollups());
+
+        backend.flushRollups().get();
+        assertEquals(ImmutableMap.of(MINUTE, new DateRange(10 * MINUTE, 13 * MINUTE)),
+            backend.rollups());
+        assertEquals(ImmutableList.of(new Spread(11 * MINUTE, 2L, 4D, 10D, 1D, 3D)),
+            fetch(new DateRange(10 * MINUTE, 12 * MINUTE), Optional.of(MINUTE)));
+    }
+
+    @Test
+    public void testOrphanedMarkersAreRecomputed() throws Exception {
+        final BigtableBackend other = newBackend();
+
+        backend.flushRollups().get();
+        now = 11 * MINUTE + 5000L;
+
+        // written by a node which goes away before flushing
+        write(new Point(11 * MINUTE, 1D), new Point(11 * MINUTE + 1000L, 3D));
+
+        now = 12 * MINUTE + 5000L;
+        other.flushRollups().get();
+
+        // the marker is recent, so the other node is expected to flush it
+        assertEquals(ImmutableMap.of(MINUTE, new DateRange(10 * MINUTE, 11 * MINUTE)),
+            other.rollups());
+
+        now = 14 * MINUTE + 5000L;
+        other.flushRollups().get();
+
+        assertEquals(ImmutableMap.of(MINUTE, new DateRange(10 * MINUTE, 14 * MINUTE)),
+            other.rollups());
+
+        backend = other;
+        assertEquals(ImmutableList.of(new Spread(11 * MINUTE, 2L, 4D, 10D, 1D, 3D)),
+            fetch(new DateRange(10 * MINUTE, 12 * MINUTE), Optional.of(MINUTE)));
+    }
+
+    @Test
+    public void testMarkersAreScannedInPages() throws Exception {
+        final BigtableMarkers markers =
+            new BigtableMarkers(new MetricsRowKeySerializer(), "metrics");
+        final BigtableDataClient client = connection.dataClient();
+        final String kind = BigtableBackend.rollupFamily(MINUTE);
+
+        // the backend creates the table
+        backend.flushRollups().get();
+
+        for (final long t : new long[]{3 * MINUTE, MINUTE, 2 * MINUTE}) {
+            markers.mark(client, kind, new BigtableMarkers.Marker(series, t, markers.token(now)));
+        }
+
+        assertEquals(Optional.of(MINUTE), markers.earliest(client, kind).get());
+
+        final BigtableMarkers.Page first = markers.scan(client, kind, Optional.empty(), 2L).get();
+        assertEquals(ImmutableList.of(MINUTE, 2 * MINUTE), times(first));
+        assertEquals(true, first.getNext().isPresent());
+
+        final BigtableMarkers.Page second = markers.scan(client, kind, first.getNext(), 2L).get();
+        assertEquals(ImmutableList.of(3 * MINUTE), times(second));
+        assertEquals(Optional.empty(), second.getNext());
+    }
+
+    private List<Long> times(final BigtableMarkers.Page page) {
+        return page
+            .getMarkers()
+            .stream()
+            .map(BigtableMarkers.Marker::getTimestamp)
+            .collect(Collectors.toList());
+    }
+
+    private void write(final Point... points) throws Exception {
+        backend
+            .write(new WriteMetric.Request(series, MetricCollection.points(
+                ImmutableList.copyOf(points))))
+            .get();
+    }
+
+    private List<Metric> fetch(final DateRange range, final Optional<Long> rollup)
+        throws Exception {
+        final List<Metric> metrics = new ArrayList<>();
+
+        backend.fetch(
+            new FetchData.Request(MetricType.POINT, series, range, QueryOptions.defaults(), rollup),
+            FetchQuotaWatcher.NO_QUOTA,
+            result -> metrics.addAll(result.getMetrics().data())).get();
+
+        return metrics;
+    }
+}
@@ -0,0 +1,126 @@
+package com.spotify.heroic.metric.bigtable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import com.spotify.heroic.metric.Point;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import org.junit.Test;
+
+public class PointBlockTest {
+    @Test
+    public void testEmpty() {
+        final PointBlock.Decoder decoder = decode(PointBlock.encoder());
+
+        assertEquals(0, decoder.size());
+        assertFalse(decoder.next());
+    }
+
+    @Test
+    public void testRoundTrip() {
+        final Random random = new Random(0x1234L);
+
+        final long[] timestamps = new long[1000];
+        final double[] values = new double[timestamps.length];
+
+        long timestamp = 1546300800000L;
+
+        for (int i = 0; i < timestamps.length; i++) {
+            // mostly regular timestamps, with the occasional jitter and gap
+            timestamp += random.nextInt(10) == 0 ? 1 + random.nextInt(1 << 20) : 10000L;
+            timestamps[i] = timestamp;
+            values[i] = random.nextInt(4) == 0 ? random.nextGaussian() : i / 4;
+        }
+
+        final PointBlock.Encoder encoder = PointBlock.encoder();
+
+        for (int i = 0; i < timestamps.length; i++) {
+            encoder.add(timestamps[i], values[i]);
+        }
+
+        final PointBlock.Decoder decoder = decode(encoder);
+        assertEquals(timestamps.length, decoder.size());
+
+        for (int i = 0; i < timestamps.length; i++) {
+            assertTrue(decoder.next());
+            assertEquals(timestamps[i], decoder.timestamp());
+            assertEquals(Double.doubleToRawLongBits(values[i]),
+                Double.doubleToRawLongBits(decoder.value()));
+        }
+
+        assertFalse(decoder.next());
+    }
+
+    @Test
+    public void testSpecialValues() {
+        final double[] values = {
+            0D, -0D, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+            Double.MIN_VALUE, Double.MAX_VALUE, -1D, 1D, 1D
+        };
+
+        final PointBlock.Encoder encoder = PointBlock.encoder();
+
+        for (int i = 0; i < values.length; i++) {
+            encoder.add(Long.MAX_VALUE / 2 + i * (long) Integer.MAX_VALUE, values[i]);
+        }
+
+        final long[] timestamps = new long[values.length];
+        final double[] decoded = new double[values.length];
+
+        assertEquals(values.length, decode(encoder).decode(timestamps, decoded));
+
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(Long.MAX_VALUE / 2 + i * (long) Integer.MAX_VALUE, timestamps[i]);
+            assertEquals(Double.doubleToRawLongBits(values[i]),
+                Double.doubleToRawLongBits(decoded[i]));
+        }
+    }
+
+    @Test
+    public void testCompression() {
+        final PointBlock.Encoder encoder = PointBlock.encoder();
+
+        for (int i = 0; i < 1000; i++) {
+            encoder.add(i * 10000L, 42D);
+        }
+
+        // two bits per point after the first one
+        assertTrue(encoder.encode().length < 300);
+    }
+
+    @Test
+    public void testDecodeAtOffset() {
+        final PointBlock.Encoder first = PointBlock.encoder();
+        first.add(10L, 1D);
+        first.add(20L, 2D);
+
+        final PointBlock.Encoder second = PointBlock.encoder();
+        second.add(30L, 3D);
+
+        final long[] timestamps = new long[3];
+        final double[] values = new double[3];
+
+        int n = decode(first).decode(timestamps, values, 0);
+        n += decode(second).decode(timestamps, values, n);
+
+        final PointBlock.Points points = new PointBlock.Points(timestamps, values, n);
+        assertEquals(ImmutableList.of(new Point(10L, 1D), new Point(20L, 2D), new Point(30L, 3D)),
+            points);
+        assertEquals(30L, points.timestamp(2));
+        assertEquals(3D, points.value(2), 0D);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDecreasingTimestamps() {
+        final PointBlock.Encoder encoder = PointBlock.encoder();
+        encoder.add(10L, 1D);
+        encoder.add(10L, 2D);
+    }
+
+    private PointBlock.Decoder decode(final PointBlock.Encoder encoder) {
+        return PointBlock.decoder(ByteBuffer.wrap(encoder.encode()));
+    }
+}
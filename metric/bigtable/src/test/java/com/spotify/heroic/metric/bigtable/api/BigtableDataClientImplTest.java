@@ -0,0 +1,230 @@
+package com.spotify.heroic.metric.bigtable.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doReturn;
+
+import com.google.cloud.bigtable.grpc.BigtableDataClient;
+import com.google.cloud.bigtable.grpc.BigtableSession;
+import com.google.cloud.bigtable.grpc.scanner.FlatRow;
+import com.google.cloud.bigtable.grpc.scanner.ResultScanner;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.protobuf.ByteString;
+import com.spotify.heroic.async.AsyncObserver;
+import eu.toolchain.async.AsyncFramework;
+import eu.toolchain.async.ResolvableFuture;
+import eu.toolchain.async.TinyAsync;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class BigtableDataClientImplTest {
+    @Mock
+    private BigtableSession session;
+
+    @Mock
+    private BigtableDataClient dataClient;
+
+    @Mock
+    private BigtableMutator mutator;
+
+    private AsyncFramework async;
+    private BigtableDataClientImpl client;
+
+    @Before
+    public void setup() {
+        async = TinyAsync.builder().executor(MoreExecutors.newDirectExecutorService()).build();
+        doReturn(dataClient).when(session).getDataClient();
+        client = new BigtableDataClientImpl(async, session, mutator, "project", "instance",
+            MoreExecutors.newDirectExecutorService());
+    }
+
+    @Test
+    public void testReadRowsObserved() throws Exception {
+        final com.google.bigtable.v2.Row[] rows = new com.google.bigtable.v2.Row[100];
+
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = com.google.bigtable.v2.Row.newBuilder().setKey(key(i)).build();
+        }
+
+        final ListScanner<com.google.bigtable.v2.Row> scanner = new ListScanner<>(rows);
+        doReturn(scanner)
+            .when(dataClient)
+            .readRows(any(com.google.bigtable.v2.ReadRowsRequest.class));
+
+        final List<ByteString> keys = new ArrayList<>();
+        final ResolvableFuture<Void> future = async.future();
+
+        client
+            .readRowsObserved("table", ReadRowsRequest.builder().build())
+            .observe(AsyncObserver.bind(future, row -> {
+                keys.add(row.getKey());
+                return async.resolved();
+            }));
+
+        future.get();
+
+        assertEquals(rows.length, keys.size());
+
+        for (int i = 0; i < rows.length; i++) {
+            assertEquals(key(i), keys.get(i));
+        }
+
+        assertTrue(scanner.closed);
+    }
+
+    @Test
+    public void testReadFlatRowsObservedIsFlowControlled() throws Exception {
+        final FlatRow[] rows = new FlatRow[100];
+
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = FlatRow.newBuilder().withRowKey(key(i)).build();
+        }
+
+        final ListScanner<FlatRow> scanner = new ListScanner<>(rows);
+        doReturn(scanner)
+            .when(dataClient)
+            .readFlatRows(any(com.google.bigtable.v2.ReadRowsRequest.class));
+
+        final List<ByteString> keys = new ArrayList<>();
+        final LinkedList<ResolvableFuture<Void>> pending = new LinkedList<>();
+        final ResolvableFuture<Void> future = async.future();
+
+        client
+            .readFlatRowsObserved("table", ReadRowsRequest.builder().build())
+            .observe(AsyncObserver.bind(future, row -> {
+                keys.add(row.getRowKey());
+                final ResolvableFuture<Void> next = async.future();
+                pending.add(next);
+                return next;
+            }));
+
+        // nothing more is read until the observer has caught up
+        assertEquals(1, keys.size());
+        assertEquals(BigtableDataClientImpl.SCAN_WINDOW, scanner.position);
+
+        while (!pending.isEmpty()) {
+            pending.removeFirst().resolve(null);
+            assertTrue(scanner.position - keys.size() < BigtableDataClientImpl.SCAN_WINDOW);
+        }
+
+        future.get();
+
+        assertEquals(rows.length, keys.size());
+        assertEquals(key(rows.length - 1), keys.get(rows.length - 1));
+        assertTrue(scanner.closed);
+    }
+
+    @Test
+    public void testReadFlatRowsObservedStopsOnFailure() throws Exception {
+        final FlatRow[] rows = new FlatRow[100];
+
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = FlatRow.newBuilder().withRowKey(key(i)).build();
+        }
+
+        final ListScanner<FlatRow> scanner = new ListScanner<>(rows);
+        doReturn(scanner)
+            .when(dataClient)
+            .readFlatRows(any(com.google.bigtable.v2.ReadRowsRequest.class));
+
+        final ResolvableFuture<Void> future = async.future();
+
+        client
+            .readFlatRowsObserved("table", ReadRowsRequest.builder().build())
+            .observe(AsyncObserver.bind(future,
+                row -> async.failed(new IllegalStateException("consumer failed"))));
+
+        assertTrue(future.isFailed());
+        assertFalse(scanner.position > BigtableDataClientImpl.SCAN_WINDOW);
+        assertTrue(scanner.closed);
+    }
+
+    @Test
+    public void testScannersAreReadOnScannerExecutor() throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setNameFormat("scanner").build());
+
+        try {
+            client = new BigtableDataClientImpl(async, session, mutator, "project", "instance",
+                executor);
+
+            final FlatRow[] rows = new FlatRow[100];
+
+            for (int i = 0; i < rows.length; i++) {
+                rows[i] = FlatRow.newBuilder().withRowKey(key(i)).build();
+            }
+
+            final ListScanner<FlatRow> scanner = new ListScanner<>(rows);
+            doReturn(scanner)
+                .when(dataClient)
+                .readFlatRows(any(com.google.bigtable.v2.ReadRowsRequest.class));
+
+            final ResolvableFuture<Void> future = async.future();
+
+            client
+                .readFlatRowsObserved("table", ReadRowsRequest.builder().build())
+                .observe(AsyncObserver.bind(future, row -> async.resolved()));
+
+            future.get();
+
+            assertEquals(ImmutableSet.of("scanner"), scanner.threads);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static ByteString key(final int i) {
+        return ByteString.copyFromUtf8(String.format("row-%03d", i));
+    }
+
+    private static class ListScanner<T> implements ResultScanner<T> {
+        private final T[] values;
+        private int position = 0;
+        private boolean closed = false;
+        private final Set<String> threads = ConcurrentHashMap.newKeySet();
+
+        ListScanner(final T[] values) {
+            this.values = values;
+        }
+
+        @Override
+        public T next() {
+            return position < values.length ? values[position++] : null;
+        }
+
+        @Override
+        public T[] next(final int count) {
+            threads.add(Thread.currentThread().getName());
+            final int end = Math.min(values.length, position + count);
+            final T[] result = Arrays.copyOfRange(values, position, end);
+            position = end;
+            return result;
+        }
+
+        @Override
+        public int available() {
+            return values.length - position;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
@@ -22,7 +22,6 @@
 package com.spotify.heroic.statistics.semantic;
 
 import com.codahale.metrics.Clock;
-import com.codahale.metrics.ExponentiallyDecayingReservoir;
 import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Metric;
 import com.spotify.metrics.core.SemanticMetricBuilder;
@@ -34,9 +33,8 @@ public class HistogramBuilder {
             public Histogram newMetric() {
 
                 return new Histogram(
-                    // A min/max value will stay around for 2 * 30 seconds
-                    new MinMaxSlidingTimeReservoir(Clock.defaultClock(), 2, 30, TimeUnit.SECONDS,
-                        new ExponentiallyDecayingReservoir()));
+                    // Recorded values will stay around for 2 * 30 seconds after being reported
+                    new StripedHistogramReservoir(Clock.defaultClock(), 2, 30, TimeUnit.SECONDS));
             }
 
             public boolean isInstance(Metric metric) {
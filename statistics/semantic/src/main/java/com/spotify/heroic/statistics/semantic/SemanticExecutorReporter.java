@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.statistics.semantic;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.spotify.heroic.statistics.ExecutorReporter;
+import com.spotify.metrics.core.MetricId;
+import com.spotify.metrics.core.SemanticMetricRegistry;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import lombok.ToString;
+
+@ToString(of = {"pool"})
+public class SemanticExecutorReporter implements ExecutorReporter {
+    private static final String COMPONENT = "executor";
+
+    private final String pool;
+    private final Histogram queueWait;
+    private final Meter rejected;
+
+    public SemanticExecutorReporter(
+        final SemanticMetricRegistry registry, final String pool, final Supplier<Long> queueDepth
+    ) {
+        this.pool = pool;
+
+        final MetricId base = MetricId.build().tagged("component", COMPONENT, "pool", pool);
+
+        queueWait =
+            registry.histogram(base.tagged("what", "queue-wait", "unit", Units.MILLISECOND));
+        rejected = registry.meter(base.tagged("what", "rejected", "unit", Units.DROP));
+        registry.register(base.tagged("what", "queue-depth", "unit", Units.COUNT),
+            (Gauge<Long>) queueDepth::get);
+    }
+
+    @Override
+    public void reportQueueWait(final long nanos) {
+        queueWait.update(TimeUnit.NANOSECONDS.toMillis(nanos));
+    }
+
+    @Override
+    public void reportRejected() {
+        rejected.mark();
+    }
+}
@@ -25,6 +25,7 @@ import com.codahale.metrics.Gauge;
 import com.spotify.heroic.statistics.AnalyticsReporter;
 import com.spotify.heroic.statistics.ClusteredManager;
 import com.spotify.heroic.statistics.ConsumerReporter;
+import com.spotify.heroic.statistics.ExecutorReporter;
 import com.spotify.heroic.statistics.HeroicReporter;
 import com.spotify.heroic.statistics.IngestionManagerReporter;
 import com.spotify.heroic.statistics.MemcachedReporter;
@@ -95,6 +96,11 @@ public class SemanticHeroicReporter implements HeroicReporter {
         return new SemanticMemcachedReporter(registry, consumerType);
     }
 
+    @Override
+    public ExecutorReporter newExecutor(final String pool, final Supplier<Long> queueDepth) {
+        return new SemanticExecutorReporter(registry, pool, queueDepth);
+    }
+
     @Override
     public QueryReporter newQueryReporter() {
         return new SemanticQueryReporter(registry);
@@ -26,6 +26,7 @@ import com.codahale.metrics.Histogram;
 import com.google.common.base.Stopwatch;
 import com.spotify.heroic.QueryOptions;
 import com.spotify.heroic.async.AsyncObservable;
+import com.spotify.heroic.common.DateRange;
 import com.spotify.heroic.common.Groups;
 import com.spotify.heroic.common.Statistics;
 import com.spotify.heroic.metric.BackendEntry;
@@ -47,6 +48,7 @@ import eu.toolchain.async.AsyncFuture;
 import io.opencensus.trace.Span;
 import io.opencensus.trace.Tracing;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.LongAccumulator;
@@ -222,6 +224,11 @@ public class SemanticMetricBackendReporter implements MetricBackendReporter {
             return delegate.configure();
         }
 
+        @Override
+        public Map<Long, DateRange> rollups() {
+            return delegate.rollups();
+        }
+
         @Override
         public AsyncFuture<WriteMetric> write(final WriteMetric.Request request) {
             return write(request, Tracing.getTracer().getCurrentSpan());
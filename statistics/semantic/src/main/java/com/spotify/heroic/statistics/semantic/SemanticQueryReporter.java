@@ -23,6 +23,7 @@ package com.spotify.heroic.statistics.semantic;
 
 import com.codahale.metrics.Counter;
 import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
 import com.spotify.heroic.statistics.FutureReporter;
 import com.spotify.heroic.statistics.QueryReporter;
 import com.spotify.metrics.core.MetricId;
@@ -40,6 +41,7 @@ public class SemanticQueryReporter implements QueryReporter {
     private final Histogram queryReadRate;
     private final Counter rpcError;
     private final Counter rpcCancellation;
+    private final Meter coalescedQuery;
 
     public SemanticQueryReporter(final SemanticMetricRegistry registry) {
         final MetricId base = MetricId.build().tagged("component", COMPONENT);
@@ -54,6 +56,8 @@ public class SemanticQueryReporter implements QueryReporter {
         rpcError = registry.counter(base.tagged("what", "cluster-rpc-error", "unit", Units.COUNT));
         rpcCancellation =
             registry.counter(base.tagged("what", "cluster-rpc-cancellation", "unit", Units.COUNT));
+        coalescedQuery =
+            registry.meter(base.tagged("what", "coalesced-query", "unit", Units.QUERY));
     }
 
     @Override
@@ -85,4 +89,9 @@ public class SemanticQueryReporter implements QueryReporter {
     public void reportClusterNodeRpcCancellation() {
         rpcCancellation.inc();
     }
+
+    @Override
+    public void reportCoalescedQuery() {
+        coalescedQuery.mark();
+    }
 }
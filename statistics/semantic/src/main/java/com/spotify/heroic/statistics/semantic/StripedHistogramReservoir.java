@@ -0,0 +1,399 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.statistics.semantic;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Reservoir;
+import com.codahale.metrics.Snapshot;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A reservoir that records values into log-linear histogram buckets.
+ * <p>
+ * Values are recorded into striped interval histograms without taking any locks. When a snapshot
+ * is requested, the interval histograms are swapped out and merged into a harvest which is kept
+ * around for the configured window. Every bucket has a relative error of at most
+ * {@code 1 / SUB_BUCKETS}, the min and max are kept exact.
+ * <p>
+ * Negative values are counted in the lowest bucket, but are still accounted for in min, max and
+ * mean.
+ */
+public class StripedHistogramReservoir implements Reservoir {
+    static final int SUB_BUCKET_BITS = 5;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private static final int MAX_STRIPES = 16;
+
+    private final Clock clock;
+    private final long window;
+    private final AtomicReferenceArray<Stripe> stripes;
+    private final int mask;
+
+    /* harvested intervals, guarded by this */
+    private final ArrayDeque<Harvest> harvests = new ArrayDeque<>();
+    private Interval spare = new Interval();
+
+    /**
+     * Build a new reservoir.
+     *
+     * @param clock Clock to use as a time source
+     * @param size Number of steps that harvested values are kept around for
+     * @param step Length of each step
+     * @param stepUnit Time unit used in 'step'
+     */
+    public StripedHistogramReservoir(
+        final Clock clock, final int size, final long step, final TimeUnit stepUnit
+    ) {
+        this(clock, size, step, stepUnit, Runtime.getRuntime().availableProcessors());
+    }
+
+    StripedHistogramReservoir(
+        final Clock clock, final int size, final long step, final TimeUnit stepUnit,
+        final int concurrency
+    ) {
+        final int count =
+            Math.min(MAX_STRIPES, Integer.highestOneBit(Math.max(1, concurrency) * 2 - 1));
+
+        this.clock = clock;
+        this.window = stepUnit.toNanos(step) * size;
+        this.stripes = new AtomicReferenceArray<>(count);
+        this.mask = count - 1;
+    }
+
+    @Override
+    public int size() {
+        return getSnapshot().size();
+    }
+
+    @Override
+    public void update(final long value) {
+        final Stripe stripe = stripe((int) Thread.currentThread().getId() & mask);
+
+        while (true) {
+            final Interval interval = stripe.active;
+            interval.writers.incrementAndGet();
+
+            // the interval might have been swapped out before we registered as a writer
+            if (interval == stripe.active) {
+                interval.record(value);
+                interval.writers.decrementAndGet();
+                return;
+            }
+
+            interval.writers.decrementAndGet();
+        }
+    }
+
+    @Override
+    public synchronized Snapshot getSnapshot() {
+        final long now = clock.getTick();
+        final Harvest harvest = new Harvest(now);
+
+        for (int i = 0; i < stripes.length(); i++) {
+            final Stripe stripe = stripes.get(i);
+
+            if (stripe == null) {
+                continue;
+            }
+
+            final Interval interval = stripe.active;
+            stripe.active = spare;
+
+            // wait for writers that registered before the swap
+            while (interval.writers.get() != 0) {
+                Thread.yield();
+            }
+
+            harvest.add(interval);
+            interval.reset();
+            spare = interval;
+        }
+
+        if (harvest.count > 0) {
+            harvests.addLast(harvest);
+        }
+
+        final Harvest merged = new Harvest(now);
+        final Iterator<Harvest> it = harvests.iterator();
+
+        while (it.hasNext()) {
+            final Harvest h = it.next();
+
+            if (now - h.tick > window) {
+                it.remove();
+                continue;
+            }
+
+            merged.add(h);
+        }
+
+        return new HistogramSnapshot(merged);
+    }
+
+    private Stripe stripe(final int index) {
+        final Stripe stripe = stripes.get(index);
+
+        if (stripe != null) {
+            return stripe;
+        }
+
+        stripes.compareAndSet(index, null, new Stripe());
+        return stripes.get(index);
+    }
+
+    /**
+     * Index of the bucket that the given value is counted in.
+     */
+    static int index(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) Math.max(0, value);
+        }
+
+        final int shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * Lowest value that is counted in the given bucket.
+     */
+    static long lowerBound(final int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+
+        final int shift = index / SUB_BUCKETS - 1;
+        return (long) (index % SUB_BUCKETS + SUB_BUCKETS) << shift;
+    }
+
+    /**
+     * Value used to represent all values counted in the given bucket.
+     */
+    static long representative(final int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+
+        final int shift = index / SUB_BUCKETS - 1;
+        return lowerBound(index) + ((1L << shift) >>> 1);
+    }
+
+    private static class Stripe {
+        private volatile Interval active = new Interval();
+    }
+
+    /**
+     * Histogram that is concurrently recorded into.
+     */
+    private static class Interval {
+        private final AtomicInteger writers = new AtomicInteger();
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final AtomicLong sum = new AtomicLong();
+        private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+        private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+        private void record(final long value) {
+            counts.incrementAndGet(index(value));
+            sum.addAndGet(value);
+
+            // only contended when a new min or max is seen
+            long current = min.get();
+
+            while (value < current && !min.compareAndSet(current, value)) {
+                current = min.get();
+            }
+
+            current = max.get();
+
+            while (value > current && !max.compareAndSet(current, value)) {
+                current = max.get();
+            }
+        }
+
+        private void reset() {
+            for (int i = 0; i < BUCKETS; i++) {
+                counts.lazySet(i, 0L);
+            }
+
+            sum.lazySet(0L);
+            min.lazySet(Long.MAX_VALUE);
+            max.lazySet(Long.MIN_VALUE);
+        }
+    }
+
+    /**
+     * Histogram that is no longer being recorded into.
+     */
+    private static class Harvest {
+        private final long tick;
+        private final long[] counts = new long[BUCKETS];
+        private long count = 0L;
+        private long sum = 0L;
+        private long min = Long.MAX_VALUE;
+        private long max = Long.MIN_VALUE;
+
+        private Harvest(final long tick) {
+            this.tick = tick;
+        }
+
+        private void add(final Interval interval) {
+            for (int i = 0; i < BUCKETS; i++) {
+                final long c = interval.counts.get(i);
+                counts[i] += c;
+                count += c;
+            }
+
+            sum += interval.sum.get();
+            min = Math.min(min, interval.min.get());
+            max = Math.max(max, interval.max.get());
+        }
+
+        private void add(final Harvest other) {
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] += other.counts[i];
+            }
+
+            count += other.count;
+            sum += other.sum;
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+        }
+    }
+
+    static class HistogramSnapshot extends Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long min;
+        private final long max;
+
+        private HistogramSnapshot(final Harvest harvest) {
+            this.counts = harvest.counts;
+            this.count = harvest.count;
+            this.sum = harvest.sum;
+            this.min = harvest.min;
+            this.max = harvest.max;
+        }
+
+        @Override
+        public double getValue(final double quantile) {
+            if (quantile < 0.0 || quantile > 1.0 || Double.isNaN(quantile)) {
+                throw new IllegalArgumentException(quantile + " is not in [0..1]");
+            }
+
+            if (count == 0) {
+                return 0.0;
+            }
+
+            final long rank = Math.max(1L, (long) Math.ceil(quantile * count));
+            long seen = 0L;
+
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+
+                if (seen >= rank) {
+                    return clamp(representative(i));
+                }
+            }
+
+            return max;
+        }
+
+        @Override
+        public long[] getValues() {
+            final long[] values = new long[BUCKETS];
+            int size = 0;
+
+            for (int i = 0; i < BUCKETS; i++) {
+                if (counts[i] > 0) {
+                    values[size++] = clamp(representative(i));
+                }
+            }
+
+            return Arrays.copyOf(values, size);
+        }
+
+        @Override
+        public int size() {
+            return (int) Math.min(Integer.MAX_VALUE, count);
+        }
+
+        @Override
+        public long getMax() {
+            return count == 0 ? 0L : max;
+        }
+
+        @Override
+        public double getMean() {
+            return count == 0 ? 0.0 : (double) sum / count;
+        }
+
+        @Override
+        public long getMin() {
+            return count == 0 ? 0L : min;
+        }
+
+        @Override
+        public double getStdDev() {
+            if (count <= 1) {
+                return 0.0;
+            }
+
+            final double mean = getMean();
+            double sum = 0.0;
+
+            for (int i = 0; i < BUCKETS; i++) {
+                if (counts[i] > 0) {
+                    final double diff = clamp(representative(i)) - mean;
+                    sum += diff * diff * counts[i];
+                }
+            }
+
+            return Math.sqrt(sum / (count - 1));
+        }
+
+        @Override
+        public void dump(final OutputStream output) {
+            try (PrintWriter out = new PrintWriter(
+                new OutputStreamWriter(output, StandardCharsets.UTF_8))) {
+                for (final long value : getValues()) {
+                    out.printf("%d%n", value);
+                }
+            }
+        }
+
+        private long clamp(final long value) {
+            return Math.max(min, Math.min(max, value));
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.spotify.heroic.statistics.semantic;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.codahale.metrics.Snapshot;
+import com.spotify.heroic.statistics.semantic.MinMaxSlidingTimeReservoirTest.DeterministicClock;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StripedHistogramReservoirTest {
+    private static final int SIZE = 2;
+    private static final long STEP = TimeUnit.NANOSECONDS.convert(1, TimeUnit.SECONDS);
+
+    private final DeterministicClock clock = new DeterministicClock();
+
+    private StripedHistogramReservoir reservoir;
+
+    @Before
+    public void setup() {
+        reservoir = new StripedHistogramReservoir(clock, SIZE, STEP, TimeUnit.NANOSECONDS, 4);
+    }
+
+    @Test
+    public void testBuckets() {
+        for (long value = 0; value < 100_000; value++) {
+            final int index = StripedHistogramReservoir.index(value);
+            final long lower = StripedHistogramReservoir.lowerBound(index);
+
+            assertTrue(lower <= value);
+            assertTrue(StripedHistogramReservoir.lowerBound(index + 1) > value);
+            assertTrue(value - lower <= value / StripedHistogramReservoir.SUB_BUCKETS);
+        }
+
+        assertEquals(StripedHistogramReservoir.BUCKETS - 1,
+            StripedHistogramReservoir.index(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testMinMaxAreExact() {
+        reservoir.update(1_000_001L);
+        reservoir.update(3L);
+        reservoir.update(696L);
+
+        final Snapshot snapshot = reservoir.getSnapshot();
+
+        assertEquals(3, snapshot.size());
+        assertEquals(3L, snapshot.getMin());
+        assertEquals(1_000_001L, snapshot.getMax());
+        assertEquals(1_000_700 / 3.0, snapshot.getMean(), 0.0001);
+        assertEquals(1_000_001L, snapshot.getValue(1.0), 0.0);
+        assertArrayEquals(new long[]{3L, 696L, 1_000_001L}, snapshot.getValues());
+    }
+
+    @Test
+    public void testQuantiles() {
+        for (long value = 1; value <= 10_000; value++) {
+            reservoir.update(value);
+        }
+
+        final Snapshot snapshot = reservoir.getSnapshot();
+
+        assertEquals(10_000, snapshot.size());
+        final int error = StripedHistogramReservoir.SUB_BUCKETS;
+        assertEquals(5_000, snapshot.getMedian(), 5_000.0 / error);
+        assertEquals(9_900, snapshot.getValue(0.99), 9_900.0 / error);
+    }
+
+    @Test
+    public void testWindow() {
+        reservoir.update(200L);
+        reservoir.getSnapshot();
+
+        // harvested values are still around within the window
+        clock.set(STEP * SIZE);
+        reservoir.update(100L);
+
+        Snapshot snapshot = reservoir.getSnapshot();
+        assertEquals(2, snapshot.size());
+        assertEquals(100L, snapshot.getMin());
+        assertEquals(200L, snapshot.getMax());
+
+        // the first harvest is now outside of the window
+        clock.set(STEP * (SIZE + 1));
+        reservoir.update(50L);
+
+        snapshot = reservoir.getSnapshot();
+        assertEquals(2, snapshot.size());
+        assertEquals(50L, snapshot.getMin());
+        assertEquals(100L, snapshot.getMax());
+    }
+
+    @Test
+    public void testEmpty() {
+        final Snapshot snapshot = reservoir.getSnapshot();
+
+        assertEquals(0, snapshot.size());
+        assertEquals(0L, snapshot.getMin());
+        assertEquals(0L, snapshot.getMax());
+        assertEquals(0.0, snapshot.getMedian(), 0.0);
+    }
+
+    @Test
+    public void testConcurrentUpdates() throws Exception {
+        final int threads = 8;
+        final int updates = 100_000;
+
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+        final CountDownLatch done = new CountDownLatch(threads);
+
+        for (int t = 0; t < threads; t++) {
+            pool.execute(() -> {
+                for (long value = 1; value <= updates; value++) {
+                    reservoir.update(value);
+                }
+
+                done.countDown();
+            });
+        }
+
+        // snapshots while updating must not lose any values
+        while (!done.await(1, TimeUnit.MILLISECONDS)) {
+            reservoir.getSnapshot();
+        }
+
+        pool.shutdown();
+
+        final Snapshot snapshot = reservoir.getSnapshot();
+
+        assertEquals(threads * updates, snapshot.size());
+        assertEquals(1L, snapshot.getMin());
+        assertEquals(updates, snapshot.getMax());
+    }
+}
@@ -64,6 +64,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
 import java.util.function.Supplier;
 import javax.inject.Named;
 import lombok.Data;
@@ -214,7 +215,9 @@ public final class ElasticsearchSuggestModule implements SuggestModule, DynamicM
 
         @Provides
         @ElasticsearchScope
-        public RateLimitedCache<Pair<String, HashCode>> writeCache(final HeroicReporter reporter) {
+        public RateLimitedCache<Pair<String, HashCode>> writeCache(
+            final HeroicReporter reporter, final ExecutorService executor
+        ) {
             final Cache<Pair<String, HashCode>, Boolean> cache = CacheBuilder
                 .newBuilder()
                 .concurrencyLevel(writeCacheConcurrency)
@@ -235,7 +238,8 @@ public final class ElasticsearchSuggestModule implements SuggestModule, DynamicM
                   RateLimiter.create(writesPerSecond, rateLimitSlowStartSeconds, SECONDS),
                   MemcachedConnection.create(distributedCacheSrvRecord),
                   toIntExact(Duration.of(writeCacheDurationMinutes, MINUTES).convert(SECONDS)),
-                  reporter.newMemcachedReporter("suggest")
+                  reporter.newMemcachedReporter("suggest"),
+                  executor
                 );
             }
 
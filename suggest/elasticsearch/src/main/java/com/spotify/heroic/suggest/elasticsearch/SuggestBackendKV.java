@@ -565,87 +565,90 @@ public class SuggestBackendKV extends AbstractElasticsearchBackend
 
             final RequestTimer<WriteSuggest> timer = WriteSuggest.timer();
             final List<AsyncFuture<WriteSuggest>> writes = new ArrayList<>();
-            final List<Span> indexSpans = new ArrayList<>();
 
             for (final String index : indices) {
                 final String indexSpanName = rootSpanName + ".index";
-                final Span indexSpan = tracer.spanBuilder(indexSpanName).startSpan();
-                indexSpans.add(indexSpan);
-
-                final Scope indexScope = tracer.withSpan(indexSpan);
+                final Span indexSpan = tracer
+                    .spanBuilderWithExplicitParent(indexSpanName, rootSpan)
+                    .startSpan();
                 indexSpan.putAttribute("index", AttributeValue.stringAttributeValue(index));
 
                 final Pair<String, HashCode> key = Pair.of(index, s.getHashCode());
+                final AsyncFuture<Boolean> acquired =
+                    bind(writeCache.acquireAsync(key, reporter::reportWriteDroppedByCacheHit));
+
+                writes.add(acquired.lazyTransform(permit -> {
+                    if (!permit) {
+                        indexSpan.setStatus(
+                            Status.ALREADY_EXISTS.withDescription("Write dropped by cache hit"));
+                        return async.resolved(WriteSuggest.of());
+                    }
 
-                if (!writeCache.acquire(key, reporter::reportWriteDroppedByCacheHit)) {
-                    indexSpan.setStatus(
-                        Status.ALREADY_EXISTS.withDescription("Write dropped by cache hit"));
-                    indexScope.close();
-                    indexSpan.end();
-                    continue;
-                }
-                indexSpan.addAnnotation("Write cache rate limit acquired");
-
-                final XContentBuilder series = XContentFactory.jsonBuilder();
-
-                series.startObject();
-                buildContext(series, s);
-                series.endObject();
-
-                final Span indexWriteSpan = tracer
-                    .spanBuilderWithExplicitParent(indexSpanName + ".writeIndex", indexSpan)
-                    .startSpan();
-                writes.add(bind(c.index(index, SERIES_TYPE)
-                    .setId(seriesId)
-                    .setSource(series)
-                    .setOpType(DocWriteRequest.OpType.CREATE)
-                    .execute()).directTransform(response -> timer.end())
-                    .onFinished(indexWriteSpan::end));
-
-                for (final Map.Entry<String, String> e : s.getTags().entrySet()) {
-                    final Span tagSpan = tracer
-                        .spanBuilderWithExplicitParent(indexSpanName + ".writeTags", indexSpan)
-                        .startSpan();
-                    tagSpan.putAttribute("index", AttributeValue.stringAttributeValue(index));
-
-                    final XContentBuilder suggest = XContentFactory.jsonBuilder();
-
-                    suggest.startObject();
-                    buildContext(suggest, s);
-                    buildTag(suggest, e);
-                    suggest.endObject();
-
-                    final String suggestId =
-                        seriesId + ":" + Integer.toHexString(e.hashCode());
-                    tagSpan.putAttribute("suggestId",
-                        AttributeValue.stringAttributeValue(suggestId));
-                    final FutureReporter.Context writeContext =
-                        reporter.setupWriteReporter();
-
-                    writes.add(bind(c
-                        .index(index, TAG_TYPE)
-                        .setId(suggestId)
-                        .setSource(suggest)
-                        .setOpType(DocWriteRequest.OpType.CREATE)
-                        .execute())
-                        .directTransform(response -> timer.end())
-                        .catchFailed(handleVersionConflict(WriteSuggest::of,
-                            reporter::reportWriteDroppedByDuplicate))
-                        .onDone(writeContext)
-                        .onFinished(tagSpan::end));
-                }
-
-                indexScope.close();
+                    indexSpan.addAnnotation("Write cache rate limit acquired");
+                    return writeIndex(c, index, s, seriesId, timer, indexSpanName, indexSpan);
+                }).onFinished(indexSpan::end));
             }
 
             rootScope.close();
-            return async.collect(writes, WriteSuggest.reduce()).onFinished(() -> {
-                indexSpans.forEach(Span::end);
-                rootSpan.end();
-            });
+            return async.collect(writes, WriteSuggest.reduce()).onFinished(rootSpan::end);
         });
     }
 
+    private AsyncFuture<WriteSuggest> writeIndex(
+        final Connection c, final String index, final Series s, final String seriesId,
+        final RequestTimer<WriteSuggest> timer, final String indexSpanName, final Span indexSpan
+    ) throws IOException {
+        final List<AsyncFuture<WriteSuggest>> writes = new ArrayList<>();
+
+        final XContentBuilder series = XContentFactory.jsonBuilder();
+
+        series.startObject();
+        buildContext(series, s);
+        series.endObject();
+
+        final Span indexWriteSpan = tracer
+            .spanBuilderWithExplicitParent(indexSpanName + ".writeIndex", indexSpan)
+            .startSpan();
+        writes.add(bind(c.index(index, SERIES_TYPE)
+            .setId(seriesId)
+            .setSource(series)
+            .setOpType(DocWriteRequest.OpType.CREATE)
+            .execute()).directTransform(response -> timer.end())
+            .onFinished(indexWriteSpan::end));
+
+        for (final Map.Entry<String, String> e : s.getTags().entrySet()) {
+            final Span tagSpan = tracer
+                .spanBuilderWithExplicitParent(indexSpanName + ".writeTags", indexSpan)
+                .startSpan();
+            tagSpan.putAttribute("index", AttributeValue.stringAttributeValue(index));
+
+            final XContentBuilder suggest = XContentFactory.jsonBuilder();
+
+            suggest.startObject();
+            buildContext(suggest, s);
+            buildTag(suggest, e);
+            suggest.endObject();
+
+            final String suggestId = seriesId + ":" + Integer.toHexString(e.hashCode());
+            tagSpan.putAttribute("suggestId", AttributeValue.stringAttributeValue(suggestId));
+            final FutureReporter.Context writeContext = reporter.setupWriteReporter();
+
+            writes.add(bind(c
+                .index(index, TAG_TYPE)
+                .setId(suggestId)
+                .setSource(suggest)
+                .setOpType(DocWriteRequest.OpType.CREATE)
+                .execute())
+                .directTransform(response -> timer.end())
+                .catchFailed(handleVersionConflict(WriteSuggest::of,
+                    reporter::reportWriteDroppedByDuplicate))
+                .onDone(writeContext)
+                .onFinished(tagSpan::end));
+        }
+
+        return async.collect(writes, WriteSuggest.reduce());
+    }
+
     @Override
     public Statistics getStatistics() {
         return Statistics.of(WRITE_CACHE_SIZE, writeCache.size());
@@ -662,7 +665,7 @@ public class SuggestBackendKV extends AbstractElasticsearchBackend
     }
 
     private AsyncFuture<Void> stop() {
-        return connection.stop();
+        return connection.stop().onFinished(writeCache::close);
     }
 
     private static BoolQueryBuilder matchTermKey(final String key) {
@@ -29,6 +29,8 @@ import com.spotify.heroic.common.Groups;
 import com.spotify.heroic.common.OptionalLimit;
 import com.spotify.heroic.common.Series;
 import com.spotify.heroic.filter.Filter;
+import com.spotify.heroic.filter.TrueFilter;
+import com.spotify.heroic.suggest.MatchOptions;
 import com.spotify.heroic.suggest.KeySuggest;
 import com.spotify.heroic.suggest.SuggestBackend;
 import com.spotify.heroic.suggest.TagKeyCount;
@@ -40,40 +42,51 @@ import eu.toolchain.async.AsyncFramework;
 import eu.toolchain.async.AsyncFuture;
 import lombok.Data;
 import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
 
 import javax.inject.Inject;
-import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.SortedMap;
 import java.util.SortedSet;
-import java.util.TreeMap;
 import java.util.TreeSet;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 @MemoryScope
 @ToString(of = {})
+@Slf4j
 public class MemoryBackend implements SuggestBackend, Grouped {
     private static final float SCORE = 1.0f;
 
-    private final SortedMap<String, Set<String>> keys = new TreeMap<>();
-    private final SortedMap<String, Set<TagId>> tagKeys = new TreeMap<>();
-    private final SortedMap<String, Set<TagId>> tagValues = new TreeMap<>();
+    /**
+     * Number of pending terms after which an index merges them into its immutable segment.
+     */
+    static final int MERGE_THRESHOLD = 4096;
 
-    private final HashMap<String, KeyDocument> keyIndex = new HashMap<>();
-    private final HashMap<TagId, TagDocument> tagIndex = new HashMap<>();
-    private final SortedSet<Series> series = new TreeSet<>();
+    private final PrefixIndex<String> keys;
+    private final PrefixIndex<TagId> tagKeys;
+    private final PrefixIndex<TagId> tagValues;
 
-    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ConcurrentMap<String, KeyDocument> keyIndex = new ConcurrentHashMap<>();
+    private final ConcurrentMap<TagId, TagDocument> tagIndex = new ConcurrentHashMap<>();
+    private final SortedSet<Series> series = new ConcurrentSkipListSet<>();
+
+    /**
+     * Distinct values seen for every tag key, to answer unfiltered aggregations without scanning.
+     */
+    private final ConcurrentMap<String, SortedSet<String>> tagKeyValues =
+        new ConcurrentHashMap<>();
 
     private final Groups groups;
     private final AsyncFramework async;
@@ -82,6 +95,23 @@ public class MemoryBackend implements SuggestBackend, Grouped {
     public MemoryBackend(final Groups groups, final AsyncFramework async) {
         this.groups = groups;
         this.async = async;
+
+        // merges which are rejected by the async executor are run by the writer instead
+        final Executor merges = task -> async.call(() -> {
+            task.run();
+            return null;
+        }).onFailed(e -> {
+            if (e instanceof RejectedExecutionException) {
+                task.run();
+                return;
+            }
+
+            log.error("Failed to merge suggest index", e);
+        });
+
+        this.keys = new PrefixIndex<>(MERGE_THRESHOLD, merges);
+        this.tagKeys = new PrefixIndex<>(MERGE_THRESHOLD, merges);
+        this.tagValues = new PrefixIndex<>(MERGE_THRESHOLD, merges);
     }
 
     @Override
@@ -91,34 +121,52 @@ public class MemoryBackend implements SuggestBackend, Grouped {
 
     @Override
     public AsyncFuture<TagValuesSuggest> tagValuesSuggest(TagValuesSuggest.Request request) {
-        final Map<String, Set<String>> counts = new HashMap<>();
-
         final OptionalLimit groupLimit = request.getGroupLimit();
+        final Set<String> exclude = ImmutableSet.copyOf(request.getExclude());
+
+        if (request.getFilter() instanceof TrueFilter) {
+            final List<TagValuesSuggest.Suggestion> suggestions = ImmutableList.copyOf(request
+                .getLimit()
+                .limitStream(tagKeyValues
+                    .entrySet()
+                    .stream()
+                    .filter(e -> !exclude.contains(e.getKey())))
+                .map(e -> new TagValuesSuggest.Suggestion(e.getKey(),
+                    ImmutableSortedSet.copyOf(groupLimit.limitSortedSet(e.getValue())),
+                    groupLimit.isGreater(e.getValue().size())))
+                .iterator());
+
+            return async.resolved(TagValuesSuggest.of(suggestions, false));
+        }
+
+        final Map<String, TreeSet<String>> values = new HashMap<>();
 
         try (final Stream<Series> series = lookupSeries(request.getFilter())) {
             series.forEach(s -> {
                 for (final Map.Entry<String, String> e : s.getTags().entrySet()) {
-                    Set<String> c = counts.get(e.getKey());
-
-                    if (c == null) {
-                        c = new HashSet<>();
-                        counts.put(e.getKey(), c);
-                    }
-
-                    if (groupLimit.isGreaterOrEqual(c.size())) {
+                    if (exclude.contains(e.getKey())) {
                         continue;
                     }
 
+                    final TreeSet<String> c =
+                        values.computeIfAbsent(e.getKey(), k -> new TreeSet<>());
+
                     c.add(e.getValue());
+
+                    // keep one value past the limit, to tell if the values were limited
+                    if (groupLimit.isGreater(c.size() - 1)) {
+                        c.pollLast();
+                    }
                 }
             });
         }
 
         final List<TagValuesSuggest.Suggestion> suggestions = ImmutableList.copyOf(request
             .getLimit()
-            .limitStream(counts.entrySet().stream())
+            .limitStream(values.entrySet().stream())
             .map(e -> new TagValuesSuggest.Suggestion(e.getKey(),
-                ImmutableSortedSet.copyOf(e.getValue()), false))
+                ImmutableSortedSet.copyOf(groupLimit.limitSortedSet(e.getValue())),
+                groupLimit.isGreater(e.getValue().size())))
             .iterator());
 
         return async.resolved(TagValuesSuggest.of(suggestions, false));
@@ -126,6 +174,17 @@ public class MemoryBackend implements SuggestBackend, Grouped {
 
     @Override
     public AsyncFuture<TagKeyCount> tagKeyCount(final TagKeyCount.Request request) {
+        if (request.getFilter() instanceof TrueFilter) {
+            final List<TagKeyCount.Suggestion> suggestions = ImmutableList.copyOf(request
+                .getLimit()
+                .limitStream(tagKeyValues.entrySet().stream())
+                .map(e -> new TagKeyCount.Suggestion(e.getKey(), (long) e.getValue().size(),
+                    Optional.empty()))
+                .iterator());
+
+            return async.resolved(TagKeyCount.of(suggestions, false));
+        }
+
         final Map<String, Set<String>> counts = new HashMap<>();
 
         try (final Stream<Series> series = lookupSeries(request.getFilter())) {
@@ -155,17 +214,22 @@ public class MemoryBackend implements SuggestBackend, Grouped {
 
     @Override
     public AsyncFuture<TagSuggest> tagSuggest(final TagSuggest.Request request) {
-        final Optional<Set<String>> keys = request.getKey().map(MemoryBackend::analyze);
-        final Optional<Set<String>> values = request.getValue().map(MemoryBackend::analyze);
+        final MatchOptions options = request.getOptions();
 
-        try (final Stream<TagDocument> docs = lookupTags(request.getFilter())) {
-            final Set<TagId> ids = docs.map(TagDocument::getId).collect(Collectors.toSet());
+        final Optional<Set<TagId>> byKey = request
+            .getKey()
+            .map(MemoryBackend::analyze)
+            .filter(tokens -> !tokens.isEmpty())
+            .map(tokens -> match(tagKeys, tokens, options));
 
-            keys.ifPresent(parts -> parts.forEach(
-                k -> ids.retainAll(tagKeys.getOrDefault(k, ImmutableSet.of()))));
+        final Optional<Set<TagId>> byValue = request
+            .getValue()
+            .map(MemoryBackend::analyze)
+            .filter(tokens -> !tokens.isEmpty())
+            .map(tokens -> match(tagValues, tokens, options));
 
-            values.ifPresent(parts -> parts.forEach(
-                k -> ids.retainAll(tagValues.getOrDefault(k, ImmutableSet.of()))));
+        try (final Stream<TagDocument> docs = lookupTags(request.getFilter(), byKey, byValue)) {
+            final Set<TagId> ids = docs.map(TagDocument::getId).collect(Collectors.toSet());
 
             final List<TagSuggest.Suggestion> suggestions = ImmutableList.copyOf(
                 ImmutableSortedSet.copyOf(request
@@ -182,15 +246,16 @@ public class MemoryBackend implements SuggestBackend, Grouped {
 
     @Override
     public AsyncFuture<KeySuggest> keySuggest(final KeySuggest.Request request) {
-        final Optional<Set<String>> analyzedKeys = request.getKey().map(MemoryBackend::analyze);
+        final Optional<Set<String>> byKey = request
+            .getKey()
+            .map(MemoryBackend::analyze)
+            .filter(tokens -> !tokens.isEmpty())
+            .map(tokens -> match(keys, tokens, request.getOptions()));
 
         final Set<String> ids;
 
-        try (final Stream<KeyDocument> docs = lookupKeys(request.getFilter())) {
+        try (final Stream<KeyDocument> docs = lookupKeys(request.getFilter(), byKey)) {
             ids = docs.map(KeyDocument::getId).collect(Collectors.toSet());
-
-            analyzedKeys.ifPresent(parts -> parts.forEach(
-                k -> ids.retainAll(keys.getOrDefault(k, ImmutableSet.of()))));
         }
 
         final List<KeySuggest.Suggestion> suggestions = ImmutableList.copyOf(request
@@ -222,50 +287,66 @@ public class MemoryBackend implements SuggestBackend, Grouped {
     public AsyncFuture<WriteSuggest> write(final WriteSuggest.Request request) {
         final Series s = request.getSeries();
 
-        final Lock l = lock.writeLock();
-
-        l.lock();
-
-        try {
-            series.add(s);
+        if (!series.add(s)) {
+            return async.resolved(WriteSuggest.of());
+        }
 
-            keyIndex.put(s.getKey(), new KeyDocument(s.getKey(), s));
+        keyIndex.put(s.getKey(), new KeyDocument(s.getKey(), s));
 
-            for (final String t : analyze(s.getKey())) {
-                putEntry(keys, t, s.getKey());
-            }
+        for (final String t : analyze(s.getKey())) {
+            keys.add(t, s.getKey());
+        }
 
-            for (final Map.Entry<String, String> tag : s.getTags().entrySet()) {
-                final TagId id = new TagId(tag.getKey(), tag.getValue());
+        for (final Map.Entry<String, String> tag : s.getTags().entrySet()) {
+            final TagId id = new TagId(tag.getKey(), tag.getValue());
 
-                tagIndex.put(id, new TagDocument(id, s));
+            tagIndex.put(id, new TagDocument(id, s));
 
-                for (final String t : analyze(tag.getKey())) {
-                    putEntry(tagKeys, t, id);
-                }
+            tagKeyValues
+                .computeIfAbsent(tag.getKey(), k -> new ConcurrentSkipListSet<>())
+                .add(tag.getValue());
 
-                for (final String t : analyze(tag.getValue())) {
-                    putEntry(tagValues, t, id);
-                }
+            for (final String t : analyze(tag.getKey())) {
+                tagKeys.add(t, id);
             }
 
-            return async.resolved(WriteSuggest.of());
-        } finally {
-            l.unlock();
+            for (final String t : analyze(tag.getValue())) {
+                tagValues.add(t, id);
+            }
         }
+
+        return async.resolved(WriteSuggest.of());
     }
 
-    private <K, V> void putEntry(
-        final SortedMap<K, Set<V>> index, final K key, final V value
+    /**
+     * Match every analyzed token against the index, and intersect the results. Expects at least
+     * one token.
+     * <p>
+     * Tokens match as prefixes of indexed terms, and optionally fuzzily as configured by the
+     * match options.
+     */
+    static <V> Set<V> match(
+        final PrefixIndex<V> index, final Set<String> tokens, final MatchOptions options
     ) {
-        Set<V> store = index.get(key);
+        final Iterator<String> it = tokens.iterator();
+        final Set<V> result = match(index, it.next(), options);
 
-        if (store == null) {
-            store = new HashSet<>();
-            index.put(key, store);
+        while (it.hasNext() && !result.isEmpty()) {
+            result.retainAll(match(index, it.next(), options));
         }
 
-        store.add(value);
+        return result;
+    }
+
+    private static <V> Set<V> match(
+        final PrefixIndex<V> index, final String token, final MatchOptions options
+    ) {
+        if (options.isFuzzy()) {
+            return index.fuzzy(token, options.getFuzzyPrefixLength(),
+                options.getFuzzyMaxExpansions());
+        }
+
+        return index.prefix(token);
     }
 
     @Override
@@ -296,38 +377,47 @@ public class MemoryBackend implements SuggestBackend, Grouped {
             }
 
             output.add(l);
-            output.addAll(prefix(l));
         }
 
         return output;
     }
 
-    private static Collection<String> prefix(final String input) {
-        final Set<String> prefixes = new HashSet<>(36);
-
-        for (int i = 1; i < Math.min(input.length(), 20); i++) {
-            prefixes.add(input.substring(0, i));
-        }
+    private Stream<KeyDocument> lookupKeys(
+        final Filter filter, final Optional<Set<String>> candidates
+    ) {
+        final Stream<KeyDocument> docs = candidates
+            .map(ids -> ids.stream().map(keyIndex::get).filter(d -> d != null))
+            .orElseGet(() -> keyIndex.values().stream());
 
-        return prefixes;
+        return docs.filter(e -> filter.apply(e.series));
     }
 
-    private Stream<KeyDocument> lookupKeys(final Filter filter) {
-        final Lock l = lock.readLock();
-        l.lock();
-        return keyIndex.values().stream().filter(e -> filter.apply(e.series)).onClose(l::unlock);
+    private Stream<TagDocument> lookupTags(final Filter filter) {
+        return lookupTags(filter, Optional.empty(), Optional.empty());
     }
 
-    private Stream<TagDocument> lookupTags(final Filter filter) {
-        final Lock l = lock.readLock();
-        l.lock();
-        return tagIndex.values().stream().filter(e -> filter.apply(e.series)).onClose(l::unlock);
+    private Stream<TagDocument> lookupTags(
+        final Filter filter, final Optional<Set<TagId>> byKey, final Optional<Set<TagId>> byValue
+    ) {
+        final Optional<Set<TagId>> candidates;
+
+        if (byKey.isPresent() && byValue.isPresent()) {
+            final Set<TagId> both = new HashSet<>(byKey.get());
+            both.retainAll(byValue.get());
+            candidates = Optional.of(both);
+        } else {
+            candidates = byKey.isPresent() ? byKey : byValue;
+        }
+
+        final Stream<TagDocument> docs = candidates
+            .map(ids -> ids.stream().map(tagIndex::get).filter(d -> d != null))
+            .orElseGet(() -> tagIndex.values().stream());
+
+        return docs.filter(e -> filter.apply(e.series));
     }
 
     private Stream<Series> lookupSeries(final Filter filter) {
-        final Lock l = lock.readLock();
-        l.lock();
-        return series.stream().filter(filter::apply).onClose(l::unlock);
+        return series.stream().filter(filter::apply);
     }
 
     @Data
@@ -0,0 +1,494 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.suggest.memory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A concurrent term index supporting prefix and fuzzy prefix lookups.
+ * <p>
+ * Terms live in an immutable segment (sorted terms with an array-encoded trie on top) and a small
+ * mutable delta. Once the delta grows past a threshold it is frozen and merged into a new segment
+ * on the given executor, after which the segment is swapped in atomically.
+ * <p>
+ * Readers never lock, they read a consistent snapshot of the current state. Writers are serialized
+ * against each other so that no write can land in a delta which is already being merged.
+ *
+ * @param <V> type of the values associated with each term
+ */
+class PrefixIndex<V> {
+    private final int mergeThreshold;
+    private final Executor executor;
+
+    private final Object writeLock = new Object();
+    private final AtomicReference<State<V>> state;
+
+    PrefixIndex(final int mergeThreshold, final Executor executor) {
+        this.mergeThreshold = mergeThreshold;
+        this.executor = executor;
+        this.state = new AtomicReference<>(
+            new State<>(Segment.empty(), Collections.emptyNavigableMap(),
+                new ConcurrentSkipListMap<>()));
+    }
+
+    /**
+     * Associate the given value with a term.
+     */
+    void add(final String term, final V value) {
+        final State<V> frozen;
+
+        synchronized (writeLock) {
+            final State<V> s = state.get();
+            s.delta.computeIfAbsent(term, t -> ConcurrentHashMap.newKeySet()).add(value);
+
+            if (!s.frozen.isEmpty() || s.delta.size() < mergeThreshold) {
+                return;
+            }
+
+            frozen = new State<>(s.segment, s.delta, new ConcurrentSkipListMap<>());
+            state.set(frozen);
+        }
+
+        try {
+            executor.execute(() -> merge(frozen));
+        } catch (final RejectedExecutionException e) {
+            merge(frozen);
+        }
+    }
+
+    /**
+     * Merge any pending terms into the segment immediately.
+     */
+    void flush() {
+        final State<V> frozen;
+
+        synchronized (writeLock) {
+            final State<V> s = state.get();
+
+            if (!s.frozen.isEmpty() || s.delta.isEmpty()) {
+                return;
+            }
+
+            frozen = new State<>(s.segment, s.delta, new ConcurrentSkipListMap<>());
+            state.set(frozen);
+        }
+
+        merge(frozen);
+    }
+
+    /**
+     * Get all values associated with terms starting with the given prefix.
+     */
+    Set<V> prefix(final String prefix) {
+        final State<V> s = state.get();
+        final Set<V> result = new HashSet<>();
+
+        final int node = s.segment.find(prefix);
+
+        if (node >= 0) {
+            s.segment.collect(s.segment.start[node], s.segment.end[node], result);
+        }
+
+        prefixDelta(s.frozen, prefix, result);
+        prefixDelta(s.delta, prefix, result);
+        return result;
+    }
+
+    /**
+     * Get all values associated with terms that have a prefix within a bounded edit distance of
+     * the given term.
+     * <p>
+     * The allowed distance depends on the length of the term, short terms have to match exactly.
+     *
+     * @param term term to match
+     * @param prefixLength number of leading characters which must match exactly
+     * @param maxExpansions maximum number of distinct terms to expand the match to
+     */
+    Set<V> fuzzy(final String term, final int prefixLength, final int maxExpansions) {
+        final State<V> s = state.get();
+        final Set<V> result = new HashSet<>();
+
+        final int exact = Math.min(Math.max(prefixLength, 0), term.length());
+        final String head = term.substring(0, exact);
+        final char[] tail = term.substring(exact).toCharArray();
+        final int distance = distance(term.length());
+
+        final int[] budget = {maxExpansions};
+
+        final int node = s.segment.find(head);
+
+        if (node >= 0) {
+            final int[] row = new int[tail.length + 1];
+
+            for (int i = 0; i < row.length; i++) {
+                row[i] = i;
+            }
+
+            s.segment.fuzzy(node, tail, row, distance, budget, result);
+        }
+
+        fuzzyDelta(s.frozen, head, tail, distance, budget, result);
+        fuzzyDelta(s.delta, head, tail, distance, budget, result);
+        return result;
+    }
+
+    /**
+     * Number of distinct terms in the segment, which may include terms also pending in the delta.
+     */
+    int segmentSize() {
+        return state.get().segment.terms.length;
+    }
+
+    /**
+     * Number of terms pending a merge.
+     */
+    int pendingSize() {
+        final State<V> s = state.get();
+        return s.frozen.size() + s.delta.size();
+    }
+
+    static int distance(final int length) {
+        if (length <= 2) {
+            return 0;
+        }
+
+        if (length <= 5) {
+            return 1;
+        }
+
+        return 2;
+    }
+
+    /**
+     * Merge the frozen terms into a new segment.
+     * <p>
+     * The frozen terms are always cleared, so that later merges are not blocked. If the merge
+     * fails they are moved back into the delta, to be merged with it the next time.
+     */
+    private void merge(final State<V> frozen) {
+        Segment<V> segment = null;
+
+        try {
+            segment = Segment.merge(frozen.segment, frozen.frozen);
+        } finally {
+            synchronized (writeLock) {
+                final State<V> s = state.get();
+
+                if (segment == null) {
+                    frozen.frozen.forEach((term, values) -> s.delta
+                        .computeIfAbsent(term, t -> ConcurrentHashMap.newKeySet())
+                        .addAll(values));
+                    segment = s.segment;
+                }
+
+                state.set(new State<>(segment, Collections.emptyNavigableMap(), s.delta));
+            }
+        }
+    }
+
+    private void prefixDelta(
+        final NavigableMap<String, Set<V>> delta, final String prefix, final Set<V> result
+    ) {
+        for (final Map.Entry<String, Set<V>> e : delta.tailMap(prefix, true).entrySet()) {
+            if (!e.getKey().startsWith(prefix)) {
+                break;
+            }
+
+            result.addAll(e.getValue());
+        }
+    }
+
+    private void fuzzyDelta(
+        final NavigableMap<String, Set<V>> delta, final String head, final char[] tail,
+        final int distance, final int[] budget, final Set<V> result
+    ) {
+        for (final Map.Entry<String, Set<V>> e : delta.tailMap(head, true).entrySet()) {
+            if (budget[0] <= 0 || !e.getKey().startsWith(head)) {
+                break;
+            }
+
+            if (fuzzyPrefix(e.getKey(), head.length(), tail, distance)) {
+                budget[0]--;
+                result.addAll(e.getValue());
+            }
+        }
+    }
+
+    /**
+     * Check if any prefix of {@code term} starting at {@code offset} is within the given edit
+     * distance of {@code tail}.
+     */
+    static boolean fuzzyPrefix(
+        final String term, final int offset, final char[] tail, final int distance
+    ) {
+        int[] row = new int[tail.length + 1];
+
+        for (int i = 0; i < row.length; i++) {
+            row[i] = i;
+        }
+
+        if (row[tail.length] <= distance) {
+            return true;
+        }
+
+        for (int i = offset; i < term.length(); i++) {
+            row = step(row, term.charAt(i), tail);
+
+            if (row[tail.length] <= distance) {
+                return true;
+            }
+
+            if (min(row) > distance) {
+                return false;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Compute the next row of the Levenshtein matrix after consuming character {@code c}.
+     */
+    static int[] step(final int[] previous, final char c, final char[] tail) {
+        final int[] row = new int[previous.length];
+        row[0] = previous[0] + 1;
+
+        for (int j = 1; j < row.length; j++) {
+            final int substitute = previous[j - 1] + (tail[j - 1] == c ? 0 : 1);
+            row[j] = Math.min(Math.min(previous[j] + 1, row[j - 1] + 1), substitute);
+        }
+
+        return row;
+    }
+
+    private static int min(final int[] row) {
+        int min = Integer.MAX_VALUE;
+
+        for (final int v : row) {
+            min = Math.min(min, v);
+        }
+
+        return min;
+    }
+
+    private static class State<V> {
+        private final Segment<V> segment;
+        private final NavigableMap<String, Set<V>> frozen;
+        private final ConcurrentSkipListMap<String, Set<V>> delta;
+
+        private State(
+            final Segment<V> segment, final NavigableMap<String, Set<V>> frozen,
+            final ConcurrentSkipListMap<String, Set<V>> delta
+        ) {
+            this.segment = segment;
+            this.frozen = frozen;
+            this.delta = delta;
+        }
+    }
+
+    /**
+     * An immutable set of sorted terms, with a trie where every node covers a contiguous range of
+     * terms sharing the prefix spelled out by the path to it. Node 0 is the root.
+     */
+    static class Segment<V> {
+        private final String[] terms;
+        private final List<Set<V>> postings;
+
+        private int nodes = 0;
+        private char[] label;
+        private int[] firstChild;
+        private int[] nextSibling;
+        private int[] start;
+        private int[] end;
+
+        private Segment(final String[] terms, final List<Set<V>> postings) {
+            this.terms = terms;
+            this.postings = postings;
+
+            final int capacity = Math.max(16, terms.length * 2);
+            this.label = new char[capacity];
+            this.firstChild = new int[capacity];
+            this.nextSibling = new int[capacity];
+            this.start = new int[capacity];
+            this.end = new int[capacity];
+
+            children(allocate('\0', 0, terms.length), 0);
+            trim();
+        }
+
+        static <V> Segment<V> empty() {
+            return new Segment<>(new String[0], Collections.emptyList());
+        }
+
+        static <V> Segment<V> merge(
+            final Segment<V> segment, final NavigableMap<String, Set<V>> delta
+        ) {
+            final TreeMap<String, Set<V>> merged = new TreeMap<>();
+
+            for (int i = 0; i < segment.terms.length; i++) {
+                merged.put(segment.terms[i], segment.postings.get(i));
+            }
+
+            for (final Map.Entry<String, Set<V>> e : delta.entrySet()) {
+                final Set<V> existing = merged.get(e.getKey());
+
+                if (existing == null) {
+                    merged.put(e.getKey(),
+                        Collections.unmodifiableSet(new HashSet<>(e.getValue())));
+                    continue;
+                }
+
+                final Set<V> union = new HashSet<>(existing);
+                union.addAll(e.getValue());
+                merged.put(e.getKey(), Collections.unmodifiableSet(union));
+            }
+
+            return new Segment<>(merged.keySet().toArray(new String[0]),
+                new ArrayList<>(merged.values()));
+        }
+
+        /**
+         * Find the node matching the given prefix.
+         *
+         * @return the node, or {@code -1} if no term starts with the prefix
+         */
+        int find(final String prefix) {
+            int node = 0;
+
+            for (int i = 0; i < prefix.length() && node >= 0; i++) {
+                final char c = prefix.charAt(i);
+                int child = firstChild[node];
+
+                while (child >= 0 && label[child] != c) {
+                    child = nextSibling[child];
+                }
+
+                node = child;
+            }
+
+            return node;
+        }
+
+        void collect(final int from, final int to, final Set<V> result) {
+            for (int i = from; i < to; i++) {
+                result.addAll(postings.get(i));
+            }
+        }
+
+        void fuzzy(
+            final int node, final char[] tail, final int[] row, final int distance,
+            final int[] budget, final Set<V> result
+        ) {
+            if (budget[0] <= 0) {
+                return;
+            }
+
+            if (row[tail.length] <= distance) {
+                final int to = Math.min(end[node], start[node] + budget[0]);
+                budget[0] -= to - start[node];
+                collect(start[node], to, result);
+                return;
+            }
+
+            if (min(row) > distance) {
+                return;
+            }
+
+            for (int child = firstChild[node]; child >= 0; child = nextSibling[child]) {
+                fuzzy(child, tail, step(row, label[child], tail), distance, budget, result);
+            }
+        }
+
+        private void children(final int parent, final int depth) {
+            final int to = end[parent];
+            int i = start[parent];
+
+            /* a term ending at this node sorts before every longer term sharing its prefix */
+            if (i < to && terms[i].length() == depth) {
+                i++;
+            }
+
+            int previous = -1;
+
+            while (i < to) {
+                final char c = terms[i].charAt(depth);
+                int j = i + 1;
+
+                while (j < to && terms[j].charAt(depth) == c) {
+                    j++;
+                }
+
+                final int child = allocate(c, i, j);
+
+                if (previous < 0) {
+                    firstChild[parent] = child;
+                } else {
+                    nextSibling[previous] = child;
+                }
+
+                previous = child;
+                children(child, depth + 1);
+                i = j;
+            }
+        }
+
+        private int allocate(final char c, final int from, final int to) {
+            if (nodes == label.length) {
+                final int capacity = nodes * 2;
+                label = Arrays.copyOf(label, capacity);
+                firstChild = Arrays.copyOf(firstChild, capacity);
+                nextSibling = Arrays.copyOf(nextSibling, capacity);
+                start = Arrays.copyOf(start, capacity);
+                end = Arrays.copyOf(end, capacity);
+            }
+
+            final int node = nodes++;
+            label[node] = c;
+            firstChild[node] = -1;
+            nextSibling[node] = -1;
+            start[node] = from;
+            end[node] = to;
+            return node;
+        }
+
+        private void trim() {
+            label = Arrays.copyOf(label, nodes);
+            firstChild = Arrays.copyOf(firstChild, nodes);
+            nextSibling = Arrays.copyOf(nextSibling, nodes);
+            start = Arrays.copyOf(start, nodes);
+            end = Arrays.copyOf(end, nodes);
+        }
+    }
+}
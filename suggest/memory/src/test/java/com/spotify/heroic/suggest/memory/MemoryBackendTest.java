@@ -1,6 +1,21 @@
 package com.spotify.heroic.suggest.memory;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.spotify.heroic.common.DateRange;
+import com.spotify.heroic.common.Groups;
+import com.spotify.heroic.common.OptionalLimit;
+import com.spotify.heroic.common.Series;
+import com.spotify.heroic.filter.Filter;
+import com.spotify.heroic.filter.MatchKeyFilter;
+import com.spotify.heroic.filter.TrueFilter;
+import com.spotify.heroic.suggest.TagValuesSuggest;
+import com.spotify.heroic.suggest.WriteSuggest;
+import eu.toolchain.async.AsyncFramework;
+import eu.toolchain.async.TinyAsync;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
@@ -8,10 +23,37 @@ import static org.junit.Assert.assertEquals;
 public class MemoryBackendTest {
     @Test
     public void testAnalyze() {
-        assertEquals(
-            ImmutableSet.of("w", "wo", "wor", "worl", "world", "h", "he", "hel", "hell", "hello"),
-            MemoryBackend.analyze("HelloWorld"));
+        assertEquals(ImmutableSet.of("world", "hello"), MemoryBackend.analyze("HelloWorld"));
 
         assertEquals(ImmutableSet.of("a", "b"), MemoryBackend.analyze("a-b"));
     }
+
+    @Test
+    public void testTagValuesSuggestIsConsistent() throws Exception {
+        final AsyncFramework async =
+            TinyAsync.builder().executor(MoreExecutors.newDirectExecutorService()).build();
+        final MemoryBackend backend = new MemoryBackend(Groups.empty(), async);
+
+        for (final String host : ImmutableList.of("c", "a", "b")) {
+            backend
+                .write(new WriteSuggest.Request(
+                    Series.of("cpu", ImmutableMap.of("host", host, "role", "web")),
+                    new DateRange(0L, 0L)))
+                .get();
+        }
+
+        final ImmutableList<TagValuesSuggest.Suggestion> expected = ImmutableList.of(
+            new TagValuesSuggest.Suggestion("host", ImmutableSortedSet.of("a", "b"), true));
+
+        // the unfiltered and the filtered path give the same answer
+        for (final Filter filter : ImmutableList.of(TrueFilter.get(),
+            MatchKeyFilter.create("cpu"))) {
+            final TagValuesSuggest result = backend
+                .tagValuesSuggest(new TagValuesSuggest.Request(filter, new DateRange(0L, 0L),
+                    OptionalLimit.empty(), OptionalLimit.of(2L), ImmutableList.of("role")))
+                .get();
+
+            assertEquals(expected, result.getSuggestions());
+        }
+    }
 }
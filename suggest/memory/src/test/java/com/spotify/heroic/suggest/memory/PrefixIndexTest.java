@@ -0,0 +1,118 @@
+package com.spotify.heroic.suggest.memory;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PrefixIndexTest {
+    private PrefixIndex<String> index;
+
+    @Before
+    public void setup() {
+        index = new PrefixIndex<>(4, Runnable::run);
+
+        for (final String term : Arrays.asList("host", "hosting", "hostname", "role", "roles",
+            "region", "database", "db")) {
+            index.add(term, "v-" + term);
+        }
+    }
+
+    @Test
+    public void testPrefix() {
+        assertEquals(set("v-host", "v-hosting", "v-hostname"), index.prefix("ho"));
+        assertEquals(set("v-hostname"), index.prefix("hostn"));
+        assertEquals(set("v-role", "v-roles", "v-region"), index.prefix("r"));
+        assertEquals(set(), index.prefix("x"));
+        assertEquals(set(), index.prefix("hostnames"));
+    }
+
+    @Test
+    public void testMergesIntoSegment() {
+        assertTrue(index.segmentSize() > 0);
+
+        index.flush();
+
+        assertEquals(8, index.segmentSize());
+        assertEquals(0, index.pendingSize());
+        assertEquals(set("v-db", "v-database"), index.prefix("d"));
+    }
+
+    @Test
+    public void testPendingAndSegmentCombine() {
+        index.flush();
+        index.add("host", "other");
+        index.add("hostel", "v-hostel");
+
+        assertEquals(2, index.pendingSize());
+        assertEquals(set("v-host", "other", "v-hosting", "v-hostname", "v-hostel"),
+            index.prefix("host"));
+
+        index.flush();
+
+        assertEquals(9, index.segmentSize());
+        assertEquals(0, index.pendingSize());
+        assertEquals(set("v-host", "other", "v-hosting", "v-hostname", "v-hostel"),
+            index.prefix("host"));
+    }
+
+    @Test
+    public void testFuzzy() {
+        /* one edit allowed for terms of length 3 to 5 */
+        assertEquals(set("v-role", "v-roles"), index.fuzzy("rple", 1, 20));
+        assertEquals(set("v-host", "v-hosting", "v-hostname"), index.fuzzy("hots", 2, 20));
+
+        /* two edits allowed for longer terms */
+        assertEquals(set("v-database"), index.fuzzy("dtabse", 1, 20));
+
+        /* short terms have to match as prefixes */
+        assertEquals(set("v-db", "v-database"), index.fuzzy("d", 2, 20));
+
+        /* the exact prefix must match */
+        assertEquals(set(), index.fuzzy("xole", 1, 20));
+    }
+
+    @Test
+    public void testFuzzyMaxExpansions() {
+        index.flush();
+        assertEquals(1, index.fuzzy("host", 2, 1).size());
+    }
+
+    @Test
+    public void testFuzzyPrefix() {
+        final char[] tail = "hots".toCharArray();
+        assertTrue(PrefixIndex.fuzzyPrefix("hostname", 0, tail, 1));
+        assertFalse(PrefixIndex.fuzzyPrefix("hostname", 0, tail, 0));
+    }
+
+    @Test
+    public void testRejectedMergeRunsInline() {
+        final PrefixIndex<String> rejecting = new PrefixIndex<>(2, task -> {
+            throw new RejectedExecutionException();
+        });
+
+        rejecting.add("host", "v-host");
+        rejecting.add("role", "v-role");
+
+        assertEquals(2, rejecting.segmentSize());
+        assertEquals(0, rejecting.pendingSize());
+
+        // the next merge is not blocked by the rejected one
+        rejecting.add("region", "v-region");
+        rejecting.add("db", "v-db");
+
+        assertEquals(4, rejecting.segmentSize());
+        assertEquals(0, rejecting.pendingSize());
+    }
+
+    private static Set<String> set(final String... values) {
+        return new HashSet<>(Arrays.asList(values));
+    }
+}